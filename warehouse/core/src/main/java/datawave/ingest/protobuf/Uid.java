@@ -94,6 +94,17 @@ public final class Uid {
          * <code>repeated string QUARANTINEUID = 5;</code>
          */
         com.google.protobuf.ByteString getQUARANTINEUIDBytes(int index);
+        
+        // optional bytes UIDSKETCH = 6;
+        /**
+         * <code>optional bytes UIDSKETCH = 6;</code>
+         */
+        boolean hasUIDSKETCH();
+        
+        /**
+         * <code>optional bytes UIDSKETCH = 6;</code>
+         */
+        com.google.protobuf.ByteString getUIDSKETCH();
     }
     
     /**
@@ -180,6 +191,11 @@ public final class Uid {
                             qUARANTINEUID_.add(input.readBytes());
                             break;
                         }
+                        case 50: {
+                            bitField0_ |= 0x00000004;
+                            uIDSKETCH_ = input.readBytes();
+                            break;
+                        }
                     }
                 }
             } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -355,12 +371,31 @@ public final class Uid {
             return qUARANTINEUID_.getByteString(index);
         }
         
+        // optional bytes UIDSKETCH = 6;
+        public static final int UIDSKETCH_FIELD_NUMBER = 6;
+        private com.google.protobuf.ByteString uIDSKETCH_;
+        
+        /**
+         * <code>optional bytes UIDSKETCH = 6;</code>
+         */
+        public boolean hasUIDSKETCH() {
+            return ((bitField0_ & 0x00000004) == 0x00000004);
+        }
+        
+        /**
+         * <code>optional bytes UIDSKETCH = 6;</code>
+         */
+        public com.google.protobuf.ByteString getUIDSKETCH() {
+            return uIDSKETCH_;
+        }
+        
         private void initFields() {
             iGNORE_ = false;
             cOUNT_ = 0L;
             uID_ = com.google.protobuf.LazyStringArrayList.EMPTY;
             rEMOVEDUID_ = com.google.protobuf.LazyStringArrayList.EMPTY;
             qUARANTINEUID_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+            uIDSKETCH_ = com.google.protobuf.ByteString.EMPTY;
         }
         
         private byte memoizedIsInitialized = -1;
@@ -399,6 +434,9 @@ public final class Uid {
             for (int i = 0; i < qUARANTINEUID_.size(); i++) {
                 output.writeBytes(5, qUARANTINEUID_.getByteString(i));
             }
+            if (((bitField0_ & 0x00000004) == 0x00000004)) {
+                output.writeBytes(6, uIDSKETCH_);
+            }
             getUnknownFields().writeTo(output);
         }
         
@@ -440,6 +478,9 @@ public final class Uid {
                 size += dataSize;
                 size += 1 * getQUARANTINEUIDList().size();
             }
+            if (((bitField0_ & 0x00000004) == 0x00000004)) {
+                size += com.google.protobuf.CodedOutputStream.computeBytesSize(6, uIDSKETCH_);
+            }
             size += getUnknownFields().getSerializedSize();
             memoizedSerializedSize = size;
             return size;
@@ -562,6 +603,8 @@ public final class Uid {
                 bitField0_ = (bitField0_ & ~0x00000008);
                 qUARANTINEUID_ = com.google.protobuf.LazyStringArrayList.EMPTY;
                 bitField0_ = (bitField0_ & ~0x00000010);
+                uIDSKETCH_ = com.google.protobuf.ByteString.EMPTY;
+                bitField0_ = (bitField0_ & ~0x00000020);
                 return this;
             }
             
@@ -612,6 +655,10 @@ public final class Uid {
                     bitField0_ = (bitField0_ & ~0x00000010);
                 }
                 result.qUARANTINEUID_ = qUARANTINEUID_;
+                if (((from_bitField0_ & 0x00000020) == 0x00000020)) {
+                    to_bitField0_ |= 0x00000004;
+                }
+                result.uIDSKETCH_ = uIDSKETCH_;
                 result.bitField0_ = to_bitField0_;
                 onBuilt();
                 return result;
@@ -665,6 +712,9 @@ public final class Uid {
                     }
                     onChanged();
                 }
+                if (other.hasUIDSKETCH()) {
+                    setUIDSKETCH(other.getUIDSKETCH());
+                }
                 this.mergeUnknownFields(other.getUnknownFields());
                 return this;
             }
@@ -1064,6 +1114,46 @@ public final class Uid {
                 return this;
             }
             
+            // optional bytes UIDSKETCH = 6;
+            private com.google.protobuf.ByteString uIDSKETCH_ = com.google.protobuf.ByteString.EMPTY;
+            
+            /**
+             * <code>optional bytes UIDSKETCH = 6;</code>
+             */
+            public boolean hasUIDSKETCH() {
+                return ((bitField0_ & 0x00000020) == 0x00000020);
+            }
+            
+            /**
+             * <code>optional bytes UIDSKETCH = 6;</code>
+             */
+            public com.google.protobuf.ByteString getUIDSKETCH() {
+                return uIDSKETCH_;
+            }
+            
+            /**
+             * <code>optional bytes UIDSKETCH = 6;</code>
+             */
+            public Builder setUIDSKETCH(com.google.protobuf.ByteString value) {
+                if (value == null) {
+                    throw new NullPointerException();
+                }
+                bitField0_ |= 0x00000020;
+                uIDSKETCH_ = value;
+                onChanged();
+                return this;
+            }
+            
+            /**
+             * <code>optional bytes UIDSKETCH = 6;</code>
+             */
+            public Builder clearUIDSKETCH() {
+                bitField0_ = (bitField0_ & ~0x00000020);
+                uIDSKETCH_ = getDefaultInstance().getUIDSKETCH();
+                onChanged();
+                return this;
+            }
+            
             // @@protoc_insertion_point(builder_scope:datawave.ingest.protobuf.List)
         }
         
@@ -1084,17 +1174,17 @@ public final class Uid {
     
     private static com.google.protobuf.Descriptors.FileDescriptor descriptor;
     static {
-        java.lang.String[] descriptorData = {"\n\tUid.proto\022\030datawave.ingest.protobuf\"]\n"
+        java.lang.String[] descriptorData = {"\n\tUid.proto\022\030datawave.ingest.protobuf\"p\n"
                         + "\004List\022\016\n\006IGNORE\030\001 \002(\010\022\r\n\005COUNT\030\002 \002(\004\022\013\n\003"
                         + "UID\030\003 \003(\t\022\022\n\nREMOVEDUID\030\004 \003(\t\022\025\n\rQUARANT"
-                        + "INEUID\030\005 \003(\tB\034\n\030datawave.ingest.protobuf" + "H\001"};
+                        + "INEUID\030\005 \003(\t\022\021\n\tUIDSKETCH\030\006 \001(\014B\034\n\030dataw" + "ave.ingest.protobufH\001"};
         com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner = new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
             public com.google.protobuf.ExtensionRegistry assignDescriptors(com.google.protobuf.Descriptors.FileDescriptor root) {
                 descriptor = root;
                 internal_static_datawave_ingest_protobuf_List_descriptor = getDescriptor().getMessageTypes().get(0);
                 internal_static_datawave_ingest_protobuf_List_fieldAccessorTable = new com.google.protobuf.GeneratedMessage.FieldAccessorTable(
                                 internal_static_datawave_ingest_protobuf_List_descriptor, new java.lang.String[] {"IGNORE", "COUNT", "UID", "REMOVEDUID",
-                                        "QUARANTINEUID",});
+                                        "QUARANTINEUID", "UIDSKETCH",});
                 return null;
             }
         };
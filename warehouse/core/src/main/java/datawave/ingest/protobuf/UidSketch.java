@@ -0,0 +1,166 @@
+package datawave.ingest.protobuf;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * A fixed size bitmap of hashed UIDs. This is kept as the UIDSKETCH of a {@link Uid.List} that has too many UIDs to hold them, so that the UIDs of high
+ * cardinality terms can still be intersected.
+ * <p>
+ * The sketch is a superset of the UIDs it was built from: a UID whose bit is not set is not in the list, while a UID whose bit is set may or may not be.
+ * Removals are not applied to the sketch, they only make it less precise.
+ * <p>
+ * Like the containers of a Roaring bitmap, a sketch with few bits set is serialized as a sorted array of its bit positions and one with many bits set as a
+ * bitmap. A sketch with more than half of its bits set says little about its UIDs and should not be kept, see {@link #isSaturated()}.
+ */
+public class UidSketch {
+    
+    /**
+     * The number of bits in a sketch. Changing this invalidates every sketch in the global index.
+     */
+    public static final int BITS = 4096;
+    
+    /**
+     * The table property that turns sketches on for a global index table. Sketches are not kept unless it is set to true.
+     */
+    public static final String TABLE_PROPERTY = "table.custom.index.uid.sketch";
+    
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    
+    // the number of positions below which an array is smaller than the bitmap
+    private static final int MAX_ARRAY = BITS / 16;
+    
+    private final BitSet bits;
+    
+    public UidSketch() {
+        this(new BitSet(BITS));
+    }
+    
+    private UidSketch(BitSet bits) {
+        this.bits = bits;
+    }
+    
+    /**
+     * @param bytes
+     *            a serialized sketch
+     * @return the sketch
+     * @throws IllegalArgumentException
+     *             if the bytes are not a sketch
+     */
+    public static UidSketch parseFrom(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Empty uid sketch");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        if (bytes[0] == ARRAY && buffer.remaining() % 2 == 0) {
+            BitSet bits = new BitSet(BITS);
+            while (buffer.hasRemaining()) {
+                int position = buffer.getShort() & 0xffff;
+                if (position >= BITS) {
+                    throw new IllegalArgumentException("Uid sketch position out of range: " + position);
+                }
+                bits.set(position);
+            }
+            return new UidSketch(bits);
+        } else if (bytes[0] == BITMAP && buffer.remaining() <= BITS / 8) {
+            return new UidSketch(BitSet.valueOf(buffer));
+        }
+        throw new IllegalArgumentException("Not a uid sketch");
+    }
+    
+    public byte[] toByteArray() {
+        int cardinality = bits.cardinality();
+        if (cardinality < MAX_ARRAY) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 2 * cardinality);
+            buffer.put(ARRAY);
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                buffer.putShort((short) i);
+            }
+            return buffer.array();
+        }
+        byte[] bitmap = bits.toByteArray();
+        byte[] bytes = new byte[1 + bitmap.length];
+        bytes[0] = BITMAP;
+        System.arraycopy(bitmap, 0, bytes, 1, bitmap.length);
+        return bytes;
+    }
+    
+    public void add(String uid) {
+        bits.set(position(uid));
+    }
+    
+    /**
+     * @param uid
+     * @return false if the UID is certainly not one of the UIDs of the sketch
+     */
+    public boolean mightContain(String uid) {
+        return bits.get(position(uid));
+    }
+    
+    /**
+     * Add the UIDs of another sketch to this one
+     * 
+     * @param other
+     */
+    public void addAll(UidSketch other) {
+        bits.or(other.bits);
+    }
+    
+    /**
+     * Keep only the UIDs this sketch may have in common with another
+     * 
+     * @param other
+     */
+    public void retainAll(UidSketch other) {
+        bits.and(other.bits);
+    }
+    
+    public UidSketch copy() {
+        return new UidSketch((BitSet) bits.clone());
+    }
+    
+    /**
+     * @return true if no UID was added, or no UID was kept by {@link #retainAll(UidSketch)}
+     */
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+    
+    public int cardinality() {
+        return bits.cardinality();
+    }
+    
+    /**
+     * @return true if more than half of the bits are set
+     */
+    public boolean isSaturated() {
+        return bits.cardinality() > BITS / 2;
+    }
+    
+    private static int position(String uid) {
+        // trimmed as the query trims the UIDs it reads, then spread by the murmur3 finalizer
+        int h = uid.trim().hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (BITS - 1);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof UidSketch && bits.equals(((UidSketch) o).bits);
+    }
+    
+    @Override
+    public int hashCode() {
+        return bits.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return "UidSketch[" + bits.cardinality() + " of " + BITS + " bits]";
+    }
+}
@@ -0,0 +1,66 @@
+package datawave.ingest.protobuf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UidSketchTest {
+    
+    private static UidSketch sketch(String prefix, int uids) {
+        UidSketch sketch = new UidSketch();
+        for (int i = 0; i < uids; i++) {
+            sketch.add(prefix + i);
+        }
+        return sketch;
+    }
+    
+    @Test
+    public void testArrayRoundTrip() {
+        UidSketch sketch = sketch("uid", 10);
+        byte[] bytes = sketch.toByteArray();
+        assertEquals(1 + 2 * sketch.cardinality(), bytes.length);
+        
+        UidSketch parsed = UidSketch.parseFrom(bytes);
+        assertEquals(sketch, parsed);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(parsed.mightContain("uid" + i));
+        }
+    }
+    
+    @Test
+    public void testBitmapRoundTrip() {
+        UidSketch sketch = sketch("uid", 1000);
+        byte[] bytes = sketch.toByteArray();
+        assertTrue(bytes.length <= 1 + UidSketch.BITS / 8);
+        assertEquals(sketch, UidSketch.parseFrom(bytes));
+        assertFalse(sketch.isSaturated());
+    }
+    
+    @Test
+    public void testRetainAll() {
+        UidSketch first = new UidSketch();
+        first.add("a");
+        first.add("b");
+        UidSketch second = new UidSketch();
+        second.add("b");
+        
+        UidSketch both = first.copy();
+        both.retainAll(second);
+        assertTrue(both.mightContain("b"));
+        assertEquals(second, both);
+        // the copy leaves the original alone
+        assertTrue(first.mightContain("a"));
+    }
+    
+    @Test
+    public void testSaturated() {
+        assertTrue(sketch("uid", 10 * UidSketch.BITS).isSaturated());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotASketch() {
+        UidSketch.parseFrom(new byte[] {7, 1, 2});
+    }
+}
@@ -5,16 +5,22 @@ import java.util.Iterator;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.log4j.Logger;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import datawave.ingest.protobuf.Uid;
+import datawave.ingest.protobuf.UidSketch;
 
 /**
  * Implementation of an Aggregator that aggregates objects of the type Uid.List. This is an optimization for the shardIndex and shardReverseIndex, where the
  * list of UIDs for events will be maintained in the global index for low cardinality terms.
  * 
+ * When {@link UidSketch#TABLE_PROPERTY} is set on the table, a {@link UidSketch} of the UIDs is kept in their place once there are too many UIDs to keep. The
+ * sketch is dropped for good once it is saturated, or once it is merged with a list that has lost its UIDs without keeping a sketch (such as the lists written
+ * before sketches were kept).
  * 
  * 
  */
@@ -71,6 +77,21 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
      */
     private long count = 0;
     
+    /**
+     * flag for whether or not a sketch is kept once the UIDs are dropped
+     */
+    private boolean keepSketch = false;
+    
+    /**
+     * sketch of every UID seen, including those beyond maxUids.
+     */
+    private UidSketch sketch = new UidSketch();
+    
+    /**
+     * flag for whether or not we have seen a list that dropped its UIDs without a sketch
+     */
+    private boolean sketchLost = false;
+    
     /**
      * temporary set for removals.
      */
@@ -85,6 +106,11 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         if (seenIgnore || count > maxUids) {
             builder.setIGNORE(true);
             builder.clearUID();
+            if (!keepSketch || sketchLost || sketch.isSaturated()) {
+                builder.clearUIDSKETCH();
+            } else {
+                builder.setUIDSKETCH(ByteString.copyFrom(sketch.toByteArray()));
+            }
             // if we catch seenIgnore, then there is
             // no need to propogate removals.
             propogate = false;
@@ -157,6 +183,9 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                     seenIgnore = true;
                     if (log.isDebugEnabled())
                         log.debug("SeenIgnore is true. Skipping collections");
+                    
+                    if (keepSketch)
+                        collectSketch(v);
                 }
                 
                 // if delta > 0, we are collecting the uid list
@@ -167,6 +196,9 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                         
                         quarantinedIds.remove(uid);
                         releasedUids.add(uid);
+                        
+                        if (keepSketch)
+                            sketch.add(uid);
                     }
                     
                     for (String uid : v.getUIDList()) {
@@ -179,6 +211,8 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
                             if (uids.size() < maxUids)
                                 uids.add(uid);
                             
+                            if (keepSketch)
+                                sketch.add(uid);
                         }
                         
                     }
@@ -228,11 +262,49 @@ public class GlobalIndexUidAggregator extends PropogatingCombiner {
         return aggregate();
     }
     
+    /**
+     * Merge the sketch of a list that dropped its UIDs
+     * 
+     * @param v
+     */
+    private void collectSketch(Uid.List v) {
+        if (sketchLost) {
+            return;
+        }
+        if (!v.hasUIDSKETCH()) {
+            sketchLost = true;
+            return;
+        }
+        try {
+            sketch.addAll(UidSketch.parseFrom(v.getUIDSKETCH().toByteArray()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping the uid sketch of an invalid Uid.List", e);
+            sketchLost = true;
+        }
+    }
+    
+    @Override
+    public void setEnvironment(IteratorEnvironment env) {
+        if (env != null && env.getConfig() != null)
+            setKeepSketch(Boolean.parseBoolean(env.getConfig().get(UidSketch.TABLE_PROPERTY)));
+    }
+    
+    /**
+     * Sets whether or not a sketch of the UIDs is kept once there are too many UIDs to keep.
+     * 
+     * @param keepSketch
+     */
+    public void setKeepSketch(boolean keepSketch) {
+        this.keepSketch = keepSketch;
+    }
+    
     public void reset() {
         if (log.isDebugEnabled())
             log.debug("Resetting GlobalIndexUidAggregator");
         count = 0;
         seenIgnore = false;
+        sketch = new UidSketch();
+        sketchLost = false;
         builder = Uid.List.newBuilder();
         uids.clear();
         uidsToRemove.clear();
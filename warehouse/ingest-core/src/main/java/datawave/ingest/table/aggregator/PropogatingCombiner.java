@@ -5,6 +5,7 @@ import java.util.Iterator;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.log4j.Logger;
 
 /**
@@ -46,6 +47,15 @@ public abstract class PropogatingCombiner extends Combiner {
         this.propogate = propogate;
     }
     
+    /**
+     * Configures the aggregator from the environment of the iterator that runs it, such as the properties of the table.
+     * 
+     * @param env
+     */
+    public void setEnvironment(IteratorEnvironment env) {
+        // empty method
+    }
+    
     /**
      * Determines whether or not to propogate the key depending on the result of the value
      * 
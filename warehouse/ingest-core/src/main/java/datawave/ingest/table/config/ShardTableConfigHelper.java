@@ -7,6 +7,7 @@ import java.util.Set;
 
 import datawave.ingest.mapreduce.handler.ExtendedDataTypeHandler;
 import datawave.ingest.mapreduce.handler.shard.ShardedDataTypeHandler;
+import datawave.ingest.protobuf.UidSketch;
 import datawave.ingest.table.aggregator.CombinerConfiguration;
 import datawave.ingest.table.balancer.ShardedTableTabletBalancer;
 import datawave.ingest.table.bloomfilter.ShardKeyFunctor;
@@ -35,6 +36,9 @@ public class ShardTableConfigHelper extends AbstractTableConfigHelper {
     public static final String ENABLE_BLOOM_FILTERS = "shard.enable.bloom.filters";
     protected boolean enableBloomFilters = false;
     
+    public static final String ENABLE_UID_SKETCHES = "shard.enable.uid.sketches";
+    protected boolean enableUidSketches = false;
+    
     public static final String MARKINGS_SETUP_ITERATOR_ENABLED = "markings.setup.iterator.enabled";
     private boolean markingsSetupIteratorEnabled = false;
     
@@ -86,6 +90,7 @@ public class ShardTableConfigHelper extends AbstractTableConfigHelper {
         }
         
         enableBloomFilters = conf.getBoolean(ENABLE_BLOOM_FILTERS, enableBloomFilters);
+        enableUidSketches = conf.getBoolean(ENABLE_UID_SKETCHES, enableUidSketches);
         
         String localityGroupsConf = null;
         if (tableName.equals(shardTableName)) {
@@ -208,6 +213,8 @@ public class ShardTableConfigHelper extends AbstractTableConfigHelper {
         }
         setPropertyIfNecessary(tableName, Property.TABLE_BLOOM_ENABLED.getKey(), Boolean.toString(enableBloomFilters), tops, log);
         
+        // Keep a sketch of the uids of high cardinality terms
+        setPropertyIfNecessary(tableName, UidSketch.TABLE_PROPERTY, Boolean.toString(enableUidSketches), tops, log);
     }
     
     protected void configureGridxTable(TableOperations tops) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
@@ -231,6 +238,8 @@ public class ShardTableConfigHelper extends AbstractTableConfigHelper {
         }
         setPropertyIfNecessary(tableName, Property.TABLE_BLOOM_ENABLED.getKey(), Boolean.toString(enableBloomFilters), tops, log);
         
+        // Keep a sketch of the uids of high cardinality terms
+        setPropertyIfNecessary(tableName, UidSketch.TABLE_PROPERTY, Boolean.toString(enableUidSketches), tops, log);
     }
     
     protected void configureDictionaryTable(TableOperations tops) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
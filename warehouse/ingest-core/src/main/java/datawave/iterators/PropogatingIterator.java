@@ -312,6 +312,7 @@ public class PropogatingIterator implements SortedKeyValueIterator<Key,Value>, O
             if (agg instanceof PropogatingCombiner) {
                 propAgg = PropogatingCombiner.class.cast(agg);
                 propAgg.setPropogate(shouldPropogate);
+                propAgg.setEnvironment(env);
                 if (familyOption.getKey().equals(AGGREGATOR_DEFAULT) || familyOption.getKey().equals(AGGREGATOR_DEFAULT_OPT)) {
                     if (log.isTraceEnabled())
                         log.debug("Default aggregator is " + propAgg.getClass());
@@ -1,6 +1,7 @@
 package datawave.ingest.table.aggregator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -11,6 +12,7 @@ import java.util.UUID;
 
 import datawave.ingest.protobuf.Uid;
 import datawave.ingest.protobuf.Uid.List.Builder;
+import datawave.ingest.protobuf.UidSketch;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
@@ -20,6 +22,7 @@ import org.junit.Test;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
 
 public class GlobalIndexUidAggregatorTest {
     
@@ -228,4 +231,124 @@ public class GlobalIndexUidAggregatorTest {
         assertEquals(1, resultList.getUIDCount());
         
     }
+    
+    private Value uidValue(String uid) {
+        Builder b = createNewUidList();
+        b.setIGNORE(false);
+        b.setCOUNT(1);
+        b.addUID(uid);
+        return new Value(b.build().toByteArray());
+    }
+    
+    private GlobalIndexUidAggregator sketching() {
+        GlobalIndexUidAggregator agg = new GlobalIndexUidAggregator();
+        agg.setKeepSketch(true);
+        return agg;
+    }
+    
+    @Test
+    public void testNoSketchByDefault() throws Exception {
+        agg.reset();
+        Collection<Value> values = Lists.newArrayList();
+        for (int i = 0; i < GlobalIndexUidAggregator.MAX + 10; i++) {
+            values.add(uidValue(UUID.randomUUID().toString()));
+        }
+        Value result = agg.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        assertEquals(true, resultList.getIGNORE());
+        assertFalse(resultList.hasUIDSKETCH());
+    }
+    
+    @Test
+    public void testMoreThanMaxKeepsSketch() throws Exception {
+        GlobalIndexUidAggregator agg = sketching();
+        List<String> savedUUIDs = new ArrayList<>();
+        Collection<Value> values = Lists.newArrayList();
+        for (int i = 0; i < GlobalIndexUidAggregator.MAX + 10; i++) {
+            String uuid = UUID.randomUUID().toString();
+            savedUUIDs.add(uuid);
+            values.add(uidValue(uuid));
+        }
+        Value result = agg.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        assertEquals(true, resultList.getIGNORE());
+        assertTrue(resultList.hasUIDSKETCH());
+        UidSketch sketch = UidSketch.parseFrom(resultList.getUIDSKETCH().toByteArray());
+        for (String s : savedUUIDs)
+            assertTrue(sketch.mightContain(s));
+    }
+    
+    @Test
+    public void testSketchesMerge() throws Exception {
+        UidSketch first = new UidSketch();
+        first.add("uid1");
+        UidSketch second = new UidSketch();
+        second.add("uid2");
+        
+        GlobalIndexUidAggregator agg = sketching();
+        Collection<Value> values = Lists.newArrayList();
+        for (UidSketch sketch : new UidSketch[] {first, second}) {
+            Builder b = createNewUidList();
+            b.setIGNORE(true);
+            b.setCOUNT(GlobalIndexUidAggregator.MAX + 1);
+            b.setUIDSKETCH(ByteString.copyFrom(sketch.toByteArray()));
+            values.add(new Value(b.build().toByteArray()));
+        }
+        values.add(uidValue("uid3"));
+        Value result = agg.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        assertEquals(2 * GlobalIndexUidAggregator.MAX + 3, resultList.getCOUNT());
+        UidSketch sketch = UidSketch.parseFrom(resultList.getUIDSKETCH().toByteArray());
+        assertTrue(sketch.mightContain("uid1"));
+        assertTrue(sketch.mightContain("uid2"));
+        assertTrue(sketch.mightContain("uid3"));
+    }
+    
+    @Test
+    public void testSketchLostWithoutSketch() throws Exception {
+        GlobalIndexUidAggregator agg = sketching();
+        Collection<Value> values = Lists.newArrayList();
+        Builder b = createNewUidList();
+        b.setIGNORE(true);
+        b.setCOUNT(GlobalIndexUidAggregator.MAX + 1);
+        values.add(new Value(b.build().toByteArray()));
+        values.add(uidValue(UUID.randomUUID().toString()));
+        Value result = agg.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        assertEquals(true, resultList.getIGNORE());
+        assertFalse(resultList.hasUIDSKETCH());
+    }
+    
+    @Test
+    public void testReleasedUidsSketched() throws Exception {
+        UidSketch first = new UidSketch();
+        first.add("uid1");
+        
+        GlobalIndexUidAggregator agg = sketching();
+        Collection<Value> values = Lists.newArrayList();
+        Builder b = createNewUidList();
+        b.setIGNORE(true);
+        b.setCOUNT(GlobalIndexUidAggregator.MAX + 1);
+        b.setUIDSKETCH(ByteString.copyFrom(first.toByteArray()));
+        values.add(new Value(b.build().toByteArray()));
+        
+        // uid2 is quarantined and then released
+        b = createNewUidList();
+        b.setIGNORE(false);
+        b.setCOUNT(-1);
+        b.addQUARANTINEUID("uid2");
+        values.add(new Value(b.build().toByteArray()));
+        b = createNewUidList();
+        b.setIGNORE(false);
+        b.setCOUNT(1);
+        b.addQUARANTINEUID("uid2");
+        values.add(new Value(b.build().toByteArray()));
+        
+        Value result = agg.reduce(new Key("key"), values.iterator());
+        Uid.List resultList = Uid.List.parseFrom(result.get());
+        assertEquals(GlobalIndexUidAggregator.MAX + 1, resultList.getCOUNT());
+        UidSketch sketch = UidSketch.parseFrom(resultList.getUIDSKETCH().toByteArray());
+        assertTrue(sketch.mightContain("uid1"));
+        assertTrue(sketch.mightContain("uid2"));
+    }
 }
@@ -0,0 +1,132 @@
+package datawave.query.benchmark;
+
+import datawave.query.attributes.Document;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.util.Tuple3;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolates the per document costs of the evaluation path: building a {@link Document} from the raw event keys and evaluating the query against it with
+ * {@link JexlEvaluation}. Scores are documents per second; run with {@code -prof gc} for allocation per document.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentEvaluationBenchmark {
+    
+    public static final String[] QUERIES = {
+            // conjunction of equality terms
+            "FIELD_A == 'alpha' && FIELD_B == 'bravo'",
+            // wide disjunction, the worst case for the interpreter
+            "FIELD_B == 'alpha' || FIELD_B == 'bravo' || FIELD_B == 'charlie' || FIELD_C == 'delta1' || FIELD_C == 'echo2' || FIELD_D == 'golf'",
+            // regex and filter functions
+            "FIELD_A == 'alpha' && FIELD_D =~ 'ch.*' && filter:includeRegex(FIELD_E, '1.*')"};
+    
+    @Param({"0", "1", "2"})
+    public int queryIndex;
+    
+    /**
+     * Additional fields per event beyond the fixed set, to model wide events
+     */
+    @Param({"10", "100"})
+    public int extraFields;
+    
+    private List<Key> documentKeys;
+    private List<List<Map.Entry<Key,Value>>> documentEntries;
+    private TypeMetadata typeMetadata;
+    private Set<String> queryFields;
+    private JexlEvaluation evaluation;
+    private Document[] documents;
+    private int position;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        SortedMap<Key,Value> data = new ShardDataGenerator(1000, 0, extraFields, 42L).generate();
+        typeMetadata = ShardDataGenerator.typeMetadata();
+        
+        // group the event keys (column family datatype\0uid) by document
+        documentKeys = new ArrayList<>();
+        documentEntries = new ArrayList<>();
+        String currentColumnFamily = null;
+        for (Map.Entry<Key,Value> entry : data.entrySet()) {
+            String columnFamily = entry.getKey().getColumnFamily().toString();
+            if (!columnFamily.startsWith(ShardDataGenerator.DATATYPE)) {
+                continue;
+            }
+            if (!columnFamily.equals(currentColumnFamily)) {
+                currentColumnFamily = columnFamily;
+                documentKeys.add(new Key(entry.getKey().getRow(), entry.getKey().getColumnFamily()));
+                documentEntries.add(new ArrayList<>());
+            }
+            documentEntries.get(documentEntries.size() - 1).add(entry);
+        }
+        
+        queryFields = new HashSet<>();
+        Collections.addAll(queryFields, "FIELD_A", "FIELD_B", "FIELD_C", "FIELD_D", "FIELD_E");
+        evaluation = new JexlEvaluation(QUERIES[queryIndex]);
+        
+        documents = new Document[documentKeys.size()];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = buildDocument(i);
+        }
+    }
+    
+    @Benchmark
+    public Document buildDocument() {
+        return buildDocument(nextPosition());
+    }
+    
+    @Benchmark
+    public boolean evaluate() {
+        Document document = documents[nextPosition()];
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        document.visit(queryFields, context);
+        return evaluation.apply(new Tuple3<>(document.getMetadata(), document, context));
+    }
+    
+    @Benchmark
+    public boolean buildAndEvaluate() {
+        Document document = buildDocument(nextPosition());
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        document.visit(queryFields, context);
+        return evaluation.apply(new Tuple3<>(document.getMetadata(), document, context));
+    }
+    
+    private Document buildDocument(int index) {
+        Key documentKey = documentKeys.get(index);
+        return new Document(documentKey, Collections.singleton(documentKey), documentEntries.get(index).iterator(), typeMetadata, null, false, false, null);
+    }
+    
+    private int nextPosition() {
+        int current = position;
+        position = (position + 1) % documentKeys.size();
+        return current;
+    }
+}
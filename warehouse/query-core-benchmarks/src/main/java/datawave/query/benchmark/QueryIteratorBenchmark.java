@@ -0,0 +1,191 @@
+package datawave.query.benchmark;
+
+import datawave.mr.bulk.BulkIteratorEnvironment;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.QueryOptions;
+import datawave.query.tld.TLDQueryIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full shard scan through the {@link QueryIterator} (or {@link TLDQueryIterator}) stack: field index seeks in the
+ * {@link datawave.query.iterator.logic.AndIterator AndIterator}/{@link datawave.query.iterator.logic.OrIterator OrIterator} tree, document aggregation,
+ * JEXL evaluation and result serialization.
+ * <p>
+ * {@link #scanShard(Blackhole)} reports whole shard scans per second and {@link #seekDocuments(Blackhole)} reports document specific seeks per second. Run
+ * with {@code -prof gc} to get the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryIteratorBenchmark {
+    
+    private static final int SEEKS_PER_INVOCATION = 100;
+    
+    /**
+     * Representative planned queries, in the form the tserver receives them after the webserver has planned them
+     */
+    public enum QueryShape {
+        AND("FIELD_A == 'alpha' && FIELD_B == 'bravo'"),
+        OR("FIELD_B == 'charlie' || FIELD_B == 'delta' || FIELD_C == 'echo1'"),
+        NESTED("FIELD_A == 'alpha' && (FIELD_B == 'bravo' || FIELD_B == 'golf' || TEXT == 'hotel')"),
+        REGEX_EVALUATION("FIELD_A == 'alpha' && FIELD_D =~ 'ch.*'"),
+        IVARATOR("FIELD_A == 'alpha' && ((ExceededValueThresholdMarkerJexlNode = true) && (FIELD_C =~ 'ec.*'))"),
+        NEGATED_IVARATOR("FIELD_A == 'bravo' && !((ExceededValueThresholdMarkerJexlNode = true) && (FIELD_C =~ 'al.*'))");
+        
+        private final String query;
+        
+        QueryShape(String query) {
+            this.query = query;
+        }
+        
+        public String getQuery() {
+            return query;
+        }
+    }
+    
+    @Param({"AND", "OR", "NESTED", "REGEX_EVALUATION", "IVARATOR", "NEGATED_IVARATOR"})
+    public QueryShape shape;
+    
+    @Param({"10000"})
+    public int documents;
+    
+    /**
+     * Children per top level document. When greater than zero the shard is scanned with the {@link TLDQueryIterator}.
+     */
+    @Param({"0", "5"})
+    public int children;
+    
+    @Param({"true", "false"})
+    public boolean serialPipeline;
+    
+    private SortedMap<Key,Value> data;
+    private Map<String,String> options;
+    private Path ivaratorDir;
+    private Range range;
+    private List<Range> documentRanges;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = new ShardDataGenerator(documents, children, 10, 42L).generate();
+        range = ShardDataGenerator.shardRange();
+        documentRanges = new ArrayList<>();
+        for (int i = 0; i < documents && documentRanges.size() < SEEKS_PER_INVOCATION; i += Math.max(1, documents / SEEKS_PER_INVOCATION)) {
+            documentRanges.add(ShardDataGenerator.documentRange(ShardDataGenerator.uid(i)));
+        }
+        ivaratorDir = Files.createTempDirectory("ivarator");
+        
+        options = new HashMap<>();
+        options.put(QueryOptions.QUERY, shape.getQuery());
+        options.put(QueryOptions.QUERY_ID, "benchmark-" + shape);
+        options.put(QueryOptions.INDEXED_FIELDS, ShardDataGenerator.INDEXED_FIELDS);
+        options.put(QueryOptions.NON_INDEXED_DATATYPES, ShardDataGenerator.DATATYPE + ':' + ShardDataGenerator.UNINDEXED_FIELDS);
+        options.put(QueryOptions.INDEX_ONLY_FIELDS, "");
+        options.put(QueryOptions.TERM_FREQUENCY_FIELDS, ShardDataGenerator.TF_FIELDS);
+        options.put(QueryOptions.START_TIME, "0");
+        options.put(QueryOptions.END_TIME, Long.toString(Long.MAX_VALUE));
+        options.put(QueryOptions.ALLOW_FIELD_INDEX_EVALUATION, "true");
+        options.put(QueryOptions.SERIAL_EVALUATION_PIPELINE, Boolean.toString(serialPipeline));
+        options.put(QueryOptions.IVARATOR_CACHE_BASE_URI_ALTERNATIVES, ivaratorDir.toUri().toString());
+        options.put(QueryOptions.HDFS_SITE_CONFIG_URLS, writeLocalHadoopConfig(ivaratorDir).toURI().toString());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteRecursively(ivaratorDir.toFile());
+    }
+    
+    @Benchmark
+    public int scanShard(Blackhole blackhole) throws IOException {
+        QueryIterator iterator = createIterator();
+        iterator.seek(range, Collections.emptyList(), false);
+        return drain(iterator, blackhole);
+    }
+    
+    /**
+     * Document specific ranges, as produced when the global index returns uids, exercise the seek path rather than next.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SEEKS_PER_INVOCATION)
+    public int seekDocuments(Blackhole blackhole) throws IOException {
+        QueryIterator iterator = createIterator();
+        int results = 0;
+        for (Range documentRange : documentRanges) {
+            iterator.seek(documentRange, Collections.emptyList(), false);
+            results += drain(iterator, blackhole);
+        }
+        return results;
+    }
+    
+    private QueryIterator createIterator() throws IOException {
+        QueryIterator iterator = children > 0 ? new TLDQueryIterator() : new QueryIterator();
+        iterator.setTypeMetadata(ShardDataGenerator.typeMetadata());
+        iterator.init(ShardDataGenerator.source(data), options, new BulkIteratorEnvironment(IteratorScope.scan));
+        return iterator;
+    }
+    
+    private static int drain(QueryIterator iterator, Blackhole blackhole) throws IOException {
+        int results = 0;
+        while (iterator.hasTop()) {
+            blackhole.consume(iterator.getTopKey());
+            blackhole.consume(iterator.getTopValue());
+            results++;
+            iterator.next();
+        }
+        return results;
+    }
+    
+    /**
+     * The ivarators resolve their cache directory through a hadoop FileSystem, so point the file scheme at the raw local file system to avoid checksum files.
+     */
+    private static File writeLocalHadoopConfig(Path dir) throws IOException {
+        File config = new File(dir.toFile(), "benchmark-hadoop.xml");
+        String xml = "<?xml version=\"1.0\"?>\n<configuration>\n  <property>\n    <name>fs.file.impl</name>\n"
+                        + "    <value>org.apache.hadoop.fs.RawLocalFileSystem</value>\n  </property>\n</configuration>\n";
+        Files.write(config.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        return config;
+    }
+    
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,141 @@
+package datawave.query.benchmark;
+
+import datawave.query.Constants;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Builds a synthetic shard (event, field index and term frequency keys) in memory so the query iterators can be exercised without a tablet server.
+ * 
+ * <pre>
+ * event:  row=shard cf=datatype\0uid           cq=FIELD\0value
+ * fi:     row=shard cf=fi\0FIELD               cq=value\0datatype\0uid
+ * tf:     row=shard cf=tf                      cq=datatype\0uid\0value\0FIELD
+ * </pre>
+ * 
+ * Values are drawn from a small fixed vocabulary with a seeded {@link Random} so that every run of a benchmark sees identical data.
+ */
+public class ShardDataGenerator {
+    
+    public static final String ROW = "20190314_0";
+    public static final String DATATYPE = "dataType1";
+    public static final long TIMESTAMP = 11;
+    
+    public static final String INDEXED_FIELDS = "FIELD_A,FIELD_B,FIELD_C,TEXT";
+    public static final String UNINDEXED_FIELDS = "FIELD_D,FIELD_E";
+    public static final String TF_FIELDS = "TEXT";
+    
+    private static final String[] VOCABULARY = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet"};
+    private static final String LC_NO_DIACRITICS = "datawave.data.type.LcNoDiacriticsType";
+    
+    private final int documents;
+    private final int childrenPerDocument;
+    private final int extraFields;
+    private final Random random;
+    
+    /**
+     * @param documents
+     *            number of top level documents in the shard
+     * @param childrenPerDocument
+     *            number of child documents per top level document, 0 for a flat (non-TLD) shard
+     * @param extraFields
+     *            number of additional unindexed fields per event, used to make documents wider
+     * @param seed
+     *            seed for the value generator
+     */
+    public ShardDataGenerator(int documents, int childrenPerDocument, int extraFields, long seed) {
+        this.documents = documents;
+        this.childrenPerDocument = childrenPerDocument;
+        this.extraFields = extraFields;
+        this.random = new Random(seed);
+    }
+    
+    public SortedMap<Key,Value> generate() {
+        SortedMap<Key,Value> data = new TreeMap<>();
+        for (int i = 0; i < documents; i++) {
+            String uid = uid(i);
+            addEvent(data, uid);
+            for (int j = 0; j < childrenPerDocument; j++) {
+                addEvent(data, uid + '.' + j);
+            }
+        }
+        return data;
+    }
+    
+    public static SortedMapIterator source(SortedMap<Key,Value> data) {
+        return new SortedMapIterator(data);
+    }
+    
+    public static Range shardRange() {
+        Key startKey = new Key(ROW);
+        return new Range(startKey, true, startKey.followingKey(PartialKey.ROW), false);
+    }
+    
+    public static Range documentRange(String uid) {
+        Key startKey = new Key(ROW, DATATYPE + Constants.NULL + uid);
+        Key endKey = new Key(ROW, DATATYPE + Constants.NULL + uid + Constants.NULL);
+        return new Range(startKey, true, endKey, false);
+    }
+    
+    public static TypeMetadata typeMetadata() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        for (String field : INDEXED_FIELDS.split(",")) {
+            typeMetadata.put(field, DATATYPE, LC_NO_DIACRITICS);
+        }
+        return typeMetadata;
+    }
+    
+    public static String uid(int ordinal) {
+        // mimic the dotted hash form of real uids so the TLD parsing code paths are representative
+        return String.format("%08x.%08x.%08x", ordinal * 31, ordinal * 17, ordinal);
+    }
+    
+    private void addEvent(SortedMap<Key,Value> data, String uid) {
+        addIndexedField(data, uid, "FIELD_A", VOCABULARY[random.nextInt(2)]);
+        addIndexedField(data, uid, "FIELD_B", VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        addIndexedField(data, uid, "FIELD_C", VOCABULARY[random.nextInt(VOCABULARY.length)] + random.nextInt(1000));
+        
+        data.put(event(uid, "FIELD_D", VOCABULARY[random.nextInt(VOCABULARY.length)]), new Value());
+        data.put(event(uid, "FIELD_E", Integer.toString(random.nextInt(100000))), new Value());
+        for (int i = 0; i < extraFields; i++) {
+            data.put(event(uid, "EXTRA_" + i, VOCABULARY[random.nextInt(VOCABULARY.length)]), new Value());
+        }
+        
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            terms.add(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        data.put(event(uid, "TEXT", String.join(" ", terms)), new Value());
+        for (String term : terms) {
+            data.put(fi(uid, "TEXT", term), new Value());
+            data.put(tf(uid, "TEXT", term), new Value());
+        }
+    }
+    
+    private static void addIndexedField(SortedMap<Key,Value> data, String uid, String field, String value) {
+        data.put(event(uid, field, value), new Value());
+        data.put(fi(uid, field, value), new Value());
+    }
+    
+    private static Key event(String uid, String field, String value) {
+        return new Key(ROW, DATATYPE + Constants.NULL + uid, field + Constants.NULL + value, TIMESTAMP);
+    }
+    
+    private static Key fi(String uid, String field, String value) {
+        return new Key(ROW, Constants.FIELD_INDEX_PREFIX + field, value + Constants.NULL + DATATYPE + Constants.NULL + uid, TIMESTAMP);
+    }
+    
+    private static Key tf(String uid, String field, String value) {
+        return new Key(ROW, "tf", DATATYPE + Constants.NULL + uid + Constants.NULL + value + Constants.NULL + field, TIMESTAMP);
+    }
+}
@@ -6,14 +6,19 @@ import com.google.common.collect.Multimap;
 import datawave.query.composite.CompositeSeeker.FieldIndexCompositeSeeker;
 import datawave.core.iterators.querylock.QueryLock;
 import datawave.query.Constants;
+import datawave.query.iterator.CandidateFilterable;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.iterator.profile.QuerySpanCollector;
 import datawave.query.iterator.profile.SourceTrackingIterator;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
+import datawave.query.util.sortedset.BlockIndexedFileSortedSet;
 import datawave.query.util.sortedset.HdfsBackedSortedSet;
 import datawave.query.util.sortedset.KeyValueSerializable;
+import datawave.query.util.sortedset.OffHeapSortedKeyValueBuffer;
+import datawave.query.util.sortedset.TieredSortedSetFileHandlerFactory;
+import datawave.query.util.sortedset.TieredSortedSetFileHandlerFactory.Tier;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -43,6 +48,8 @@ import java.util.Random;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -58,7 +65,7 @@ import java.util.stream.Collectors;
  * Event key: CF, {datatype}\0{UID}
  * 
  */
-public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIterator {
+public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIterator implements CandidateFilterable {
     
     public abstract static class Builder<B extends Builder<B>> {
         private Text fieldName;
@@ -70,12 +77,18 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         private int maxRangeSplit = 11;
         private FileSystem fs;
         private Path uniqueDir;
+        private FileSystem localFs;
+        private Path localUniqueDir;
         private QueryLock queryLock;
         private boolean allowDirReuse;
         private long scanThreshold = 10000;
         private int hdfsBackedSetBufferSize = 10000;
+        private boolean offHeapBuffer = false;
         private int maxOpenFiles = 100;
         private boolean sortedUIDs = true;
+        private boolean streamingFill = false;
+        private String schedulingKey = IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY;
+        private int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
         protected QuerySpanCollector querySpanCollector = null;
         protected volatile boolean collectTimingDetails = false;
         private volatile long scanTimeout = 1000L * 60 * 60;
@@ -137,6 +150,11 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withOffHeapBuffer(boolean offHeapBuffer) {
+            this.offHeapBuffer = offHeapBuffer;
+            return self();
+        }
+        
         public B withMaxRangeSplit(int maxRangeSplit) {
             this.maxRangeSplit = maxRangeSplit;
             return self();
@@ -157,6 +175,16 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withLocalFileSystem(FileSystem localFs) {
+            this.localFs = localFs;
+            return self();
+        }
+        
+        public B withLocalUniqueDir(Path localUniqueDir) {
+            this.localUniqueDir = localUniqueDir;
+            return self();
+        }
+        
         public B withQueryLock(QueryLock queryLock) {
             this.queryLock = queryLock;
             return self();
@@ -177,6 +205,21 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withStreamingFill(boolean streamingFill) {
+            this.streamingFill = streamingFill;
+            return self();
+        }
+        
+        public B withSchedulingKey(String schedulingKey) {
+            this.schedulingKey = schedulingKey;
+            return self();
+        }
+        
+        public B withSchedulingWeight(int schedulingWeight) {
+            this.schedulingWeight = schedulingWeight;
+            return self();
+        }
+        
         public B withTypeMetadata(TypeMetadata typeMetadata) {
             this.typeMetadata = typeMetadata;
             return self();
@@ -211,6 +254,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     // as possible.
     @SuppressWarnings("unchecked")
     protected static final Collection<ByteSequence> EMPTY_CFS = Collections.EMPTY_LIST;
+    private static final byte[] EMPTY_VALUE = new byte[0];
+    // the time to wait for a streaming fill to make progress before checking it again
+    private static final long STREAMING_FILL_WAIT_MS = 10;
     
     // These are the ranges to scan in the field index
     private final List<Range> boundingFiRanges = new ArrayList<>();
@@ -244,6 +290,10 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private final FileSystem fs;
     // the directory for the hdfs cache
     private final Path uniqueDir;
+    // The local fs, used before the hdfs fs while under the local quota
+    private final FileSystem localFs;
+    // the directory for the local cache
+    private final Path localUniqueDir;
     // A query lock to verify if the query is still running
     private final QueryLock queryLock;
     // are we allowing reuse of the hdfs directories
@@ -252,6 +302,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private final long scanThreshold;
     // the number of entries to cache in memory before flushing to hdfs
     private final int hdfsBackedSetBufferSize;
+    // are the entries cached in memory held off heap
+    private final boolean offHeapBuffer;
     // the max number of files to open simultaneously during a merge source
     private final int maxOpenFiles;
     
@@ -265,11 +317,27 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     // order if sortedUIDs = false, and the calling iterator must handle that appropriately.
     private boolean sortedUIDs = true;
     
+    // an optional filter of the candidate event keys, used to avoid caching matches that cannot be returned by the parent
+    private Predicate<Key> candidateFilter = null;
+    
+    // are the sorted UIDs returned as the fills progress instead of once all of the fills have completed
+    private boolean streamingFill = false;
+    // the fills of the current row when streaming, or null if there is no streaming fill in progress
+    private List<Fill> fills = null;
+    // the lower bound of the key values not yet returned from the streaming fill
+    private KeyValueSerializable streamedTo = null;
+    
+    // the key and weight by which the fill threads are shared with other queries
+    private String schedulingKey = IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY;
+    private int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
+    
     // an fiSource used when not doing sorted UIDs
     private SortedKeyValueIterator<Key,Value> fiSource = null;
     
     // the hdfs backed sorted set
     private HdfsBackedSortedSet<KeyValueSerializable> set = null;
+    // the file handler factory for the sorted set, which places the spilled files in the local or hdfs tier
+    private TieredSortedSetFileHandlerFactory handlerFactory = null;
     // a thread safe wrapper around the sorted set used by the scan threads
     private SortedSet<KeyValueSerializable> threadSafeSet = null;
     // the iterator (merge sort) of key values once the sorted set has been filled
@@ -327,9 +395,12 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.fs = null;
         this.queryLock = null;
         this.uniqueDir = null;
+        this.localFs = null;
+        this.localUniqueDir = null;
         this.allowDirReuse = false;
         this.scanThreshold = 10000;
         this.hdfsBackedSetBufferSize = 10000;
+        this.offHeapBuffer = false;
         this.maxOpenFiles = 100;
         this.maxRangeSplit = 11;
         
@@ -338,16 +409,20 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     
     protected DatawaveFieldIndexCachingIteratorJexl(Builder builder) {
         this(builder.fieldName, builder.fieldValue, builder.timeFilter, builder.datatypeFilter, builder.negated, builder.scanThreshold, builder.scanTimeout,
-                        builder.hdfsBackedSetBufferSize, builder.maxRangeSplit, builder.maxOpenFiles, builder.fs, builder.uniqueDir, builder.queryLock,
-                        builder.allowDirReuse, builder.returnKeyType, builder.sortedUIDs, builder.compositeMetadata, builder.compositeSeekThreshold,
-                        builder.typeMetadata, builder.env);
+                        builder.hdfsBackedSetBufferSize, builder.offHeapBuffer, builder.maxRangeSplit, builder.maxOpenFiles, builder.fs, builder.uniqueDir,
+                        builder.localFs, builder.localUniqueDir, builder.queryLock, builder.allowDirReuse, builder.returnKeyType,
+                        builder.sortedUIDs, builder.compositeMetadata, builder.compositeSeekThreshold, builder.typeMetadata, builder.env);
+        this.streamingFill = builder.streamingFill;
+        this.schedulingKey = builder.schedulingKey;
+        this.schedulingWeight = builder.schedulingWeight;
     }
     
     @SuppressWarnings("hiding")
     private DatawaveFieldIndexCachingIteratorJexl(Text fieldName, Text fieldValue, TimeFilter timeFilter, Predicate<Key> datatypeFilter, boolean neg,
-                    long scanThreshold, long scanTimeout, int bufferSize, int maxRangeSplit, int maxOpenFiles, FileSystem fs, Path uniqueDir,
-                    QueryLock queryLock, boolean allowDirReuse, PartialKey returnKeyType, boolean sortedUIDs, CompositeMetadata compositeMetadata,
-                    int compositeSeekThreshold, TypeMetadata typeMetadata, IteratorEnvironment env) {
+                    long scanThreshold, long scanTimeout, int bufferSize, boolean offHeapBuffer, int maxRangeSplit, int maxOpenFiles, FileSystem fs,
+                    Path uniqueDir, FileSystem localFs, Path localUniqueDir, QueryLock queryLock, boolean allowDirReuse,
+                    PartialKey returnKeyType, boolean sortedUIDs, CompositeMetadata compositeMetadata, int compositeSeekThreshold, TypeMetadata typeMetadata,
+                    IteratorEnvironment env) {
         if (fieldName.toString().startsWith("fi" + NULL_BYTE)) {
             this.fieldName = new Text(fieldName.toString().substring(3));
             this.fiName = fieldName;
@@ -365,10 +440,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.fs = fs;
         this.queryLock = queryLock;
         this.uniqueDir = uniqueDir;
+        this.localFs = localFs;
+        this.localUniqueDir = localUniqueDir;
         this.allowDirReuse = allowDirReuse;
         this.scanThreshold = scanThreshold;
         this.scanTimeout = scanTimeout;
         this.hdfsBackedSetBufferSize = bufferSize;
+        this.offHeapBuffer = offHeapBuffer;
         this.maxOpenFiles = maxOpenFiles;
         this.maxRangeSplit = maxRangeSplit;
         
@@ -402,19 +480,27 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.fs = other.fs;
         this.queryLock = other.queryLock;
         this.uniqueDir = other.uniqueDir;
+        this.localFs = other.localFs;
+        this.localUniqueDir = other.localUniqueDir;
         this.allowDirReuse = other.allowDirReuse;
         this.scanThreshold = other.scanThreshold;
         this.scanTimeout = other.scanTimeout;
         this.hdfsBackedSetBufferSize = other.hdfsBackedSetBufferSize;
+        this.offHeapBuffer = other.offHeapBuffer;
         this.maxOpenFiles = other.maxOpenFiles;
         
         this.set = other.set;
+        this.handlerFactory = other.handlerFactory;
         this.keyValues = other.keyValues;
         this.currentRow = other.currentRow;
         this.createdRowDir = other.createdRowDir;
         this.maxRangeSplit = other.maxRangeSplit;
         
         this.sortedUIDs = other.sortedUIDs;
+        this.candidateFilter = other.candidateFilter;
+        this.streamingFill = other.streamingFill;
+        this.schedulingKey = other.schedulingKey;
+        this.schedulingWeight = other.schedulingWeight;
         
         try {
             this.setControl.takeOwnership(this.currentRow, this);
@@ -468,7 +554,11 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             log.trace("begin seek, range: " + r);
         }
         
-        if (!lastRangeSeekedContains(r)) {
+        if (abortFills()) {
+            // the set of an incomplete streaming fill cannot be reused
+            deleteLocalRowFiles();
+            clearRowBasedHdfsBackedSet();
+        } else if (!lastRangeSeekedContains(r)) {
             // the start of this range is beyond the end of the last range seeked
             // we must reset keyValues to null and empty the underlying collection
             clearRowBasedHdfsBackedSet();
@@ -616,6 +706,18 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         return maxRangeSplit;
     }
     
+    public boolean isStreamingFill() {
+        return streamingFill;
+    }
+    
+    public String getSchedulingKey() {
+        return schedulingKey;
+    }
+    
+    public int getSchedulingWeight() {
+        return schedulingWeight;
+    }
+    
     /**
      * From a field index key, this builds row=shardId, cf=datatype\0UID, cq=fieldname\0fieldvalue Note: in the non-sorted case we need to include the COLQUAL
      * to maintain the position in the FI for reseeking purposes
@@ -691,10 +793,22 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 }
             }
             
-            if (this.topKey == null) {
+            if (this.topKey == null && this.fills != null) {
+                // return the next part of the streaming fill, and complete the set once there is nothing more to return while filling
+                this.keyValues = nextStreamedKeyValues();
+                if (this.keyValues == null) {
+                    List<Fill> fills = this.fills;
+                    this.fills = null;
+                    awaitFills(fills);
+                    completeSortedSet();
+                }
+            } else if (this.topKey == null) {
                 // start the timing
                 startTiming();
                 
+                // if the current key values has no more, then we are done with this row's local files
+                deleteLocalRowFiles();
+                
                 // if the current key values has no more, then clear out this row's set
                 clearRowBasedHdfsBackedSet();
                 
@@ -710,28 +824,9 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                     getNextUnsortedKey();
                 }
                 
-                if (this.setControl.isCancelledQuery()) {
-                    this.topKey = null;
-                    this.topValue = null;
-                }
-                
-                if (isTimedOut()) {
-                    log.error("Ivarator query timed out");
-                    throw new IvaratorException("Ivarator query timed out");
-                }
-                
-                if (this.setControl.isCancelledQuery()) {
-                    log.debug("Ivarator query was cancelled");
-                    throw new IterationInterruptedException("Ivarator query was cancelled");
-                }
-                
-                // if we have any persisted data or we have scanned a significant number of keys, then persist it completely
-                if (this.set != null && (this.set.hasPersistedData() || (scanThreshold <= scannedKeys.get()))) {
-                    forcePersistence();
-                }
-                
-                if (this.keyValues == null) {
-                    this.keyValues = this.threadSafeSet.iterator();
+                // a streaming fill completes the set once it has been returned
+                if (this.fills == null) {
+                    completeSortedSet();
                 }
             }
             
@@ -748,12 +843,53 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
     }
     
+    /**
+     * Check the state of the query once the sorted set has been filled, persist the set if needed, and setup the key values to return from it.
+     * 
+     * @throws IOException
+     */
+    private void completeSortedSet() throws IOException {
+        if (this.setControl.isCancelledQuery()) {
+            this.topKey = null;
+            this.topValue = null;
+        }
+        
+        if (isTimedOut()) {
+            log.error("Ivarator query timed out");
+            throw new IvaratorException("Ivarator query timed out");
+        }
+        
+        if (this.setControl.isCancelledQuery()) {
+            log.debug("Ivarator query was cancelled");
+            throw new IterationInterruptedException("Ivarator query was cancelled");
+        }
+        
+        // if we have any persisted data or we have scanned a significant number of keys, then persist it completely
+        // a candidate filtered set is specific to this iterator, so there is no need to persist it for reuse
+        if (this.set != null && this.candidateFilter == null && (this.set.hasPersistedData() || (scanThreshold <= scannedKeys.get()))) {
+            forcePersistence();
+        }
+        
+        // record the time spent spilling to each tier
+        addSpillTimers();
+        
+        if (this.keyValues == null) {
+            if (this.streamedTo != null) {
+                // continue after the key values already returned by the streaming fill
+                this.keyValues = this.threadSafeSet.tailSet(this.streamedTo).iterator();
+            } else {
+                this.keyValues = getKeyValueIterator(this.threadSafeSet);
+            }
+        }
+        this.streamedTo = null;
+    }
+    
     private void fillSortedSets() throws IOException {
         String sourceRow = this.fiRow.toString();
         setupRowBasedHdfsBackedSet(sourceRow);
         
         // for each range, fork off a runnable
-        List<Future<?>> futures = new ArrayList<>(boundingFiRanges.size());
+        List<Fill> fills = new ArrayList<>(boundingFiRanges.size());
         if (log.isDebugEnabled()) {
             log.debug("Processing " + boundingFiRanges + " for " + this);
         }
@@ -762,15 +898,37 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             if (log.isTraceEnabled()) {
                 log.trace("range -> " + range);
             }
-            futures.add(fillSet(range));
+            Fill fill = new Fill(isUidOrdered(range));
+            fill.future = fillSet(range, fill);
+            fills.add(fill);
+        }
+        
+        // when streaming, return the key values as the fills progress unless we are reusing a completed set
+        if (streamingFill && this.keyValues == null) {
+            this.fills = fills;
+            if (this.lastRangeSeeked != null && this.lastRangeSeeked.getStartKey() != null) {
+                this.streamedTo = new KeyValueSerializable(this.lastRangeSeeked.getStartKey(), EMPTY_VALUE);
+            }
+            return;
         }
         
+        awaitFills(fills);
+    }
+    
+    /**
+     * Wait for the fills to complete, and then move to the next row
+     * 
+     * @param fills
+     * @throws IOException
+     */
+    private void awaitFills(List<Fill> fills) throws IOException {
         boolean failed = false;
         Exception exception = null;
         Object result = null;
         
         // wait for all of the threads to complete
-        for (Future<?> future : futures) {
+        for (Fill fill : fills) {
+            Future<?> future = fill.future;
             checkTiming();
             
             if (failed || this.setControl.isCancelledQuery()) {
@@ -801,6 +959,111 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         moveToNextRow();
     }
     
+    /**
+     * Get the key values that the streaming fill has released since the last call, waiting for the fills to make progress if needed. A key value is released
+     * once every incomplete fill has scanned past its event key. Only fills that scan the UIDs in order can make progress before they complete, so any other
+     * incomplete fill holds back the release.
+     * 
+     * @return the released key values, or null once the fills have completed, failed, or been cancelled
+     */
+    private Iterator<KeyValueSerializable> nextStreamedKeyValues() {
+        while (!this.setControl.isCancelledQuery()) {
+            checkTiming();
+            
+            // find the lowest event key that an incomplete fill may still add
+            Fill waitFor = null;
+            Key releasedTo = null;
+            boolean released = true;
+            for (Fill fill : this.fills) {
+                if (fill.future.isDone()) {
+                    continue;
+                }
+                if (waitFor == null) {
+                    waitFor = fill;
+                }
+                Key lastEventKey = fill.getLastEventKey();
+                if (lastEventKey == null) {
+                    released = false;
+                } else if (releasedTo == null || lastEventKey.compareTo(releasedTo) < 0) {
+                    releasedTo = lastEventKey;
+                }
+            }
+            
+            // the remaining key values are returned once the fills have completed
+            if (waitFor == null) {
+                return null;
+            }
+            
+            if (released) {
+                // an empty value sorts before any other value for the same key, so the key values for the last event key are held back
+                KeyValueSerializable to = new KeyValueSerializable(releasedTo, EMPTY_VALUE);
+                if (this.streamedTo == null || to.compareTo(this.streamedTo) > 0) {
+                    List<KeyValueSerializable> batch = new ArrayList<>();
+                    synchronized (this.threadSafeSet) {
+                        SortedSet<KeyValueSerializable> releasedSet = (this.streamedTo == null ? this.set.headSet(to) : this.set.subSet(this.streamedTo, to));
+                        Iterator<KeyValueSerializable> it = releasedSet.iterator();
+                        while (it.hasNext() && batch.size() < hdfsBackedSetBufferSize) {
+                            batch.add(it.next());
+                        }
+                        this.streamedTo = (it.hasNext() ? it.next() : to);
+                    }
+                    if (!batch.isEmpty()) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Streaming " + batch.size() + " key values up to " + this.streamedTo + " for " + this);
+                        }
+                        return batch.iterator();
+                    }
+                }
+            }
+            
+            try {
+                waitFor.future.get(STREAMING_FILL_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // check for progress again
+            } catch (Exception e) {
+                // the failure is reported when the fills are awaited
+                return null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Abort the fills of an incomplete streaming fill, and wait for the running fills to stop adding to the set
+     * 
+     * @return true if there was a streaming fill to abort
+     */
+    private boolean abortFills() {
+        if (this.fills == null) {
+            return false;
+        }
+        List<Fill> fills = this.fills;
+        this.fills = null;
+        this.streamedTo = null;
+        for (Fill fill : fills) {
+            if (fill.abort()) {
+                try {
+                    fill.future.get();
+                } catch (Exception e) {
+                    log.debug("Aborted fill failed", e);
+                }
+            } else {
+                fill.future.cancel(false);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Does a fill of this bounding FI range scan the UIDs in order. This is true if the range covers a single field value.
+     * 
+     * @param boundingFiRange
+     * @return true if the UIDs are scanned in order
+     */
+    protected boolean isUidOrdered(Range boundingFiRange) {
+        return false;
+    }
+    
     private void getNextUnsortedKey() throws IOException {
         this.keyValues = null;
         
@@ -912,6 +1175,10 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 log.trace("addKey matched " + topFiKey);
             }
             Key topEventKey = buildEventKey(topFiKey, returnKeyType);
+            // skip keys that are not candidates
+            if (candidateFilter != null && !candidateFilter.apply(topEventKey)) {
+                return false;
+            }
             // final check to ensure all keys are contained by initial seek
             if (sortedUIDs && log.isTraceEnabled()) {
                 log.trace("testing " + topEventKey + " against " + lastRangeSeeked);
@@ -938,9 +1205,25 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
      * @return the Future
      */
     protected Future<?> fillSet(final Range boundingFiRange) {
+        return fillSet(boundingFiRange, null);
+    }
+    
+    /**
+     * This method will asynchronously fill the set with matches from within the specified bounding FI range, tracking the progress of the fill.
+     * 
+     * @param boundingFiRange
+     * @param fill
+     *            the fill to track, or null
+     * @return the Future
+     */
+    protected Future<?> fillSet(final Range boundingFiRange, final Fill fill) {
         
         // create runnable
         Runnable runnable = () -> {
+            // nothing to do if the fill was aborted before it started
+            if (fill != null && !fill.start()) {
+                return;
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Starting fillSet(" + boundingFiRange + ')');
             }
@@ -957,7 +1240,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 }
                 
                 // seek the source to a range covering the entire row....the bounding box will dictate the actual scan
-                source.seek(boundingFiRange, EMPTY_CFS, false);
+                seekSource(source, boundingFiRange);
                 scanned++;
                 DatawaveFieldIndexCachingIteratorJexl.this.scannedKeys.incrementAndGet();
                 
@@ -1013,8 +1296,8 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                             }
                             
                             if (shouldSeek) {
-                                source.seek(new Range(nextSeekKey, boundingFiRange.isStartKeyInclusive(), boundingFiRange.getEndKey(), boundingFiRange
-                                                .isEndKeyInclusive()), EMPTY_CFS, false);
+                                seekSource(source, new Range(nextSeekKey, boundingFiRange.isStartKeyInclusive(), boundingFiRange.getEndKey(),
+                                                boundingFiRange.isEndKeyInclusive()));
                                 
                                 // reset next count and seek key
                                 nextSeekKey = null;
@@ -1029,14 +1312,17 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                         }
                     }
                     
-                    // terminate if timed out or cancelled
-                    if (DatawaveFieldIndexCachingIteratorJexl.this.setControl.isCancelledQuery()) {
+                    // terminate if timed out, cancelled, or aborted
+                    if (DatawaveFieldIndexCachingIteratorJexl.this.setControl.isCancelledQuery() || (fill != null && fill.isAborted())) {
                         break;
                     }
                     
                     if (addKey(top, source.getTopValue())) {
                         matched++;
                     }
+                    if (fill != null) {
+                        fill.scanned(top);
+                    }
                     
                     source.next();
                     scanned++;
@@ -1060,10 +1346,29 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
         };
         
-        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, this.initEnv);
+        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange, schedulingKey,
+                        schedulingWeight, this.initEnv);
         
     }
     
+    /**
+     * Seek a fill source as a blocking section, which lets the ivarator threads start another fill while this one waits on the read. A pooled source is checked
+     * out first so that waiting for one of the bounded pooled sources does not start more fills that would wait for them as well.
+     * 
+     * @param source
+     * @param range
+     * @throws IOException
+     */
+    private static void seekSource(SortedKeyValueIterator<Key,Value> source, Range range) throws IOException {
+        if (source instanceof ThreadLocalPooledSource) {
+            ((ThreadLocalPooledSource<Key,Value>) source).get();
+        }
+        FairTaskExecutor.blocking(() -> {
+            source.seek(range, EMPTY_CFS, false);
+            return null;
+        });
+    }
+    
     private static void releaseSource(SortedKeyValueIterator source) {
         try {
             if (source != null && source instanceof AutoCloseable) {
@@ -1084,15 +1389,76 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         return new Path(this.uniqueDir, row);
     }
     
+    /**
+     * Get the local directory for a row, or null if the local tier is disabled
+     * 
+     * @param row
+     * @return the local row directory
+     */
+    protected Path getLocalRowDir(String row) {
+        if (this.localFs == null || this.localUniqueDir == null || TieredSortedSetFileHandlerFactory.getLocalMaxBytes() <= 0) {
+            return null;
+        }
+        return new Path(this.localUniqueDir, row);
+    }
+    
+    /**
+     * Delete the local files for the current row. The local files are not shared with other tservers, so they are released as soon as the row has been
+     * returned to free up the local quota for other ivarators.
+     * 
+     * @throws IOException
+     */
+    protected void deleteLocalRowFiles() throws IOException {
+        if (this.handlerFactory != null && this.handlerFactory.isLocalTierEnabled()) {
+            this.handlerFactory.deleteLocalFiles();
+            if (this.localFs.exists(this.handlerFactory.getLocalDir())) {
+                this.localFs.delete(this.handlerFactory.getLocalDir(), true);
+            }
+        }
+    }
+    
+    /**
+     * Add the time spent spilling the set to each tier to the query span, and reset the tier stats
+     */
+    protected void addSpillTimers() {
+        if (this.handlerFactory == null) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            for (Tier tier : Tier.values()) {
+                if (this.handlerFactory.getFileCount(tier) > 0) {
+                    log.debug("Spilled " + this.handlerFactory.getFileCount(tier) + " files (" + this.handlerFactory.getBytes(tier) + " bytes) to the " + tier
+                                    + " tier in " + this.handlerFactory.getMillis(tier) + "ms");
+                }
+            }
+        }
+        if (collectTimingDetails && querySpanCollector != null) {
+            QuerySpan spillSpan = new QuerySpan(null);
+            spillSpan.setSourceCount(0);
+            if (this.handlerFactory.getFileCount(Tier.LOCAL) > 0) {
+                spillSpan.addStageTimer(QuerySpan.Stage.IvaratorLocalSpill, this.handlerFactory.getMillis(Tier.LOCAL));
+            }
+            if (this.handlerFactory.getFileCount(Tier.HDFS) > 0) {
+                spillSpan.addStageTimer(QuerySpan.Stage.IvaratorHdfsSpill, this.handlerFactory.getMillis(Tier.HDFS));
+            }
+            if (spillSpan.hasEntries()) {
+                querySpanCollector.addQuerySpan(spillSpan);
+            }
+        }
+        this.handlerFactory.resetStats();
+    }
+    
     /**
      * Clear out the current row based hdfs backed set
      * 
      * @throws IOException
      */
     protected void clearRowBasedHdfsBackedSet() throws IOException {
+        abortFills();
         this.keyValues = null;
         this.currentRow = null;
         this.set = null;
+        this.handlerFactory = null;
     }
     
     /**
@@ -1124,7 +1490,23 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 this.createdRowDir = false;
             }
             
-            this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, fs, rowDir, maxOpenFiles);
+            // get the local row specific dir, which is used first while under the local quota
+            Path localRowDir = getLocalRowDir(row);
+            if (localRowDir != null) {
+                if (!allowDirReuse && this.localFs.exists(localRowDir)) {
+                    this.localFs.delete(localRowDir, true);
+                }
+                if (!this.localFs.exists(localRowDir)) {
+                    this.localFs.mkdirs(localRowDir);
+                }
+            }
+            
+            this.handlerFactory = new TieredSortedSetFileHandlerFactory(localFs, localRowDir, fs, rowDir);
+            this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, maxOpenFiles, handlerFactory,
+                            new BlockIndexedFileSortedSet.Factory<>(new KeyValueSerializable.Codec()));
+            if (this.offHeapBuffer) {
+                this.set.setBufferFactory(() -> new OffHeapSortedKeyValueBuffer(hdfsBackedSetBufferSize));
+            }
             this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
             this.currentRow = row;
             this.setControl.takeOwnership(row, this);
@@ -1134,7 +1516,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 this.set.clear();
                 this.keyValues = null;
             } else {
-                this.keyValues = this.set.iterator();
+                this.keyValues = getKeyValueIterator(this.set);
             }
             
             // reset the keyValues counter as we have a new set here
@@ -1144,6 +1526,21 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
     }
     
+    /**
+     * Get an iterator over the key values starting at the start of the last range seeked. The persisted files are block indexed, so this will seek directly
+     * to the block containing the start key instead of scanning each file from its beginning.
+     * 
+     * @param keyValueSet
+     * @return the key value iterator
+     */
+    protected Iterator<KeyValueSerializable> getKeyValueIterator(SortedSet<KeyValueSerializable> keyValueSet) {
+        if (sortedUIDs && this.lastRangeSeeked != null && this.lastRangeSeeked.getStartKey() != null) {
+            // an empty value sorts before any other value for the same key
+            return keyValueSet.tailSet(new KeyValueSerializable(this.lastRangeSeeked.getStartKey(), EMPTY_VALUE)).iterator();
+        }
+        return keyValueSet.iterator();
+    }
+    
     /**
      * Build the bounding FI ranges. Normally this returns only one range, but it could return multiple (@see DatawaveFieldIndexRegex/Range/ListIteratorJexl
      * superclasses). If multiple are returned, then they must be sorted. These ranges are expected to be exclusively in the field index!
@@ -1263,6 +1660,64 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
     }
     
+    /**
+     * The progress of the fill of one bounding FI range. A fill that scans the UIDs in order will not add an event key below the last one it scanned.
+     */
+    protected class Fill {
+        private final boolean uidOrdered;
+        private Future<?> future;
+        private volatile Key lastFiKey = null;
+        private boolean started = false;
+        private volatile boolean aborted = false;
+        
+        public Fill(boolean uidOrdered) {
+            this.uidOrdered = uidOrdered;
+        }
+        
+        /**
+         * Record the last FI key scanned by the fill
+         * 
+         * @param fiKey
+         */
+        public void scanned(Key fiKey) {
+            if (uidOrdered) {
+                this.lastFiKey = new Key(fiKey);
+            }
+        }
+        
+        /**
+         * @return the event key of the last FI key scanned, or null if the fill is not UID ordered or has not scanned a key yet
+         */
+        public Key getLastEventKey() {
+            Key fiKey = this.lastFiKey;
+            return (fiKey == null ? null : buildEventKey(fiKey, returnKeyType));
+        }
+        
+        /**
+         * Mark the fill as started
+         * 
+         * @return false if the fill was aborted before it started
+         */
+        public synchronized boolean start() {
+            started = !aborted;
+            return started;
+        }
+        
+        /**
+         * Abort the fill
+         * 
+         * @return true if the fill had already started
+         */
+        public synchronized boolean abort() {
+            aborted = true;
+            return started;
+        }
+        
+        public boolean isAborted() {
+            return aborted;
+        }
+    }
+    
     public class HdfsBackedControl {
         public static final String OWNERSHIP_FILE = "ownership";
         public static final String COMPLETE_FILE = "complete";
@@ -1282,6 +1737,11 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return new Path(getRowDir(row), COMPLETE_FILE);
         }
         
+        protected Path getLocalCompleteFile(String row) {
+            Path localRowDir = getLocalRowDir(row);
+            return (localRowDir == null ? null : new Path(localRowDir, COMPLETE_FILE));
+        }
+        
         protected String getOwnerId(Object owner) {
             return DatawaveFieldIndexCachingIteratorJexl.getHostname() + "://" + Integer.toString(System.identityHashCode(owner));
         }
@@ -1346,13 +1806,36 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
         
         public void setCompleteAndPersisted(String row) throws IOException {
-            Path file = getCompleteFile(row);
-            writeFile(file, "complete".getBytes());
+            // a set with local files is only complete on this tserver, so other tservers will recompute it
+            if (handlerFactory != null && handlerFactory.hasLocalFiles()) {
+                writeLocalFile(getLocalCompleteFile(row), "complete".getBytes());
+            } else {
+                Path file = getCompleteFile(row);
+                writeFile(file, "complete".getBytes());
+            }
         }
         
         public boolean isCompleteAndPersisted(String row) throws IOException {
             Path file = getCompleteFile(row);
-            return fs.exists(file);
+            if (fs.exists(file)) {
+                return true;
+            }
+            Path localFile = getLocalCompleteFile(row);
+            return (localFile != null && localFs.exists(localFile));
+        }
+        
+        private void writeLocalFile(Path file, byte[] value) throws IOException {
+            // if a cancelled query, then return immediately
+            if (isCancelledQuery()) {
+                return;
+            }
+            
+            FSDataOutputStream stream = localFs.create(file, true, bufferSize);
+            try {
+                stream.write(value);
+            } finally {
+                stream.close();
+            }
         }
         
         private void writeFile(Path file, byte[] value) throws IOException {
@@ -1460,4 +1943,30 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     public void setQuerySpanCollector(QuerySpanCollector querySpanCollector) {
         this.querySpanCollector = querySpanCollector;
     }
+    
+    /**
+     * Restrict the set to the candidate event keys. A change in the filter clears the current set so that the next seek fills it again.
+     * 
+     * @param candidateFilter
+     *            the filter, or null to cache every match
+     * @return true
+     */
+    @Override
+    public boolean setCandidateFilter(Predicate<Key> candidateFilter) {
+        if (this.candidateFilter != candidateFilter) {
+            this.candidateFilter = candidateFilter;
+            try {
+                abortFills();
+                deleteLocalRowFiles();
+                clearRowBasedHdfsBackedSet();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to clear the hdfs backed set", e);
+            }
+        }
+        return true;
+    }
+    
+    public Predicate<Key> getCandidateFilter() {
+        return candidateFilter;
+    }
 }
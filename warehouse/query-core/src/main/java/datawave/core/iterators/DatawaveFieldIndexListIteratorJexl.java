@@ -123,6 +123,17 @@ public class DatawaveFieldIndexListIteratorJexl extends DatawaveFieldIndexCachin
         }
     }
     
+    /**
+     * The bounding ranges built from the list of values each cover a single value, so their UIDs are scanned in order
+     * 
+     * @param boundingFiRange
+     * @return true if the ranges were built from the list of values
+     */
+    @Override
+    protected boolean isUidOrdered(Range boundingFiRange) {
+        return fst == null && !isNegated();
+    }
+    
     /**
      * Build a single bounding range for a field value
      * 
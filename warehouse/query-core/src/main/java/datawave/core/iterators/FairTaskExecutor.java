@@ -0,0 +1,599 @@
+package datawave.core.iterators;
+
+import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor that shares a fixed number of threads fairly between keys (typically queries). Each key has its own queue of tasks, and the queues with waiting
+ * tasks take turns in a deficit round robin: on its turn a queue may start up to its weight in tasks before the next queue is served. A key may also be capped
+ * to a maximum number of running tasks so that one query cannot occupy every thread even when no other query is waiting.
+ * 
+ * Threads may also be reserved by a key, typically for its maximum number of running tasks. The executor never grows past its maximum threads: reservations
+ * are admitted against at most half of them (rounded up), and a reservation is shrunk to what is left once that budget is used up. A key runs up to its
+ * reservation however long the tasks of other keys take, and runs any further tasks on the threads that are not reserved.
+ * 
+ * Tasks may declare the sections of their work that wait on I/O (e.g. hdfs or source reads) as {@link #blocking(BlockingSection)} sections. While a task is
+ * blocked its thread does not count against the maximum number of threads, so another task may be started on an extra thread, up to the maximum number of
+ * blocked threads. This raises the number of tasks in progress without raising the number of threads doing work. A blocked task still counts against the
+ * maximum threads for its key, so the sources a single query holds stay bounded.
+ * 
+ * The queue depths and the time tasks spend waiting for a thread are tracked, for the executor and for each key, so that they may be reported (see
+ * {@link FairTaskExecutorMetrics}).
+ */
+public class FairTaskExecutor {
+    private static final Logger log = Logger.getLogger(FairTaskExecutor.class);
+    
+    // the task running on the current thread, if it is one of our threads
+    private static final ThreadLocal<RunningTask> current = new ThreadLocal<>();
+    
+    private final String name;
+    private final ThreadPoolExecutor workers;
+    
+    // the queues of the keys with waiting or running tasks
+    private final Map<String,TaskQueue> queues = new HashMap<>();
+    // the reserved threads of the keys that hold a reservation
+    private final Map<String,Integer> reservations = new HashMap<>();
+    // the queues that may start a task, in the order they will be served
+    private final ArrayDeque<TaskQueue> ready = new ArrayDeque<>();
+    
+    private int maxThreads;
+    private int reservedThreads = 0;
+    private int maxThreadsPerKey;
+    private int maxBlockedThreads;
+    private int running = 0;
+    // the running tasks that are within the reservations of their keys
+    private int reservedRunning = 0;
+    private int blocked = 0;
+    private int queued = 0;
+    
+    // wait statistics since the executor was created
+    private long started = 0;
+    private long totalWaitMillis = 0;
+    private long maxWaitMillis = 0;
+    
+    /**
+     * @param name
+     *            the name of the threads
+     * @param maxThreads
+     *            the number of threads
+     * @param maxThreadsPerKey
+     *            the maximum number of threads running tasks for one key, or 0 for no limit
+     */
+    public FairTaskExecutor(String name, int maxThreads, int maxThreadsPerKey) {
+        this(name, maxThreads, maxThreadsPerKey, 0);
+    }
+    
+    /**
+     * @param name
+     *            the name of the threads
+     * @param maxThreads
+     *            the number of threads
+     * @param maxThreadsPerKey
+     *            the maximum number of threads running tasks for one key, or 0 for no limit
+     * @param maxBlockedThreads
+     *            the number of extra threads that may be started while tasks are blocked, or 0 to keep blocked tasks on their threads
+     */
+    public FairTaskExecutor(String name, int maxThreads, int maxThreadsPerKey, int maxBlockedThreads) {
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.maxThreadsPerKey = maxThreadsPerKey;
+        this.maxBlockedThreads = maxBlockedThreads;
+        int poolSize = maxThreads + maxBlockedThreads;
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 5 * 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamingThreadFactory(name));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * Run a section of a task that waits on I/O. If called from a task of an executor with blocked threads available, then the executor may start another
+     * task while this one waits. Otherwise the section is simply run.
+     * 
+     * @param section
+     *            the section to run
+     * @return the result of the section
+     * @throws E
+     *             if the section fails
+     */
+    public static <T,E extends Exception> T blocking(BlockingSection<T,E> section) throws E {
+        RunningTask task = current.get();
+        if (task == null || task.blocked || !task.executor.block(task)) {
+            return section.run();
+        }
+        try {
+            return section.run();
+        } finally {
+            task.executor.unblock(task);
+        }
+    }
+    
+    /**
+     * Queue a task for a key
+     * 
+     * @param key
+     *            the key to share the threads by
+     * @param weight
+     *            the number of tasks this key may start on each of its turns, at least 1
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String key, int weight, Runnable task) {
+        return submit(key, weight, 0, task);
+    }
+    
+    /**
+     * Queue a task for a key with its own limit on running tasks. The weight and limit are those of the first task queued for the key, and hold until the key
+     * has no tasks waiting or running, so callers sharing a key cannot change them from under one another.
+     * 
+     * @param key
+     *            the key to share the threads by
+     * @param weight
+     *            the number of tasks this key may start on each of its turns, at least 1
+     * @param maxThreads
+     *            the maximum number of threads running tasks for this key, or 0 for the limit of the executor. The lower of the two limits applies.
+     * @param task
+     *            the task
+     * @return the future for the task
+     */
+    public Future<?> submit(String key, int weight, int maxThreads, Runnable task) {
+        FutureTask<Object> future = new FutureTask<>(task, null);
+        synchronized (this) {
+            TaskQueue queue = queues.computeIfAbsent(key, k -> new TaskQueue(k, Math.max(1, weight), Math.max(0, maxThreads)));
+            queue.tasks.add(new QueuedTask(future, System.currentTimeMillis()));
+            queued++;
+            makeReady(queue);
+            dispatch();
+        }
+        return future;
+    }
+    
+    public synchronized int getMaxThreads() {
+        return maxThreads;
+    }
+    
+    public synchronized void setMaxThreads(int maxThreads) {
+        resize(maxThreads + maxBlockedThreads);
+        this.maxThreads = maxThreads;
+        dispatch();
+    }
+    
+    /**
+     * @return the number of threads that may be reserved, half of the maximum threads rounded up
+     */
+    public synchronized int getReservableThreads() {
+        return maxThreads - maxThreads / 2;
+    }
+    
+    public synchronized int getReservedThreads() {
+        return reservedThreads;
+    }
+    
+    /**
+     * @param key
+     * @return the number of threads reserved by a key
+     */
+    public synchronized int getReservedThreads(String key) {
+        return reservations.getOrDefault(key, 0);
+    }
+    
+    /**
+     * Reserve threads for a key, adding to any threads it has already reserved. The reservation is shrunk to the reservable threads that are left, so the
+     * executor never grows past its maximum threads.
+     * 
+     * @param key
+     *            the key to reserve the threads for
+     * @param threads
+     *            the number of threads to reserve
+     * @return the number of threads reserved, which may be fewer than asked for or 0
+     */
+    public synchronized int reserveThreads(String key, int threads) {
+        int granted = Math.max(0, Math.min(threads, getReservableThreads() - reservedThreads));
+        if (granted > 0) {
+            int reserved = getReservedThreads(key);
+            reservations.put(key, reserved + granted);
+            reservedThreads += granted;
+            reservedRunningChanged(key, reserved, reserved + granted);
+            dispatch();
+        }
+        return granted;
+    }
+    
+    /**
+     * Release the threads reserved by a key. Any tasks of the key running past its reservation keep their threads until they complete.
+     * 
+     * @param key
+     *            the key to release the threads of
+     */
+    public synchronized void releaseThreads(String key) {
+        Integer reserved = reservations.remove(key);
+        if (reserved != null) {
+            reservedThreads -= reserved;
+            reservedRunningChanged(key, reserved, 0);
+            dispatch();
+        }
+    }
+    
+    /**
+     * Account for the running tasks of a key moving in or out of its reservation
+     * 
+     * @param key
+     * @param oldReserved
+     * @param newReserved
+     */
+    private void reservedRunningChanged(String key, int oldReserved, int newReserved) {
+        TaskQueue queue = queues.get(key);
+        if (queue != null) {
+            reservedRunning += Math.min(queue.running, newReserved) - Math.min(queue.running, oldReserved);
+        }
+    }
+    
+    public synchronized int getMaxBlockedThreads() {
+        return maxBlockedThreads;
+    }
+    
+    public synchronized void setMaxBlockedThreads(int maxBlockedThreads) {
+        resize(maxThreads + maxBlockedThreads);
+        this.maxBlockedThreads = maxBlockedThreads;
+    }
+    
+    private void resize(int poolSize) {
+        if (poolSize > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(poolSize);
+            workers.setCorePoolSize(poolSize);
+        } else {
+            workers.setCorePoolSize(poolSize);
+            workers.setMaximumPoolSize(poolSize);
+        }
+    }
+    
+    public synchronized int getMaxThreadsPerKey() {
+        return maxThreadsPerKey;
+    }
+    
+    public synchronized void setMaxThreadsPerKey(int maxThreadsPerKey) {
+        this.maxThreadsPerKey = maxThreadsPerKey;
+        for (TaskQueue queue : queues.values()) {
+            makeReady(queue);
+        }
+        dispatch();
+    }
+    
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public synchronized int getQueuedTasks() {
+        return queued;
+    }
+    
+    /**
+     * @return the number of tasks running
+     */
+    public synchronized int getRunningTasks() {
+        return running;
+    }
+    
+    /**
+     * @return the number of tasks blocked in a {@link #blocking(BlockingSection)} section that have given up their thread
+     */
+    public synchronized int getBlockedTasks() {
+        return blocked;
+    }
+    
+    /**
+     * @param key
+     * @return the number of tasks waiting for a thread for a key
+     */
+    public synchronized int getQueuedTasks(String key) {
+        TaskQueue queue = queues.get(key);
+        return (queue == null ? 0 : queue.tasks.size());
+    }
+    
+    /**
+     * @param key
+     * @return the number of tasks running (or blocked) for a key
+     */
+    public synchronized int getRunningTasks(String key) {
+        TaskQueue queue = queues.get(key);
+        return (queue == null ? 0 : queue.running);
+    }
+    
+    /**
+     * @param key
+     * @return the number of tasks blocked for a key that have given up their thread
+     */
+    public synchronized int getBlockedTasks(String key) {
+        TaskQueue queue = queues.get(key);
+        return (queue == null ? 0 : queue.blocked);
+    }
+    
+    /**
+     * @return the number of keys with waiting or running tasks
+     */
+    public synchronized int getKeyCount() {
+        return queues.size();
+    }
+    
+    /**
+     * @return the keys with waiting or running tasks
+     */
+    public synchronized Set<String> getKeys() {
+        return new TreeSet<>(queues.keySet());
+    }
+    
+    /**
+     * @return how long the longest waiting task has been waiting for a thread
+     */
+    public synchronized long getOldestWaitMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        for (TaskQueue queue : queues.values()) {
+            oldest = Math.max(oldest, queue.getOldestWaitMillis(now));
+        }
+        return oldest;
+    }
+    
+    /**
+     * @param key
+     * @return how long the longest waiting task for a key has been waiting for a thread
+     */
+    public synchronized long getOldestWaitMillis(String key) {
+        TaskQueue queue = queues.get(key);
+        return (queue == null ? 0 : queue.getOldestWaitMillis(System.currentTimeMillis()));
+    }
+    
+    /**
+     * @return the number of tasks started
+     */
+    public synchronized long getStartedTasks() {
+        return started;
+    }
+    
+    /**
+     * @return the total time the started tasks waited for a thread
+     */
+    public synchronized long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+    
+    /**
+     * @return the average time the started tasks waited for a thread
+     */
+    public synchronized long getAverageWaitMillis() {
+        return (started == 0 ? 0 : totalWaitMillis / started);
+    }
+    
+    /**
+     * @param key
+     * @return the average time the tasks started for a key, since it last had no tasks waiting or running, waited for a thread
+     */
+    public synchronized long getAverageWaitMillis(String key) {
+        TaskQueue queue = queues.get(key);
+        return (queue == null || queue.started == 0 ? 0 : queue.totalWaitMillis / queue.started);
+    }
+    
+    /**
+     * @return the longest time a started task waited for a thread
+     */
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return name + ": " + running + " running, " + reservedThreads + " of " + getReservableThreads() + " reserved, " + blocked + " blocked, " + queued
+                        + " queued for " + queues.size() + " keys, oldest wait " + getOldestWaitMillis() + "ms, average wait " + getAverageWaitMillis()
+                        + "ms, max wait " + maxWaitMillis + "ms";
+    }
+    
+    /**
+     * Add a queue to the end of the ready queues if it has tasks waiting and is under the per key limit
+     * 
+     * @param queue
+     */
+    private void makeReady(TaskQueue queue) {
+        if (!queue.ready && canStart(queue)) {
+            queue.ready = true;
+            queue.deficit = 0;
+            ready.addLast(queue);
+        }
+    }
+    
+    private boolean canStart(TaskQueue queue) {
+        return !queue.tasks.isEmpty() && (maxThreadsPerKey <= 0 || queue.running < maxThreadsPerKey)
+                        && (queue.maxThreads <= 0 || queue.running < queue.maxThreads);
+    }
+    
+    /**
+     * Start tasks from the ready queues while there are free threads
+     */
+    private void dispatch() {
+        while (running < maxThreads && !ready.isEmpty()) {
+            TaskQueue queue = nextReady();
+            if (queue == null) {
+                // the unreserved threads are in use, and no key is waiting on one of its reserved threads
+                break;
+            }
+            queue.ready = false;
+            
+            // a queue starts up to its weight in tasks on each turn
+            if (queue.deficit <= 0) {
+                queue.deficit = queue.weight;
+            }
+            QueuedTask task = queue.tasks.poll();
+            queue.deficit--;
+            if (queue.running < getReservedThreads(queue.key)) {
+                reservedRunning++;
+            }
+            queue.running++;
+            queued--;
+            running++;
+            
+            long waitMillis = System.currentTimeMillis() - task.queuedTime;
+            started++;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+            queue.started++;
+            queue.totalWaitMillis += waitMillis;
+            
+            try {
+                workers.execute(() -> run(queue, task.future));
+            } catch (RejectedExecutionException e) {
+                log.error("Unable to run task for " + queue.key + " in " + name, e);
+                task.future.cancel(false);
+                queue.running--;
+                if (queue.running < getReservedThreads(queue.key)) {
+                    reservedRunning--;
+                }
+                running--;
+            }
+            
+            // continue this turn if the queue has not used up its weight, otherwise go to the back of the line
+            if (queue.deficit > 0 && canStart(queue)) {
+                queue.ready = true;
+                ready.addFirst(queue);
+            } else {
+                makeReady(queue);
+            }
+        }
+    }
+    
+    /**
+     * Take the next ready queue that may start a task. Any queue may start a task on an unreserved thread, otherwise the first queue with a free reserved
+     * thread is taken out of turn.
+     * 
+     * @return the queue, or null if none may start a task
+     */
+    private TaskQueue nextReady() {
+        if (running - reservedRunning < maxThreads - reservedThreads) {
+            return ready.pollFirst();
+        }
+        for (Iterator<TaskQueue> it = ready.iterator(); it.hasNext();) {
+            TaskQueue queue = it.next();
+            if (queue.running < getReservedThreads(queue.key)) {
+                it.remove();
+                return queue;
+            }
+        }
+        return null;
+    }
+    
+    private void run(TaskQueue queue, FutureTask<?> future) {
+        RunningTask task = new RunningTask(this, queue);
+        current.set(task);
+        try {
+            future.run();
+        } finally {
+            current.remove();
+            completed(queue);
+        }
+    }
+    
+    /**
+     * Give up the thread of a task that is about to block, starting another task in its place
+     * 
+     * @param task
+     * @return true if the thread was given up
+     */
+    private synchronized boolean block(RunningTask task) {
+        if (blocked >= maxBlockedThreads) {
+            return false;
+        }
+        task.blocked = true;
+        task.queue.blocked++;
+        blocked++;
+        running--;
+        dispatch();
+        return true;
+    }
+    
+    /**
+     * Take back a thread for a task that is no longer blocked. This may leave more tasks running than there are threads until running tasks complete.
+     * 
+     * @param task
+     */
+    private synchronized void unblock(RunningTask task) {
+        task.blocked = false;
+        task.queue.blocked--;
+        blocked--;
+        running++;
+    }
+    
+    private synchronized void completed(TaskQueue queue) {
+        running--;
+        queue.running--;
+        if (queue.running < getReservedThreads(queue.key)) {
+            reservedRunning--;
+        }
+        if (queue.tasks.isEmpty() && queue.running == 0) {
+            queues.remove(queue.key);
+        } else {
+            makeReady(queue);
+        }
+        dispatch();
+    }
+    
+    /**
+     * A section of a task that waits on I/O
+     */
+    @FunctionalInterface
+    public interface BlockingSection<T,E extends Exception> {
+        T run() throws E;
+    }
+    
+    private static class RunningTask {
+        private final FairTaskExecutor executor;
+        private final TaskQueue queue;
+        private boolean blocked = false;
+        
+        public RunningTask(FairTaskExecutor executor, TaskQueue queue) {
+            this.executor = executor;
+            this.queue = queue;
+        }
+    }
+    
+    private static class QueuedTask {
+        private final FutureTask<?> future;
+        private final long queuedTime;
+        
+        public QueuedTask(FutureTask<?> future, long queuedTime) {
+            this.future = future;
+            this.queuedTime = queuedTime;
+        }
+    }
+    
+    private static class TaskQueue {
+        private final String key;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        private final int weight;
+        private final int maxThreads;
+        private int deficit = 0;
+        private int running = 0;
+        private int blocked = 0;
+        private boolean ready = false;
+        private long started = 0;
+        private long totalWaitMillis = 0;
+        
+        public TaskQueue(String key, int weight, int maxThreads) {
+            this.key = key;
+            this.weight = weight;
+            this.maxThreads = maxThreads;
+        }
+        
+        public long getOldestWaitMillis(long now) {
+            QueuedTask task = tasks.peek();
+            return (task == null ? 0 : now - task.queuedTime);
+        }
+    }
+}
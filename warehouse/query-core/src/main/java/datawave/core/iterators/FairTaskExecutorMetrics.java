@@ -0,0 +1,84 @@
+package datawave.core.iterators;
+
+import org.apache.accumulo.server.metrics.MetricsSystemHelper;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.log4j.Logger;
+
+/**
+ * Reports the queue depths and wait times of a {@link FairTaskExecutor} through the metrics system of the tserver. One record is reported for the executor,
+ * and one for each key (query) with tasks waiting or running.
+ * 
+ * The average wait of the executor covers the tasks started since the previous sample, while the total counters let a sink compute its own rates. The
+ * average wait of a key covers the tasks it has started since it last had no tasks waiting or running.
+ */
+public class FairTaskExecutorMetrics implements MetricsSource {
+    private static final Logger log = Logger.getLogger(FairTaskExecutorMetrics.class);
+    
+    public static final String CONTEXT = "tserver";
+    public static final String RECORD = "DatawaveThreads";
+    public static final String KEY_RECORD = "DatawaveQueryThreads";
+    
+    public static final MetricsInfo EXECUTOR = Interns.info("Executor", "The name of the executor");
+    public static final MetricsInfo KEY = Interns.info("Query", "The key the tasks are scheduled by");
+    public static final MetricsInfo QUEUED = Interns.info("QueuedTasks", "Tasks waiting for a thread");
+    public static final MetricsInfo RUNNING = Interns.info("RunningTasks", "Tasks running");
+    public static final MetricsInfo BLOCKED = Interns.info("BlockedTasks", "Tasks blocked on I/O that have given up their thread");
+    public static final MetricsInfo OLDEST_WAIT = Interns.info("OldestWaitMillis", "How long the longest waiting task has been waiting for a thread");
+    public static final MetricsInfo AVERAGE_WAIT = Interns.info("AverageWaitMillis", "The average time the started tasks waited for a thread");
+    public static final MetricsInfo STARTED = Interns.info("StartedTasks", "Tasks started");
+    public static final MetricsInfo TOTAL_WAIT = Interns.info("TotalWaitMillis", "The total time the started tasks waited for a thread");
+    
+    private final String name;
+    private final FairTaskExecutor executor;
+    
+    // the counters at the previous sample
+    private long lastStarted = 0;
+    private long lastWaitMillis = 0;
+    
+    public FairTaskExecutorMetrics(String name, FairTaskExecutor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+    
+    /**
+     * Register the metrics of an executor with the metrics system of the tserver
+     * 
+     * @param sourceName
+     *            the name of the metrics source, which must be unique
+     * @param name
+     *            the name of the executor
+     * @param executor
+     *            the executor
+     */
+    public static void register(String sourceName, String name, FairTaskExecutor executor) {
+        try {
+            MetricsSystemHelper.getInstance().register(sourceName, "Queue depths and wait times of the " + name + " threads",
+                            new FairTaskExecutorMetrics(name, executor));
+        } catch (Exception e) {
+            log.warn("Unable to register the metrics of the " + name + " threads", e);
+        }
+    }
+    
+    @Override
+    public synchronized void getMetrics(MetricsCollector collector, boolean all) {
+        long started = executor.getStartedTasks();
+        long waitMillis = executor.getTotalWaitMillis();
+        long averageWait = (started > lastStarted ? (waitMillis - lastWaitMillis) / (started - lastStarted) : 0);
+        lastStarted = started;
+        lastWaitMillis = waitMillis;
+        
+        collector.addRecord(RECORD).setContext(CONTEXT).tag(EXECUTOR, name).addGauge(QUEUED, executor.getQueuedTasks())
+                        .addGauge(RUNNING, executor.getRunningTasks()).addGauge(BLOCKED, executor.getBlockedTasks())
+                        .addGauge(OLDEST_WAIT, executor.getOldestWaitMillis()).addGauge(AVERAGE_WAIT, averageWait).addCounter(STARTED, started)
+                        .addCounter(TOTAL_WAIT, waitMillis);
+        
+        for (String key : executor.getKeys()) {
+            collector.addRecord(KEY_RECORD).setContext(CONTEXT).tag(EXECUTOR, name).tag(KEY, key).addGauge(QUEUED, executor.getQueuedTasks(key))
+                            .addGauge(RUNNING, executor.getRunningTasks(key)).addGauge(BLOCKED, executor.getBlockedTasks(key))
+                            .addGauge(OLDEST_WAIT, executor.getOldestWaitMillis(key)).addGauge(AVERAGE_WAIT, executor.getAverageWaitMillis(key));
+        }
+    }
+}
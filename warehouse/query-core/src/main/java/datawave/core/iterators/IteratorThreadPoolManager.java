@@ -3,31 +3,48 @@ package datawave.core.iterators;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
-import org.apache.accumulo.core.util.NamingThreadFactory;
 import org.apache.accumulo.server.util.time.SimpleTimer;
 import org.apache.log4j.Logger;
 
 /**
+ * Manages the ivarator and evaluation threads of a tserver. The threads are shared fairly between the queries using them, so that a large query cannot keep
+ * the tasks of other queries waiting for every thread. The tasks of a query are queued together and the queries take turns starting tasks, weighted by their
+ * scheduling weight. The number of threads a single query may use at once can also be capped.
  * 
+ * Extra threads may be allowed for tasks blocked on I/O (see {@link FairTaskExecutor#blocking}), which lets more tasks make progress without raising the
+ * number of threads doing work.
+ * 
+ * The queue depths and wait times of each pool, and of each query using it, are reported through the metrics system of the tserver (see
+ * {@link FairTaskExecutorMetrics}).
  */
 public class IteratorThreadPoolManager {
     private static final Logger log = Logger.getLogger(IteratorThreadPoolManager.class);
     private static final String IVARATOR_THREAD_PROP = "tserver.datawave.ivarator.threads";
+    private static final String IVARATOR_THREADS_PER_QUERY_PROP = "tserver.datawave.ivarator.threads.per.query";
+    private static final String IVARATOR_BLOCKED_THREADS_PROP = "tserver.datawave.ivarator.threads.blocked";
     private static final String IVARATOR_THREAD_NAME = "DATAWAVE Ivarator";
+    private static final String IVARATOR_METRICS_NAME = "DatawaveIvaratorThreads";
     private static final String EVALUATOR_THREAD_PROP = "tserver.datawave.evaluation.threads";
+    private static final String EVALUATOR_THREADS_PER_QUERY_PROP = "tserver.datawave.evaluation.threads.per.query";
+    private static final String EVALUATOR_BLOCKED_THREADS_PROP = "tserver.datawave.evaluation.threads.blocked";
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
+    private static final String EVALUATOR_METRICS_NAME = "DatawaveEvaluationThreads";
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
+    // no limit on the threads used by one query
+    private static final int DEFAULT_THREADS_PER_QUERY = 0;
+    // blocked tasks keep their threads
+    private static final int DEFAULT_BLOCKED_THREADS = 0;
+    
+    // the scheduling key used when the query is not known
+    public static final String DEFAULT_SCHEDULING_KEY = "";
+    public static final int DEFAULT_SCHEDULING_WEIGHT = 1;
     
-    private Map<String,ExecutorService> threadPools = new TreeMap<>();
+    private Map<String,FairTaskExecutor> threadPools = new TreeMap<>();
     
     private static final Object instanceSemaphore = new Object();
     private static final String instanceId = Integer.toHexString(instanceSemaphore.hashCode());
@@ -35,27 +52,42 @@ public class IteratorThreadPoolManager {
     
     private IteratorThreadPoolManager(IteratorEnvironment env) {
         // create the thread pools
-        createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREAD_NAME, env);
-        createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env);
+        createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREADS_PER_QUERY_PROP, IVARATOR_BLOCKED_THREADS_PROP, IVARATOR_THREAD_NAME,
+                        IVARATOR_METRICS_NAME, env);
+        createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREADS_PER_QUERY_PROP, EVALUATOR_BLOCKED_THREADS_PROP, EVALUATOR_THREAD_NAME,
+                        EVALUATOR_METRICS_NAME, env);
     }
     
-    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
+    private FairTaskExecutor createExecutorService(final String prop, final String perQueryProp, final String blockedProp, final String name,
+                    final String metricsName, IteratorEnvironment env) {
         final AccumuloConfiguration accumuloConfiguration;
         if (env != null) {
             accumuloConfiguration = env.getConfig();
         } else {
             accumuloConfiguration = DefaultConfiguration.getInstance();
         }
-        final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')');
+        final FairTaskExecutor service = new FairTaskExecutor(name + " (" + instanceId + ')', getIntProperty(prop, DEFAULT_THREAD_POOL_SIZE,
+                        accumuloConfiguration), getIntProperty(perQueryProp, DEFAULT_THREADS_PER_QUERY, accumuloConfiguration), getIntProperty(blockedProp,
+                        DEFAULT_BLOCKED_THREADS, accumuloConfiguration));
         threadPools.put(name, service);
+        FairTaskExecutorMetrics.register(metricsName, name, service);
         SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
             try {
                 
-                int max = getMaxThreads(prop, accumuloConfiguration);
-                if (service.getMaximumPoolSize() != max) {
+                int max = getIntProperty(prop, DEFAULT_THREAD_POOL_SIZE, accumuloConfiguration);
+                if (service.getMaxThreads() != max) {
                     log.info("Changing " + prop + " to " + max);
-                    service.setCorePoolSize(max);
-                    service.setMaximumPoolSize(max);
+                    service.setMaxThreads(max);
+                }
+                int maxPerQuery = getIntProperty(perQueryProp, DEFAULT_THREADS_PER_QUERY, accumuloConfiguration);
+                if (service.getMaxThreadsPerKey() != maxPerQuery) {
+                    log.info("Changing " + perQueryProp + " to " + maxPerQuery);
+                    service.setMaxThreadsPerKey(maxPerQuery);
+                }
+                int maxBlocked = getIntProperty(blockedProp, DEFAULT_BLOCKED_THREADS, accumuloConfiguration);
+                if (service.getMaxBlockedThreads() != maxBlocked) {
+                    log.info("Changing " + blockedProp + " to " + maxBlocked);
+                    service.setMaxBlockedThreads(maxBlocked);
                 }
             } catch (Throwable t) {
                 log.error(t, t);
@@ -64,14 +96,7 @@ public class IteratorThreadPoolManager {
         return service;
     }
     
-    private ThreadPoolExecutor createExecutorService(int maxThreads, String name) {
-        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 5 * 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-                        new NamingThreadFactory(name));
-        pool.allowCoreThreadTimeOut(true);
-        return pool;
-    }
-    
-    private int getMaxThreads(final String prop, AccumuloConfiguration conf) {
+    private int getIntProperty(final String prop, int defaultValue, AccumuloConfiguration conf) {
         if (conf != null) {
             Map<String,String> properties = new TreeMap<>();
             conf.getProperties(properties, k -> Objects.equals(k, prop));
@@ -79,7 +104,7 @@ public class IteratorThreadPoolManager {
                 return Integer.parseInt(properties.get(prop));
             }
         }
-        return DEFAULT_THREAD_POOL_SIZE;
+        return defaultValue;
     }
     
     private static IteratorThreadPoolManager instance(IteratorEnvironment env) {
@@ -93,8 +118,8 @@ public class IteratorThreadPoolManager {
         return instance;
     }
     
-    private Future<?> execute(String name, final Runnable task, final String taskName) {
-        return threadPools.get(name).submit(() -> {
+    private Future<?> execute(String name, final Runnable task, final String taskName, String schedulingKey, int schedulingWeight) {
+        return threadPools.get(name).submit(schedulingKey, schedulingWeight, () -> {
             String oldName = Thread.currentThread().getName();
             Thread.currentThread().setName(oldName + " -> " + taskName);
             try {
@@ -105,12 +130,51 @@ public class IteratorThreadPoolManager {
         });
     }
     
+    /**
+     * Get the key the tasks of a query are scheduled by. The tasks of all of the scans of a query share their threads, falling back to the scan if the query
+     * is not known.
+     * 
+     * @param queryId
+     * @param scanId
+     * @return the scheduling key
+     */
+    public static String getSchedulingKey(String queryId, String scanId) {
+        if (queryId != null) {
+            return queryId;
+        }
+        return (scanId == null ? DEFAULT_SCHEDULING_KEY : scanId);
+    }
+    
     public static Future<?> executeIvarator(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName);
+        return executeIvarator(task, taskName, DEFAULT_SCHEDULING_KEY, DEFAULT_SCHEDULING_WEIGHT, env);
+    }
+    
+    public static Future<?> executeIvarator(Runnable task, String taskName, String schedulingKey, int schedulingWeight, IteratorEnvironment env) {
+        return instance(env).execute(IVARATOR_THREAD_NAME, task, taskName, schedulingKey, schedulingWeight);
     }
     
     public static Future<?> executeEvaluation(Runnable task, String taskName, IteratorEnvironment env) {
-        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName);
+        return executeEvaluation(task, taskName, DEFAULT_SCHEDULING_KEY, DEFAULT_SCHEDULING_WEIGHT, env);
+    }
+    
+    public static Future<?> executeEvaluation(Runnable task, String taskName, String schedulingKey, int schedulingWeight, IteratorEnvironment env) {
+        return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName, schedulingKey, schedulingWeight);
+    }
+    
+    /**
+     * @param env
+     * @return the executor for the ivarator tasks, whose queue depths and wait times may be reported
+     */
+    public static FairTaskExecutor getIvaratorExecutor(IteratorEnvironment env) {
+        return instance(env).threadPools.get(IVARATOR_THREAD_NAME);
+    }
+    
+    /**
+     * @param env
+     * @return the executor for the evaluation tasks, whose queue depths and wait times may be reported
+     */
+    public static FairTaskExecutor getEvaluationExecutor(IteratorEnvironment env) {
+        return instance(env).threadPools.get(EVALUATOR_THREAD_NAME);
     }
     
 }
@@ -2,9 +2,15 @@ package datawave.query;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -24,6 +30,11 @@ import datawave.webservice.query.exception.BadRequestQueryException;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.NotFoundQueryException;
 import datawave.webservice.query.exception.QueryException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.google.common.collect.Maps;
 
 /**
  *
@@ -31,18 +42,25 @@ import datawave.webservice.query.exception.QueryException;
 public class DocumentSerialization {
     
     public enum ReturnType {
-        writable, kryo, tostring, noop
+        writable, kryo, tostring, noop,
+        /**
+         * kryo, writing the attribute and type classes by id and each column visibility once per document
+         */
+        kryocompact
     }
     
     public static final ReturnType DEFAULT_RETURN_TYPE = ReturnType.kryo;
     
     private static final int DOC_MAGIC = 0x8b2f;
+    private static final int BATCH_MAGIC = 0x8b30;
     
     public static final byte NONE = 0;
     public static final byte GZIP = 1;
     
     public static final int ZLIB_NUMBER = 2;
     
+    public static final int HEADER_LENGTH = 3;
+    
     /**
      * If a user-supplied ReturnType is specified, use it; otherwise, use the default ReturnType of {@link #DEFAULT_RETURN_TYPE}
      *
@@ -65,6 +83,8 @@ public class DocumentSerialization {
     public static DocumentDeserializer getDocumentDeserializer(ReturnType rt) throws NoSuchDeserializerException {
         if (ReturnType.kryo.equals(rt)) {
             return new KryoDocumentDeserializer();
+        } else if (ReturnType.kryocompact.equals(rt)) {
+            return new KryoDocumentDeserializer(true);
         } else if (ReturnType.writable.equals(rt)) {
             return new WritableDocumentDeserializer();
         } else {
@@ -80,6 +100,8 @@ public class DocumentSerialization {
     public static DocumentSerializer getDocumentSerializer(ReturnType rt) throws NoSuchDeserializerException {
         if (ReturnType.kryo.equals(rt)) {
             return new KryoDocumentSerializer();
+        } else if (ReturnType.kryocompact.equals(rt)) {
+            return new KryoDocumentSerializer(false, false, true);
         } else if (ReturnType.writable.equals(rt)) {
             return new WritableDocumentSerializer(false);
         } else {
@@ -122,60 +144,154 @@ public class DocumentSerialization {
     }
     
     public static InputStream consumeHeader(byte[] data) throws InvalidDocumentHeader {
-        if (null == data || 3 > data.length) {
+        int compression = getCompression(data);
+        
+        if (NONE == compression) {
+            return new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+        } else {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            return new InflaterInputStream(bytes, new Inflater(), 1024);
+        }
+    }
+    
+    /**
+     * Validate the header of a serialized document
+     * 
+     * @param data
+     *            the serialized document, including its header
+     * @return the compression of the body, {@link #NONE} or {@link #GZIP}
+     * @throws InvalidDocumentHeader
+     */
+    public static int getCompression(byte[] data) throws InvalidDocumentHeader {
+        if (null == data || HEADER_LENGTH > data.length) {
             QueryException qe = new QueryException(DatawaveErrorCode.DATA_INVALID_ERROR, MessageFormat.format("Length: {0}",
                             (null != data ? data.length : null)));
             throw new InvalidDocumentHeader(qe);
         }
         
-        ByteArrayInputStream bais = new ByteArrayInputStream(data);
-        int magic = readUShort(bais);
+        // magic number (unsigned short in Intel byte order), then the compression (unsigned byte)
+        int magic = (data[0] & 0xff) | ((data[1] & 0xff) << 8);
         
         if (DOC_MAGIC != magic) {
             NotFoundQueryException qe = new NotFoundQueryException(DatawaveErrorCode.EXPECTED_HEADER_NOT_FOUND);
             throw new InvalidDocumentHeader(qe);
         }
         
-        int compression = readUByte(bais);
+        int compression = data[2] & 0xff;
         
-        if (NONE == compression) {
-            return new ByteArrayInputStream(data, 3, data.length - 3);
-        } else if (GZIP == compression) {
-            ByteArrayInputStream bytes = new ByteArrayInputStream(data, 3, data.length - 3);
-            return new InflaterInputStream(bytes, new Inflater(), 1024);
+        if (NONE == compression || GZIP == compression) {
+            return compression;
         } else {
             BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.UNKNOWN_COMPRESSION_SCHEME, MessageFormat.format("{0}", compression));
             throw new InvalidDocumentHeader(qe);
         }
     }
     
-    /*
-     * Reads unsigned short in Intel byte order.
+    /**
+     * @param data
+     * @return true if the value holds a batch of documents written by {@link #writeBatch(List, int)}
      */
-    private static int readUShort(InputStream in) throws InvalidDocumentHeader {
-        int b = readUByte(in);
-        return (readUByte(in) << 8) | b;
+    public static boolean isBatch(byte[] data) {
+        return null != data && HEADER_LENGTH <= data.length && BATCH_MAGIC == ((data[0] & 0xff) | ((data[1] & 0xff) << 8));
     }
     
-    /*
-     * Reads unsigned byte.
+    /**
+     * Pack several serialized documents into a single value. The keys and values of the documents are written back to back after a batch header, compressed
+     * as a single frame so that the field names, classes and visibilities the documents share compress against each other.
+     * 
+     * @param documents
+     *            the keys and serialized values of the documents
+     * @param compression
+     *            {@link #NONE} or {@link #GZIP}
+     * @return the batch
+     * @throws InvalidDocumentHeader
      */
-    private static int readUByte(InputStream in) throws InvalidDocumentHeader {
-        int b;
+    public static byte[] writeBatch(List<Entry<Key,Value>> documents, int compression) throws InvalidDocumentHeader {
+        int size = HEADER_LENGTH;
+        for (Entry<Key,Value> document : documents) {
+            size += document.getValue().getSize() + document.getKey().getSize() + 16;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+        bytes.write((byte) BATCH_MAGIC);
+        bytes.write((byte) (BATCH_MAGIC >> 8));
+        bytes.write(compression);
+        
+        Deflater deflater = null;
+        OutputStream body = bytes;
+        if (GZIP == compression) {
+            deflater = new Deflater(ZLIB_NUMBER);
+            body = new DeflaterOutputStream(bytes, deflater, 1024);
+        } else if (NONE != compression) {
+            BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.UNKNOWN_COMPRESSION_SCHEME, MessageFormat.format("{0}", compression));
+            throw new InvalidDocumentHeader(qe);
+        }
         
         try {
-            b = in.read();
+            DataOutputStream out = new DataOutputStream(body);
+            WritableUtils.writeVInt(out, documents.size());
+            for (Entry<Key,Value> document : documents) {
+                document.getKey().write(out);
+                document.getValue().write(out);
+            }
+            out.close();
         } catch (IOException e) {
-            QueryException qe = new QueryException(DatawaveErrorCode.BUFFER_READ_ERROR, e);
+            QueryException qe = new QueryException(DatawaveErrorCode.GZIP_STREAM_WRITE_ERROR, e);
+            throw new InvalidDocumentHeader(qe);
+        } finally {
+            if (null != deflater) {
+                deflater.end();
+            }
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Unpack a batch written by {@link #writeBatch(List, int)}
+     * 
+     * @param data
+     *            the batch, including its header
+     * @return the keys and serialized values of the documents, in the order they were packed
+     * @throws InvalidDocumentHeader
+     */
+    public static List<Entry<Key,Value>> readBatch(byte[] data) throws InvalidDocumentHeader {
+        if (!isBatch(data)) {
+            NotFoundQueryException qe = new NotFoundQueryException(DatawaveErrorCode.EXPECTED_HEADER_NOT_FOUND);
             throw new InvalidDocumentHeader(qe);
         }
         
-        if (b == -1) {
-            QueryException qe = new QueryException(DatawaveErrorCode.INVALID_BYTE);
+        int compression = data[2] & 0xff;
+        Inflater inflater = null;
+        InputStream body = new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+        if (GZIP == compression) {
+            inflater = new Inflater();
+            body = new InflaterInputStream(body, inflater, 1024);
+        } else if (NONE != compression) {
+            BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.UNKNOWN_COMPRESSION_SCHEME, MessageFormat.format("{0}", compression));
             throw new InvalidDocumentHeader(qe);
         }
         
-        return b;
+        try {
+            DataInputStream in = new DataInputStream(body);
+            int count = WritableUtils.readVInt(in);
+            List<Entry<Key,Value>> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Key key = new Key();
+                key.readFields(in);
+                Value value = new Value();
+                value.readFields(in);
+                documents.add(Maps.immutableEntry(key, value));
+            }
+            return documents;
+        } catch (IOException e) {
+            QueryException qe = new QueryException(DatawaveErrorCode.BUFFER_READ_ERROR, e);
+            throw new InvalidDocumentHeader(qe);
+        } finally {
+            if (null != inflater) {
+                inflater.end();
+            }
+        }
     }
     
 }
@@ -157,4 +157,9 @@ public class QueryParameters {
     
     public static final String DATE_INDEX_TIME_TRAVEL = "date.index.time.travel";
     
+    /**
+     * Allow results to be returned out of key order within a tablet range, e.g. when only some matches are needed or the results feed a count or unique
+     */
+    public static final String UNORDERED_RESULTS = "unordered.results";
+    
 }
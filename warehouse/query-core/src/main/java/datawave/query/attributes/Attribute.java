@@ -174,9 +174,7 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
         if (!reducedResponse) {
             output.writeBoolean(isMetadataSet());
             if (isMetadataSet()) {
-                byte[] cvBytes = getColumnVisibility().getExpression();
-                output.writeInt(cvBytes.length, true);
-                output.writeBytes(cvBytes);
+                KryoClassTable.writeVisibility(kryo, output, getColumnVisibility());
                 output.writeLong(getTimestamp());
             }
         }
@@ -205,9 +203,7 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
         
         if (!reducedResponse) {
             if (input.readBoolean()) {
-                int size = input.readInt(true);
-                
-                this.setMetadata(new ColumnVisibility(input.readBytes(size)), input.readLong());
+                this.setMetadata(KryoClassTable.readVisibility(kryo, input), input.readLong());
             } else {
                 this.clearMetadata();
             }
@@ -253,17 +249,23 @@ public abstract class Attribute<T extends Comparable<T>> implements WritableComp
     private long getMetadataSizeInBytes() {
         long size = 0;
         if (isMetadataSet()) {
-            size += roundUp(33);
-            // 33 is object overhead, 4 array refs, 1 long and 1 boolean
-            size += roundUp(metadata.getRowData().length() + 12);
-            size += roundUp(metadata.getColumnFamilyData().length() + 12);
-            size += roundUp(metadata.getColumnQualifierData().length() + 12);
-            size += roundUp(metadata.getColumnVisibilityData().length() + 12);
-            // 12 is array overhead
+            size += sizeInBytes(metadata);
         }
         return size;
     }
     
+    // a helper method to return the size of a key
+    public static long sizeInBytes(Key key) {
+        long size = roundUp(33);
+        // 33 is object overhead, 4 array refs, 1 long and 1 boolean
+        size += roundUp(key.getRowData().length() + 12);
+        size += roundUp(key.getColumnFamilyData().length() + 12);
+        size += roundUp(key.getColumnQualifierData().length() + 12);
+        size += roundUp(key.getColumnVisibilityData().length() + 12);
+        // 12 is array overhead
+        return size;
+    }
+    
     public long sizeInBytes() {
         // return the approximate overhead of this class
         long size = 16;
@@ -14,7 +14,6 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import datawave.data.type.LcNoDiacriticsType;
 import datawave.data.type.NoOpType;
-import datawave.data.type.Type;
 import datawave.query.util.TypeMetadata;
 
 import org.apache.accumulo.core.data.Key;
@@ -133,21 +132,8 @@ public class AttributeFactory {
     }
     
     protected Attribute<?> getAttribute(Class<?> dataTypeClass, String fieldName, String data, Key key, boolean toKeep) throws Exception {
-        Type<?> type = (Type<?>) dataTypeClass.newInstance();
-        try {
-            type.setDelegateFromString(data);
-            return new TypeAttribute(type, key, toKeep);
-        } catch (Exception ex) {
-            
-            if (ex instanceof IllegalArgumentException) {
-                log.warn("Could not parse " + fieldName + " = '" + data + "', resorting to a NoOpType");
-                return new TypeAttribute(new NoOpType(data), key, toKeep);
-            } else {
-                log.error("Could not create Attribute for " + fieldName + " and " + data, ex);
-                throw new IllegalArgumentException("Could not create Attribute for " + fieldName + " and " + data, ex);
-            }
-            
-        }
+        // the type is only created, and the value normalized, when the attribute is first used
+        return new TypeAttribute(dataTypeClass, fieldName, data, key, toKeep);
     }
     
     public static Collection<Class<?>> getKeepers(Iterable<Class<?>> finders) {
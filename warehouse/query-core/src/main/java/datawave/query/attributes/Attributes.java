@@ -295,7 +295,7 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
         
         for (Attribute<? extends Comparable<?>> attr : this.attributes) {
             // Write out the concrete Attribute class
-            output.writeString(attr.getClass().getName());
+            KryoClassTable.writeClass(kryo, output, attr.getClass());
             
             // Defer to the concrete instance to write() itself
             attr.write(kryo, output, reducedResponse);
@@ -310,16 +310,8 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
         
         this.attributes = new LinkedHashSet<>();
         for (int i = 0; i < numAttrs; i++) {
-            String attrClassName = input.readString();
-            Class<?> clz;
-            
-            // Get the name of the concrete Attribute
-            try {
-                clz = Class.forName(attrClassName);
-            } catch (ClassNotFoundException e) {
-                log.error("could not find class for \"" + attrClassName + "\"");
-                throw new RuntimeException(e);
-            }
+            // Get the concrete Attribute class
+            Class<?> clz = KryoClassTable.readClass(kryo, input);
             
             if (!Attribute.class.isAssignableFrom(clz)) {
                 throw new ClassCastException("Found class that was not an instance of Attribute");
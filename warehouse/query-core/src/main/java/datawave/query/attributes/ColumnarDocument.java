@@ -0,0 +1,323 @@
+package datawave.query.attributes;
+
+import com.google.common.collect.Maps;
+import datawave.query.Constants;
+import datawave.query.jexl.JexlASTHelper;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static datawave.query.Constants.EMPTY_VALUE;
+
+/**
+ * A compact, column oriented holder for the event entries of a document that have not yet been turned into {@link Attribute}s. Each entry is stored as a
+ * field slot, an offset into a single byte array holding the column qualifiers, a visibility slot and a timestamp, all in parallel primitive arrays. The field
+ * names and visibilities are interned into slots by a {@link Fields} dictionary shared by all of the documents of a scan, and the entries of a document share
+ * the row and column family of the run they were read in.
+ * 
+ * The entries of the fields in the query may be materialized for evaluation while the remaining entries are left here until the document passes evaluation.
+ * The values of the entries are not used by a {@link Document} and are not kept.
+ */
+public class ColumnarDocument {
+    
+    private final Key docKey;
+    private final Set<Key> docKeys;
+    private final Fields fields;
+    
+    private int size = 0;
+    private int[] fieldSlots;
+    private int[] visibilitySlots;
+    private long[] timestamps;
+    private int[] prefixSlots;
+    private int[] offsets;
+    
+    // the column qualifiers of all of the entries, back to back
+    private byte[] qualifiers;
+    private int qualifiersLength = 0;
+    
+    // the first key of each run of entries with the same row and column family
+    private final List<Key> prefixes = new ArrayList<>(1);
+    private int queryFieldEntries = 0;
+    
+    public ColumnarDocument(Key docKey, Set<Key> docKeys, Fields fields, int expectedSize) {
+        this.docKey = docKey;
+        this.docKeys = docKeys;
+        this.fields = fields;
+        int capacity = Math.max(expectedSize, 1);
+        this.fieldSlots = new int[capacity];
+        this.visibilitySlots = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.prefixSlots = new int[capacity];
+        this.offsets = new int[capacity + 1];
+        this.qualifiers = new byte[capacity * 32];
+    }
+    
+    /**
+     * Add an event entry to this document
+     * 
+     * @param key
+     *            a key of the form "row datatype\0uid:field\0value"
+     */
+    public void add(Key key) {
+        ByteSequence cq = key.getColumnQualifierData();
+        int separator = -1;
+        for (int i = 0; i < cq.length(); i++) {
+            if (cq.byteAt(i) == 0x00) {
+                separator = i;
+                break;
+            }
+        }
+        if (separator < 0) {
+            throw new IllegalArgumentException("Could not find null-byte contained in columnqualifier for key: " + key);
+        }
+        
+        if (size == fieldSlots.length) {
+            int capacity = size * 2;
+            fieldSlots = Arrays.copyOf(fieldSlots, capacity);
+            visibilitySlots = Arrays.copyOf(visibilitySlots, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            prefixSlots = Arrays.copyOf(prefixSlots, capacity);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+        if (qualifiersLength + cq.length() > qualifiers.length) {
+            qualifiers = Arrays.copyOf(qualifiers, Math.max(qualifiers.length * 2, qualifiersLength + cq.length()));
+        }
+        
+        int field = fields.getFieldSlot(cq.getBackingArray(), cq.offset(), separator);
+        fieldSlots[size] = field;
+        visibilitySlots[size] = fields.getVisibilitySlot(key.getColumnVisibilityData());
+        timestamps[size] = key.getTimestamp();
+        prefixSlots[size] = getPrefixSlot(key);
+        System.arraycopy(cq.getBackingArray(), cq.offset(), qualifiers, qualifiersLength, cq.length());
+        offsets[size] = qualifiersLength;
+        qualifiersLength += cq.length();
+        offsets[size + 1] = qualifiersLength;
+        size++;
+        
+        if (fields.isQueryField(field)) {
+            queryFieldEntries++;
+        }
+    }
+    
+    private int getPrefixSlot(Key key) {
+        int last = prefixes.size() - 1;
+        if (last >= 0) {
+            Key prefix = prefixes.get(last);
+            if (prefix.getColumnFamilyData().equals(key.getColumnFamilyData()) && prefix.getRowData().equals(key.getRowData())) {
+                return last;
+            }
+        }
+        prefixes.add(key);
+        return last + 1;
+    }
+    
+    public Key getDocKey() {
+        return docKey;
+    }
+    
+    public Set<Key> getDocKeys() {
+        return docKeys;
+    }
+    
+    public Fields getFields() {
+        return fields;
+    }
+    
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param queryFields
+     *            true to count the entries of the query fields, false to count the others
+     * @return the number of entries of the query fields, or of the other fields
+     */
+    public int size(boolean queryFields) {
+        return (queryFields ? queryFieldEntries : size - queryFieldEntries);
+    }
+    
+    public String getFieldName(int entry) {
+        return fields.getFieldName(fieldSlots[entry]);
+    }
+    
+    public boolean isQueryField(int entry) {
+        return fields.isQueryField(fieldSlots[entry]);
+    }
+    
+    public long getTimestamp(int entry) {
+        return timestamps[entry];
+    }
+    
+    /**
+     * Materialize the key of an entry
+     * 
+     * @param entry
+     * @return the key
+     */
+    public Key getKey(int entry) {
+        Key prefix = prefixes.get(prefixSlots[entry]);
+        ByteSequence row = prefix.getRowData(), cf = prefix.getColumnFamilyData();
+        byte[] cv = fields.getVisibility(visibilitySlots[entry]);
+        int offset = offsets[entry];
+        return new Key(row.getBackingArray(), row.offset(), row.length(), cf.getBackingArray(), cf.offset(), cf.length(), qualifiers, offset,
+                        offsets[entry + 1] - offset, cv, 0, cv.length, timestamps[entry]);
+    }
+    
+    /**
+     * Materialize the entries of the query fields, or of the other fields
+     * 
+     * @param queryFields
+     *            true for the entries of the query fields, false for the others
+     * @return an iterator of the materialized entries
+     */
+    public Iterator<Entry<Key,Value>> entries(boolean queryFields) {
+        return new Iterator<Entry<Key,Value>>() {
+            private int next = advance(0);
+            
+            private int advance(int entry) {
+                while (entry < size && fields.isQueryField(fieldSlots[entry]) != queryFields) {
+                    entry++;
+                }
+                return entry;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+            
+            @Override
+            public Entry<Key,Value> next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                Entry<Key,Value> entry = Maps.immutableEntry(getKey(next), EMPTY_VALUE);
+                next = advance(next + 1);
+                return entry;
+            }
+        };
+    }
+    
+    @Override
+    public String toString() {
+        return docKey + ": " + size + " entries, " + queryFieldEntries + " for query fields";
+    }
+    
+    /**
+     * The field and visibility slots shared by the documents of a scan. The fields of the query are interned first, and other fields are interned as they are
+     * found. Not thread safe: each document pipeline should have its own.
+     */
+    public static class Fields {
+        private final Collection<String> queryFields;
+        private final boolean allQueryFields;
+        
+        private final Map<ByteSequence,Integer> fieldSlots = new HashMap<>();
+        private final List<String> fieldNames = new ArrayList<>();
+        private final BitSet queryFieldSlots = new BitSet();
+        
+        private final Map<ByteSequence,Integer> visibilitySlots = new HashMap<>();
+        private final List<byte[]> visibilities = new ArrayList<>();
+        private ByteSequence lastVisibility = null;
+        private int lastVisibilitySlot = -1;
+        
+        /**
+         * @param queryFields
+         *            the fields needed to evaluate the query. If empty or containing {@link Constants#ANY_FIELD}, then every field is a query field.
+         */
+        public Fields(Collection<String> queryFields) {
+            this.queryFields = queryFields;
+            this.allQueryFields = queryFields.isEmpty() || queryFields.contains(Constants.ANY_FIELD);
+            for (String field : queryFields) {
+                if (!Constants.ANY_FIELD.equals(field)) {
+                    intern(new ArrayByteSequence(field));
+                }
+            }
+        }
+        
+        private int getFieldSlot(byte[] bytes, int offset, int length) {
+            Integer slot = fieldSlots.get(new ArrayByteSequence(bytes, offset, length));
+            if (slot == null) {
+                slot = intern(new ArrayByteSequence(Arrays.copyOfRange(bytes, offset, offset + length)));
+            }
+            return slot;
+        }
+        
+        private int intern(ByteSequence field) {
+            Integer slot = fieldSlots.get(field);
+            if (slot == null) {
+                slot = fieldNames.size();
+                String name = new String(field.toArray(), StandardCharsets.UTF_8);
+                fieldSlots.put(field, slot);
+                fieldNames.add(name);
+                queryFieldSlots.set(slot, allQueryFields || isQueryField(name));
+            }
+            return slot;
+        }
+        
+        private boolean isQueryField(String name) {
+            // the query refers to fields without their grouping context
+            String field = JexlASTHelper.deconstructIdentifier(name, false);
+            return queryFields.contains(field) || queryFields.contains(JexlASTHelper.rebuildIdentifier(field, false));
+        }
+        
+        private int getVisibilitySlot(ByteSequence cv) {
+            // the entries of an event nearly always share a visibility
+            if (lastVisibility != null && lastVisibility.equals(cv)) {
+                return lastVisibilitySlot;
+            }
+            Integer slot = visibilitySlots.get(cv);
+            if (slot == null) {
+                byte[] bytes = cv.toArray();
+                slot = visibilities.size();
+                visibilities.add(bytes);
+                visibilitySlots.put(new ArrayByteSequence(bytes), slot);
+            }
+            lastVisibility = new ArrayByteSequence(visibilities.get(slot));
+            lastVisibilitySlot = slot;
+            return slot;
+        }
+        
+        public String getFieldName(int slot) {
+            return fieldNames.get(slot);
+        }
+        
+        public boolean isQueryField(int slot) {
+            return queryFieldSlots.get(slot);
+        }
+        
+        public byte[] getVisibility(int slot) {
+            return visibilities.get(slot);
+        }
+        
+        /**
+         * @return the number of field slots
+         */
+        public int size() {
+            return fieldNames.size();
+        }
+        
+        /**
+         * @return true if every field is needed to evaluate the query, in which case nothing is left for later
+         */
+        public boolean isAllQueryFields() {
+            return allQueryFields;
+        }
+    }
+}
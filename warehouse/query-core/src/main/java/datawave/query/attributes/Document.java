@@ -52,6 +52,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
      */
     private boolean trackSizes;
     
+    /**
+     * the entries of this document that have not been materialized yet, if any
+     */
+    private transient ColumnarDocument columns = null;
+    
     private static final long ONE_DAY_MS = 1000l * 60 * 60 * 24;
     
     public MarkingFunctions getMarkingFunctions() {
@@ -109,6 +114,17 @@ public class Document extends AttributeBag<Document> implements Serializable {
         return dict;
     }
     
+    /**
+     * @return the entries of this document that have not been materialized into attributes yet, or null if there are none
+     */
+    public ColumnarDocument getColumns() {
+        return columns;
+    }
+    
+    public void setColumns(ColumnarDocument columns) {
+        this.columns = columns;
+    }
+    
     public Set<Entry<String,Attribute<? extends Comparable<?>>>> entrySet() {
         return getDictionary().entrySet();
     }
@@ -769,7 +785,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
             output.writeString(entry.getKey());
             
             Attribute<?> attribute = entry.getValue();
-            output.writeString(attribute.getClass().getName());
+            KryoClassTable.writeClass(kryo, output, attribute.getClass());
             attribute.write(kryo, output, reducedResponse);
         }
         
@@ -790,16 +806,8 @@ public class Document extends AttributeBag<Document> implements Serializable {
             // Get the fieldName
             String fieldName = input.readString();
             
-            // Get the class name for the concrete Attribute
-            String attrClassName = input.readString();
-            Class<?> clz;
-            
-            // Get the Class for the name of the class of the concrete Attribute
-            try {
-                clz = Class.forName(attrClassName);
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
-            }
+            // Get the Class of the concrete Attribute
+            Class<?> clz = KryoClassTable.readClass(kryo, input);
             
             Attribute<?> attr;
             if (Attribute.class.isAssignableFrom(clz)) {
@@ -836,6 +844,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
         }
         
         d.shardTimestamp = this.shardTimestamp;
+        d.columns = this.columns;
         
         return d;
     }
@@ -0,0 +1,162 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import datawave.data.type.DateType;
+import datawave.data.type.GeoType;
+import datawave.data.type.GeometryType;
+import datawave.data.type.HexStringType;
+import datawave.data.type.IpAddressType;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.LcType;
+import datawave.data.type.NoOpType;
+import datawave.data.type.NumberType;
+import datawave.data.type.PointType;
+import datawave.data.type.StringType;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The table of classes written by id, rather than by name, in the compact kryo document format, along with the helpers the attributes use to write their
+ * classes and visibilities in either format. A kryo instance writes and reads the compact format once {@link #register(Kryo)} has been called on it.
+ * 
+ * In the compact format the registered classes are written as a small id, other classes are written by name once per document and by id after that, and each
+ * distinct column visibility is written once per document. The ids are part of the format, so classes may only be appended to the table.
+ */
+public class KryoClassTable {
+    
+    // the first id, leaving room for the classes kryo registers itself
+    public static final int FIRST_ID = 100;
+    
+    private static final List<Class<?>> CLASSES = Collections.unmodifiableList(Arrays.<Class<?>> asList(Document.class, Attributes.class,
+                    TypeAttribute.class, Content.class, DateContent.class, DiacriticContent.class, DocumentKey.class, Cardinality.class, GeoPoint.class,
+                    Geometry.class, IpAddress.class, Latitude.class, Longitude.class, Numeric.class, PreNormalizedAttribute.class, LcNoDiacriticsType.class,
+                    LcType.class, NoOpType.class, NumberType.class, DateType.class, IpAddressType.class, GeoType.class, GeometryType.class, PointType.class,
+                    StringType.class, HexStringType.class));
+    
+    private static final String COMPACT = KryoClassTable.class.getName();
+    // the visibilities of the current document, which kryo clears from its graph context after each document
+    private static final String WRITTEN_VISIBILITIES = KryoClassTable.class.getName() + ".written";
+    private static final String READ_VISIBILITIES = KryoClassTable.class.getName() + ".read";
+    
+    private KryoClassTable() {}
+    
+    /**
+     * Register the classes of the table with a kryo instance, making it write and read the compact format
+     * 
+     * @param kryo
+     */
+    public static void register(Kryo kryo) {
+        for (int i = 0; i < CLASSES.size(); i++) {
+            kryo.register(CLASSES.get(i), FIRST_ID + i);
+        }
+        kryo.getContext().put(COMPACT, Boolean.TRUE);
+    }
+    
+    public static boolean isCompact(Kryo kryo) {
+        return kryo.getContext().containsKey(COMPACT);
+    }
+    
+    /**
+     * Write a class by id in the compact format, otherwise by name
+     * 
+     * @param kryo
+     * @param output
+     * @param clazz
+     */
+    public static void writeClass(Kryo kryo, Output output, Class<?> clazz) {
+        if (isCompact(kryo)) {
+            kryo.writeClass(output, clazz);
+        } else {
+            output.writeString(clazz.getName());
+        }
+    }
+    
+    /**
+     * Read a class written by {@link #writeClass(Kryo, Output, Class)}
+     * 
+     * @param kryo
+     * @param input
+     * @return the class
+     */
+    public static Class<?> readClass(Kryo kryo, Input input) {
+        if (isCompact(kryo)) {
+            return kryo.readClass(input).getType();
+        }
+        String className = input.readString();
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("could not find class for \"" + className + "\"", e);
+        }
+    }
+    
+    /**
+     * Write a column visibility. In the compact format a visibility already written for the current document is written as its index.
+     * 
+     * @param kryo
+     * @param output
+     * @param visibility
+     */
+    @SuppressWarnings("unchecked")
+    public static void writeVisibility(Kryo kryo, Output output, ColumnVisibility visibility) {
+        if (isCompact(kryo)) {
+            ObjectMap graphContext = kryo.getGraphContext();
+            Map<ColumnVisibility,Integer> written = (Map<ColumnVisibility,Integer>) graphContext.get(WRITTEN_VISIBILITIES);
+            if (written == null) {
+                written = new HashMap<>();
+                graphContext.put(WRITTEN_VISIBILITIES, written);
+            }
+            // 0 for a new visibility, otherwise its index plus one
+            Integer index = written.get(visibility);
+            if (index != null) {
+                output.writeInt(index + 1, true);
+                return;
+            }
+            written.put(visibility, written.size());
+            output.writeInt(0, true);
+        }
+        byte[] cvBytes = visibility.getExpression();
+        output.writeInt(cvBytes.length, true);
+        output.writeBytes(cvBytes);
+    }
+    
+    /**
+     * Read a column visibility written by {@link #writeVisibility(Kryo, Output, ColumnVisibility)}. In the compact format the visibilities repeated within a
+     * document are only parsed once.
+     * 
+     * @param kryo
+     * @param input
+     * @return the visibility
+     */
+    @SuppressWarnings("unchecked")
+    public static ColumnVisibility readVisibility(Kryo kryo, Input input) {
+        List<ColumnVisibility> read = null;
+        if (isCompact(kryo)) {
+            ObjectMap graphContext = kryo.getGraphContext();
+            read = (List<ColumnVisibility>) graphContext.get(READ_VISIBILITIES);
+            if (read == null) {
+                read = new ArrayList<>();
+                graphContext.put(READ_VISIBILITIES, read);
+            }
+            int index = input.readInt(true);
+            if (index > 0) {
+                return read.get(index - 1);
+            }
+        }
+        int size = input.readInt(true);
+        ColumnVisibility visibility = new ColumnVisibility(input.readBytes(size));
+        if (read != null) {
+            read.add(visibility);
+        }
+        return visibility;
+    }
+}
@@ -4,7 +4,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Holds timing information for query iterator next, source, seek, and yield counts.
+ * Holds timing information for query iterator next, source, seek, yield, and document cache counts.
  */
 public class TimingMetadata extends Metadata {
     
@@ -12,6 +12,8 @@ public class TimingMetadata extends Metadata {
     private static final String SOURCE_COUNT = "SOURCE_COUNT";
     private static final String SEEK_COUNT = "SEEK_COUNT";
     private static final String YIELD_COUNT = "YIELD_COUNT";
+    private static final String DOCUMENT_CACHE_HIT_COUNT = "DOCUMENT_CACHE_HIT_COUNT";
+    private static final String DOCUMENT_CACHE_MISS_COUNT = "DOCUMENT_CACHE_MISS_COUNT";
     private static final String STAGE_TIMERS = "STAGE_TIMERS";
     private static final String HOST = "HOST";
     
@@ -68,6 +70,32 @@ public class TimingMetadata extends Metadata {
         put(YIELD_COUNT, new Numeric(yieldCount, this.getMetadata(), this.isToKeep()));
     }
     
+    public long getDocumentCacheHitCount() {
+        Numeric numericValue = (Numeric) get(DOCUMENT_CACHE_HIT_COUNT);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setDocumentCacheHitCount(long documentCacheHitCount) {
+        put(DOCUMENT_CACHE_HIT_COUNT, new Numeric(documentCacheHitCount, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getDocumentCacheMissCount() {
+        Numeric numericValue = (Numeric) get(DOCUMENT_CACHE_MISS_COUNT);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setDocumentCacheMissCount(long documentCacheMissCount) {
+        put(DOCUMENT_CACHE_MISS_COUNT, new Numeric(documentCacheMissCount, this.getMetadata(), this.isToKeep()));
+    }
+    
     public void addStageTimer(String stageName, Numeric elapsed) {
         Metadata stageTimers = (Metadata) get(STAGE_TIMERS);
         if (stageTimers == null) {
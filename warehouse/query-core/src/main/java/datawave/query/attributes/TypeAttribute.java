@@ -31,6 +31,11 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     private Type<T> datawaveType;
     
+    // the type class, field name and raw value of an attribute whose type is created when first needed
+    private Class<?> typeClass = null;
+    private String fieldName = null;
+    private String data = null;
+    
     protected TypeAttribute() {
         super(null, true);
     }
@@ -40,16 +45,71 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
         this.datawaveType = datawaveType;
     }
     
+    /**
+     * Create an attribute whose type is only created, and its value normalized, when the type is first needed (e.g. by evaluation or serialization). Attributes
+     * that are dropped before then (e.g. by projection) are never normalized.
+     * 
+     * @param typeClass
+     *            the class of the type
+     * @param fieldName
+     *            the field name, for logging
+     * @param data
+     *            the raw value
+     * @param docKey
+     * @param toKeep
+     */
+    public TypeAttribute(Class<?> typeClass, String fieldName, String data, Key docKey, boolean toKeep) {
+        super(docKey, toKeep);
+        this.typeClass = typeClass;
+        this.fieldName = fieldName;
+        this.data = data;
+    }
+    
     @Override
     public long sizeInBytes() {
+        if (typeClass != null) {
+            // estimate the size of the type from the raw value so that it does not change once the type is created
+            return roundUp(16) + 2 * sizeInBytes(data) + super.sizeInBytes(4);
+        }
         return ObjectSizeOf.Sizer.getObjectSize(datawaveType) + super.sizeInBytes(4);
         // 4 for datawaveType reference
     }
     
     public Type<T> getType() {
+        if (this.datawaveType == null && this.typeClass != null) {
+            this.datawaveType = createType();
+        }
         return this.datawaveType;
     }
     
+    /**
+     * @return false if this attribute was created lazily and its type has not been created yet
+     */
+    public boolean isNormalized() {
+        return this.datawaveType != null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Type<T> createType() {
+        Type<T> type;
+        try {
+            type = (Type<T>) typeClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            log.error("Could not create Attribute for " + fieldName + " and " + data, e);
+            throw new IllegalArgumentException("Could not create Attribute for " + fieldName + " and " + data, e);
+        }
+        try {
+            type.setDelegateFromString(data);
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not parse " + fieldName + " = '" + data + "', resorting to a NoOpType");
+            type = (Type<T>) new NoOpType(data);
+        } catch (Exception e) {
+            log.error("Could not create Attribute for " + fieldName + " and " + data, e);
+            throw new IllegalArgumentException("Could not create Attribute for " + fieldName + " and " + data, e);
+        }
+        return type;
+    }
+    
     @Override
     public Object getData() {
         return getType();
@@ -62,9 +122,9 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public void write(DataOutput out, boolean reducedResponse) throws IOException {
-        WritableUtils.writeString(out, datawaveType.getClass().toString());
+        WritableUtils.writeString(out, getType().getClass().toString());
         writeMetadata(out, reducedResponse);
-        WritableUtils.writeString(out, datawaveType.getDelegateAsString());
+        WritableUtils.writeString(out, getType().getDelegateAsString());
     }
     
     @Override
@@ -82,7 +142,7 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public int compareTo(TypeAttribute<T> other) {
-        int cmp = datawaveType.compareTo(other.getType());
+        int cmp = getType().compareTo(other.getType());
         
         if (0 == cmp) {
             // Compare the ColumnVisibility as well
@@ -109,12 +169,13 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     @Override
     public int hashCode() {
         HashCodeBuilder hcb = new HashCodeBuilder(2099, 2129);
-        hcb.append(datawaveType.getDelegateAsString()).append(super.hashCode());
+        hcb.append(getType().getDelegateAsString()).append(super.hashCode());
         return hcb.toHashCode();
     }
     
     @Override
     public Collection<ValueTuple> visit(Collection<String> fieldNames, DatawaveJexlContext context) {
+        getType();
         if (this.datawaveType instanceof OneToManyNormalizerType) {
             Set<ValueTuple> set = new FunctionalSet<>();
             for (String norm : ((OneToManyNormalizerType<?>) this.datawaveType).getNormalizedValues()) {
@@ -132,16 +193,20 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public void write(Kryo kryo, Output output, Boolean reducedResponse) {
-        output.writeString(datawaveType.getClass().getName());
+        KryoClassTable.writeClass(kryo, output, getType().getClass());
         super.writeMetadata(kryo, output, reducedResponse);
         
-        output.writeString(this.datawaveType.getDelegateAsString());
+        output.writeString(getType().getDelegateAsString());
     }
     
     @Override
     public void read(Kryo kryo, Input input) {
         try {
-            setDatawaveType(input.readString());
+            if (KryoClassTable.isCompact(kryo)) {
+                this.datawaveType = (Type<T>) KryoClassTable.readClass(kryo, input).newInstance();
+            } else {
+                setDatawaveType(input.readString());
+            }
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
             log.warn("could not read datawateType from input: " + e);
         }
@@ -171,12 +236,17 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
      */
     @Override
     public TypeAttribute copy() {
+        if (!isNormalized()) {
+            return new TypeAttribute(this.typeClass, this.fieldName, this.data, this.getMetadata(), this.isToKeep());
+        }
         return new TypeAttribute(this.getType(), this.getMetadata(), this.isToKeep());
     }
     
     @Override
     public String toString() {
-        if (datawaveType.getDelegate() != null) {
+        if (!isNormalized()) {
+            return data;
+        } else if (datawaveType.getDelegate() != null) {
             return datawaveType.getDelegateAsString();
         } else {
             return this.getClass() + " with null delegate";
@@ -24,6 +24,7 @@ import datawave.query.tld.TLDQueryIterator;
 import datawave.query.util.QueryStopwatch;
 import datawave.util.TableName;
 import datawave.util.UniversalSet;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.QueryImpl;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
@@ -145,6 +146,13 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     // BatchScanner and query results options
     private Integer numQueryThreads = 8;
     private Integer numLookupThreads = 8;
+    // the priority of the index lookups of this query on the shared index lookup threads, taken from the connection priority of the query logic
+    private AccumuloConnectionFactory.Priority indexLookupPriority = AccumuloConnectionFactory.Priority.NORMAL;
+    // whether the global index entries of the terms of this query are served from and added to the cache shared by the queries in this process, in which case
+    // entries of past days that are ingested late are missed until the cached days expire (see GlobalIndexCache.TTL_MINUTES_PROP)
+    private boolean globalIndexCacheEnabled = false;
+    // whether the index lookups of this query use the uid sketches kept in the global index for high cardinality terms
+    private boolean uidSketchesEnabled = false;
     private Integer numDateIndexThreads = 8;
     private Integer maxDocScanTimeout = -1;
     // A counter used to uniquely identify FSTs generated in the
@@ -268,13 +276,35 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private List<String> ivaratorCacheBaseURIs = null;
     private String ivaratorFstHdfsBaseURIs = null;
     private int ivaratorCacheBufferSize = 10000;
+    private boolean ivaratorCacheOffHeapBuffer = false;
+    private String ivaratorCacheLocalDirURI = null;
+    private boolean ivaratorStreamingFill = false;
+    // the relative share of the tserver ivarator and evaluation threads given to this query
+    private int schedulingWeight = 1;
+    // compile the query for evaluation instead of interpreting it for every document
+    private boolean compiledEvaluation = false;
+    // leave the event fields that are not needed for evaluation in a compact columnar form until a document passes evaluation
+    private boolean columnarDocuments = false;
+    // the maximum number of documents packed into each returned value, 1 to return each document in its own value
+    private int documentsPerValue = 1;
+    // when packing documents into a value, the maximum number of serialized bytes to pack
+    private int documentBatchBytes = 1024 * 1024;
+    // the maximum number of pending documents whose term frequencies are fetched in one sweep, 1 to fetch them for each document
+    private int termFrequencyBatchSize = 1;
+    // the maximum number of bytes of aggregated documents cached for the other scans of the query on a tserver, 0 to disable the cache
+    private long documentCacheBytes = 0;
+    // the number of threads the children of a top level document are aggregated on, 1 to aggregate them on the evaluation thread
+    private int tldChildAggregationThreads = 1;
     private long ivaratorCacheScanPersistThreshold = 100000L;
     private long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     private int maxFieldIndexRangeSplit = 11;
     private int ivaratorMaxOpenFiles = 100;
+    private int ivaratorMaxCandidates = 0;
     private int maxIvaratorSources = 33;
     private int maxEvaluationPipelines = 25;
     private int maxPipelineCachedResults = 25;
+    private boolean completionEvaluationPipeline = false;
+    private boolean unorderedResults = false;
     private boolean expandAllTerms = false;
     // Adding the ability to pre-cache the query model for performance sake. If this is null
     // then the query model will be pulled from the MetadataHelper
@@ -361,6 +391,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setCleanupShardsAndDaysQueryHints(other.isCleanupShardsAndDaysQueryHints());
         this.setNumQueryThreads(other.getNumQueryThreads());
         this.setNumIndexLookupThreads(other.getNumIndexLookupThreads());
+        this.setIndexLookupPriority(other.getIndexLookupPriority());
+        this.setGlobalIndexCacheEnabled(other.isGlobalIndexCacheEnabled());
+        this.setUidSketchesEnabled(other.isUidSketchesEnabled());
         this.setNumDateIndexThreads(other.getNumDateIndexThreads());
         this.setMaxDocScanTimeout(other.getMaxDocScanTimeout());
         this.setFstCount(other.getFstCount());
@@ -440,13 +473,27 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setIvaratorCacheBaseURIs(other.getIvaratorCacheBaseURIs());
         this.setIvaratorFstHdfsBaseURIs(other.getIvaratorFstHdfsBaseURIs());
         this.setIvaratorCacheBufferSize(other.getIvaratorCacheBufferSize());
+        this.setIvaratorCacheOffHeapBuffer(other.isIvaratorCacheOffHeapBuffer());
+        this.setIvaratorCacheLocalDirURI(other.getIvaratorCacheLocalDirURI());
+        this.setIvaratorStreamingFill(other.isIvaratorStreamingFill());
+        this.setSchedulingWeight(other.getSchedulingWeight());
+        this.setCompiledEvaluation(other.isCompiledEvaluation());
+        this.setColumnarDocuments(other.isColumnarDocuments());
+        this.setDocumentsPerValue(other.getDocumentsPerValue());
+        this.setDocumentBatchBytes(other.getDocumentBatchBytes());
+        this.setTermFrequencyBatchSize(other.getTermFrequencyBatchSize());
+        this.setDocumentCacheBytes(other.getDocumentCacheBytes());
+        this.setTldChildAggregationThreads(other.getTldChildAggregationThreads());
         this.setIvaratorCacheScanPersistThreshold(other.getIvaratorCacheScanPersistThreshold());
         this.setIvaratorCacheScanTimeout(other.getIvaratorCacheScanTimeout());
         this.setMaxFieldIndexRangeSplit(other.getMaxFieldIndexRangeSplit());
         this.setIvaratorMaxOpenFiles(other.getIvaratorMaxOpenFiles());
+        this.setIvaratorMaxCandidates(other.getIvaratorMaxCandidates());
         this.setMaxIvaratorSources(other.getMaxIvaratorSources());
         this.setMaxEvaluationPipelines(other.getMaxEvaluationPipelines());
         this.setMaxPipelineCachedResults(other.getMaxPipelineCachedResults());
+        this.setCompletionEvaluationPipeline(other.isCompletionEvaluationPipeline());
+        this.setUnorderedResults(other.isUnorderedResults());
         this.setExpandAllTerms(other.isExpandAllTerms());
         this.setQueryModel(null == other.getQueryModel() ? null : new QueryModel(other.getQueryModel()));
         this.setModelName(other.getModelName());
@@ -657,6 +704,30 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.numLookupThreads = numIndexLookupThreads;
     }
     
+    public AccumuloConnectionFactory.Priority getIndexLookupPriority() {
+        return indexLookupPriority;
+    }
+    
+    public void setIndexLookupPriority(AccumuloConnectionFactory.Priority indexLookupPriority) {
+        this.indexLookupPriority = indexLookupPriority;
+    }
+    
+    public boolean isGlobalIndexCacheEnabled() {
+        return globalIndexCacheEnabled;
+    }
+    
+    public void setGlobalIndexCacheEnabled(boolean globalIndexCacheEnabled) {
+        this.globalIndexCacheEnabled = globalIndexCacheEnabled;
+    }
+    
+    public boolean isUidSketchesEnabled() {
+        return uidSketchesEnabled;
+    }
+    
+    public void setUidSketchesEnabled(boolean uidSketchesEnabled) {
+        this.uidSketchesEnabled = uidSketchesEnabled;
+    }
+    
     public Integer getNumDateIndexThreads() {
         return numDateIndexThreads;
     }
@@ -1153,6 +1224,94 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeapBuffer() {
+        return ivaratorCacheOffHeapBuffer;
+    }
+    
+    public void setIvaratorCacheOffHeapBuffer(boolean ivaratorCacheOffHeapBuffer) {
+        this.ivaratorCacheOffHeapBuffer = ivaratorCacheOffHeapBuffer;
+    }
+    
+    public String getIvaratorCacheLocalDirURI() {
+        return ivaratorCacheLocalDirURI;
+    }
+    
+    public void setIvaratorCacheLocalDirURI(String ivaratorCacheLocalDirURI) {
+        this.ivaratorCacheLocalDirURI = ivaratorCacheLocalDirURI;
+    }
+    
+    public boolean isIvaratorStreamingFill() {
+        return ivaratorStreamingFill;
+    }
+    
+    public void setIvaratorStreamingFill(boolean ivaratorStreamingFill) {
+        this.ivaratorStreamingFill = ivaratorStreamingFill;
+    }
+    
+    public int getSchedulingWeight() {
+        return schedulingWeight;
+    }
+    
+    public void setSchedulingWeight(int schedulingWeight) {
+        this.schedulingWeight = schedulingWeight;
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return compiledEvaluation;
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        this.compiledEvaluation = compiledEvaluation;
+    }
+    
+    public boolean isColumnarDocuments() {
+        return columnarDocuments;
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        this.columnarDocuments = columnarDocuments;
+    }
+    
+    public int getDocumentsPerValue() {
+        return documentsPerValue;
+    }
+    
+    public void setDocumentsPerValue(int documentsPerValue) {
+        this.documentsPerValue = documentsPerValue;
+    }
+    
+    public int getDocumentBatchBytes() {
+        return documentBatchBytes;
+    }
+    
+    public void setDocumentBatchBytes(int documentBatchBytes) {
+        this.documentBatchBytes = documentBatchBytes;
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return termFrequencyBatchSize;
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        this.termFrequencyBatchSize = termFrequencyBatchSize;
+    }
+    
+    public long getDocumentCacheBytes() {
+        return documentCacheBytes;
+    }
+    
+    public void setDocumentCacheBytes(long documentCacheBytes) {
+        this.documentCacheBytes = documentCacheBytes;
+    }
+    
+    public int getTldChildAggregationThreads() {
+        return tldChildAggregationThreads;
+    }
+    
+    public void setTldChildAggregationThreads(int tldChildAggregationThreads) {
+        this.tldChildAggregationThreads = tldChildAggregationThreads;
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
@@ -1185,6 +1344,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorMaxOpenFiles = ivaratorMaxOpenFiles;
     }
     
+    public int getIvaratorMaxCandidates() {
+        return ivaratorMaxCandidates;
+    }
+    
+    public void setIvaratorMaxCandidates(int ivaratorMaxCandidates) {
+        this.ivaratorMaxCandidates = ivaratorMaxCandidates;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -1209,6 +1376,22 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxPipelineCachedResults = maxCachedResults;
     }
     
+    public boolean isCompletionEvaluationPipeline() {
+        return completionEvaluationPipeline;
+    }
+    
+    public void setCompletionEvaluationPipeline(boolean completionEvaluationPipeline) {
+        this.completionEvaluationPipeline = completionEvaluationPipeline;
+    }
+    
+    public boolean isUnorderedResults() {
+        return unorderedResults;
+    }
+    
+    public void setUnorderedResults(boolean unorderedResults) {
+        this.unorderedResults = unorderedResults;
+    }
+    
     public boolean isExpandAllTerms() {
         return expandAllTerms;
     }
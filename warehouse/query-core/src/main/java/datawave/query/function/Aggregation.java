@@ -4,6 +4,8 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import datawave.query.attributes.ColumnarDocument;
 import datawave.query.attributes.Document;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.aggregation.DocumentData;
@@ -11,9 +13,15 @@ import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.Set;
 
 public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<Key,Document>> {
     private static final Logger log = Logger.getLogger(Aggregation.class);
@@ -33,6 +41,11 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
      */
     private boolean trackSizes = true;
     
+    /**
+     * the fields of the documents, if the entries of fields not needed for evaluation are left unmaterialized until after evaluation
+     */
+    private ColumnarDocument.Fields columnarFields = null;
+    
     // Need to provide the mapping
     @SuppressWarnings("unused")
     private Aggregation() {}
@@ -56,6 +69,41 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         this.trackSizes = trackSizes;
     }
     
+    /**
+     * @param evaluationFields
+     *            the fields needed to evaluate the query. Only the entries of these fields (and of the composites and components that go with them) are
+     *            materialized into attributes when a document is aggregated. The remaining entries are kept as a {@link ColumnarDocument} until
+     *            {@link #materialize(Entry)} is called for a document that passed evaluation.
+     */
+    public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
+                    boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes,
+                    Collection<String> evaluationFields) {
+        this(timeFilter, typeMetadata, compositeMetadata, includeGroupingContext, includeRecordId, disableIndexOnlyDocuments, attrFilter, trackSizes);
+        if (evaluationFields != null) {
+            this.columnarFields = new ColumnarDocument.Fields(getCompositeFields(evaluationFields, compositeMetadata));
+        }
+    }
+    
+    /**
+     * A composite can only be built when all of its components are materialized together, so the components of any composite that is in, or has a component
+     * in, the evaluation fields are added to them.
+     */
+    private static Collection<String> getCompositeFields(Collection<String> evaluationFields, CompositeMetadata compositeMetadata) {
+        Set<String> fields = new HashSet<>(evaluationFields);
+        if (compositeMetadata != null) {
+            for (Multimap<String,String> compositeToFields : compositeMetadata.getCompositeFieldMapByType().values()) {
+                for (String composite : compositeToFields.keySet()) {
+                    Collection<String> components = compositeToFields.get(composite);
+                    if (evaluationFields.contains(composite) || !Collections.disjoint(evaluationFields, components)) {
+                        fields.add(composite);
+                        fields.addAll(components);
+                    }
+                }
+            }
+        }
+        return fields;
+    }
+    
     @Override
     public Entry<Key,Document> apply(Entry<DocumentData,Document> from) {
         DocumentData docData = from.getKey();
@@ -66,14 +114,30 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         }
         
         // Only load attributes for this document that fall within the expected date range
-        Document d = new Document(docData.getKey(), docData.getDocKeys(), Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter()),
-                        this.typeMetadata, this.compositeMetadata, this.includeGroupingContext, this.includeRecordId, this.attrFilter, true, trackSizes);
+        Iterator<Entry<Key,Value>> data = Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter());
+        ColumnarDocument columns = null;
+        if (columnarFields != null && !columnarFields.isAllQueryFields()) {
+            columns = new ColumnarDocument(docData.getKey(), docData.getDocKeys(), columnarFields, docData.getData().size());
+            while (data.hasNext()) {
+                columns.add(data.next().getKey());
+            }
+            data = columns.entries(true);
+        }
+        
+        Document d = new Document(docData.getKey(), docData.getDocKeys(), data, this.typeMetadata, this.compositeMetadata, this.includeGroupingContext,
+                        this.includeRecordId, this.attrFilter, true, trackSizes);
+        
+        int unmaterialized = 0;
+        if (columns != null && columns.size(false) > 0) {
+            d.setColumns(columns);
+            unmaterialized = columns.size(false);
+        }
         
         if (log.isTraceEnabled()) {
-            log.trace("disable index only docs? " + disableIndexOnlyDocuments + " , size is " + d.size());
+            log.trace("disable index only docs? " + disableIndexOnlyDocuments + " , size is " + d.size() + ", unmaterialized " + unmaterialized);
         }
         
-        if (null != from.getValue() && from.getValue().size() > 0 && (!disableIndexOnlyDocuments || d.size() > 0)) {
+        if (null != from.getValue() && from.getValue().size() > 0 && (!disableIndexOnlyDocuments || d.size() > 0 || unmaterialized > 0)) {
             d.putAll(from.getValue(), this.includeGroupingContext);
         }
         
@@ -86,4 +150,30 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         return Maps.immutableEntry(origKey, d);
     }
     
+    /**
+     * Materialize the entries a document left in its {@link ColumnarDocument} when it was aggregated
+     * 
+     * @param from
+     *            a document that passed evaluation
+     * @return the document with all of its attributes
+     */
+    public Entry<Key,Document> materialize(Entry<Key,Document> from) {
+        Document d = from.getValue();
+        ColumnarDocument columns = d.getColumns();
+        if (columns != null) {
+            d.setColumns(null);
+            if (attrFilter != null) {
+                attrFilter.startNewDocument(columns.getDocKey());
+            }
+            // the document keys were added when the document was aggregated
+            d.consumeRawData(columns.getDocKey(), Collections.emptySet(), columns.entries(false), this.typeMetadata, this.compositeMetadata,
+                            this.includeGroupingContext, this.includeRecordId, this.attrFilter);
+            
+            if (log.isTraceEnabled()) {
+                log.trace("Materialized document for " + from.getKey() + ": " + d);
+            }
+        }
+        return from;
+    }
+    
 }
@@ -2,6 +2,7 @@ package datawave.query.function;
 
 import datawave.query.attributes.Attributes;
 import datawave.query.jexl.ArithmeticJexlEngines;
+import datawave.query.jexl.CompiledJexlPredicate;
 import datawave.query.jexl.DefaultArithmetic;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.security.ColumnVisibility;
@@ -31,11 +32,28 @@ public class JexlEvaluation implements Predicate<Tuple3<Key,Document,DatawaveJex
      */
     protected Script script;
     
+    /**
+     * The query compiled into a predicate, or null if the script is interpreted
+     */
+    protected CompiledJexlPredicate compiled;
+    
     public JexlEvaluation(String query) {
         this(query, new DefaultArithmetic());
     }
     
     public JexlEvaluation(String query, JexlArithmetic arithmetic) {
+        this(query, arithmetic, false);
+    }
+    
+    /**
+     * @param query
+     *            the query
+     * @param arithmetic
+     *            the arithmetic to evaluate with
+     * @param compile
+     *            compile the query instead of interpreting it for every document, falling back to the interpreter if it cannot be compiled
+     */
+    public JexlEvaluation(String query, JexlArithmetic arithmetic, boolean compile) {
         this.query = query;
         this.arithmetic = arithmetic;
         
@@ -44,6 +62,21 @@ public class JexlEvaluation implements Predicate<Tuple3<Key,Document,DatawaveJex
         
         // Evaluate the JexlContext against the Script
         this.script = this.engine.createScript(query);
+        
+        if (compile) {
+            try {
+                this.compiled = new CompiledJexlPredicate(parse(query), engine, arithmetic);
+                if (log.isDebugEnabled()) {
+                    log.debug("Compiled " + compiled.getCompiledNodes() + " nodes, interpreting " + compiled.getInterpretedNodes() + " subtrees of " + query);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Unable to compile " + query + ", it will be interpreted", e);
+            }
+        }
+    }
+    
+    public boolean isCompiled() {
+        return compiled != null;
     }
     
     public JexlArithmetic getArithmetic() {
@@ -65,7 +98,7 @@ public class JexlEvaluation implements Predicate<Tuple3<Key,Document,DatawaveJex
     @Override
     public boolean apply(Tuple3<Key,Document,DatawaveJexlContext> input) {
         
-        Object o = script.execute(input.third());
+        Object o = (compiled != null ? compiled.execute(input.third()) : script.execute(input.third()));
         
         if (log.isTraceEnabled()) {
             log.trace("Evaluation of " + query + " against " + input.third() + " returned " + o);
@@ -18,6 +18,8 @@ import datawave.query.attributes.Document;
 import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.iterator.QueryOptions;
 import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.iterator.aggregation.DocumentDataCache;
+import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.util.Tuple3;
 import datawave.webservice.query.exception.DatawaveErrorCode;
@@ -62,6 +64,12 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
     
     private boolean includeParent = false;
     
+    private DocumentDataCache documentDataCache = null;
+    
+    private String documentDataCacheScope = null;
+    
+    private QuerySpan querySpan = null;
+    
     public KeyToDocumentData(SortedKeyValueIterator<Key,Value> source) {
         this(source, new PrefixEquality(PartialKey.ROW_COLFAM), false, false);
     }
@@ -99,6 +107,27 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         }
     }
     
+    /**
+     * Serve the documents already aggregated for the same query from a cache
+     * 
+     * @param documentDataCache
+     *            the cache shared with the other scans of the query
+     * @param scope
+     *            the query script the documents are aggregated for
+     */
+    public void setDocumentDataCache(DocumentDataCache documentDataCache, String scope) {
+        this.documentDataCache = documentDataCache;
+        this.documentDataCacheScope = scope;
+    }
+    
+    /**
+     * @param querySpan
+     *            the span to count the document cache hits and misses against, may be null
+     */
+    public void setQuerySpan(QuerySpan querySpan) {
+        this.querySpan = querySpan;
+    }
+    
     /**
      * Append hierarchy fields, including parent and descendant counts, based on the specified range and key
      * 
@@ -120,6 +149,21 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         // We want to ensure that we have a non-empty colqual
         if (null == from || null == from.getKey() || null == from.getValue())
             return null;
+        
+        if (documentDataCache != null) {
+            DocumentData cached = documentDataCache.get(documentDataCacheScope, from.getKey());
+            if (querySpan != null) {
+                if (cached != null) {
+                    querySpan.documentCacheHit();
+                } else {
+                    querySpan.documentCacheMiss();
+                }
+            }
+            if (cached != null) {
+                return Maps.immutableEntry(new DocumentData(from.getKey(), cached.getDocKeys(), cached.getData()), from.getValue());
+            }
+        }
+        
         Range keyRange = getKeyRange(from);
         
         try {
@@ -139,7 +183,11 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
                 attrs = Collections.emptyList();
             }
             
-            return Maps.immutableEntry(new DocumentData(from.getKey(), docKeys, attrs), from.getValue());
+            DocumentData documentData = new DocumentData(from.getKey(), docKeys, attrs);
+            if (documentDataCache != null) {
+                documentDataCache.put(documentDataCacheScope, from.getKey(), documentData);
+            }
+            return Maps.immutableEntry(documentData, from.getValue());
         } catch (IOException e) {
             log.error("Unable to collection document attributes for evaluation: " + keyRange, e);
             QueryException qe = new QueryException(DatawaveErrorCode.DOCUMENT_EVALUATION_ERROR, e);
@@ -174,7 +222,7 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
      *            the Range used to initialize source with seek()
      * @return the attributes
      */
-    private static List<Entry<Key,Value>> collectAttributesForDocumentKey(Key documentStartKey, SortedKeyValueIterator<Key,Value> source, Equality equality,
+    protected static List<Entry<Key,Value>> collectAttributesForDocumentKey(Key documentStartKey, SortedKeyValueIterator<Key,Value> source, Equality equality,
                     EventDataQueryFilter filter, Set<Key> docKeys, Range keyRange) throws IOException {
         
         // setup the document key we are filtering for on the EventDataQueryFilter
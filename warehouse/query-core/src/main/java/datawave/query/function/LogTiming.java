@@ -57,6 +57,11 @@ public class LogTiming implements Function<Entry<Key,Document>,Entry<Key,Documen
                 } else {
                     timingMetadata.setYieldCount(0L);
                 }
+                // only report the document cache when it was used
+                if (querySpan.getDocumentCacheHitCount() > 0 || querySpan.getDocumentCacheMissCount() > 0) {
+                    timingMetadata.setDocumentCacheHitCount(querySpan.getDocumentCacheHitCount());
+                    timingMetadata.setDocumentCacheMissCount(querySpan.getDocumentCacheMissCount());
+                }
                 
                 long totalStageTimers = querySpan.getStageTimerTotal();
                 // do not report timers that are less than 5% of the total
@@ -2,40 +2,82 @@ package datawave.query.function.deserializer;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Map.Entry;
 
+import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Document;
+import datawave.query.attributes.KryoClassTable;
 import datawave.query.function.KryoCVAwareSerializableSerializer;
 
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
+import com.google.common.collect.Maps;
 
 /**
  * Transform Kryo-serialized bytes back into a Document. Ordering of Attributes is <b>not</b> guaranteed across serialization.
  *
- * 
+ * Uncompressed documents are read straight from their values rather than through a stream.
  *
  */
 public class KryoDocumentDeserializer extends DocumentDeserializer implements Serializable {
     private static final long serialVersionUID = 1L;
     
     final transient Kryo kryo = new Kryo();
+    transient Input input = null;
     
     public KryoDocumentDeserializer() {
+        this(false);
+    }
+    
+    /**
+     * @param compact
+     *            true to read the compact format, see {@link KryoClassTable}
+     */
+    public KryoDocumentDeserializer(boolean compact) {
         kryo.addDefaultSerializer(Attribute.class, new KryoCVAwareSerializableSerializer(true));
+        if (compact) {
+            KryoClassTable.register(kryo);
+        }
+    }
+    
+    @Override
+    public Entry<Key,Document> apply(Entry<Key,Value> from) {
+        byte[] data = from.getValue().get();
+        
+        if (DocumentSerialization.NONE != DocumentSerialization.getCompression(data)) {
+            return super.apply(from);
+        }
+        
+        if (null == input) {
+            input = new Input();
+        }
+        input.setBuffer(data);
+        input.setPosition(DocumentSerialization.HEADER_LENGTH);
+        
+        return Maps.immutableEntry(from.getKey(), read(input));
     }
     
     @Override
     public Document deserialize(InputStream data) {
         Input input = new Input(data);
+        Document document = read(input);
+        
+        input.close();
+        
+        return document;
+    }
+    
+    private Document read(Input input) {
         Document document = kryo.readObject(input, Document.class);
         
         if (null == document) {
             throw new RuntimeException("Deserialized null Document");
         }
         
-        input.close();
-        
         return document;
     }
     
@@ -1,11 +1,15 @@
 package datawave.query.function.serializer;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
+import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Document;
+import datawave.query.attributes.KryoClassTable;
 import datawave.query.function.KryoCVAwareSerializableSerializer;
 
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.trace.Span;
 import org.apache.log4j.Logger;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -14,13 +18,14 @@ import com.esotericsoftware.kryo.io.Output;
 /**
  * Transform the Document into a Kryo-serialized version. Ordering of Attributes is <b>not</b> guaranteed across serialization.
  *
- * 
+ * The documents are written into a buffer that is reused across documents, along with their header, so that an uncompressed document is copied only once, into
+ * its value.
  *
  */
 public class KryoDocumentSerializer extends DocumentSerializer {
     private static final Logger log = Logger.getLogger(KryoDocumentSerializer.class);
     final Kryo kryo = new Kryo();
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+    final Output output = new Output(4096, -1);
     
     public KryoDocumentSerializer() {
         this(false, false);
@@ -31,21 +36,48 @@ public class KryoDocumentSerializer extends DocumentSerializer {
     }
     
     public KryoDocumentSerializer(boolean reducedResponse, boolean compress) {
+        this(reducedResponse, compress, false);
+    }
+    
+    /**
+     * @param reducedResponse
+     * @param compress
+     * @param compact
+     *            true to write the compact format, see {@link KryoClassTable}
+     */
+    public KryoDocumentSerializer(boolean reducedResponse, boolean compress, boolean compact) {
         super(reducedResponse, compress);
         kryo.addDefaultSerializer(Attribute.class, new KryoCVAwareSerializableSerializer(reducedResponse));
+        if (compact) {
+            KryoClassTable.register(kryo);
+        }
     }
     
     @Override
     public byte[] serialize(Document doc) {
-        baos.reset();
+        output.clear();
+        
+        kryo.writeObject(output, doc);
         
-        Output output = new Output(baos);
+        return output.toBytes();
+    }
+    
+    @Override
+    protected Value toValue(Document doc, Span span) {
+        output.clear();
         
+        output.writeBytes(DocumentSerialization.getHeader());
         kryo.writeObject(output, doc);
         
-        output.close();
+        int length = output.position() - DocumentSerialization.HEADER_LENGTH;
+        span.data("Raw size", Integer.toString(length));
+        
+        // Only compress the data if it's greater than minCompressionSize in size (bytes)
+        if (DocumentSerialization.NONE != this.compression && length > minCompressionSize) {
+            return getValue(Arrays.copyOfRange(output.getBuffer(), DocumentSerialization.HEADER_LENGTH, output.position()), span);
+        }
         
-        return baos.toByteArray();
+        return new Value(output.getBuffer(), 0, output.position());
     }
     
 }
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import datawave.ingest.protobuf.Uid;
+import datawave.ingest.protobuf.UidSketch;
 import datawave.query.util.Tuple3;
 import datawave.query.util.Tuples;
 
@@ -54,6 +55,10 @@ import com.google.common.collect.Lists;
  * In addition to collapsing the document-specific ranges into a single range, the resulting {@link IndexInfo} object
  * will not track the document uids, thus reducing memory usage and increasing performance.
  * 
+ * Setting UID_SKETCHES to "true" will attach a {@link UidSketch} of the document uids to the IndexInfo of a shard whose uids
+ * are not tracked, provided every index entry of the shard has its uids or a sketch of them. The option is ignored unless
+ * {@link UidSketch#TABLE_PROPERTY} is set on the table, so that the uids of a table that does not keep sketches are not hashed.
+ * 
  * TODO -- rename this class as the main function when enabled will not in fact create uids.
  * </pre>
  */
@@ -62,8 +67,10 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
     private static final Logger log = Logger.getLogger(CreateUidsIterator.class);
     
     public static final String COLLAPSE_UIDS = "index.lookup.collapse";
+    public static final String UID_SKETCHES = "index.lookup.sketches";
     
     protected boolean collapseUids = false;
+    protected boolean uidSketches = false;
     protected SortedKeyValueIterator<Key,Value> src;
     protected Key tk;
     protected IndexInfo tv;
@@ -80,6 +87,9 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
                     collapseUids = false;
                 }
             }
+            // the table only keeps sketches when its aggregator is configured to
+            uidSketches = Boolean.parseBoolean(options.get(UID_SKETCHES)) && env != null && env.getConfig() != null
+                            && Boolean.parseBoolean(env.getConfig().get(UidSketch.TABLE_PROPERTY));
         }
     }
     
@@ -99,9 +109,14 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
             if (collapseUids) {
                 ignore = true;
             }
+            UidSketch sketch = (uidSketches ? new UidSketch() : null);
             while (src.hasTop() && sameShard(reference, src.getTopKey())) {
                 Key nextTop = src.getTopKey();
-                Tuple3<Long,Boolean,List<String>> uidInfo = parseUids(nextTop, src.getTopValue());
+                Uid.List docIds = Uid.List.parseFrom(src.getTopValue().get());
+                Tuple3<Long,Boolean,List<String>> uidInfo = parseUids(nextTop, docIds);
+                if (null != sketch) {
+                    sketch = addToSketch(sketch, docIds);
+                }
                 count += uidInfo.first();
                 ignore |= uidInfo.second();
                 if (!ignore)
@@ -112,7 +127,10 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
                     }
                 src.next();
             }
-            tv = ignore ? new IndexInfo(count) : new IndexInfo(uids);
+            if (null != sketch && sketch.isSaturated()) {
+                sketch = null;
+            }
+            tv = ignore ? new IndexInfo(count, sketch) : new IndexInfo(uids);
             tk = reference;
         }
     }
@@ -159,6 +177,7 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         CreateUidsIterator itr = new CreateUidsIterator();
         itr.src = src.deepCopy(env);
+        itr.uidSketches = uidSketches;
         return itr;
     }
     
@@ -182,14 +201,41 @@ public class CreateUidsIterator implements SortedKeyValueIterator<Key,Value>, Op
     }
     
     public static Tuple3<Long,Boolean,List<String>> parseUids(Key k, Value v) throws IOException {
+        return parseUids(k, Uid.List.parseFrom(v.get()));
+    }
+    
+    public static Tuple3<Long,Boolean,List<String>> parseUids(Key k, Uid.List docIds) {
         final String dataType = parseDataType(k);
-        Uid.List docIds = Uid.List.parseFrom(v.get());
         final boolean ignore = docIds.getIGNORE();
         List<String> uids = ignore || docIds.getUIDList() == null ? Collections.emptyList() : Lists.transform(docIds.getUIDList(),
                         s -> dataType + "\u0000" + s.trim());
         return Tuples.tuple(docIds.getCOUNT(), ignore, uids);
     }
     
+    /**
+     * Add the uids of an index entry to a sketch
+     * 
+     * @param sketch
+     * @param docIds
+     * @return the sketch, or null if the entry has neither its uids nor a sketch of them
+     */
+    public static UidSketch addToSketch(UidSketch sketch, Uid.List docIds) {
+        if (!docIds.getIGNORE()) {
+            for (String uid : docIds.getUIDList()) {
+                sketch.add(uid);
+            }
+            return sketch;
+        } else if (docIds.hasUIDSKETCH()) {
+            try {
+                sketch.addAll(UidSketch.parseFrom(docIds.getUIDSKETCH().toByteArray()));
+                return sketch;
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring an invalid uid sketch", e);
+            }
+        }
+        return null;
+    }
+    
     public static String parseDataType(Key k) {
         ByteSequence colq = k.getColumnQualifierData();
         return new String(colq.subSequence(lastNull(colq) + 1, colq.length()).toArray());
@@ -0,0 +1,359 @@
+package datawave.query.index.lookup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.util.time.DateHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterators;
+
+/**
+ * A cache of the global index entries found for a term, shared by the queries in this process. The entries are cached by day, keyed by the index table, field,
+ * term, datatype filter, authorizations and the way the entries were scanned, so that a lookup over a date range that partly overlaps an earlier one only scans
+ * the days that are not cached. A lookup whose days are all cached skips the index scan entirely.
+ * 
+ * The entries of today (and later) are never cached as they may still be ingesting. Entries of earlier days that are ingested late are not seen by the queries
+ * served from the cache until the cached day expires, so the cache is only used by the query logics that enable it, see
+ * {@link ShardQueryConfiguration#setGlobalIndexCacheEnabled(boolean)}. The cache is bounded by the size of the entries it holds and the entries expire after a
+ * few minutes, see {@link #MAX_BYTES_PROP} and {@link #TTL_MINUTES_PROP}. The entries of a table may also be evicted when the table is reloaded, see
+ * {@link datawave.query.util.GlobalIndexCacheManagementListener}.
+ */
+public class GlobalIndexCache {
+    private static final Logger log = Logger.getLogger(GlobalIndexCache.class);
+    
+    public static final String MAX_BYTES_PROP = "datawave.query.global.index.cache.bytes";
+    
+    /**
+     * The minutes a cached day is served for. This is also how long the global index entries of a past day that are ingested late may be missed by the queries
+     * that use the cache, so it should stay short unless late data is not expected.
+     */
+    public static final String TTL_MINUTES_PROP = "datawave.query.global.index.cache.ttl.minutes";
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_TTL_MINUTES = 5;
+    
+    // an estimate of the memory held by each cached entry beyond its key and value bytes
+    private static final int ENTRY_OVERHEAD = 64;
+    
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    
+    private static volatile GlobalIndexCache instance;
+    
+    private final Cache<DayKey,List<Entry<Key,Value>>> days;
+    
+    public GlobalIndexCache(long maxBytes, long ttl, TimeUnit unit) {
+        this.days = CacheBuilder.newBuilder().concurrencyLevel(10).maximumWeight(maxBytes).weigher(GlobalIndexCache::weigh).expireAfterWrite(ttl, unit)
+                        .recordStats().build();
+    }
+    
+    /**
+     * @return the cache shared by the queries in this process
+     */
+    public static GlobalIndexCache getInstance() {
+        if (instance == null) {
+            synchronized (GlobalIndexCache.class) {
+                if (instance == null) {
+                    instance = new GlobalIndexCache(Long.getLong(MAX_BYTES_PROP, DEFAULT_MAX_BYTES), Long.getLong(TTL_MINUTES_PROP, DEFAULT_TTL_MINUTES),
+                                    TimeUnit.MINUTES);
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Look up the cached days of a term over the date range of a query
+     * 
+     * @param config
+     *            the query configuration
+     * @param field
+     *            the field
+     * @param term
+     *            the normalized term
+     * @param scanSignature
+     *            a description of the iterators the entries are scanned with
+     * @return the lookup
+     */
+    public Lookup lookup(ShardQueryConfiguration config, String field, String term, String scanSignature) {
+        return lookup(config.getIndexTableName(), field, term, config.getDatatypeFilterAsString(), config.getAuthorizations(), scanSignature,
+                        config.getBeginDate(), config.getEndDate());
+    }
+    
+    public Lookup lookup(String table, String field, String term, String datatypes, Collection<Authorizations> auths, String scanSignature, Date begin,
+                    Date end) {
+        DayKey base = new DayKey(table, field, term, datatypes, getAuthorizationsKey(auths), scanSignature, null);
+        
+        List<DayKey> keys = new ArrayList<>();
+        String endDay = DateHelper.format(end);
+        Date date = DateHelper.parse(DateHelper.format(begin));
+        for (String day = DateHelper.format(date); day.compareTo(endDay) <= 0; day = DateHelper.format(date)) {
+            keys.add(base.forDay(day));
+            date = new Date(date.getTime() + DAY_MILLIS);
+        }
+        
+        Map<DayKey,List<Entry<Key,Value>>> hits = new HashMap<>();
+        for (DayKey key : keys) {
+            List<Entry<Key,Value>> entries = days.getIfPresent(key);
+            if (entries != null) {
+                hits.put(key, entries);
+            }
+        }
+        return new Lookup(keys, hits);
+    }
+    
+    /**
+     * Evict the cached entries of an index table
+     * 
+     * @param table
+     */
+    public void invalidate(String table) {
+        days.asMap().keySet().removeIf(key -> Objects.equals(key.table, table));
+    }
+    
+    public void invalidateAll() {
+        days.invalidateAll();
+    }
+    
+    /**
+     * @return the number of days cached
+     */
+    public long size() {
+        return days.size();
+    }
+    
+    public CacheStats stats() {
+        return days.stats();
+    }
+    
+    private static int weigh(DayKey key, List<Entry<Key,Value>> entries) {
+        long weight = ENTRY_OVERHEAD;
+        for (Entry<Key,Value> entry : entries) {
+            weight += ENTRY_OVERHEAD + entry.getKey().getSize() + entry.getValue().getSize();
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * @param auths
+     * @return the authorizations in a canonical order
+     */
+    private static String getAuthorizationsKey(Collection<Authorizations> auths) {
+        if (auths == null) {
+            return "";
+        }
+        TreeSet<String> sets = new TreeSet<>();
+        for (Authorizations authorizations : auths) {
+            TreeSet<String> set = new TreeSet<>();
+            for (byte[] auth : authorizations.getAuthorizations()) {
+                set.add(new String(auth));
+            }
+            sets.add(String.join(",", set));
+        }
+        return String.join(";", sets);
+    }
+    
+    /**
+     * The cached and missing days of a term over a date range
+     */
+    public class Lookup {
+        private final List<DayKey> keys;
+        private final Map<DayKey,List<Entry<Key,Value>>> hits;
+        
+        private Lookup(List<DayKey> keys, Map<DayKey,List<Entry<Key,Value>>> hits) {
+            this.keys = keys;
+            this.hits = hits;
+        }
+        
+        /**
+         * @return true if every day is cached, in which case the index need not be scanned
+         */
+        public boolean isComplete() {
+            return hits.size() == keys.size();
+        }
+        
+        public int getCachedDays() {
+            return hits.size();
+        }
+        
+        public int getDays() {
+            return keys.size();
+        }
+        
+        /**
+         * @return a range for each run of days that are not cached
+         */
+        public List<Range> getMissingRanges() {
+            List<Range> ranges = new ArrayList<>();
+            DayKey first = null;
+            DayKey last = null;
+            for (DayKey key : keys) {
+                if (hits.containsKey(key)) {
+                    if (first != null) {
+                        ranges.add(rangeForDays(first, last));
+                        first = null;
+                    }
+                } else {
+                    if (first == null) {
+                        first = key;
+                    }
+                    last = key;
+                }
+            }
+            if (first != null) {
+                ranges.add(rangeForDays(first, last));
+            }
+            return ranges;
+        }
+        
+        private Range rangeForDays(DayKey first, DayKey last) {
+            return new Range(new Key(first.term, first.field, first.day + "_"), true, new Key(last.term, last.field, last.day + "_" + '\uffff'), false);
+        }
+        
+        /**
+         * Merge the cached entries with those scanned for the missing days, caching the missing days once the scan is exhausted
+         * 
+         * @param scanned
+         *            the entries of the {@link #getMissingRanges()}, in key order
+         * @return the entries of every day in key order
+         */
+        public Iterator<Entry<Key,Value>> iterator(Iterator<Entry<Key,Value>> scanned) {
+            List<Iterator<Entry<Key,Value>>> cached = new ArrayList<>();
+            List<DayKey> missing = new ArrayList<>();
+            for (DayKey key : keys) {
+                if (hits.containsKey(key)) {
+                    cached.add(hits.get(key).iterator());
+                } else {
+                    missing.add(key);
+                }
+            }
+            Iterator<Entry<Key,Value>> recorded = new RecordingIterator(scanned, missing);
+            if (cached.isEmpty()) {
+                return recorded;
+            }
+            return Iterators.mergeSorted(Arrays.asList(Iterators.concat(cached.iterator()), recorded), (a, b) -> a.getKey().compareTo(b.getKey()));
+        }
+        
+        /**
+         * Pass through the entries scanned for every day, caching every day once the scan is exhausted. The cached days are not used.
+         * 
+         * @param scanned
+         *            the entries of the full date range
+         * @return the scanned entries
+         */
+        public Iterator<Entry<Key,Value>> record(Iterator<Entry<Key,Value>> scanned) {
+            return new RecordingIterator(scanned, keys);
+        }
+    }
+    
+    /**
+     * Copies the entries scanned for a set of days, caching the days once the scan is exhausted. Days with no entries are cached as empty. If the scan is not
+     * exhausted, nothing is cached.
+     */
+    private class RecordingIterator implements Iterator<Entry<Key,Value>> {
+        private final Iterator<Entry<Key,Value>> scanned;
+        private final Map<String,DayKey> keys = new HashMap<>();
+        private final Map<DayKey,List<Entry<Key,Value>>> entries = new HashMap<>();
+        private final String today = DateHelper.format(new Date());
+        private boolean recorded = false;
+        
+        RecordingIterator(Iterator<Entry<Key,Value>> scanned, List<DayKey> days) {
+            this.scanned = scanned;
+            for (DayKey key : days) {
+                // the days still ingesting are not cached
+                if (key.day.compareTo(today) < 0) {
+                    keys.put(key.day, key);
+                    entries.put(key, new ArrayList<>());
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = scanned.hasNext();
+            if (!hasNext && !recorded) {
+                recorded = true;
+                for (Entry<DayKey,List<Entry<Key,Value>>> day : entries.entrySet()) {
+                    days.put(day.getKey(), Collections.unmodifiableList(day.getValue()));
+                }
+                if (log.isTraceEnabled()) {
+                    log.trace("Cached " + entries.size() + " days of global index entries");
+                }
+            }
+            return hasNext;
+        }
+        
+        @Override
+        public Entry<Key,Value> next() {
+            Entry<Key,Value> entry = scanned.next();
+            // the column qualifier is the shard or the day of the entry
+            String qualifier = entry.getKey().getColumnQualifier().toString();
+            DayKey key = (qualifier.length() < 8 ? null : keys.get(qualifier.substring(0, 8)));
+            if (key != null) {
+                entries.get(key).add(new AbstractMap.SimpleImmutableEntry<>(new Key(entry.getKey()), new Value(entry.getValue())));
+            }
+            return entry;
+        }
+    }
+    
+    /**
+     * A day of the entries of a term
+     */
+    private static final class DayKey {
+        private final String table;
+        private final String field;
+        private final String term;
+        private final String datatypes;
+        private final String auths;
+        private final String scanSignature;
+        private final String day;
+        
+        DayKey(String table, String field, String term, String datatypes, String auths, String scanSignature, String day) {
+            this.table = table;
+            this.field = field;
+            this.term = term;
+            this.datatypes = datatypes;
+            this.auths = auths;
+            this.scanSignature = scanSignature;
+            this.day = day;
+        }
+        
+        DayKey forDay(String day) {
+            return new DayKey(table, field, term, datatypes, auths, scanSignature, day);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) o;
+            return Objects.equals(table, other.table) && field.equals(other.field) && term.equals(other.term) && Objects.equals(datatypes, other.datatypes)
+                            && auths.equals(other.auths) && Objects.equals(scanSignature, other.scanSignature) && Objects.equals(day, other.day);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, field, term, datatypes, auths, scanSignature, day);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import datawave.ingest.protobuf.UidSketch;
 import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
 import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
 import org.apache.commons.jexl2.parser.ASTOrNode;
@@ -41,7 +42,8 @@ import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
 /**
  * This class represents information about hits in the index.
  * <p>
- * Hits may be represented by individual document ids or by a simple count.
+ * Hits may be represented by individual document ids or by a simple count. A count may come with a {@link UidSketch} of its document ids, which lets an
+ * intersection drop the ids (and the shards) that cannot be in common.
  * <p>
  * The IndexInfo object supports union and intersection operations with other IndexInfo objects.
  */
@@ -52,6 +54,8 @@ public class IndexInfo implements Writable, UidIntersector {
     protected JexlNode myNode = null;
     protected long count;
     protected ImmutableSortedSet<IndexMatch> uids;
+    // a superset of the document ids behind the count, or null if unknown
+    protected UidSketch sketch = null;
     
     public IndexInfo() {
         this.count = 0;
@@ -63,6 +67,11 @@ public class IndexInfo implements Writable, UidIntersector {
         this.uids = ImmutableSortedSet.of();
     }
     
+    public IndexInfo(long count, UidSketch sketch) {
+        this(count);
+        this.sketch = sketch;
+    }
+    
     public IndexInfo(Iterable<?> ids) {
         Set<IndexMatch> matches = Sets.newTreeSet();
         for (Object id : ids) {
@@ -87,12 +96,22 @@ public class IndexInfo implements Writable, UidIntersector {
         return uids;
     }
     
+    public UidSketch sketch() {
+        return sketch;
+    }
+    
     @Override
     public void write(DataOutput out) throws IOException {
         new VLongWritable(count).write(out);
-        new VIntWritable(uids.size()).write(out);
+        // a negative number of uids marks a sketch after the uids, so an info without a sketch is written as it was before sketches
+        new VIntWritable(sketch == null ? uids.size() : -uids.size() - 1).write(out);
         for (IndexMatch uid : uids)
             uid.write(out);
+        if (sketch != null) {
+            byte[] sketchBytes = sketch.toByteArray();
+            new VIntWritable(sketchBytes.length).write(out);
+            out.write(sketchBytes);
+        }
     }
     
     public void applyNode(JexlNode node) {
@@ -116,7 +135,8 @@ public class IndexInfo implements Writable, UidIntersector {
         
         VIntWritable nUidsReader = new VIntWritable();
         nUidsReader.readFields(in);
-        final int nUids = nUidsReader.get();
+        final boolean hasSketch = nUidsReader.get() < 0;
+        final int nUids = (hasSketch ? -nUidsReader.get() - 1 : nUidsReader.get());
         
         ImmutableSortedSet.Builder<IndexMatch> setBuilder = ImmutableSortedSet.naturalOrder();
         
@@ -126,6 +146,16 @@ public class IndexInfo implements Writable, UidIntersector {
             setBuilder.add(index);
         }
         this.uids = setBuilder.build();
+        
+        if (hasSketch) {
+            VIntWritable sketchLength = new VIntWritable();
+            sketchLength.readFields(in);
+            byte[] sketchBytes = new byte[sketchLength.get()];
+            in.readFully(sketchBytes);
+            this.sketch = UidSketch.parseFrom(sketchBytes);
+        } else {
+            this.sketch = null;
+        }
     }
     
     public IndexInfo union(IndexInfo o) {
@@ -350,6 +380,7 @@ public class IndexInfo implements Writable, UidIntersector {
              */
             merged.count = count + o.count;
             merged.uids = ImmutableSortedSet.of();
+            merged.sketch = unionSketch(o);
         } else {
             HashMultimap<String,JexlNode> ids = HashMultimap.create();
             
@@ -581,7 +612,8 @@ public class IndexInfo implements Writable, UidIntersector {
                     HashMultimap<String,JexlNode> ids = HashMultimap.create();
                     for (IndexMatch match : uids) {
                         JexlNode newNode = match.getNode();
-                        if (null != newNode)
+                        // drop the ids the sketch of the other side rules out
+                        if (null != newNode && o.mightContain(match.uid))
                             ids.put(match.uid, newNode);
                     }
                     
@@ -602,7 +634,7 @@ public class IndexInfo implements Writable, UidIntersector {
                     HashMultimap<String,JexlNode> ids = HashMultimap.create();
                     for (IndexMatch match : o.uids) {
                         JexlNode newNode = match.getNode();
-                        if (null != newNode)
+                        if (null != newNode && mightContain(match.uid))
                             ids.put(match.uid, newNode);
                     }
                     
@@ -619,6 +651,11 @@ public class IndexInfo implements Writable, UidIntersector {
                     
                     merged.count = Math.min(count, o.count);
                     merged.uids = ImmutableSortedSet.of();
+                    merged.sketch = intersectSketch(o);
+                    if (null != merged.sketch && merged.sketch.isEmpty()) {
+                        // the sketches have no document in common
+                        merged.count = 0;
+                    }
                 }
             }
         }
@@ -644,6 +681,83 @@ public class IndexInfo implements Writable, UidIntersector {
         return buildNodeList(ids, IndexMatchType.AND, false, delayedNodes);
     }
     
+    @Override
+    public boolean intersectsEqualUidsOnly() {
+        return true;
+    }
+    
+    /**
+     * A quick check of the infos of a shard before they are intersected. This merges the sorted ids of the infos that have them and tests what is left against
+     * the sketches of the others, leaving the nodes alone, so that a shard on which the infos have no document in common can be skipped without building any
+     * of the nodes of their intersection.
+     * 
+     * @param infos
+     * @return false if the infos certainly have no document in common
+     */
+    static boolean mayIntersect(Iterable<IndexInfo> infos) {
+        List<IndexMatch> common = null;
+        UidSketch commonSketch = null;
+        for (IndexInfo info : infos) {
+            if (info.isInfinite()) {
+                continue;
+            } else if (info.onlyEvents()) {
+                for (IndexMatch match : info.uids) {
+                    if (null == match.getNode()) {
+                        // ids without a node are not intersected like the others
+                        return true;
+                    }
+                }
+                common = (null == common ? info.uids.asList() : retainSorted(common, info.uids.asList()));
+                if (common.isEmpty()) {
+                    return false;
+                }
+            } else if (null != info.sketch) {
+                if (null == commonSketch) {
+                    commonSketch = info.sketch.copy();
+                } else {
+                    commonSketch.retainAll(info.sketch);
+                }
+            }
+        }
+        if (null == commonSketch) {
+            return true;
+        } else if (null == common) {
+            return !commonSketch.isEmpty();
+        }
+        for (IndexMatch match : common) {
+            if (commonSketch.mightContain(withoutDatatype(match.uid))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @param uids1
+     *            ids in sorted order
+     * @param uids2
+     *            ids in sorted order
+     * @return the ids of both, in sorted order
+     */
+    private static List<IndexMatch> retainSorted(List<IndexMatch> uids1, List<IndexMatch> uids2) {
+        List<IndexMatch> retained = new ArrayList<>(Math.min(uids1.size(), uids2.size()));
+        int i = 0;
+        int j = 0;
+        while (i < uids1.size() && j < uids2.size()) {
+            int cmp = uids1.get(i).compareTo(uids2.get(j));
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                retained.add(uids1.get(i));
+                i++;
+                j++;
+            }
+        }
+        return retained;
+    }
+    
     protected Set<IndexMatch> buildNodeList(HashMultimap<String,JexlNode> ids, IndexMatchType type, boolean allowsDelayed, List<JexlNode> delayedNodes) {
         Set<IndexMatch> matches = Sets.newHashSet();
         for (String uid : ids.keySet()) {
@@ -659,6 +773,61 @@ public class IndexInfo implements Writable, UidIntersector {
         return matches;
     }
     
+    /**
+     * @param uid
+     *            a document id, prefixed by its datatype
+     * @return false if the sketch rules the document out
+     */
+    private boolean mightContain(String uid) {
+        return null == sketch || sketch.mightContain(withoutDatatype(uid));
+    }
+    
+    private static String withoutDatatype(String uid) {
+        return uid.substring(uid.indexOf('\u0000') + 1);
+    }
+    
+    /**
+     * @param o
+     * @return a sketch of the documents of both sides, or null if either side has neither ids nor a sketch
+     */
+    private UidSketch unionSketch(IndexInfo o) {
+        UidSketch merged = toSketch();
+        UidSketch other = o.toSketch();
+        if (null == merged || null == other) {
+            return null;
+        }
+        merged.addAll(other);
+        return merged;
+    }
+    
+    /**
+     * @param o
+     * @return a sketch of the documents the sides may have in common, or null if neither side has a sketch
+     */
+    private UidSketch intersectSketch(IndexInfo o) {
+        if (null == sketch) {
+            return o.sketch;
+        } else if (null == o.sketch) {
+            return sketch;
+        }
+        UidSketch merged = sketch.copy();
+        merged.retainAll(o.sketch);
+        return merged;
+    }
+    
+    private UidSketch toSketch() {
+        if (isInfinite()) {
+            return null;
+        } else if (onlyEvents()) {
+            UidSketch ids = new UidSketch();
+            for (IndexMatch match : uids) {
+                ids.add(withoutDatatype(match.uid));
+            }
+            return ids;
+        }
+        return null == sketch ? null : sketch.copy();
+    }
+    
     public boolean equals(Object o) {
         if (o == this) {
             return true;
@@ -0,0 +1,319 @@
+package datawave.query.index.lookup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import datawave.core.iterators.FairTaskExecutor;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+import datawave.webservice.query.Query;
+import org.apache.log4j.Logger;
+
+/**
+ * The threads shared by the global index lookups of every query in this process. Rather than each query standing up (and tearing down) its own pools, the
+ * queries are handed a {@link QueryExecutor} over a pair of process wide {@link FairTaskExecutor}s. The threads are shared fairly between the queries,
+ * weighted by the connection priority of the query, and each query executor is held to its own quota of threads.
+ * 
+ * The tasks are split into two tiers. Lookup tasks (initializing the index streams, expanding terms) wait on scan tasks, while scan tasks (reading the index)
+ * wait on the tablet servers and on room in the results of their stream. Keeping the tiers on separate threads means that lookups waiting on their scans can
+ * never hold the threads the scans need.
+ * 
+ * Since a task may wait for as long as its query is slow to consume its results, each query executor reserves its quota of threads on its tier while it has
+ * tasks queued or running. A tier never grows past its size: the reservations are admitted against a fixed share of the tier and shrunk once that share is
+ * used up, so a slow query holds at most its own threads and the queries without a reservation still share the rest. The reservation is given back as soon
+ * as the last task of the executor completes, whether or not the executor is ever shut down. The size of each tier is set by a system property, see
+ * {@link #LOOKUP_THREADS_PROP} and {@link #SCAN_THREADS_PROP}. The time tasks spend queued for a thread is tracked both for each tier and for each query
+ * executor.
+ */
+public class IndexLookupScheduler {
+    private static final Logger log = Logger.getLogger(IndexLookupScheduler.class);
+    
+    public static final String LOOKUP_THREADS_PROP = "datawave.query.index.lookup.threads";
+    public static final String SCAN_THREADS_PROP = "datawave.query.index.scan.threads";
+    private static final int DEFAULT_THREADS = 100;
+    
+    private static final AtomicLong anonymousQueries = new AtomicLong();
+    private static final AtomicLong executors = new AtomicLong();
+    
+    private static volatile IndexLookupScheduler instance;
+    
+    private final FairTaskExecutor lookups;
+    private final FairTaskExecutor scans;
+    
+    public IndexLookupScheduler(int lookupThreads, int scanThreads) {
+        this.lookups = new FairTaskExecutor("DATAWAVE Index Lookup", lookupThreads, 0);
+        this.scans = new FairTaskExecutor("DATAWAVE Index Scan", scanThreads, 0);
+    }
+    
+    /**
+     * @return the scheduler shared by the queries in this process
+     */
+    public static IndexLookupScheduler getInstance() {
+        if (instance == null) {
+            synchronized (IndexLookupScheduler.class) {
+                if (instance == null) {
+                    instance = new IndexLookupScheduler(Integer.getInteger(LOOKUP_THREADS_PROP, DEFAULT_THREADS), Integer.getInteger(SCAN_THREADS_PROP,
+                                    DEFAULT_THREADS));
+                    log.info("Created " + instance);
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Get an executor for tasks of a query that may wait on its scan tasks. The executor reserves its threads while it has tasks queued or running.
+     * 
+     * @param config
+     *            the query configuration
+     * @param maxThreads
+     *            the maximum number of threads running tasks for the executor
+     * @return the executor
+     */
+    public QueryExecutor lookupExecutor(ShardQueryConfiguration config, int maxThreads) {
+        return new QueryExecutor(lookups, getExecutorKey(config.getQuery()), getWeight(config.getIndexLookupPriority()), maxThreads);
+    }
+    
+    /**
+     * Get an executor for tasks of a query that read the index. The executor reserves its threads while it has tasks queued or running.
+     * 
+     * @param config
+     *            the query configuration
+     * @param maxThreads
+     *            the maximum number of threads running tasks for the executor
+     * @return the executor
+     */
+    public QueryExecutor scanExecutor(ShardQueryConfiguration config, int maxThreads) {
+        return new QueryExecutor(scans, getExecutorKey(config.getQuery()), getWeight(config.getIndexLookupPriority()), maxThreads);
+    }
+    
+    public FairTaskExecutor getLookupTasks() {
+        return lookups;
+    }
+    
+    public FairTaskExecutor getScanTasks() {
+        return scans;
+    }
+    
+    /**
+     * @param query
+     * @return the query id, or a key of its own for a query without one
+     */
+    public static String getSchedulingKey(Query query) {
+        if (query == null || query.getId() == null) {
+            return "anonymous-" + anonymousQueries.incrementAndGet();
+        }
+        return query.getId().toString();
+    }
+    
+    /**
+     * @param query
+     * @return a key of its own for each executor, so that the executors of a query each keep their own quota
+     */
+    private static String getExecutorKey(Query query) {
+        return getSchedulingKey(query) + '#' + executors.incrementAndGet();
+    }
+    
+    /**
+     * @param priority
+     * @return the number of tasks a query of the priority may start on each of its turns, doubling with each step up in priority
+     */
+    public static int getWeight(AccumuloConnectionFactory.Priority priority) {
+        if (priority == null) {
+            priority = AccumuloConnectionFactory.Priority.NORMAL;
+        }
+        return 1 << priority.ordinal();
+    }
+    
+    @Override
+    public String toString() {
+        return "IndexLookupScheduler[" + lookups + "; " + scans + ']';
+    }
+    
+    /**
+     * The view of a query on one tier of the shared threads. The executor reserves up to its maximum threads on the tier when a task is submitted, and gives
+     * the reservation back when its last queued or running task completes. Shutting the executor down only affects the tasks submitted through it.
+     */
+    public static class QueryExecutor extends AbstractExecutorService {
+        private final FairTaskExecutor executor;
+        private final String key;
+        private final int weight;
+        private final int maxThreads;
+        // the threads reserved on the tier for the tasks queued or running
+        private int reserved = 0;
+        
+        // the tasks waiting for a thread and the tasks running, by the command they run
+        private final Map<Runnable,Future<?>> queued = new LinkedHashMap<>();
+        private final Map<Runnable,Future<?>> running = new HashMap<>();
+        private boolean shutdown = false;
+        
+        // queue time statistics
+        private long started = 0;
+        private long totalQueueMillis = 0;
+        private long maxQueueMillis = 0;
+        
+        public QueryExecutor(FairTaskExecutor executor, String key, int weight, int maxThreads) {
+            this.executor = executor;
+            this.key = key;
+            this.weight = weight;
+            this.maxThreads = Math.max(1, maxThreads);
+        }
+        
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Index lookup executor for " + key + " has been shut down");
+            }
+            // take whatever part of the reservation the tier has room for, before the task is queued so that it may start on it
+            if (reserved < maxThreads) {
+                reserved += executor.reserveThreads(key, maxThreads - reserved);
+            }
+            long queuedTime = System.currentTimeMillis();
+            queued.put(command, executor.submit(key, weight, maxThreads, () -> run(command, queuedTime)));
+        }
+        
+        private void run(Runnable command, long queuedTime) {
+            synchronized (this) {
+                Future<?> future = queued.remove(command);
+                if (future == null) {
+                    // removed by shutdownNow
+                    return;
+                }
+                running.put(command, future);
+                long queueMillis = System.currentTimeMillis() - queuedTime;
+                started++;
+                totalQueueMillis += queueMillis;
+                maxQueueMillis = Math.max(maxQueueMillis, queueMillis);
+            }
+            try {
+                command.run();
+            } finally {
+                synchronized (this) {
+                    running.remove(command);
+                    if (running.isEmpty() && queued.isEmpty()) {
+                        release();
+                        notifyAll();
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+        
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> notStarted = new ArrayList<>(queued.keySet());
+            for (Map.Entry<Runnable,Future<?>> entry : queued.entrySet()) {
+                cancel(entry.getKey(), entry.getValue(), false);
+            }
+            queued.clear();
+            for (Map.Entry<Runnable,Future<?>> entry : running.entrySet()) {
+                cancel(entry.getKey(), entry.getValue(), true);
+            }
+            if (running.isEmpty()) {
+                release();
+            }
+            notifyAll();
+            return notStarted;
+        }
+        
+        /**
+         * Give back the reserved threads once no tasks are queued or running
+         */
+        private void release() {
+            if (reserved > 0) {
+                reserved = 0;
+                executor.releaseThreads(key);
+            }
+        }
+        
+        private void cancel(Runnable command, Future<?> future, boolean mayInterruptIfRunning) {
+            future.cancel(mayInterruptIfRunning);
+            // release anyone waiting on the command itself, e.g. the futures handed out by submit
+            if (command instanceof Future) {
+                ((Future<?>) command).cancel(mayInterruptIfRunning);
+            }
+        }
+        
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+        
+        @Override
+        public synchronized boolean isTerminated() {
+            return shutdown && queued.isEmpty() && running.isEmpty();
+        }
+        
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+            while (!isTerminated()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+        
+        public String getKey() {
+            return key;
+        }
+        
+        public int getWeight() {
+            return weight;
+        }
+        
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+        
+        /**
+         * @return the number of threads currently reserved on the tier, which is 0 while no tasks are queued or running
+         */
+        public synchronized int getReservedThreads() {
+            return reserved;
+        }
+        
+        /**
+         * @return the number of tasks that have been started
+         */
+        public synchronized long getStartedTasks() {
+            return started;
+        }
+        
+        /**
+         * @return the average time the started tasks waited for a thread
+         */
+        public synchronized long getAverageQueueMillis() {
+            return (started == 0 ? 0 : totalQueueMillis / started);
+        }
+        
+        /**
+         * @return the longest time a started task waited for a thread
+         */
+        public synchronized long getMaxQueueMillis() {
+            return maxQueueMillis;
+        }
+        
+        @Override
+        public synchronized String toString() {
+            return key + ": " + started + " tasks started, " + queued.size() + " queued, " + running.size() + " running, average queue time "
+                            + getAverageQueueMillis() + "ms, max queue time " + maxQueueMillis + "ms";
+        }
+    }
+}
@@ -8,18 +8,16 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Ordering;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.concurrent.ExecutorService;
 import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.jexl.JexlNodeFactory;
@@ -45,7 +43,9 @@ import org.apache.log4j.Logger;
  * words, each stream being intersected is a stream of days (20130101, 20130102 ...) or a stream of shards (20130101_4, 20130101_8, 20130102_3 ...).
  */
 public class Intersection implements IndexStream {
-    private TreeMultimap<String,IndexStream> children;
+    // the streams being intersected, and the day or shard each of them is on
+    private IndexStream[] children = new IndexStream[0];
+    private String[] keys = new String[0];
     private final StreamContext context;
     private final String contextDebug;
     private final List<String> childrenContextDebug = new ArrayList<>();
@@ -59,7 +59,7 @@ public class Intersection implements IndexStream {
     private static final Logger log = Logger.getLogger(Intersection.class);
     
     public Intersection(Iterable<? extends IndexStream> children, UidIntersector uidIntersector) {
-        this.children = TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
+        List<IndexStream> streams = new ArrayList<>();
         this.uidIntersector = uidIntersector;
         delayedNodes = Lists.newArrayList();
         Iterator<? extends IndexStream> childrenItr = children.iterator();
@@ -95,14 +95,14 @@ public class Intersection implements IndexStream {
                         isVariable = true;
                         JexlNode node = stream.peek().second().getNode();
                         nodesMap.put(JexlStringBuildingVisitor.buildQueryWithoutParse(node), node);
-                        this.children.put(key(stream), stream);
+                        streams.add(stream);
                     } else {
                         
                         if (StreamContext.EXCEEDED_VALUE_THRESHOLD == stream.context())
                             exceededValueThreshold = true;
                         
                         nodesMap.put(JexlStringBuildingVisitor.buildQueryWithoutParse(stream.currentNode()), stream.currentNode());
-                        this.children.put(key(stream), stream);
+                        streams.add(stream);
                     }
                 } else {
                     if (StreamContext.EXCEEDED_TERM_THRESHOLD == stream.context()) {
@@ -128,7 +128,13 @@ public class Intersection implements IndexStream {
                     allExceededValueThreshold = false;
             }
             if (log.isTraceEnabled())
-                log.trace("size is " + this.children.size());
+                log.trace("size is " + streams.size());
+            
+            this.children = streams.toArray(new IndexStream[streams.size()]);
+            this.keys = new String[this.children.length];
+            for (int i = 0; i < this.children.length; i++) {
+                this.keys[i] = key(this.children[i]);
+            }
             
             currNode = buildCurrentNode();
             
@@ -137,10 +143,10 @@ public class Intersection implements IndexStream {
             if (absent) {
                 this.context = StreamContext.ABSENT;
                 this.contextDebug = "found absent child";
-            } else if (allChildrenAreUnindexed(this.children.values())) {
+            } else if (allChildrenAreUnindexed(streams)) {
                 this.context = StreamContext.UNINDEXED;
                 this.contextDebug = "all children unindexed";
-            } else if (this.children.isEmpty() && delayedField) {
+            } else if (streams.isEmpty() && delayedField) {
                 this.context = StreamContext.DELAYED_FIELD;
                 this.contextDebug = "delayed field";
             } else if (allExceededValueThreshold) {
@@ -213,18 +219,18 @@ public class Intersection implements IndexStream {
         
         next = null;
         
-        while (!children.isEmpty() && next == null) {
-            final SortedSet<String> keys = children.keySet();
-            if (keys.size() == 1) {
-                IndexInfo shard = intersect(children.values());
+        while (next == null && align()) {
+            final String key = keys[0];
+            final List<IndexStream> streams = Arrays.asList(children);
+            // skip the nodes of a shard the children certainly have no document in common on
+            if (null == uidIntersector || !uidIntersector.intersectsEqualUidsOnly() || IndexInfo.mayIntersect(convert(streams))) {
+                IndexInfo shard = intersect(streams);
                 
                 if (shard.count() != 0) {
-                    next = Tuples.tuple(keys.first(), shard);
+                    next = Tuples.tuple(key, shard);
                 }
-                children = nextAll(keys.first(), children.get(keys.first()));
-            } else {
-                children = pivot(children);
             }
+            advanceAll(key);
         }
         return ret;
     }
@@ -303,66 +309,88 @@ public class Intersection implements IndexStream {
     }
     
     /*
-     * This method will advance all of the streams except for those returning a day. However if the key is a day then they are all advanced anyway. The reason
-     * for the special handling of "day" ranges is that multiple shards from a separate stream may match the day range and we need to ensure all of them get a
-     * chance. If the key is a "day" range, then all of the streams matched that day so we can safely advance them all. If the iterator `hasNext` after that,
-     * then it is added into the returned multimap with the next key it will return. If an iterator ever does not have a have a next, an empty multimap is
-     * returned, signifying the exhaustion of this intersection.
+     * Advances all of the streams except for those returning a day. However if the key is a day then they are all advanced anyway. The reason for the special
+     * handling of "day" ranges is that multiple shards from a separate stream may match the day range and we need to ensure all of them get a chance. If the
+     * key is a "day" range, then all of the streams matched that day so we can safely advance them all. If a stream is exhausted, so is this intersection.
      */
-    static TreeMultimap<String,IndexStream> nextAll(String key, Collection<IndexStream> streams) {
-        TreeMultimap<String,IndexStream> newChildren = TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
-        for (IndexStream itr : streams) {
-            if (!isDay(key) && isDay(key(itr.peek()))) {
-                newChildren.put(itr.peek().first(), itr);
-            } else {
+    private void advanceAll(String key) {
+        for (int i = 0; i < children.length; i++) {
+            IndexStream itr = children[i];
+            if (isDay(key) || !isDay(key(itr))) {
                 itr.next();
-                if (itr.hasNext()) {
-                    newChildren.put(itr.peek().first(), itr);
-                } else {
-                    return TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
+                if (!itr.hasNext()) {
+                    exhaust();
+                    return;
                 }
             }
+            keys[i] = key(itr);
         }
-        return newChildren;
     }
     
     /*
-     * Calls `next()` on all iterators that aren't mapped to the highest key in the multimap until that iterator's next value (as returned by `peek()`) is
-     * greater than or equal to the previous max key.
-     * 
-     * If an iterator gets exhausted, then an empty multimap is returned signifying the end of this intersection.
+     * Leapfrogs the streams forward until they are all on the same day or shard, as a merge of sorted lists would. Each stream behind the highest key seen
+     * thus far is moved forward until it gets to a key greater than or equal to that key, which then becomes the key the others must reach. A stream on a day
+     * that contains the highest key is considered to be on that key, so that its day matches every shard of the other streams.
      * 
-     * <code>children</code> must be non-empty
+     * Returns false, exhausting this intersection, if any stream is exhausted before the streams align.
      */
-    static TreeMultimap<String,IndexStream> pivot(TreeMultimap<String,IndexStream> children) {
-        TreeMultimap<String,IndexStream> newChildren = TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
-        final String max = children.keySet().last();
-        newChildren.putAll(max, children.removeAll(max));
-        for (IndexStream itr : children.values()) {
-            // move this iterator forward until we get to a key past the max processed thus far
-            String dayOrShard = null;
-            while (itr.hasNext()) {
-                
-                dayOrShard = key(itr.peek());
-                if (dayOrShard.compareTo(max) >= 0) {
-                    break;
+    private boolean align() {
+        if (children.length == 0) {
+            return false;
+        }
+        String max = keys[0];
+        for (String key : keys) {
+            if (key.compareTo(max) > 0) {
+                max = key;
+            }
+        }
+        boolean aligned = false;
+        while (!aligned) {
+            aligned = true;
+            for (int i = 0; i < children.length; i++) {
+                if (keys[i].equals(max)) {
+                    continue;
                 }
-                if (isDay(dayOrShard) && max.startsWith(dayOrShard)) {
-                    // use the existing max instead of the day to add to the list
-                    dayOrShard = max;
-                    break;
+                String dayOrShard = seek(children[i], max);
+                if (dayOrShard == null) {
+                    // nobody has anything past max, so no intersection
+                    exhaust();
+                    return false;
+                }
+                keys[i] = dayOrShard;
+                if (!dayOrShard.equals(max)) {
+                    // this stream passed the max, which the others must now catch up to
+                    max = dayOrShard;
+                    aligned = false;
                 }
-                itr.next();
             }
-            // add the item into our map
-            if (itr.hasNext()) {
-                newChildren.put(dayOrShard, itr);
-            } else {
-                // nobody has anything past max, so no intersection
-                return TreeMultimap.create(Ordering.natural(), Ordering.arbitrary());
+        }
+        return true;
+    }
+    
+    /*
+     * Calls `next()` on the stream until its next key (as returned by `peek()`) is greater than or equal to the max, or is a day that contains the max.
+     * 
+     * Returns the key of the stream, the max in the case of a day containing it, or null if the stream is exhausted.
+     */
+    private static String seek(IndexStream itr, String max) {
+        while (itr.hasNext()) {
+            String dayOrShard = key(itr);
+            if (dayOrShard.compareTo(max) >= 0) {
+                return dayOrShard;
             }
+            if (isDay(dayOrShard) && max.startsWith(dayOrShard)) {
+                // use the existing max instead of the day
+                return max;
+            }
+            itr.next();
         }
-        return newChildren;
+        return null;
+    }
+    
+    private void exhaust() {
+        children = new IndexStream[0];
+        keys = new String[0];
     }
     
     static boolean isDay(String dayOrShard) {
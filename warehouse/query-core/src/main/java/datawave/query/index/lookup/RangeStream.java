@@ -34,6 +34,7 @@ import datawave.query.tables.SessionOptions;
 import datawave.query.tld.CreateTLDUidsIterator;
 import datawave.query.util.MetadataHelper;
 import datawave.query.util.QueryScannerHelper;
+import datawave.query.util.QueryStopwatch;
 import datawave.query.util.Tuple2;
 import datawave.query.util.Tuples;
 import datawave.util.StringUtils;
@@ -85,13 +86,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Iterators.concat;
 import static com.google.common.collect.Iterators.filter;
@@ -118,8 +115,6 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     protected Class<? extends SortedKeyValueIterator<Key,Value>> createCondensedUidIteratorClass = CondensedUidIterator.class;
     protected Multimap<String,Type<?>> fieldDataTypes;
     
-    protected BlockingQueue<Runnable> runnables;
-    
     protected JexlNode tree = null;
     
     protected UidIntersector uidIntersector = new IndexInfo();
@@ -135,8 +130,16 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     
     protected ExecutorService streamExecutor;
     
+    private boolean closed = false;
+    
+    // the cache of the index entries of the terms, or null if not caching
+    protected GlobalIndexCache globalIndexCache = null;
+    
     protected boolean collapseUids = false;
     
+    // whether to intersect the uid sketches of high cardinality terms
+    protected boolean uidSketches = false;
+    
     private boolean setCondenseUids = true;
     
     private boolean compressUidsInRangeStream = false;
@@ -148,10 +151,13 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         this.scanners = scanners;
         this.metadataHelper = metadataHelper;
         int maxLookup = (int) Math.max(Math.ceil(config.getNumIndexLookupThreads()), 1);
-        executor = Executors.newFixedThreadPool(maxLookup);
-        runnables = new LinkedBlockingDeque<>();
-        int executeLookupMin = (int) Math.max(maxLookup / 2, 1);
-        streamExecutor = new ThreadPoolExecutor(executeLookupMin, maxLookup, 100, TimeUnit.MILLISECONDS, runnables);
+        // the lookups and scans of this query share the process wide index lookup threads
+        IndexLookupScheduler scheduler = IndexLookupScheduler.getInstance();
+        executor = scheduler.lookupExecutor(config, maxLookup);
+        streamExecutor = scheduler.scanExecutor(config, maxLookup);
+        if (config.isGlobalIndexCacheEnabled()) {
+            globalIndexCache = GlobalIndexCache.getInstance();
+        }
         fieldDataTypes = config.getQueryFieldsDatatypes();
         collapseUids = config.getCollapseUids();
         try {
@@ -178,6 +184,9 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
             }
         }
         
+        // the sketches hash the uids of the documents the terms hit, which cannot be matched against the parent or ancestor uids of the other query logics
+        uidSketches = config.isUidSketchesEnabled() && createUidsIteratorClass == CreateUidsIterator.class;
+        
         // check the query depth (up to config.getMaxDepthThreshold() + 1)
         int depth = DepthVisitor.getDepth(node, config.getMaxDepthThreshold());
         if (depth > config.getMaxDepthThreshold()) {
@@ -453,7 +462,17 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
             Iterator<Tuple2<String,IndexInfo>> itr = null;
             int stackStart = config.getBaseIteratorPriority();
             
-            if (limitScanners) {
+            GlobalIndexCache.Lookup cached = (globalIndexCache == null ? null : globalIndexCache.lookup(config, fieldName, literal, getScanSignature()));
+            
+            if (cached != null && cached.isComplete()) {
+                // every day of the term is cached, no need to scan the index
+                if (log.isTraceEnabled()) {
+                    log.trace("Using the cached index entries for " + fieldName + ", literal= " + literal);
+                }
+                itr = Iterators.transform(cached.iterator(Collections.<Entry<Key,Value>> emptyIterator()), new EntryParser(node, fieldName, literal,
+                                indexOnlyFields));
+                
+            } else if (limitScanners) {
                 
                 if (setCondenseUids) {
                     // Setup the CondenseUidsIterator
@@ -492,9 +511,10 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                     String queryString = fieldName + "=='" + literal + "'";
                     options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
                     
-                    scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
+                    scanSession.setRanges(rangesForTerm(literal, fieldName, cached)).setOptions(options);
                     
-                    itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
+                    itr = Iterators.transform(cached == null ? scanSession : cached.iterator(scanSession), new EntryParser(node, fieldName, literal,
+                                    indexOnlyFields));
                     
                 } else {
                     // Setup the CreateUidsIterator
@@ -513,14 +533,16 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                     
                     final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
                     uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
+                    uidSetting.addOption(CreateUidsIterator.UID_SKETCHES, Boolean.valueOf(uidSketches).toString());
                     options.addScanIterator(uidSetting);
                     
                     String queryString = fieldName + "=='" + literal + "'";
                     options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
                     
-                    scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
+                    scanSession.setRanges(rangesForTerm(literal, fieldName, cached)).setOptions(options);
                     
-                    itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
+                    itr = Iterators.transform(cached == null ? scanSession : cached.iterator(scanSession), new EntryParser(node, fieldName, literal,
+                                    indexOnlyFields));
                 }
                 
             } else {
@@ -532,9 +554,12 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                 
                 final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
                 uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
+                uidSetting.addOption(CreateUidsIterator.UID_SKETCHES, Boolean.valueOf(uidSketches).toString());
                 scanner.addScanIterator(uidSetting);
                 
-                itr = Iterators.transform(scanner.iterator(), new EntryParser(node, fieldName, literal, indexOnlyFields));
+                // the batch scanner need not return the ranges of the missing days in order, so scan every day and record them all
+                itr = Iterators.transform(cached == null ? scanner.iterator() : cached.record(scanner.iterator()), new EntryParser(node, fieldName, literal,
+                                indexOnlyFields));
             }
             
             /*
@@ -800,6 +825,28 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         return null;
     }
     
+    /**
+     * @param term
+     * @param field
+     * @param cached
+     *            the cached days of the term, or null if not caching
+     * @return the ranges of the days of the term to scan
+     */
+    protected Collection<Range> rangesForTerm(String term, String field, GlobalIndexCache.Lookup cached) {
+        if (cached == null) {
+            return Collections.singleton(rangeForTerm(term, field, config));
+        }
+        return cached.getMissingRanges();
+    }
+    
+    /**
+     * @return a description of the iterators the index entries are scanned with, under which they are cached
+     */
+    protected String getScanSignature() {
+        return limitScanners + "," + setCondenseUids + "," + createUidsIteratorClass.getName() + "," + createCondensedUidIteratorClass.getName() + ","
+                        + collapseUids + "," + uidSketches + "," + compressUidsInRangeStream + "," + config.getShardsPerDayThreshold() + "," + MAX_MEDIAN;
+    }
+    
     public Range rangeForTerm(String term, String field, ShardQueryConfiguration config) {
         return rangeForTerm(term, field, config.getBeginDate(), config.getEndDate());
     }
@@ -973,10 +1020,28 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         return false;
     }
     
+    /**
+     * Shut down the lookup and scan tasks, recording the number of tasks each tier started and how long they waited for a thread in the query timers
+     */
     @Override
-    public void close() {
+    public synchronized void close() {
         streamExecutor.shutdownNow();
         executor.shutdownNow();
+        if (!closed) {
+            closed = true;
+            recordQueueTimes("RangeStream - Index lookup tasks", executor);
+            recordQueueTimes("RangeStream - Index scan tasks", streamExecutor);
+        }
+    }
+    
+    private void recordQueueTimes(String header, ExecutorService service) {
+        if (service instanceof IndexLookupScheduler.QueryExecutor) {
+            IndexLookupScheduler.QueryExecutor queryExecutor = (IndexLookupScheduler.QueryExecutor) service;
+            QueryStopwatch timers = config.getTimers();
+            timers.recordCount(header + " started", queryExecutor.getStartedTasks());
+            timers.recordMillis(header + " average queue time", queryExecutor.getAverageQueueMillis());
+            timers.recordMillis(header + " max queue time", queryExecutor.getMaxQueueMillis());
+        }
     }
     
     public void setCondenseUids(boolean setCondenseUids) {
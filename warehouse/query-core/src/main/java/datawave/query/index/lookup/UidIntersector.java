@@ -20,4 +20,11 @@ public interface UidIntersector {
      */
     Set<IndexMatch> intersect(Set<IndexMatch> uids1, Set<IndexMatch> uids2, List<JexlNode> delayedNodes);
     
+    /**
+     * @return true if only equal uids intersect, in which case lists of uids with none in common need not be intersected at all
+     */
+    default boolean intersectsEqualUidsOnly() {
+        return false;
+    }
+    
 }
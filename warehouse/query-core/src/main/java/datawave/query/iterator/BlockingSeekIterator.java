@@ -0,0 +1,63 @@
+package datawave.query.iterator;
+
+import datawave.core.iterators.FairTaskExecutor;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A source wrapper that seeks as a {@link FairTaskExecutor#blocking} section, allowing the executor running the current task to start another task while the
+ * seek waits on its reads. Deep copies are wrapped as well.
+ */
+public class BlockingSeekIterator<K extends WritableComparable<?>,V extends Writable> implements SortedKeyValueIterator<K,V> {
+    private SortedKeyValueIterator<K,V> source;
+    
+    public BlockingSeekIterator(SortedKeyValueIterator<K,V> source) {
+        this.source = source;
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<K,V> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        this.source = source;
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return source.hasTop();
+    }
+    
+    @Override
+    public void next() throws IOException {
+        source.next();
+    }
+    
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        FairTaskExecutor.blocking(() -> {
+            source.seek(range, columnFamilies, inclusive);
+            return null;
+        });
+    }
+    
+    @Override
+    public K getTopKey() {
+        return source.getTopKey();
+    }
+    
+    @Override
+    public V getTopValue() {
+        return source.getTopValue();
+    }
+    
+    @Override
+    public SortedKeyValueIterator<K,V> deepCopy(IteratorEnvironment env) {
+        return new BlockingSeekIterator<>(source.deepCopy(env));
+    }
+}
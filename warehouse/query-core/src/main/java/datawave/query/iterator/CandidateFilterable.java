@@ -0,0 +1,20 @@
+package datawave.query.iterator;
+
+import com.google.common.base.Predicate;
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * An iterator that can restrict its results to a set of candidate documents, for example the complete results of a sibling source in a conjunction. The
+ * candidates only need to be a superset of the documents that can match.
+ */
+public interface CandidateFilterable {
+    /**
+     * Restrict the results to the event keys (shardId : datatype\0uid) accepted by the filter. This must be set before the iterator is seeked for the filter to
+     * apply to that seek.
+     * 
+     * @param candidateFilter
+     *            the filter, or null to remove the restriction
+     * @return true if the filter will be applied
+     */
+    boolean setCandidateFilter(Predicate<Key> candidateFilter);
+}
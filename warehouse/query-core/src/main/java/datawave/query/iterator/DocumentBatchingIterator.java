@@ -0,0 +1,83 @@
+package datawave.query.iterator;
+
+import com.google.common.collect.Maps;
+import datawave.query.DocumentSerialization;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.YieldCallback;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Packs the serialized documents into values holding up to a maximum number of documents or serialized bytes, see
+ * {@link DocumentSerialization#writeBatch(List, int)}. Each batch is returned under the key of its last document, so that a scan torn down after a batch
+ * resumes after all of the documents in it. A batch of a single document is returned as is.
+ * 
+ * A yield reached while filling a batch is held back until the batch has been returned, as the tablet server may not be given a top key once the query has
+ * yielded.
+ */
+public class DocumentBatchingIterator implements Iterator<Entry<Key,Value>> {
+    private final Iterator<Entry<Key,Value>> serializedDocuments;
+    private final int maxDocuments;
+    private final int maxBytes;
+    private final int compression;
+    private final YieldCallback<Key> yield;
+    
+    // the position of a yield reached while filling the last batch
+    private Key yieldKey = null;
+    
+    public DocumentBatchingIterator(Iterator<Entry<Key,Value>> serializedDocuments, int maxDocuments, int maxBytes, boolean compress,
+                    YieldCallback<Key> yieldCallback) {
+        this.serializedDocuments = serializedDocuments;
+        this.maxDocuments = maxDocuments;
+        this.maxBytes = maxBytes;
+        this.compression = compress ? DocumentSerialization.GZIP : DocumentSerialization.NONE;
+        this.yield = yieldCallback;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (yieldKey != null) {
+            yield.yield(yieldKey);
+            yieldKey = null;
+            return false;
+        }
+        return serializedDocuments.hasNext();
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        if (yieldKey != null) {
+            throw new NoSuchElementException();
+        }
+        
+        List<Entry<Key,Value>> batch = new ArrayList<>();
+        Entry<Key,Value> document = serializedDocuments.next();
+        batch.add(document);
+        int bytes = document.getValue().getSize();
+        
+        while (batch.size() < maxDocuments && bytes < maxBytes && serializedDocuments.hasNext()) {
+            document = serializedDocuments.next();
+            batch.add(document);
+            bytes += document.getValue().getSize();
+        }
+        
+        if (yield != null && yield.hasYielded()) {
+            yieldKey = yield.getPositionAndReset();
+        }
+        
+        if (batch.size() == 1) {
+            return document;
+        }
+        return Maps.immutableEntry(document.getKey(), new Value(DocumentSerialization.writeBatch(batch, compression)));
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
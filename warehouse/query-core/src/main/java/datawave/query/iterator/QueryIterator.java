@@ -14,6 +14,7 @@ import datawave.data.type.util.NumericalEncoder;
 import datawave.ingest.data.config.ingest.CompositeIngest;
 import datawave.marking.MarkingFunctionsFactory;
 import datawave.query.Constants;
+import datawave.query.DocumentSerialization;
 import datawave.query.DocumentSerialization.ReturnType;
 import datawave.query.attributes.AttributeKeepFilter;
 import datawave.query.attributes.Document;
@@ -37,6 +38,8 @@ import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.iterator.aggregation.DocumentDataCache;
+import datawave.query.iterator.pipeline.CompletionPipelineIterator;
 import datawave.query.iterator.pipeline.PipelineFactory;
 import datawave.query.iterator.pipeline.PipelineIterator;
 import datawave.query.iterator.profile.EvaluationTrackingFunction;
@@ -59,7 +62,10 @@ import datawave.query.jexl.visitors.IteratorBuildingVisitor;
 import datawave.query.jexl.visitors.SatisfactionVisitor;
 import datawave.query.jexl.visitors.VariableNameVisitor;
 import datawave.query.postprocessing.tf.TFFactory;
+import datawave.query.postprocessing.tf.TermFrequencyBatch;
 import datawave.query.predicate.EmptyDocumentFilter;
+import datawave.query.predicate.EventDataQueryFieldFilter;
+import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.tracking.ActiveQuery;
 import datawave.query.tracking.ActiveQueryLog;
@@ -73,6 +79,7 @@ import datawave.query.util.Tuple3;
 import datawave.query.util.TupleToEntry;
 import datawave.query.util.TypeMetadata;
 import datawave.util.StringUtils;
+import datawave.util.UniversalSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
@@ -99,6 +106,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -182,6 +190,12 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     
     protected Map<String,Object> exceededOrEvaluationCache = null;
     
+    // fetches the term frequencies of the documents pending in the evaluation pipelines together
+    protected TermFrequencyBatch termFrequencyBatch = null;
+    
+    // the documents already aggregated by the scans of this query
+    protected DocumentDataCache documentDataCache = null;
+    
     public QueryIterator() {}
     
     public QueryIterator(QueryIterator other, IteratorEnvironment env) {
@@ -200,6 +214,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         this.typeMetadata = other.typeMetadata;
         this.exceededOrEvaluationCache = other.exceededOrEvaluationCache;
         this.trackingSpan = other.trackingSpan;
+        this.documentDataCache = other.documentDataCache;
         // Defer to QueryOptions to re-set all of the query options
         super.deepCopy(other);
     }
@@ -226,10 +241,15 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         
         this.exceededOrEvaluationCache = new HashMap<>();
         
+        if (getDocumentCacheBytes() > 0) {
+            DocumentDataCache.configure(env);
+            this.documentDataCache = DocumentDataCache.forQuery(getQueryId(), getDocumentCacheBytes());
+        }
+        
         // Parse the query
         try {
             this.script = JexlASTHelper.parseJexlQuery(this.getQuery());
-            this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic);
+            this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic, isCompiledEvaluation());
             
         } catch (Exception e) {
             throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
@@ -338,6 +358,23 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 }
             }
             
+            // when results are unordered, the position to resume from and the documents already returned beyond it are recorded in the cq
+            Set<String> completedDocuments = Collections.emptySet();
+            if (!range.isStartKeyInclusive() && unorderedResults) {
+                Key startKey = range.getStartKey();
+                // a key returned with a document rather than yielded holds the yield key it would have had
+                Key resumeKey = CompletionPipelineIterator.getResumeKey(startKey);
+                if (resumeKey != null) {
+                    startKey = resumeKey;
+                }
+                completedDocuments = CompletionPipelineIterator.getCompletedDocuments(startKey);
+                if (resumeKey != null || !completedDocuments.isEmpty()) {
+                    // remove the completed documents from the range
+                    startKey = CompletionPipelineIterator.getLastKeyEvaluated(startKey);
+                    this.range = range = new Range(startKey, range.isStartKeyInclusive(), range.getEndKey(), range.isEndKeyInclusive());
+                }
+            }
+            
             // determine whether this is a document specific range
             Range documentRange = isDocumentSpecificRange(range) ? range : null;
             
@@ -376,13 +413,26 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 this.seekKeySource = buildDocumentIterator(documentRange, range, columnFamilies, inclusive);
             }
             
+            // only concurrent pipelines have other documents pending when one fetches its term frequencies
+            this.termFrequencyBatch = null;
+            if (isTermFrequenciesRequired() && getTermFrequencyBatchSize() > 1 && getMaxEvaluationPipelines() > 1 && !getSerialPipelineRequest()) {
+                this.termFrequencyBatch = new TermFrequencyBatch(sourceForDeepCopies.deepCopy(myEnvironment), getTermFrequencyBatchSize());
+            }
+            
             // Create the pipeline iterator for document aggregation and
             // evaluation within a thread pool
+            // results are only returned unordered when every returned key can be resumed from
+            boolean unordered = getUnorderedResultsRequest() && documentRange == null && range.getStartKey() != null
+                            && !(getGroupingTransform() != null && this.groupFieldsBatchSize > 0);
             PipelineIterator pipelineIter = PipelineFactory.createIterator(this.seekKeySource, getMaxEvaluationPipelines(), getMaxPipelineCachedResults(),
-                            getSerialPipelineRequest(), querySpanCollector, trackingSpan, this, sourceForDeepCopies.deepCopy(myEnvironment), myEnvironment,
-                            yield, yieldThresholdMs);
+                            getSerialPipelineRequest(), getCompletionPipelineRequest(), unordered, querySpanCollector, trackingSpan, this,
+                            new BlockingSeekIterator<>(sourceForDeepCopies.deepCopy(myEnvironment)), myEnvironment, yield, yieldThresholdMs);
             
             pipelineIter.setCollectTimingDetails(collectTimingDetails);
+            pipelineIter.setScheduling(getSchedulingKey(), getSchedulingWeight());
+            if (unordered && pipelineIter instanceof CompletionPipelineIterator) {
+                ((CompletionPipelineIterator) pipelineIter).setResumePosition(range.getStartKey(), completedDocuments);
+            }
             // TODO pipelineIter.setStatsdHostAndPort(statsdHostAndPort);
             
             pipelineIter.startPipeline();
@@ -428,9 +478,15 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                                 return true;
                             });
             
+            // when packing several documents into each value, the batch is compressed rather than the documents
+            boolean batchDocuments = getDocumentsPerValue() > 1;
+            boolean compressDocuments = isCompressResults() && !batchDocuments;
             if (this.getReturnType() == ReturnType.kryo) {
                 // Serialize the Document using Kryo
-                this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), compressDocuments));
+            } else if (this.getReturnType() == ReturnType.kryocompact) {
+                // Serialize the Document using Kryo, writing the attribute classes by id
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), compressDocuments, true));
             } else if (this.getReturnType() == ReturnType.writable) {
                 // Use the Writable interface to serialize the Document
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new WritableDocumentSerializer(isReducedResponse()));
@@ -442,22 +498,27 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             }
             
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                KryoDocumentDeserializer dser = new KryoDocumentDeserializer(this.getReturnType() == ReturnType.kryocompact);
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.trace("after serializing, keyValueEntry:" + dser.apply(keyValueEntry));
                     return true;
                 });
             }
             
-            // now add the result count to the keys (required when not sorting UIDs)
+            // now add the result count to the keys (required when not sorting UIDs or when the results are unordered)
             // Cannot do this on document specific ranges as the count would place the keys outside the initial range
-            if (!sortedUIDs && documentRange == null) {
+            if ((!sortedUIDs || unordered) && documentRange == null) {
                 this.serializedDocuments = new ResultCountingIterator(serializedDocuments, resultCount, yield);
             } else if (this.sortedUIDs) {
                 // we have sorted UIDs, so we can mask out the cq
                 this.serializedDocuments = new KeyAdjudicator<>(serializedDocuments, yield);
             }
             
+            if (batchDocuments) {
+                this.serializedDocuments = new DocumentBatchingIterator(serializedDocuments, getDocumentsPerValue(), getDocumentBatchBytes(),
+                                isCompressResults(), yield);
+            }
+            
             // only add the final document tracking iterator which sends stats back to the client if collectTimingDetails is true
             if (collectTimingDetails) {
                 // if there is no document to return, then add an empty document
@@ -466,9 +527,13 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                                 this.getReturnType(), this.isReducedResponse(), this.isCompressResults(), this.yield);
             }
             if (log.isTraceEnabled()) {
-                KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
+                KryoDocumentDeserializer dser = new KryoDocumentDeserializer(this.getReturnType() == ReturnType.kryocompact);
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
-                    log.debug("finally, considering:" + dser.apply(keyValueEntry));
+                    if (DocumentSerialization.isBatch(keyValueEntry.getValue().get())) {
+                        log.debug("finally, considering a batch of documents ending with:" + keyValueEntry.getKey());
+                    } else {
+                        log.debug("finally, considering:" + dser.apply(keyValueEntry));
+                    }
                     return true;
                 });
             }
@@ -609,7 +674,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 try {
                     
                     myScript = JexlASTHelper.parseJexlQuery(queries.getValue());
-                    eval = new JexlEvaluation(queries.getValue(), myArithmetic);
+                    eval = new JexlEvaluation(queries.getValue(), myArithmetic, isCompiledEvaluation());
                     
                 } catch (Exception e) {
                     throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
@@ -671,6 +736,13 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         return docIter;
     }
     
+    /**
+     * @return the batch fetching the term frequencies of the pending documents, or null if each document fetches its own
+     */
+    public TermFrequencyBatch getTermFrequencyBatch() {
+        return termFrequencyBatch;
+    }
+    
     /**
      * There was a request to create a serial pipeline. The factory may not choose to honor this.
      * 
@@ -680,6 +752,25 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         return serialEvaluationPipeline;
     }
     
+    /**
+     * There was a request to create a completion driven pipeline. The factory may not choose to honor this.
+     * 
+     * @return
+     */
+    private boolean getCompletionPipelineRequest() {
+        return completionEvaluationPipeline;
+    }
+    
+    /**
+     * There was a request to return results in the order they complete. The factory may not choose to honor this, and it is not honored when the returned keys
+     * could not be resumed from: for document specific ranges, or when the documents are grouped on the tserver.
+     * 
+     * @return
+     */
+    private boolean getUnorderedResultsRequest() {
+        return unorderedResults;
+    }
+    
     /**
      * A routine which should always be used to create deep copies of the source. This ensures that we are thread safe when doing these copies.
      * 
@@ -768,8 +859,12 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 }
             };
         } else {
-            docMapper = new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality, getEvaluationFilter(),
-                            this.includeHierarchyFields, this.includeHierarchyFields);
+            KeyToDocumentData keyToDocumentData = createKeyToDocumentData(deepSourceCopy, getDocumentFilter(documentSpecificSource));
+            if (documentDataCache != null) {
+                keyToDocumentData.setDocumentDataCache(documentDataCache, getDocumentDataCacheScope(documentSpecificSource));
+                keyToDocumentData.setQuerySpan(trackingSpan);
+            }
+            docMapper = keyToDocumentData;
         }
         
         Iterator<Entry<DocumentData,Document>> sourceIterator = Iterators.transform(documentSpecificSource, from -> {
@@ -781,8 +876,13 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         // removing Attributes for this Document
         // which do not fall within the expected time range
         Iterator<Entry<Key,Document>> documents = null;
-        Aggregation a = new Aggregation(this.getTimeFilter(), this.typeMetadataWithNonIndexed, compositeMetadata, this.isIncludeGroupingContext(),
-                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes());
+        // the fields not needed for evaluation may be left unmaterialized until the document passes evaluation, unless the document permutations need them
+        Collection<String> evaluationFields = null;
+        if (isColumnarDocuments() && !this.disableEvaluation && this.getDocumentPermutations().isEmpty()) {
+            evaluationFields = VariableNameVisitor.parseQuery(getScript(documentSpecificSource));
+        }
+        final Aggregation a = new Aggregation(this.getTimeFilter(), this.typeMetadataWithNonIndexed, compositeMetadata, this.isIncludeGroupingContext(),
+                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes(), evaluationFields);
         if (gatherTimingDetails()) {
             documents = Iterators.transform(sourceIterator, new EvaluationTrackingFunction<>(QuerySpan.Stage.Aggregation, trackingSpan, a));
         } else {
@@ -816,6 +916,11 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             documents = getEvaluation(documentSpecificSource, deepSourceCopy, documents, compositeMetadata, typeMetadataWithNonIndexed);
         }
         
+        // materialize the rest of the documents that passed evaluation
+        if (evaluationFields != null) {
+            documents = Iterators.transform(documents, a::materialize);
+        }
+        
         // a hook to allow mapping the document such as with the TLD or Parent
         // query logics
         // or if the document was not aggregated in the first place because the
@@ -901,6 +1006,40 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         return documents;
     }
     
+    /**
+     * Get the filter for the event entries read for each document. This is the evaluation filter if there is one. Otherwise, if the results are projected onto
+     * a whitelist and nothing else in the pipeline needs the other fields, then only the entries of the fields in the query or the whitelist (and the
+     * components of the composites among them) are read.
+     * 
+     * @param documentSource
+     * @return the filter, or null to read every entry
+     */
+    protected EventDataQueryFilter getDocumentFilter(NestedQueryIterator<Key> documentSource) {
+        EventDataQueryFilter filter = getEvaluationFilter();
+        if (filter != null || !this.projectResults || !this.useWhiteListedFields || this.whiteListedFields instanceof UniversalSet
+                        || !this.getDocumentPermutations().isEmpty() || (this.postProcessingFunctions != null && !this.postProcessingFunctions.isEmpty())) {
+            return filter;
+        }
+        
+        ASTJexlScript documentScript = getScript(documentSource);
+        Set<String> queryFields = VariableNameVisitor.parseQuery(documentScript);
+        if (queryFields.contains(Constants.ANY_FIELD)) {
+            return null;
+        }
+        
+        Set<String> fields = new HashSet<>(this.whiteListedFields);
+        if (this.compositeMetadata != null) {
+            for (Multimap<String,String> compositeToFields : this.compositeMetadata.getCompositeFieldMapByType().values()) {
+                for (String composite : compositeToFields.keySet()) {
+                    if (queryFields.contains(composite) || fields.contains(composite)) {
+                        fields.addAll(compositeToFields.get(composite));
+                    }
+                }
+            }
+        }
+        return new EventDataQueryFieldFilter(documentScript, getNonEventFields(), fields);
+    }
+    
     protected Iterator<Entry<Key,Document>> getEvaluation(SortedKeyValueIterator<Key,Value> sourceDeepCopy, Iterator<Entry<Key,Document>> documents,
                     CompositeMetadata compositeMetadata, TypeMetadata typeMetadataForEval) {
         return getEvaluation(null, sourceDeepCopy, documents, compositeMetadata, typeMetadataForEval);
@@ -928,7 +1067,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.isTermFrequenciesRequired()) {
                 Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> tfFunction;
                 tfFunction = TFFactory.getFunction(getScript(documentSource), getContentExpansionFields(), getTermFrequencyFields(), this.getTypeMetadata(),
-                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment));
+                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment), termFrequencyBatch);
                 
                 itrWithContext = TraceIterators.transform(tupleItr, tfFunction, "Term Frequency Lookup");
             } else {
@@ -968,16 +1107,16 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     protected JexlEvaluation getJexlEvaluation(NestedQueryIterator<Key> documentSource) {
         
         if (null == documentSource) {
-            return new JexlEvaluation(query, getArithmetic());
+            return new JexlEvaluation(query, getArithmetic(), isCompiledEvaluation());
         }
         JexlEvaluation jexlEvaluationFunction = null;
         NestedQuery<Key> nestedQuery = documentSource.getNestedQuery();
         if (null == nestedQuery) {
-            jexlEvaluationFunction = new JexlEvaluation(query, getArithmetic());
+            jexlEvaluationFunction = new JexlEvaluation(query, getArithmetic(), isCompiledEvaluation());
         } else {
             jexlEvaluationFunction = nestedQuery.getEvaluation();
             if (null == jexlEvaluationFunction) {
-                return new JexlEvaluation(query, getArithmetic());
+                return new JexlEvaluation(query, getArithmetic(), isCompiledEvaluation());
             }
         }
         return jexlEvaluationFunction;
@@ -1008,6 +1147,34 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         }
     }
     
+    /**
+     * Create the function that aggregates the keys of each document for evaluation
+     * 
+     * @param deepSourceCopy
+     * @param documentFilter
+     * @return the function
+     */
+    protected KeyToDocumentData createKeyToDocumentData(SortedKeyValueIterator<Key,Value> deepSourceCopy, EventDataQueryFilter documentFilter) {
+        return new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality, documentFilter, this.includeHierarchyFields,
+                        this.includeHierarchyFields);
+    }
+    
+    /**
+     * The attributes aggregated for a document depend on the query it is aggregated for, so the cached documents are scoped by the query
+     * 
+     * @param documentSource
+     * @return the query the documents of the source are aggregated for
+     */
+    protected String getDocumentDataCacheScope(NestedQueryIterator<Key> documentSource) {
+        if (null != documentSource) {
+            NestedQuery<Key> query = documentSource.getNestedQuery();
+            if (null != query && null != query.getQuery()) {
+                return query.getQuery();
+            }
+        }
+        return getQuery();
+    }
+    
     protected Iterator<Entry<Key,Document>> mapDocument(SortedKeyValueIterator<Key,Value> deepSourceCopy, Iterator<Entry<Key,Document>> documents,
                     CompositeMetadata compositeMetadata) {
         // now lets pull the data if we need to
@@ -1323,13 +1490,15 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                         .setHdfsFileSystem(this.getFileSystemCache()).setQueryLock(this.getQueryLock())
                         .setIvaratorCacheDirURIAlternatives(this.getIvaratorCacheBaseURIsAsList()).setQueryId(this.getQueryId()).setScanId(this.getScanId())
                         .setIvaratorCacheSubDirPrefix(this.getHdfsCacheSubDirPrefix()).setHdfsFileCompressionCodec(this.getHdfsFileCompressionCodec())
-                        .setIvaratorCacheBufferSize(this.getIvaratorCacheBufferSize())
+                        .setIvaratorCacheBufferSize(this.getIvaratorCacheBufferSize()).setIvaratorCacheOffHeapBuffer(this.isIvaratorCacheOffHeapBuffer())
+                        .setIvaratorCacheLocalDirURI(this.getIvaratorCacheLocalDirURI())
+                        .setIvaratorStreamingFill(this.isIvaratorStreamingFill()).setSchedulingWeight(this.getSchedulingWeight())
                         .setIvaratorCacheScanPersistThreshold(this.getIvaratorCacheScanPersistThreshold())
                         .setIvaratorCacheScanTimeout(this.getIvaratorCacheScanTimeout()).setMaxRangeSplit(this.getMaxIndexRangeSplit())
-                        .setIvaratorMaxOpenFiles(this.getIvaratorMaxOpenFiles()).setIvaratorSources(this, this.getMaxIvaratorSources())
-                        .setIncludes(indexedFields).setTermFrequencyFields(this.getTermFrequencyFields()).setIsQueryFullySatisfied(isQueryFullySatisfied)
-                        .setSortedUIDs(sortedUIDs).limit(documentRange).disableIndexOnly(disableFiEval).limit(this.sourceLimit)
-                        .setCollectTimingDetails(this.collectTimingDetails).setQuerySpanCollector(this.querySpanCollector)
+                        .setIvaratorMaxOpenFiles(this.getIvaratorMaxOpenFiles()).setIvaratorMaxCandidates(this.getIvaratorMaxCandidates())
+                        .setIvaratorSources(this, this.getMaxIvaratorSources()).setIncludes(indexedFields).setTermFrequencyFields(this.getTermFrequencyFields())
+                        .setIsQueryFullySatisfied(isQueryFullySatisfied).setSortedUIDs(sortedUIDs).limit(documentRange).disableIndexOnly(disableFiEval)
+                        .limit(this.sourceLimit).setCollectTimingDetails(this.collectTimingDetails).setQuerySpanCollector(this.querySpanCollector)
                         .setIndexOnlyFields(this.getAllIndexOnlyFields()).setAllowTermFrequencyLookup(this.allowTermFrequencyLookup)
                         .setCompositeMetadata(compositeMetadata).setExceededOrEvaluationCache(exceededOrEvaluationCache);
         // TODO: .setStatsPort(this.statsdHostAndPort);
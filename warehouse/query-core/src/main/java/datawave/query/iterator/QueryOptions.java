@@ -15,6 +15,7 @@ import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 import datawave.core.iterators.ColumnRangeIterator;
 import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl.HdfsBackedControl;
+import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.core.iterators.querylock.QueryLock;
 import datawave.data.type.Type;
@@ -195,6 +196,28 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String IVARATOR_CACHE_BUFFER_SIZE = "ivarator.cache.buffer.size";
     
+    public static final String IVARATOR_CACHE_OFF_HEAP_BUFFER = "ivarator.cache.off.heap.buffer";
+    
+    public static final String IVARATOR_CACHE_LOCAL_DIR_URI = "ivarator.cache.local.dir.uri";
+    
+    public static final String IVARATOR_STREAMING_FILL = "ivarator.streaming.fill";
+    
+    public static final String SCHEDULING_WEIGHT = "scheduling.weight";
+    
+    public static final String COMPILED_EVALUATION = "compiled.evaluation";
+    
+    public static final String COLUMNAR_DOCUMENTS = "columnar.documents";
+    
+    public static final String DOCUMENTS_PER_VALUE = "documents.per.value";
+    
+    public static final String DOCUMENT_BATCH_BYTES = "document.batch.bytes";
+    
+    public static final String TERM_FREQUENCY_BATCH_SIZE = "term.frequency.batch.size";
+    
+    public static final String DOCUMENT_CACHE_BYTES = "document.cache.bytes";
+    
+    public static final String TLD_CHILD_AGGREGATION_THREADS = "tld.child.aggregation.threads";
+    
     public static final String IVARATOR_SCAN_PERSIST_THRESHOLD = "ivarator.scan.persist.threshold";
     
     public static final String IVARATOR_SCAN_TIMEOUT = "ivarator.scan.timeout";
@@ -205,6 +228,8 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String MAX_IVARATOR_OPEN_FILES = "max.ivarator.open.files";
     
+    public static final String MAX_IVARATOR_CANDIDATES = "max.ivarator.candidates";
+    
     public static final String MAX_IVARATOR_SOURCES = "max.ivarator.sources";
     
     public static final String COMPRESS_SERVER_SIDE_RESULTS = "compress.server.side.results";
@@ -213,6 +238,10 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String SERIAL_EVALUATION_PIPELINE = "serial.evaluation.pipeline";
     
+    public static final String COMPLETION_EVALUATION_PIPELINE = "completion.evaluation.pipeline";
+    
+    public static final String UNORDERED_RESULTS = "unordered.results";
+    
     public static final String MAX_PIPELINE_CACHED_RESULTS = "max.pipeline.cached.results";
     
     public static final String BATCHED_QUERY = "query.iterator.batch";
@@ -307,9 +336,21 @@ public class QueryOptions implements OptionDescriber {
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeapBuffer = false;
+    protected String ivaratorCacheLocalDirURI = null;
+    protected boolean ivaratorStreamingFill = false;
+    protected int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
+    protected boolean compiledEvaluation = false;
+    protected boolean columnarDocuments = false;
+    protected int documentsPerValue = 1;
+    protected int documentBatchBytes = 1024 * 1024;
+    protected int termFrequencyBatchSize = 1;
+    protected long documentCacheBytes = 0;
+    protected int tldChildAggregationThreads = 1;
     
     protected int maxIndexRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
+    protected int ivaratorMaxCandidates = 0;
     
     protected int maxIvaratorSources = 33;
     
@@ -345,6 +386,10 @@ public class QueryOptions implements OptionDescriber {
     
     protected boolean serialEvaluationPipeline = false;
     
+    protected boolean completionEvaluationPipeline = false;
+    
+    protected boolean unorderedResults = false;
+    
     protected Queue<Entry<Range,String>> batchStack;
     
     protected TypeMetadataProvider typeMetadataProvider;
@@ -424,11 +469,23 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorCacheBaseURIAlternatives = other.ivaratorCacheBaseURIAlternatives;
         this.hdfsSiteConfigURLs = other.hdfsSiteConfigURLs;
         this.ivaratorCacheBufferSize = other.ivaratorCacheBufferSize;
+        this.ivaratorCacheOffHeapBuffer = other.ivaratorCacheOffHeapBuffer;
+        this.ivaratorCacheLocalDirURI = other.ivaratorCacheLocalDirURI;
+        this.ivaratorStreamingFill = other.ivaratorStreamingFill;
+        this.schedulingWeight = other.schedulingWeight;
+        this.compiledEvaluation = other.compiledEvaluation;
+        this.columnarDocuments = other.columnarDocuments;
+        this.documentsPerValue = other.documentsPerValue;
+        this.documentBatchBytes = other.documentBatchBytes;
+        this.termFrequencyBatchSize = other.termFrequencyBatchSize;
+        this.documentCacheBytes = other.documentCacheBytes;
+        this.tldChildAggregationThreads = other.tldChildAggregationThreads;
         this.ivaratorCacheScanPersistThreshold = other.ivaratorCacheScanPersistThreshold;
         this.ivaratorCacheScanTimeout = other.ivaratorCacheScanTimeout;
         this.hdfsFileCompressionCodec = other.hdfsFileCompressionCodec;
         this.maxIndexRangeSplit = other.maxIndexRangeSplit;
         this.ivaratorMaxOpenFiles = other.ivaratorMaxOpenFiles;
+        this.ivaratorMaxCandidates = other.ivaratorMaxCandidates;
         this.maxIvaratorSources = other.maxIvaratorSources;
         
         this.yieldThresholdMs = other.yieldThresholdMs;
@@ -846,6 +903,101 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeapBuffer() {
+        return ivaratorCacheOffHeapBuffer;
+    }
+    
+    public void setIvaratorCacheOffHeapBuffer(boolean ivaratorCacheOffHeapBuffer) {
+        this.ivaratorCacheOffHeapBuffer = ivaratorCacheOffHeapBuffer;
+    }
+    
+    public String getIvaratorCacheLocalDirURI() {
+        return ivaratorCacheLocalDirURI;
+    }
+    
+    public void setIvaratorCacheLocalDirURI(String ivaratorCacheLocalDirURI) {
+        this.ivaratorCacheLocalDirURI = ivaratorCacheLocalDirURI;
+    }
+    
+    public boolean isIvaratorStreamingFill() {
+        return ivaratorStreamingFill;
+    }
+    
+    public void setIvaratorStreamingFill(boolean ivaratorStreamingFill) {
+        this.ivaratorStreamingFill = ivaratorStreamingFill;
+    }
+    
+    public int getSchedulingWeight() {
+        return schedulingWeight;
+    }
+    
+    public void setSchedulingWeight(int schedulingWeight) {
+        this.schedulingWeight = schedulingWeight;
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return compiledEvaluation;
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        this.compiledEvaluation = compiledEvaluation;
+    }
+    
+    public boolean isColumnarDocuments() {
+        return columnarDocuments;
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        this.columnarDocuments = columnarDocuments;
+    }
+    
+    public int getDocumentsPerValue() {
+        return documentsPerValue;
+    }
+    
+    public void setDocumentsPerValue(int documentsPerValue) {
+        this.documentsPerValue = documentsPerValue;
+    }
+    
+    public int getDocumentBatchBytes() {
+        return documentBatchBytes;
+    }
+    
+    public void setDocumentBatchBytes(int documentBatchBytes) {
+        this.documentBatchBytes = documentBatchBytes;
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return termFrequencyBatchSize;
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        this.termFrequencyBatchSize = termFrequencyBatchSize;
+    }
+    
+    public long getDocumentCacheBytes() {
+        return documentCacheBytes;
+    }
+    
+    public void setDocumentCacheBytes(long documentCacheBytes) {
+        this.documentCacheBytes = documentCacheBytes;
+    }
+    
+    public int getTldChildAggregationThreads() {
+        return tldChildAggregationThreads;
+    }
+    
+    public void setTldChildAggregationThreads(int tldChildAggregationThreads) {
+        this.tldChildAggregationThreads = tldChildAggregationThreads;
+    }
+    
+    /**
+     * @return the key the ivarator and evaluation tasks of this query share the tserver threads by
+     */
+    public String getSchedulingKey() {
+        return IteratorThreadPoolManager.getSchedulingKey(queryId, scanId);
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
@@ -878,6 +1030,14 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorMaxOpenFiles = ivaratorMaxOpenFiles;
     }
     
+    public int getIvaratorMaxCandidates() {
+        return ivaratorMaxCandidates;
+    }
+    
+    public void setIvaratorMaxCandidates(int ivaratorMaxCandidates) {
+        this.ivaratorMaxCandidates = ivaratorMaxCandidates;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -1032,6 +1192,18 @@ public class QueryOptions implements OptionDescriber {
         options.put(IVARATOR_CACHE_BASE_URI_ALTERNATIVES,
                         "A list of URIs of where all query's caches are to be located for ivarators (caching field index iterators)");
         options.put(IVARATOR_CACHE_BUFFER_SIZE, "The size of the hdfs cache buffer size (items held in memory before dumping to hdfs).  Default is 10000.");
+        options.put(IVARATOR_CACHE_OFF_HEAP_BUFFER, "Hold the hdfs cache buffer in off heap memory rather than as java objects.  Default is false.");
+        options.put(IVARATOR_CACHE_LOCAL_DIR_URI,
+                        "A URI of a tserver local directory where the hdfs cache buffer is persisted before hdfs.  Default is none.");
+        options.put(IVARATOR_STREAMING_FILL, "Return sorted ivarator results as the cache fills progress instead of once they complete.  Default is false.");
+        options.put(SCHEDULING_WEIGHT, "The relative share of the tserver ivarator and evaluation threads given to this query.  Default is 1.");
+        options.put(COMPILED_EVALUATION, "Compile the query for evaluation, interpreting only the nodes that cannot be compiled.  Default is false.");
+        options.put(COLUMNAR_DOCUMENTS, "Leave the fields not needed for evaluation unmaterialized until a document passes evaluation.  Default is false.");
+        options.put(DOCUMENTS_PER_VALUE, "The maximum number of documents to pack into each returned value, sharing one compression frame.  Default is 1.");
+        options.put(DOCUMENT_BATCH_BYTES, "The maximum number of serialized bytes to pack into each returned value.  Default is 1 MB.");
+        options.put(TERM_FREQUENCY_BATCH_SIZE, "The maximum number of pending documents whose term frequencies are fetched in a single sweep.  Default is 1.");
+        options.put(DOCUMENT_CACHE_BYTES, "The maximum number of bytes of aggregated documents cached for the other scans of the query on a tserver.  Default is 0 (disabled).");
+        options.put(TLD_CHILD_AGGREGATION_THREADS, "The number of threads the children of a top level document are aggregated on.  Default is 1.");
         options.put(IVARATOR_SCAN_PERSIST_THRESHOLD,
                         "The number of underlying field index keys scanned before the hdfs cache buffer is forced to persist).  Default is 100000.");
         options.put(IVARATOR_SCAN_TIMEOUT, "The time after which the hdfs cache buffer is forced to persist.  Default is 60 minutes.");
@@ -1039,6 +1211,8 @@ public class QueryOptions implements OptionDescriber {
                         "The maximum number of ranges to split a field index scan (ivarator) range into for multithreading.  Note the thread pool size is controlled via an accumulo property.");
         options.put(MAX_IVARATOR_OPEN_FILES,
                         "The maximum number of files that can be opened at one time during a merge sort.  If more that this number of files are created, then compactions will occur");
+        options.put(MAX_IVARATOR_CANDIDATES,
+                        "The maximum number of documents gathered from a sibling term of a conjunction to restrict its ivarators.  Default is 0 (disabled).");
         options.put(MAX_IVARATOR_SOURCES,
                         " The maximum number of sources to use for ivarators across all ivarated terms within the query.  Note the thread pool size is controlled via an accumulo property.");
         options.put(YIELD_THRESHOLD_MS,
@@ -1046,6 +1220,9 @@ public class QueryOptions implements OptionDescriber {
         options.put(COMPRESS_SERVER_SIDE_RESULTS, "GZIP compress the serialized Documents before returning to the webserver");
         options.put(MAX_EVALUATION_PIPELINES, "The max number of evaluation pipelines");
         options.put(SERIAL_EVALUATION_PIPELINE, "Forces us to use the serial pipeline. Allows us to still have a single thread for evaluation");
+        options.put(COMPLETION_EVALUATION_PIPELINE,
+                        "Handle evaluation pipelines in the order they complete rather than the order they were started. Ignored for serial pipelines");
+        options.put(UNORDERED_RESULTS, "Return results in the order their evaluations complete rather than in key order. Ignored for serial pipelines");
         options.put(MAX_PIPELINE_CACHED_RESULTS, "The max number of non-null evaluated results to cache beyond the evaluation pipelines in queue");
         options.put(DATE_INDEX_TIME_TRAVEL, "Whether the shards from before the event should be gathered from the dateIndex");
         
@@ -1401,6 +1578,50 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorCacheBufferSize(Integer.parseInt(options.get(IVARATOR_CACHE_BUFFER_SIZE)));
         }
         
+        if (options.containsKey(IVARATOR_CACHE_OFF_HEAP_BUFFER)) {
+            this.setIvaratorCacheOffHeapBuffer(Boolean.parseBoolean(options.get(IVARATOR_CACHE_OFF_HEAP_BUFFER)));
+        }
+        
+        if (options.containsKey(IVARATOR_CACHE_LOCAL_DIR_URI)) {
+            this.setIvaratorCacheLocalDirURI(options.get(IVARATOR_CACHE_LOCAL_DIR_URI));
+        }
+        
+        if (options.containsKey(IVARATOR_STREAMING_FILL)) {
+            this.setIvaratorStreamingFill(Boolean.parseBoolean(options.get(IVARATOR_STREAMING_FILL)));
+        }
+        
+        if (options.containsKey(SCHEDULING_WEIGHT)) {
+            this.setSchedulingWeight(Integer.parseInt(options.get(SCHEDULING_WEIGHT)));
+        }
+        
+        if (options.containsKey(COMPILED_EVALUATION)) {
+            this.setCompiledEvaluation(Boolean.parseBoolean(options.get(COMPILED_EVALUATION)));
+        }
+        
+        if (options.containsKey(COLUMNAR_DOCUMENTS)) {
+            this.setColumnarDocuments(Boolean.parseBoolean(options.get(COLUMNAR_DOCUMENTS)));
+        }
+        
+        if (options.containsKey(DOCUMENTS_PER_VALUE)) {
+            this.setDocumentsPerValue(Integer.parseInt(options.get(DOCUMENTS_PER_VALUE)));
+        }
+        
+        if (options.containsKey(DOCUMENT_BATCH_BYTES)) {
+            this.setDocumentBatchBytes(Integer.parseInt(options.get(DOCUMENT_BATCH_BYTES)));
+        }
+        
+        if (options.containsKey(TERM_FREQUENCY_BATCH_SIZE)) {
+            this.setTermFrequencyBatchSize(Integer.parseInt(options.get(TERM_FREQUENCY_BATCH_SIZE)));
+        }
+        
+        if (options.containsKey(DOCUMENT_CACHE_BYTES)) {
+            this.setDocumentCacheBytes(Long.parseLong(options.get(DOCUMENT_CACHE_BYTES)));
+        }
+        
+        if (options.containsKey(TLD_CHILD_AGGREGATION_THREADS)) {
+            this.setTldChildAggregationThreads(Integer.parseInt(options.get(TLD_CHILD_AGGREGATION_THREADS)));
+        }
+        
         if (options.containsKey(IVARATOR_SCAN_PERSIST_THRESHOLD)) {
             this.setIvaratorCacheScanPersistThreshold(Long.parseLong(options.get(IVARATOR_SCAN_PERSIST_THRESHOLD)));
         }
@@ -1417,6 +1638,10 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorMaxOpenFiles(Integer.parseInt(options.get(MAX_IVARATOR_OPEN_FILES)));
         }
         
+        if (options.containsKey(MAX_IVARATOR_CANDIDATES)) {
+            this.setIvaratorMaxCandidates(Integer.parseInt(options.get(MAX_IVARATOR_CANDIDATES)));
+        }
+        
         if (options.containsKey(MAX_IVARATOR_SOURCES)) {
             this.setMaxIvaratorSources(Integer.parseInt(options.get(MAX_IVARATOR_SOURCES)));
         }
@@ -1437,6 +1662,14 @@ public class QueryOptions implements OptionDescriber {
             this.setSerialEvaluationPipeline(Boolean.parseBoolean(options.get(SERIAL_EVALUATION_PIPELINE)));
         }
         
+        if (options.containsKey(COMPLETION_EVALUATION_PIPELINE)) {
+            this.setCompletionEvaluationPipeline(Boolean.parseBoolean(options.get(COMPLETION_EVALUATION_PIPELINE)));
+        }
+        
+        if (options.containsKey(UNORDERED_RESULTS)) {
+            this.setUnorderedResults(Boolean.parseBoolean(options.get(UNORDERED_RESULTS)));
+        }
+        
         if (options.containsKey(MAX_PIPELINE_CACHED_RESULTS)) {
             this.setMaxPipelineCachedResults(Integer.parseInt(options.get(MAX_PIPELINE_CACHED_RESULTS)));
         }
@@ -1495,6 +1728,14 @@ public class QueryOptions implements OptionDescriber {
         this.serialEvaluationPipeline = serialEvaluationPipeline;
     }
     
+    private void setCompletionEvaluationPipeline(boolean completionEvaluationPipeline) {
+        this.completionEvaluationPipeline = completionEvaluationPipeline;
+    }
+    
+    private void setUnorderedResults(boolean unorderedResults) {
+        this.unorderedResults = unorderedResults;
+    }
+    
     protected void validateTypeMetadata(Map<String,String> options) {
         if (options.containsKey(TYPE_METADATA_AUTHS)) {
             String typeMetadataAuthsString = options.get(TYPE_METADATA_AUTHS);
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import datawave.query.attributes.Attribute;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -52,6 +53,23 @@ public class DocumentData implements Comparable<DocumentData> {
         this.data = data;
     }
     
+    /**
+     * @return the approximate number of bytes held by the keys and values of this document, with the keys sized by {@link Attribute#sizeInBytes(Key)}
+     */
+    public long sizeInBytes() {
+        // 32 for the object overhead and the three references
+        long size = 32 + Attribute.sizeInBytes(key);
+        for (Key docKey : docKeys) {
+            // 32 for the set entry
+            size += 32 + Attribute.sizeInBytes(docKey);
+        }
+        for (Entry<Key,Value> entry : data) {
+            // 24 for the entry, 16 for the value and 12 for its array overhead
+            size += 52 + Attribute.sizeInBytes(entry.getKey()) + entry.getValue().getSize();
+        }
+        return size;
+    }
+    
     @Override
     public int hashCode() {
         HashCodeBuilder hcb = new HashCodeBuilder(7, 11);
@@ -0,0 +1,193 @@
+package datawave.query.iterator.aggregation;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A bounded, least recently used cache of the aggregated {@link DocumentData} of the events scanned by a query, keyed by shard, datatype and uid. When a shard
+ * is scanned by several ranges of the same query, or a scan is torn down on a yield and rebuilt, the events that were already aggregated are served from the
+ * cache rather than being reread from the raw keys.
+ * 
+ * The cache of a query is shared by its query iterators on this tablet server, see {@link #forQuery(String, long)}. The entries are scoped by the query script
+ * that aggregated them as the attributes kept depend on it. The cached document data must not be modified.
+ * 
+ * Each cache is bounded by the approximate number of bytes its documents hold, see {@link DocumentData#sizeInBytes()}. The caches of the recently active
+ * queries are in turn bounded by the sum of their bounds, {@value #MAX_BYTES_PROP} in the tserver configuration (1 GB by default), least recently used
+ * queries first.
+ */
+public class DocumentDataCache {
+    private static final Logger log = Logger.getLogger(DocumentDataCache.class);
+    
+    public static final String MAX_BYTES_PROP = "tserver.datawave.document.cache.max.bytes";
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    
+    // how often the tserver configuration is re-read
+    private static final long CONFIGURE_INTERVAL = 10 * 1000;
+    private static final AtomicLong lastConfigured = new AtomicLong();
+    
+    // the caches of the recently active queries, weighed by the bytes each may hold
+    private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private static volatile Cache<String,DocumentDataCache> queryCaches = createQueryCaches(DEFAULT_MAX_BYTES);
+    
+    private final long maxQueryBytes;
+    
+    private final Cache<CacheKey,DocumentData> entries;
+    
+    /**
+     * @param maxQueryBytes
+     *            the maximum number of bytes of documents to cache
+     */
+    public DocumentDataCache(final long maxQueryBytes) {
+        this.maxQueryBytes = maxQueryBytes;
+        // a single segment, so that the least recently used documents are evicted first across the whole cache
+        this.entries = CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxQueryBytes)
+                        .weigher((CacheKey key, DocumentData data) -> toWeight(key.sizeInBytes() + data.sizeInBytes())).build();
+    }
+    
+    private static Cache<String,DocumentDataCache> createQueryCaches(long maxBytes) {
+        // a single segment, as a query cache may take up a large share of the bytes and the caches are only looked up when a scan starts
+        return CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxBytes)
+                        .weigher((String queryId, DocumentDataCache cache) -> toWeight(cache.getMaxQueryBytes())).expireAfterAccess(5, TimeUnit.MINUTES)
+                        .build();
+    }
+    
+    private static int toWeight(long bytes) {
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Get the cache shared by the query iterators of a query
+     * 
+     * @param queryId
+     *            the query id, or null for a cache that is not shared
+     * @param maxQueryBytes
+     *            the maximum number of bytes of documents to cache
+     * @return the cache
+     */
+    public static DocumentDataCache forQuery(String queryId, long maxQueryBytes) {
+        if (queryId == null) {
+            return new DocumentDataCache(maxQueryBytes);
+        }
+        return queryCaches.asMap().computeIfAbsent(queryId + '\0' + maxQueryBytes, k -> new DocumentDataCache(maxQueryBytes));
+    }
+    
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    /**
+     * @param bytes
+     *            the maximum number of bytes the caches of all queries may hold together. The caches of the least recently used queries are dropped until they
+     *            fit.
+     */
+    public static synchronized void setMaxBytes(long bytes) {
+        if (bytes != maxBytes) {
+            Cache<String,DocumentDataCache> resized = createQueryCaches(bytes);
+            resized.putAll(queryCaches.asMap());
+            queryCaches = resized;
+            maxBytes = bytes;
+        }
+    }
+    
+    /**
+     * Read the maximum number of bytes of all query caches from the tserver configuration. The configuration is re-read at most every ten seconds.
+     * 
+     * @param env
+     *            the iterator environment, or null to leave the setting as it is
+     */
+    public static void configure(IteratorEnvironment env) {
+        long now = System.currentTimeMillis();
+        long last = lastConfigured.get();
+        if (env == null || env.getConfig() == null || now - last < CONFIGURE_INTERVAL || !lastConfigured.compareAndSet(last, now)) {
+            return;
+        }
+        Map<String,String> properties = new TreeMap<>();
+        env.getConfig().getProperties(properties, k -> Objects.equals(k, MAX_BYTES_PROP));
+        long bytes = Long.parseLong(properties.getOrDefault(MAX_BYTES_PROP, Long.toString(DEFAULT_MAX_BYTES)));
+        if (bytes != maxBytes) {
+            log.info("Changing " + MAX_BYTES_PROP + " to " + bytes);
+            setMaxBytes(bytes);
+        }
+    }
+    
+    /**
+     * @param scope
+     *            the query script the document was aggregated for
+     * @param documentKey
+     *            a key of the document
+     * @return the cached document data, or null if not cached
+     */
+    public DocumentData get(String scope, Key documentKey) {
+        return entries.getIfPresent(new CacheKey(scope, documentKey));
+    }
+    
+    /**
+     * @param scope
+     *            the query script the document was aggregated for
+     * @param documentKey
+     *            a key of the document
+     * @param documentData
+     *            the aggregated document data
+     */
+    public void put(String scope, Key documentKey, DocumentData documentData) {
+        entries.put(new CacheKey(scope, documentKey), documentData);
+    }
+    
+    public long size() {
+        return entries.size();
+    }
+    
+    public long getMaxQueryBytes() {
+        return maxQueryBytes;
+    }
+    
+    /**
+     * The scope, shard and datatype\0uid of a document
+     */
+    private static final class CacheKey {
+        private final String scope;
+        private final ByteSequence row;
+        private final ByteSequence cf;
+        
+        CacheKey(String scope, Key documentKey) {
+            this.scope = scope;
+            // the key may be backed by a buffer that is reused
+            this.row = new ArrayByteSequence(documentKey.getRowData().toArray());
+            this.cf = new ArrayByteSequence(documentKey.getColumnFamilyData().toArray());
+        }
+        
+        /**
+         * @return the approximate number of bytes held by the row and column family, the scope is shared by the keys of a query
+         */
+        long sizeInBytes() {
+            // 32 for the object overhead and the three references, 2 * 28 for the byte sequences and their array overhead
+            return 88 + row.length() + cf.length();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return Objects.equals(scope, other.scope) && row.equals(other.row) && cf.equals(other.cf);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, row, cf);
+        }
+    }
+}
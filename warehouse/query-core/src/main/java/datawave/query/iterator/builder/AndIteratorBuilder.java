@@ -11,6 +11,8 @@ public class AndIteratorBuilder extends AbstractIteratorBuilder {
     
     Set<JexlNode> compositePredicates = new HashSet<>();
     
+    protected int maxCandidates = 0;
+    
     public Set<JexlNode> getCompositePredicates() {
         return compositePredicates;
     }
@@ -23,11 +25,23 @@ public class AndIteratorBuilder extends AbstractIteratorBuilder {
         this.compositePredicates = compositePredicates;
     }
     
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+    
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+    
     @SuppressWarnings({"rawtypes", "unchecked"})
     public <T> NestedIterator<T> build() {
         if (includes.isEmpty()) {
             throw new IllegalStateException("AndIterator has no inclusive sources!");
         }
-        return new AndIterator(includes, excludes);
+        AndIterator andIterator = new AndIterator(includes, excludes);
+        if (maxCandidates > 0) {
+            andIterator.setMaxCandidates(maxCandidates);
+        }
+        return andIterator;
     }
 }
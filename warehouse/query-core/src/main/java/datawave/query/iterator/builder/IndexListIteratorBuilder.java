@@ -87,21 +87,24 @@ public class IndexListIteratorBuilder extends IvaratorBuilder implements Iterato
                     listIterator = DatawaveFieldIndexListIteratorJexl.builder().withFieldName(new Text(field)).withValues(values).withTimeFilter(timeFilter)
                                     .withDatatypeFilter(datatypeFilter).negated(negated).withScanThreshold(ivaratorCacheScanPersistThreshold)
                                     .withScanTimeout(ivaratorCacheScanTimeout).withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
-                                    .withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles).withFileSystem(hdfsFileSystem)
-                                    .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
+                                    .withOffHeapBuffer(ivaratorCacheOffHeapBuffer).withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles)
+                                    .withFileSystem(hdfsFileSystem).withUniqueDir(new Path(hdfsCacheURI)).withLocalFileSystem(localFileSystem)
+                                    .withLocalUniqueDir(getIvaratorCacheLocalDir())
+                                    .withStreamingFill(ivaratorStreamingFill).withQueryLock(queryLock).allowDirResuse(true)
                                     .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                     .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                    .withIteratorEnv(env).build();
+                                    .withSchedulingKey(schedulingKey).withSchedulingWeight(schedulingWeight).withIteratorEnv(env).build();
                     
                 } else {
                     listIterator = DatawaveFieldIndexListIteratorJexl.builder().withFieldName(new Text(field)).withFST(fst).withTimeFilter(timeFilter)
                                     .withDatatypeFilter(datatypeFilter).negated(negated).withScanThreshold(ivaratorCacheScanPersistThreshold)
                                     .withScanTimeout(ivaratorCacheScanTimeout).withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
-                                    .withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles).withFileSystem(hdfsFileSystem)
-                                    .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
-                                    .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
+                                    .withOffHeapBuffer(ivaratorCacheOffHeapBuffer).withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles)
+                                    .withFileSystem(hdfsFileSystem).withUniqueDir(new Path(hdfsCacheURI)).withLocalFileSystem(localFileSystem)
+                                    .withLocalUniqueDir(getIvaratorCacheLocalDir()).withQueryLock(queryLock)
+                                    .allowDirResuse(true).withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                     .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                    .withIteratorEnv(env).build();
+                                    .withSchedulingKey(schedulingKey).withSchedulingWeight(schedulingWeight).withIteratorEnv(env).build();
                     
                 }
                 if (collectTimingDetails) {
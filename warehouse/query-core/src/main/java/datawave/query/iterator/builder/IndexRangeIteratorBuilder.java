@@ -78,11 +78,12 @@ public class IndexRangeIteratorBuilder extends IvaratorBuilder implements Iterat
                                 .withUpperBound(range.getUpper().toString()).upperInclusive(range.isUpperInclusive()).withTimeFilter(this.timeFilter)
                                 .withDatatypeFilter(this.datatypeFilter).negated(false).withScanThreshold(ivaratorCacheScanPersistThreshold)
                                 .withScanTimeout(ivaratorCacheScanTimeout).withHdfsBackedSetBufferSize(ivaratorCacheBufferSize)
-                                .withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles).withFileSystem(hdfsFileSystem)
-                                .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
-                                .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
+                                .withOffHeapBuffer(ivaratorCacheOffHeapBuffer).withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles)
+                                .withFileSystem(hdfsFileSystem).withUniqueDir(new Path(hdfsCacheURI)).withLocalFileSystem(localFileSystem)
+                                .withLocalUniqueDir(getIvaratorCacheLocalDir()).withQueryLock(queryLock)
+                                .allowDirResuse(true).withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                 .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                .withSubRanges(subRanges).withIteratorEnv(env).build();
+                                .withSubRanges(subRanges).withSchedulingKey(schedulingKey).withSchedulingWeight(schedulingWeight).withIteratorEnv(env).build();
                 
                 if (collectTimingDetails) {
                     rangeIterator.setCollectTimingDetails(true);
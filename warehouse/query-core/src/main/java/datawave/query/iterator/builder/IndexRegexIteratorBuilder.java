@@ -60,11 +60,13 @@ public class IndexRegexIteratorBuilder extends IvaratorBuilder implements Iterat
                 DatawaveFieldIndexRegexIteratorJexl regexIterator = DatawaveFieldIndexRegexIteratorJexl.builder().withFieldName(new Text(field))
                                 .withFieldValue(new Text(value)).withTimeFilter(timeFilter).withDatatypeFilter(datatypeFilter).negated(negated)
                                 .withScanThreshold(ivaratorCacheScanPersistThreshold).withScanTimeout(ivaratorCacheScanTimeout)
-                                .withHdfsBackedSetBufferSize(ivaratorCacheBufferSize).withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles)
-                                .withFileSystem(hdfsFileSystem).withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
+                                .withHdfsBackedSetBufferSize(ivaratorCacheBufferSize).withOffHeapBuffer(ivaratorCacheOffHeapBuffer)
+                                .withMaxRangeSplit(maxRangeSplit).withMaxOpenFiles(ivaratorMaxOpenFiles).withFileSystem(hdfsFileSystem)
+                                .withUniqueDir(new Path(hdfsCacheURI)).withLocalFileSystem(localFileSystem).withLocalUniqueDir(getIvaratorCacheLocalDir())
+                                .withQueryLock(queryLock).allowDirResuse(true)
                                 .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                 .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                .withIteratorEnv(env).build();
+                                .withSchedulingKey(schedulingKey).withSchedulingWeight(schedulingWeight).withIteratorEnv(env).build();
                 
                 if (collectTimingDetails) {
                     regexIterator.setCollectTimingDetails(true);
@@ -1,9 +1,11 @@
 package datawave.query.iterator.builder;
 
+import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.core.iterators.querylock.QueryLock;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.profile.QuerySpanCollector;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 /**
  * A base class used to build ivarators
@@ -17,6 +19,12 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeapBuffer = false;
+    protected FileSystem localFileSystem;
+    protected String ivaratorCacheLocalDirURI;
+    protected boolean ivaratorStreamingFill = false;
+    protected String schedulingKey = IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY;
+    protected int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
     protected boolean collectTimingDetails = false;
@@ -64,6 +72,61 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.ivaratorCacheBufferSize = ivaratorCacheBufferSize;
     }
     
+    public boolean isIvaratorCacheOffHeapBuffer() {
+        return ivaratorCacheOffHeapBuffer;
+    }
+    
+    public void setIvaratorCacheOffHeapBuffer(boolean ivaratorCacheOffHeapBuffer) {
+        this.ivaratorCacheOffHeapBuffer = ivaratorCacheOffHeapBuffer;
+    }
+    
+    public FileSystem getLocalFileSystem() {
+        return localFileSystem;
+    }
+    
+    public void setLocalFileSystem(FileSystem localFileSystem) {
+        this.localFileSystem = localFileSystem;
+    }
+    
+    public String getIvaratorCacheLocalDirURI() {
+        return ivaratorCacheLocalDirURI;
+    }
+    
+    public void setIvaratorCacheLocalDirURI(String ivaratorCacheLocalDirURI) {
+        this.ivaratorCacheLocalDirURI = ivaratorCacheLocalDirURI;
+    }
+    
+    /**
+     * @return the local cache dir, or null if the local tier is disabled
+     */
+    public Path getIvaratorCacheLocalDir() {
+        return (ivaratorCacheLocalDirURI == null ? null : new Path(ivaratorCacheLocalDirURI));
+    }
+    
+    public boolean isIvaratorStreamingFill() {
+        return ivaratorStreamingFill;
+    }
+    
+    public void setIvaratorStreamingFill(boolean ivaratorStreamingFill) {
+        this.ivaratorStreamingFill = ivaratorStreamingFill;
+    }
+    
+    public String getSchedulingKey() {
+        return schedulingKey;
+    }
+    
+    public void setSchedulingKey(String schedulingKey) {
+        this.schedulingKey = schedulingKey;
+    }
+    
+    public int getSchedulingWeight() {
+        return schedulingWeight;
+    }
+    
+    public void setSchedulingWeight(int schedulingWeight) {
+        this.schedulingWeight = schedulingWeight;
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return ivaratorCacheScanPersistThreshold;
     }
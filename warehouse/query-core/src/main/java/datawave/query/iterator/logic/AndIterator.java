@@ -13,6 +13,7 @@ import java.util.Set;
 import java.util.SortedSet;
 
 import datawave.query.iterator.Util.Transformer;
+import org.apache.accumulo.core.data.Key;
 import org.apache.log4j.Logger;
 
 import datawave.query.attributes.Document;
@@ -36,6 +37,9 @@ public class AndIterator<T extends Comparable<T>> implements NestedIterator<T> {
     
     private Document prevDocument, document;
     
+    // the maximum number of candidates gathered from a sibling to filter the ivarators, 0 to disable
+    private int maxCandidates = 0;
+    
     private static final Logger log = Logger.getLogger(AndIterator.class);
     
     public AndIterator(Iterable<NestedIterator<T>> sources) {
@@ -66,10 +70,16 @@ public class AndIterator<T extends Comparable<T>> implements NestedIterator<T> {
         transformer = Util.keyTransformer();
         transforms = new HashMap<>();
         
+        List<NestedIterator<T>> sources = includes;
+        if (maxCandidates > 0) {
+            sources = pushCandidates();
+        }
+        
         includeHeads = TreeMultimap.create(keyComp, itrComp);
-        includeHeads = initSubtree(includeHeads, includes, transformer, transforms, true);
+        includeHeads = initSubtree(includeHeads, sources, transformer, transforms, true);
         
-        if (excludes.isEmpty()) {
+        if (excludes.isEmpty() || includeHeads.isEmpty()) {
+            // no need to initialize the excludes if there is nothing to exclude
             excludeHeads = Util.getEmpty();
         } else {
             excludeHeads = TreeMultimap.create(keyComp, itrComp);
@@ -80,6 +90,92 @@ public class AndIterator<T extends Comparable<T>> implements NestedIterator<T> {
         next();
     }
     
+    /**
+     * Set the maximum number of candidates to gather from a sibling source before initializing the ivarator sources. If the sibling is exhausted within this
+     * many results, then the ivarators are filtered to its results instead of caching every match in their ranges. The seek of the ivarators is deferred to
+     * initialize to allow the filter to be set.
+     * 
+     * @param maxCandidates
+     *            the maximum number of candidates, 0 to disable
+     */
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        for (IndexIteratorBridge filterable : getCandidateFilterables()) {
+            filterable.setDeferSeek(maxCandidates > 0);
+        }
+    }
+    
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+    
+    private List<IndexIteratorBridge> getCandidateFilterables() {
+        List<IndexIteratorBridge> filterables = new ArrayList<>();
+        for (NestedIterator<T> itr : children()) {
+            if (itr instanceof IndexIteratorBridge && ((IndexIteratorBridge) itr).isCandidateFilterSupported()) {
+                filterables.add((IndexIteratorBridge) itr);
+            }
+        }
+        return filterables;
+    }
+    
+    /**
+     * Gather the candidates from the first include that does not support candidate filtering, and set them as the filter for the sources that do. The
+     * buffered sibling is replayed from the front of the returned sources so that an empty sibling ends the initialization before any ivarator is filled.
+     * 
+     * @return the sources to initialize
+     */
+    @SuppressWarnings("unchecked")
+    private List<NestedIterator<T>> pushCandidates() {
+        List<IndexIteratorBridge> filterables = getCandidateFilterables();
+        if (filterables.isEmpty()) {
+            return includes;
+        }
+        
+        NestedIterator<T> sibling = null;
+        for (NestedIterator<T> itr : includes) {
+            if (!filterables.contains(itr)) {
+                sibling = itr;
+                break;
+            }
+        }
+        
+        CandidateFilter filter = null;
+        List<NestedIterator<T>> sources = includes;
+        if (sibling != null) {
+            sibling.initialize();
+            LinkedList<T> keys = new LinkedList<>();
+            LinkedList<Document> documents = new LinkedList<>();
+            while (keys.size() <= maxCandidates && sibling.hasNext()) {
+                keys.add(sibling.next());
+                documents.add(sibling.document());
+            }
+            if (!sibling.hasNext()) {
+                List<Key> candidates = new ArrayList<>(keys.size());
+                for (T key : keys) {
+                    candidates.add((Key) transformer.transform(key));
+                }
+                filter = new CandidateFilter(candidates);
+            }
+            
+            sources = new ArrayList<>(includes.size());
+            sources.add(new ReplayIterator<>(sibling, keys, documents));
+            for (NestedIterator<T> itr : includes) {
+                if (itr != sibling) {
+                    sources.add(itr);
+                }
+            }
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Candidate filter for " + filterables.size() + " sources: " + filter);
+        }
+        for (IndexIteratorBridge filterable : filterables) {
+            filterable.setCandidateFilter(filter);
+        }
+        return sources;
+    }
+    
     public T next() {
         
         T returnValue = next;
@@ -265,4 +361,81 @@ public class AndIterator<T extends Comparable<T>> implements NestedIterator<T> {
     public Document document() {
         return prevDocument;
     }
+    
+    /**
+     * Replays the results buffered from a source while gathering candidates, and then continues with the source.
+     */
+    private static class ReplayIterator<T extends Comparable<T>> implements NestedIterator<T> {
+        private final NestedIterator<T> source;
+        private final LinkedList<T> keys;
+        private final LinkedList<Document> documents;
+        private Document document;
+        
+        public ReplayIterator(NestedIterator<T> source, LinkedList<T> keys, LinkedList<Document> documents) {
+            this.source = source;
+            this.keys = keys;
+            this.documents = documents;
+        }
+        
+        @Override
+        public void initialize() {
+            // the source was initialized when it was buffered
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !keys.isEmpty() || source.hasNext();
+        }
+        
+        @Override
+        public T next() {
+            if (!keys.isEmpty()) {
+                document = documents.removeFirst();
+                return keys.removeFirst();
+            }
+            T next = source.next();
+            document = source.document();
+            return next;
+        }
+        
+        @Override
+        public T move(T minimum) {
+            while (!keys.isEmpty()) {
+                T key = keys.removeFirst();
+                Document doc = documents.removeFirst();
+                if (key.compareTo(minimum) >= 0) {
+                    document = doc;
+                    return key;
+                }
+            }
+            T next = source.move(minimum);
+            document = source.document();
+            return next;
+        }
+        
+        @Override
+        public Collection<NestedIterator<T>> leaves() {
+            return source.leaves();
+        }
+        
+        @Override
+        public Collection<NestedIterator<T>> children() {
+            return source.children();
+        }
+        
+        @Override
+        public Document document() {
+            return document;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("This iterator does not support remove.");
+        }
+        
+        @Override
+        public String toString() {
+            return "Replay: " + source;
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package datawave.query.iterator.logic;
+
+import com.google.common.base.Predicate;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A predicate that accepts the event keys (shardId : datatype\0uid) of a set of candidate documents. The keys of child documents are accepted along with
+ * their ancestors so that the filter can be applied below a tld aggregation.
+ * 
+ * The row and column family of a key are compared in place, so checking a key and its ancestors does not copy them.
+ */
+public class CandidateFilter implements Predicate<Key> {
+    
+    // the column families of the candidates, by row
+    private final Map<ByteSequence,Set<ByteSequence>> candidates = new HashMap<>();
+    private int size = 0;
+    
+    public CandidateFilter(Collection<Key> keys) {
+        for (Key key : keys) {
+            Set<ByteSequence> cfs = candidates.computeIfAbsent(new ArrayByteSequence(key.getRowData().toArray()), row -> new HashSet<>());
+            if (cfs.add(new ArrayByteSequence(key.getColumnFamilyData().toArray()))) {
+                size++;
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean apply(Key key) {
+        Set<ByteSequence> cfs = candidates.get(key.getRowData());
+        if (cfs == null) {
+            return false;
+        }
+        ByteSequence cf = key.getColumnFamilyData();
+        int uidIndex = indexOf(cf, (byte) '\0') + 1;
+        int length = cf.length();
+        while (true) {
+            if (cfs.contains(length == cf.length() ? cf : cf.subSequence(0, length))) {
+                return true;
+            }
+            // try the parent document
+            int dotIndex = lastIndexOf(cf, (byte) '.', length);
+            if (dotIndex < uidIndex) {
+                return false;
+            }
+            length = dotIndex;
+        }
+    }
+    
+    private static int indexOf(ByteSequence bytes, byte b) {
+        for (int i = 0; i < bytes.length(); i++) {
+            if (bytes.byteAt(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int lastIndexOf(ByteSequence bytes, byte b, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes.byteAt(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public String toString() {
+        return "CandidateFilter(" + size + " candidates)";
+    }
+}
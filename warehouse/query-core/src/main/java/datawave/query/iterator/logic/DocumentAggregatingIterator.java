@@ -1,7 +1,9 @@
 package datawave.query.iterator.logic;
 
+import com.google.common.base.Predicate;
 import datawave.query.attributes.Document;
 import datawave.query.attributes.PreNormalizedAttributeFactory;
+import datawave.query.iterator.CandidateFilterable;
 import datawave.query.iterator.DocumentIterator;
 import datawave.query.jexl.functions.FieldIndexAggregator;
 import datawave.query.util.TypeMetadata;
@@ -20,7 +22,7 @@ import java.util.Collection;
 /**
  * This iterator is a regex ivarator that enables datatype filtering, time filtering, and field index document aggregation
  */
-public class DocumentAggregatingIterator extends WrappingIterator implements DocumentIterator {
+public class DocumentAggregatingIterator extends WrappingIterator implements DocumentIterator, CandidateFilterable {
     
     protected Range seekRange;
     protected Collection<ByteSequence> seekColumnFamilies;
@@ -106,6 +108,11 @@ public class DocumentAggregatingIterator extends WrappingIterator implements Doc
         return nextValue;
     }
     
+    @Override
+    public boolean setCandidateFilter(Predicate<Key> candidateFilter) {
+        return getSource() instanceof CandidateFilterable && ((CandidateFilterable) getSource()).setCandidateFilter(candidateFilter);
+    }
+    
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         return new DocumentAggregatingIterator(this, env);
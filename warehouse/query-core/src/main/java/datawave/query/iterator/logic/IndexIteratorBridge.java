@@ -1,6 +1,8 @@
 package datawave.query.iterator.logic;
 
+import com.google.common.base.Predicate;
 import datawave.query.attributes.Document;
+import datawave.query.iterator.CandidateFilterable;
 import datawave.query.iterator.DocumentIterator;
 import datawave.query.iterator.NestedIterator;
 import datawave.query.iterator.SeekableIterator;
@@ -20,7 +22,7 @@ import java.util.HashSet;
  * 
  * 
  */
-public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterator {
+public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterator, CandidateFilterable {
     private final static Logger log = Logger.getLogger(IndexIteratorBridge.class);
     
     /*
@@ -34,11 +36,20 @@ public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterato
     private Key next;
     private Document prevDocument, nextDocument;
     
+    /*
+     * When deferring seeks, the delegate is not seeked until initialize so that a candidate filter may be set first.
+     */
+    private boolean deferSeek = false;
+    private Range pendingRange;
+    private Collection<ByteSequence> pendingColumnFamilies;
+    private boolean pendingIncludeCFs;
+    
     public IndexIteratorBridge(DocumentIterator delegate) {
         this.delegate = delegate;
     }
     
     public Key next() {
+        seekIfPending();
         Key k = next;
         prevDocument = nextDocument;
         next = null;
@@ -59,10 +70,12 @@ public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterato
     }
     
     public boolean hasNext() {
+        seekIfPending();
         return next != null;
     }
     
     public Key move(Key minimum) {
+        seekIfPending();
         /*
          * If we are told to move to the Key that we current have cached, we don't have to do anything
          */
@@ -116,6 +129,25 @@ public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterato
      */
     @Override
     public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean includeCFs) {
+        if (deferSeek) {
+            pendingRange = range;
+            pendingColumnFamilies = columnFamilies;
+            pendingIncludeCFs = includeCFs;
+            next = null;
+        } else {
+            seekDelegate(range, columnFamilies, includeCFs);
+        }
+    }
+    
+    private void seekIfPending() {
+        if (pendingRange != null) {
+            Range range = pendingRange;
+            pendingRange = null;
+            seekDelegate(range, pendingColumnFamilies, pendingIncludeCFs);
+        }
+    }
+    
+    private void seekDelegate(Range range, Collection<ByteSequence> columnFamilies, boolean includeCFs) {
         try {
             delegate.seek(range, columnFamilies, includeCFs);
             if (delegate.hasTop()) {
@@ -146,7 +178,36 @@ public class IndexIteratorBridge implements NestedIterator<Key>, SeekableIterato
         throw new UnsupportedOperationException("This iterator does not support remove().");
     }
     
-    public void initialize() {}
+    public void initialize() {
+        seekIfPending();
+    }
+    
+    /**
+     * Can a candidate filter be applied to the delegate
+     * 
+     * @return true if the delegate is candidate filterable
+     */
+    public boolean isCandidateFilterSupported() {
+        return delegate instanceof CandidateFilterable;
+    }
+    
+    @Override
+    public boolean setCandidateFilter(Predicate<Key> candidateFilter) {
+        return isCandidateFilterSupported() && ((CandidateFilterable) delegate).setCandidateFilter(candidateFilter);
+    }
+    
+    /**
+     * Defer seeking the delegate until this iterator is initialized, giving a parent the chance to set a candidate filter after the seek.
+     * 
+     * @param deferSeek
+     */
+    public void setDeferSeek(boolean deferSeek) {
+        this.deferSeek = deferSeek;
+    }
+    
+    public boolean isDeferSeek() {
+        return deferSeek;
+    }
     
     @Override
     public String toString() {
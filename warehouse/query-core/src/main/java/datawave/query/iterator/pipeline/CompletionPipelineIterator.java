@@ -0,0 +1,620 @@
+package datawave.query.iterator.pipeline;
+
+import com.google.common.collect.Maps;
+import datawave.core.iterators.IteratorThreadPoolManager;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.NestedQuery;
+import datawave.query.iterator.NestedQueryIterator;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.profile.QuerySpan;
+import datawave.query.iterator.profile.QuerySpanCollector;
+import datawave.util.StringUtils;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IterationInterruptedException;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completion driven version of the {@link PipelineIterator}. Rather than waiting on the evaluation futures in the order they were queued, each evaluation
+ * publishes itself into a {@link CompletionRingBuffer} when it finishes and the scan thread handles evaluations in the order they complete. When sorted output
+ * is required, completed evaluations are parked in a fixed size reorder window until all of their predecessors have completed, so a slow document only holds
+ * back the results behind it rather than the dispatch of new work.
+ * <p>
+ * When sorted output is not required, results are returned as soon as their evaluations complete. A single last evaluated key is then no longer a valid yield
+ * position, so the iterator tracks the finished documents in a bounded window: a document is finished once its result has been returned, or once its
+ * evaluation completed without a result. The yield position is the highest key below which every document has finished, and the documents returned beyond it
+ * are encoded into the column qualifier of the yield key (see {@link #getYieldKey(Key, Collection)}) so that they can be skipped when the scan is resumed.
+ * Documents that finished beyond it without a result are simply evaluated again. As Accumulo resumes a torn down scan from the last key returned rather than
+ * from a yield key, the same position is also encoded into the column qualifier of every returned key (see {@link #getResumeKey(Key)}). To keep those keys
+ * small, no more evaluations are started while the documents returned beyond the yield position, and those that may yet be, would exceed the completion buffer
+ * capacity plus the max number of pipelines.
+ * <p>
+ * All of the pipelines and evaluation slots are allocated when the pipeline is started, so in the steady state handling a document does not allocate beyond
+ * what the executor itself requires.
+ */
+public class CompletionPipelineIterator extends PipelineIterator {
+    
+    private static final Logger log = Logger.getLogger(CompletionPipelineIterator.class);
+    
+    /**
+     * Separates the column qualifier of the yield position from the encoded list of completed documents
+     */
+    public static final String COMPLETED_DOCUMENTS_MARKER = "\u2735completed\u2735";
+    private static final char COMPLETED_DOCUMENTS_SEPARATOR = '\u0001';
+    
+    /**
+     * Surrounds the resume position encoded into the column qualifier of each returned key when results are unordered
+     */
+    public static final String RESUME_MARKER = "\u2735resume\u2735";
+    
+    // how many more documents than the completion buffer capacity may be dispatched beyond the yield position when results are unordered
+    private static final int UNORDERED_WINDOW_FACTOR = 4;
+    
+    /**
+     * A reusable unit of evaluation work. The slot runs its pipeline on the evaluation pool and then publishes itself as complete.
+     */
+    protected static class EvaluationSlot implements Runnable {
+        private final CompletionRingBuffer<EvaluationSlot> completions;
+        private final int index;
+        protected Pipeline pipeline;
+        protected Future<?> future;
+        protected long sequence;
+        protected volatile Throwable error;
+        
+        EvaluationSlot(CompletionRingBuffer<EvaluationSlot> completions, int index) {
+            this.completions = completions;
+            this.index = index;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                pipeline.run();
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                if (!completions.offer(this)) {
+                    // cannot happen as long as the number of slots does not exceed the buffer capacity
+                    log.error("Evaluation completion buffer is full, dropping completion of " + pipeline);
+                }
+            }
+        }
+        
+        void clear() {
+            pipeline = null;
+            future = null;
+            error = null;
+        }
+    }
+    
+    protected final boolean sortedResults;
+    protected final CompletionRingBuffer<EvaluationSlot> completions;
+    // completed evaluations waiting on their predecessors, indexed by sequence
+    protected final EvaluationSlot[] reorderWindow;
+    // keys of the documents completed beyond the yield position when results are unordered, indexed by sequence
+    protected final Key[] completedWindow;
+    // keys of the documents returned beyond the yield position when results are unordered, indexed by sequence
+    protected final Key[] returnedWindow;
+    // the number of documents returned beyond the yield position
+    protected int returnedBeyond = 0;
+    // outstanding evaluations, indexed by slot
+    protected final EvaluationSlot[] inFlight;
+    protected final ArrayDeque<EvaluationSlot> freeSlots;
+    protected final ArrayDeque<Entry<Key,Document>> readyResults;
+    // the sequences and document keys of the ready results when results are unordered, a ring starting at readyHead
+    protected final long[] readySequences;
+    protected final Key[] readyDocuments;
+    protected int readyHead = 0;
+    // documents already returned before the scan was torn down, to be skipped on resume
+    protected Set<String> completedDocuments = Collections.emptySet();
+    // the position the scan was resumed from, until a document below which everything has finished takes its place
+    protected Key resumeStart = null;
+    protected long nextSequence = 0;
+    // the first sequence that has not been emitted (sorted) or finished (unordered)
+    protected long nextSequenceToEmit = 0;
+    protected int outstanding = 0;
+    
+    public CompletionPipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector,
+                    QuerySpan querySpan, QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
+                    YieldCallback<Key> yieldCallback, long yieldThresholdMs, boolean sortedResults) {
+        super(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yieldCallback,
+                        yieldThresholdMs);
+        this.sortedResults = sortedResults;
+        this.completions = new CompletionRingBuffer<>(maxPipelines);
+        this.reorderWindow = new EvaluationSlot[completions.capacity()];
+        this.completedWindow = sortedResults ? null : new Key[completions.capacity() * UNORDERED_WINDOW_FACTOR];
+        this.returnedWindow = sortedResults ? null : new Key[completedWindow.length];
+        this.inFlight = new EvaluationSlot[maxPipelines];
+        this.freeSlots = new ArrayDeque<>(maxPipelines);
+        for (int i = 0; i < maxPipelines; i++) {
+            freeSlots.push(new EvaluationSlot(completions, i));
+        }
+        this.readyResults = new ArrayDeque<>(Math.max(maxCachedResults, maxPipelines) + 1);
+        // each completion adds at most one ready result, and completions are only handled while there are fewer than the max cached results
+        this.readySequences = sortedResults ? null : new long[Math.max(maxCachedResults, 1) + maxPipelines + 1];
+        this.readyDocuments = sortedResults ? null : new Key[readySequences.length];
+    }
+    
+    /**
+     * Set the position the scan is resumed from and the documents that were already returned beyond it before the scan was torn down. Must be called before
+     * the pipeline is started when results are unordered.
+     * 
+     * @param resumeStart
+     *            the start key of the seek range, stripped of any completed documents
+     * @param completedDocuments
+     *            the column families (datatype\0uid) of the completed documents
+     */
+    public void setResumePosition(Key resumeStart, Set<String> completedDocuments) {
+        this.resumeStart = resumeStart;
+        this.completedDocuments = new HashSet<>(completedDocuments);
+    }
+    
+    @Override
+    public boolean hasNext() {
+        // if we had already yielded, then leave gracefully
+        if (yield != null && yield.hasYielded()) {
+            return false;
+        }
+        
+        Entry<Key,Document> next = getNext(false);
+        if (log.isTraceEnabled()) {
+            log.trace("QueryIterator.hasNext() -> " + (next == null ? null : next.getKey()));
+        }
+        return (next != null);
+    }
+    
+    @Override
+    public Entry<Key,Document> next() {
+        // if we had already yielded, then leave gracefully
+        if (yield != null && yield.hasYielded()) {
+            return null;
+        }
+        
+        Entry<Key,Document> next = getNext(true);
+        if (log.isTraceEnabled()) {
+            log.trace("QueryIterator.next() -> " + (next == null ? null : next.getKey()));
+        }
+        return next;
+    }
+    
+    private Entry<Key,Document> getNext(boolean remove) {
+        try {
+            if (readyResults.isEmpty()) {
+                cacheNextResult();
+            }
+            
+            // handle anything else that has already completed without waiting
+            flushCompletedResults();
+            
+            if (readyResults.isEmpty()) {
+                return null;
+            }
+            if (!remove) {
+                return readyResults.peek();
+            }
+            return sortedResults ? readyResults.poll() : pollUnordered();
+        } catch (Exception e) {
+            // cancel out existing executions
+            cancel();
+            
+            // if we yielded, then leave gracefully
+            if (yield != null && yield.hasYielded()) {
+                return null;
+            }
+            
+            log.error("Failed to retrieve evaluation pipeline result", e);
+            throw new RuntimeException("Failed to retrieve evaluation pipeline result", e);
+        }
+    }
+    
+    /**
+     * Wait on completions until we have a non-null result or there is nothing left to evaluate
+     */
+    private void cacheNextResult() throws InterruptedException, ExecutionException {
+        long startMs = System.currentTimeMillis();
+        while (readyResults.isEmpty() && outstanding > 0) {
+            EvaluationSlot completed;
+            // we must have at least evaluated one thing in order to yield, otherwise we will have not progressed at all
+            if (yield != null && lastKeyEvaluated != null) {
+                long remaining = yieldThresholdMs - (System.currentTimeMillis() - startMs);
+                completed = (remaining > 0 ? completions.poll(remaining, TimeUnit.MILLISECONDS) : completions.poll());
+                if (completed == null) {
+                    Key yieldKey = getYieldKey();
+                    yield.yield(yieldKey);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Yielding at " + yieldKey);
+                    }
+                    throw new IterationInterruptedException("Yielding at " + yieldKey);
+                }
+            } else {
+                completed = completions.poll(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            if (completed != null) {
+                complete(completed);
+            }
+        }
+    }
+    
+    /**
+     * Handle the evaluations that have already completed, up to the max number of cached results
+     */
+    private void flushCompletedResults() throws ExecutionException {
+        while (readyResults.size() < this.maxResults) {
+            EvaluationSlot completed = completions.poll();
+            if (completed == null) {
+                break;
+            }
+            complete(completed);
+        }
+    }
+    
+    /**
+     * Handle a completed evaluation. If the results must be sorted then it is held until all earlier evaluations have also completed.
+     */
+    protected void complete(EvaluationSlot completed) throws ExecutionException {
+        if (sortedResults) {
+            reorderWindow[(int) (completed.sequence & (reorderWindow.length - 1))] = completed;
+            int index = (int) (nextSequenceToEmit & (reorderWindow.length - 1));
+            while (reorderWindow[index] != null) {
+                EvaluationSlot slot = reorderWindow[index];
+                reorderWindow[index] = null;
+                emit(slot);
+                index = (int) (nextSequenceToEmit & (reorderWindow.length - 1));
+            }
+        } else {
+            emit(completed);
+        }
+        
+        // start new evaluations in place of the completed ones
+        dispatch();
+    }
+    
+    /**
+     * Collect the result of a completed evaluation, advance the yield position, and return its pipeline and slot for reuse
+     */
+    protected void emit(EvaluationSlot slot) throws ExecutionException {
+        if (slot.error != null) {
+            Key docKey = slot.pipeline.getSource() == null ? null : slot.pipeline.getSource().getKey();
+            log.error("Failed evaluation of " + docKey + "; cancelling remaining evaluations and flushing results", slot.error);
+            throw new ExecutionException(slot.error);
+        }
+        
+        Key docKey = slot.pipeline.getSource().getKey();
+        Entry<Key,Document> result = slot.pipeline.getResult();
+        if (log.isTraceEnabled()) {
+            log.trace("Evaluation of " + docKey + " was " + (result == null ? "empty" : "successful"));
+        }
+        
+        long sequence = slot.sequence;
+        release(slot);
+        
+        if (sortedResults) {
+            // record the last evaluated key
+            lastKeyEvaluated = docKey;
+            nextSequenceToEmit++;
+            if (result != null) {
+                readyResults.add(result);
+            }
+        } else if (result == null) {
+            markCompleted(sequence, docKey, false);
+        } else {
+            // the document is only finished once its result has been returned
+            int tail = (readyHead + readyResults.size()) % readySequences.length;
+            readySequences[tail] = sequence;
+            readyDocuments[tail] = docKey;
+            readyResults.add(result);
+        }
+    }
+    
+    /**
+     * Return the next unordered result, marking its document as finished and encoding the position to resume from into its key
+     */
+    private Entry<Key,Document> pollUnordered() {
+        Entry<Key,Document> result = readyResults.poll();
+        long sequence = readySequences[readyHead];
+        Key docKey = readyDocuments[readyHead];
+        readyDocuments[readyHead] = null;
+        readyHead = (readyHead + 1) % readySequences.length;
+        
+        markCompleted(sequence, docKey, true);
+        Key yieldKey = getYieldKey();
+        Key key = (yieldKey == null ? result.getKey() : getResumeKey(result.getKey(), yieldKey));
+        
+        // the window beyond the yield position may have room again
+        dispatch();
+        
+        return Maps.immutableEntry(key, result.getValue());
+    }
+    
+    /**
+     * Record an unordered finished document, and move the last evaluated key up to the highest key below which every document has finished
+     * 
+     * @param sequence
+     * @param docKey
+     * @param returned
+     *            whether a result was returned for the document, so that it must not be returned again on resume
+     */
+    private void markCompleted(long sequence, Key docKey, boolean returned) {
+        int mask = completedWindow.length - 1;
+        completedWindow[(int) (sequence & mask)] = docKey;
+        if (returned) {
+            returnedWindow[(int) (sequence & mask)] = docKey;
+            returnedBeyond++;
+        }
+        int index = (int) (nextSequenceToEmit & mask);
+        while (completedWindow[index] != null) {
+            lastKeyEvaluated = completedWindow[index];
+            completedWindow[index] = null;
+            if (returnedWindow[index] != null) {
+                returnedWindow[index] = null;
+                returnedBeyond--;
+            }
+            nextSequenceToEmit++;
+            index = (int) (nextSequenceToEmit & mask);
+        }
+    }
+    
+    /**
+     * Start evaluations while there are free pipelines and the window beyond the yield position has room. When results are unordered, the documents that may
+     * still be returned beyond the yield position must leave room as well.
+     */
+    private void dispatch() {
+        int window = sortedResults ? reorderWindow.length : completedWindow.length;
+        int maxReturnedBeyond = completions.capacity() + pipelines.maxPipelines;
+        boolean isNested = docSource instanceof NestedQueryIterator;
+        while (outstanding < pipelines.maxPipelines && nextSequence - nextSequenceToEmit < window
+                        && (sortedResults || returnedBeyond + readyResults.size() + outstanding < maxReturnedBeyond) && docSource.hasNext()) {
+            Key keySource = docSource.next();
+            if (!completedDocuments.isEmpty() && completedDocuments.remove(keySource.getColumnFamily().toString())) {
+                // already returned before the scan was torn down, so it is finished without being evaluated again
+                markCompleted(nextSequence++, keySource, true);
+                continue;
+            }
+            NestedQuery<Key> nestedQuery = null;
+            if (isNested) {
+                nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
+            }
+            
+            evaluate(keySource, docSource.document(), nestedQuery);
+            if (collectTimingDetails) {
+                querySpanCollector.addQuerySpan(querySpan);
+            }
+        }
+    }
+    
+    /**
+     * @return the position to yield at: the last evaluated key, plus the documents returned beyond it when the results are unordered
+     */
+    private Key getYieldKey() {
+        if (sortedResults) {
+            return lastKeyEvaluated;
+        }
+        // the documents returned before the scan was torn down that have not been reached again are still beyond the yield position
+        Collection<String> completed = new ArrayList<>(completedDocuments.size() + returnedBeyond);
+        completed.addAll(completedDocuments);
+        for (Key key : returnedWindow) {
+            if (key != null) {
+                completed.add(key.getColumnFamily().toString());
+            }
+        }
+        Key position = (lastKeyEvaluated != null ? lastKeyEvaluated : resumeStart);
+        return (position == null ? null : encodeCompleted(position, completed));
+    }
+    
+    /**
+     * Create a yield key that records the documents that have already been returned beyond the yield position
+     * 
+     * @param lastKeyEvaluated
+     *            the key below which all documents have been evaluated
+     * @param completed
+     *            the document keys that have been returned beyond the last evaluated key
+     * @return the yield key
+     */
+    public static Key getYieldKey(Key lastKeyEvaluated, Collection<Key> completed) {
+        Collection<String> columnFamilies = new ArrayList<>(completed.size());
+        for (Key key : completed) {
+            columnFamilies.add(key.getColumnFamily().toString());
+        }
+        return encodeCompleted(lastKeyEvaluated, columnFamilies);
+    }
+    
+    private static Key encodeCompleted(Key lastKeyEvaluated, Collection<String> completed) {
+        if (completed.isEmpty()) {
+            return lastKeyEvaluated;
+        }
+        StringBuilder cq = new StringBuilder(lastKeyEvaluated.getColumnQualifier().toString()).append(COMPLETED_DOCUMENTS_MARKER);
+        boolean first = true;
+        for (String columnFamily : completed) {
+            if (!first) {
+                cq.append(COMPLETED_DOCUMENTS_SEPARATOR);
+            }
+            cq.append(columnFamily);
+            first = false;
+        }
+        return new Key(lastKeyEvaluated.getRow(), lastKeyEvaluated.getColumnFamily(), new Text(cq.toString()), lastKeyEvaluated.getColumnVisibility(),
+                        lastKeyEvaluated.getTimestamp());
+    }
+    
+    /**
+     * Encode a yield key into the column qualifier of a returned document key, so that a scan torn down just after returning the document can be resumed from
+     * it
+     * 
+     * @param documentKey
+     *            the key of the returned document
+     * @param yieldKey
+     *            the yield key created by {@link #getYieldKey(Key, Collection)} when the document was returned
+     * @return the returned key
+     */
+    public static Key getResumeKey(Key documentKey, Key yieldKey) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            yieldKey.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode resume position " + yieldKey, e);
+        }
+        // the cq of a document key is not used by the clients
+        String cq = RESUME_MARKER + Base64.getEncoder().encodeToString(bytes.toByteArray()) + RESUME_MARKER;
+        return new Key(documentKey.getRow(), documentKey.getColumnFamily(), new Text(cq), documentKey.getColumnVisibility(), documentKey.getTimestamp());
+    }
+    
+    /**
+     * Get the yield key encoded into a returned key by {@link #getResumeKey(Key, Key)}
+     * 
+     * @param returnedKey
+     *            the returned key, typically the start key of the range the scan is resumed with
+     * @return the yield key, or null if none was encoded
+     */
+    public static Key getResumeKey(Key returnedKey) {
+        String cq = returnedKey.getColumnQualifier().toString();
+        int start = cq.indexOf(RESUME_MARKER);
+        // anything appended after the closing marker (e.g. the final document marker) is ignored
+        int end = (start < 0 ? -1 : cq.indexOf(RESUME_MARKER, start + RESUME_MARKER.length()));
+        if (end < 0) {
+            return null;
+        }
+        byte[] bytes = Base64.getDecoder().decode(cq.substring(start + RESUME_MARKER.length(), end).getBytes(StandardCharsets.UTF_8));
+        Key yieldKey = new Key();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            yieldKey.readFields(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode resume position from " + returnedKey, e);
+        }
+        return yieldKey;
+    }
+    
+    /**
+     * Get the documents recorded as completed in a yield key created by {@link #getYieldKey(Key, Collection)}
+     * 
+     * @param yieldKey
+     *            the yield key, typically the start key of the range the scan is resumed with
+     * @return the column families (datatype\0uid) of the completed documents, empty if none were recorded
+     */
+    public static Set<String> getCompletedDocuments(Key yieldKey) {
+        String cq = yieldKey.getColumnQualifier().toString();
+        int index = cq.indexOf(COMPLETED_DOCUMENTS_MARKER);
+        if (index < 0) {
+            return Collections.emptySet();
+        }
+        Set<String> completed = new HashSet<>();
+        for (String columnFamily : StringUtils.split(cq.substring(index + COMPLETED_DOCUMENTS_MARKER.length()), COMPLETED_DOCUMENTS_SEPARATOR)) {
+            completed.add(columnFamily);
+        }
+        return completed;
+    }
+    
+    /**
+     * Remove the completed documents from a yield key created by {@link #getYieldKey(Key, Collection)}
+     * 
+     * @param yieldKey
+     *            the yield key
+     * @return the last evaluated key the yield key was created from
+     */
+    public static Key getLastKeyEvaluated(Key yieldKey) {
+        String cq = yieldKey.getColumnQualifier().toString();
+        int index = cq.indexOf(COMPLETED_DOCUMENTS_MARKER);
+        if (index < 0) {
+            return yieldKey;
+        }
+        return new Key(yieldKey.getRow(), yieldKey.getColumnFamily(), new Text(cq.substring(0, index)), yieldKey.getColumnVisibility(),
+                        yieldKey.getTimestamp());
+    }
+    
+    private void release(EvaluationSlot slot) {
+        inFlight[slot.index] = null;
+        checkIn(slot.pipeline);
+        slot.clear();
+        freeSlots.push(slot);
+        outstanding--;
+    }
+    
+    /**
+     * Cancel all of the outstanding evaluations
+     */
+    private void cancel() {
+        for (EvaluationSlot slot : inFlight) {
+            if (slot != null) {
+                if (slot.future != null) {
+                    slot.future.cancel(true);
+                }
+                release(slot);
+            }
+        }
+        Arrays.fill(reorderWindow, null);
+        if (completedWindow != null) {
+            Arrays.fill(completedWindow, null);
+            Arrays.fill(returnedWindow, null);
+            returnedBeyond = 0;
+            Arrays.fill(readyDocuments, null);
+            readyHead = 0;
+        }
+        completions.clear();
+        readyResults.clear();
+    }
+    
+    @Override
+    public void startPipeline() {
+        // build all of the pipelines up front so that the steady state does not need to create any
+        preallocate();
+        
+        dispatch();
+    }
+    
+    private void evaluate(Key key, Document document, NestedQuery<Key> nestedQuery) {
+        if (log.isTraceEnabled()) {
+            log.trace("Adding evaluation of " + key + " to pipeline");
+        }
+        EvaluationSlot slot = freeSlots.pop();
+        slot.pipeline = checkOut(key, document, nestedQuery);
+        slot.sequence = nextSequence++;
+        inFlight[slot.index] = slot;
+        outstanding++;
+        slot.future = execute(slot);
+    }
+    
+    protected void preallocate() {
+        pipelines.preallocate();
+    }
+    
+    protected Pipeline checkOut(Key key, Document document, NestedQuery<Key> nestedQuery) {
+        return pipelines.checkOut(key, document, nestedQuery);
+    }
+    
+    protected void checkIn(Pipeline pipeline) {
+        pipelines.checkIn(pipeline);
+    }
+    
+    /**
+     * Run an evaluation on the evaluation pool
+     * 
+     * @param slot
+     *            the evaluation
+     * @return the future of the evaluation
+     */
+    protected Future<?> execute(EvaluationSlot slot) {
+        return IteratorThreadPoolManager.executeEvaluation(slot, slot.pipeline.toString(), schedulingKey, schedulingWeight, env);
+    }
+}
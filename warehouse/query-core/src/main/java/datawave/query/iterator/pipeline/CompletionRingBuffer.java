@@ -0,0 +1,144 @@
+package datawave.query.iterator.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer ring buffer. Evaluation threads publish completed work into the buffer and the single scan thread
+ * consumes it in completion order. The consumer parks while the buffer is empty and is unparked by the next producer to publish.
+ * <p>
+ * The capacity is rounded up to a power of two. Callers are expected to bound the number of outstanding items themselves (e.g. by the number of pipelines)
+ * so that {@link #offer(Object)} does not fail in practice.
+ * 
+ * @param <T>
+ *            the element type
+ */
+public class CompletionRingBuffer<T> {
+    
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    
+    // the next slot to be claimed by a producer
+    private final AtomicLong tail = new AtomicLong();
+    // the next slot to be consumed, only ever written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    
+    private volatile Thread consumer;
+    
+    public CompletionRingBuffer(int minCapacity) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + minCapacity);
+        }
+        int capacity = Integer.highestOneBit(minCapacity);
+        if (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+    
+    /**
+     * Publish an item. Safe to call from any thread.
+     * 
+     * @param item
+     *            non-null item
+     * @return false if the buffer was full
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+        
+        // a volatile write so that the following read of the consumer cannot be reordered before it
+        buffer.set((int) (slot & mask), item);
+        
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+        return true;
+    }
+    
+    /**
+     * Remove the next published item without waiting. Must only be called from the consumer thread.
+     * 
+     * @return the next item or null if none is available
+     */
+    public T poll() {
+        long current = head.get();
+        int index = (int) (current & mask);
+        T item = buffer.get(index);
+        if (item != null) {
+            buffer.lazySet(index, null);
+            head.lazySet(current + 1);
+        }
+        return item;
+    }
+    
+    /**
+     * Remove the next published item, waiting up to the specified time for one to be published. Must only be called from the consumer thread.
+     * 
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return the next item or null if the timeout elapsed
+     * @throws InterruptedException
+     *             if the consumer was interrupted while waiting
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T item = poll();
+        if (item != null) {
+            return item;
+        }
+        
+        // nanoTime differences are overflow safe, so even a Long.MAX_VALUE timeout works here
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        
+        consumer = Thread.currentThread();
+        try {
+            while ((item = poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            consumer = null;
+        }
+        return item;
+    }
+    
+    /**
+     * @return true if nothing is currently published. Only meaningful from the consumer thread.
+     */
+    public boolean isEmpty() {
+        return buffer.get((int) (head.get() & mask)) == null;
+    }
+    
+    /**
+     * Drop everything currently published. Must only be called from the consumer thread.
+     */
+    public void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+}
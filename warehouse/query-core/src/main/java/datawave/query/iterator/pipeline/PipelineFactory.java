@@ -38,7 +38,46 @@ public class PipelineFactory {
     public static PipelineIterator createIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, boolean requestSerialPipeline,
                     QuerySpanCollector querySpanCollector, QuerySpan querySpan, QueryIterator sourceIterator,
                     SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield, long yieldThresholdMs) {
-        if (maxPipelines > 1 && !requestSerialPipeline) {
+        return createIterator(documents, maxPipelines, maxCachedResults, requestSerialPipeline, false, false, querySpanCollector, querySpan,
+                        sourceIterator, sourceForDeepCopy, env, yield, yieldThresholdMs);
+    }
+    
+    /**
+     * Create a pipeline iterator.
+     * 
+     * @param documents
+     *            Document Iterator.
+     * @param maxPipelines
+     *            maximum number of requested pipelines.
+     * @param maxCachedResults
+     *            maximum cached results.
+     * @param requestSerialPipeline
+     *            request for a serial pipeline. In the future this choice may not be honored
+     * @param requestCompletionPipeline
+     *            request for a completion driven pipeline. Ignored if a serial pipeline is used
+     * @param requestUnorderedResults
+     *            request that results be returned in the order their evaluations complete rather than in key order. Implies a completion driven pipeline and
+     *            is ignored if a serial pipeline is used
+     * @param querySpanCollector
+     *            query span collector
+     * @param querySpan
+     *            query span
+     * @param sourceIterator
+     *            source iterator.
+     * @param sourceForDeepCopy
+     *            source used for deep copies.
+     * @param env
+     *            iterator environment
+     * @return
+     */
+    public static PipelineIterator createIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, boolean requestSerialPipeline,
+                    boolean requestCompletionPipeline, boolean requestUnorderedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
+                    QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield,
+                    long yieldThresholdMs) {
+        if (maxPipelines > 1 && !requestSerialPipeline && (requestCompletionPipeline || requestUnorderedResults)) {
+            return new CompletionPipelineIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy,
+                            env, yield, yieldThresholdMs, !requestUnorderedResults);
+        } else if (maxPipelines > 1 && !requestSerialPipeline) {
             return new PipelineIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env,
                             yield, yieldThresholdMs);
         } else {
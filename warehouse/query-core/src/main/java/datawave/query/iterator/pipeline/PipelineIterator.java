@@ -44,6 +44,8 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected final QuerySpanCollector querySpanCollector;
     protected final QuerySpan querySpan;
     protected boolean collectTimingDetails = false;
+    protected String schedulingKey = IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY;
+    protected int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
     protected IteratorEnvironment env;
     
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
@@ -65,6 +67,19 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         this.collectTimingDetails = collectTimingDetails;
     }
     
+    /**
+     * Set the key and weight by which the evaluation threads are shared with other queries
+     * 
+     * @param schedulingKey
+     *            the query (or scan) the pipelines are evaluated for
+     * @param schedulingWeight
+     *            the relative share of the evaluation threads
+     */
+    public void setScheduling(String schedulingKey, int schedulingWeight) {
+        this.schedulingKey = schedulingKey;
+        this.schedulingWeight = schedulingWeight;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -330,7 +345,8 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         }
         Pipeline pipeline = pipelines.checkOut(key, document, nestedQuery);
         
-        evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), env), pipeline));
+        Future<?> future = IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString(), schedulingKey, schedulingWeight, env);
+        evaluationQueue.add(new Tuple2<>(future, pipeline));
     }
     
     /*
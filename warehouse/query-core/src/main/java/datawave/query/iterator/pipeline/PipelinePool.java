@@ -18,6 +18,7 @@ import datawave.query.iterator.NestedQuery;
 import datawave.query.iterator.NestedQueryIterator;
 import datawave.query.iterator.QueryIterator;
 import datawave.query.iterator.profile.QuerySpanCollector;
+import datawave.query.postprocessing.tf.TermFrequencyBatch;
 
 /**
  * This is the pool of pipelines used for evaluation of documents.
@@ -76,10 +77,27 @@ public class PipelinePool {
         if (pipeline != null) {
             checkedOut.add(pipeline);
             pipeline.setSource(Maps.immutableEntry(key, doc));
+            
+            TermFrequencyBatch termFrequencyBatch = sourceIterator.getTermFrequencyBatch();
+            if (termFrequencyBatch != null) {
+                termFrequencyBatch.addDocument(key);
+            }
         }
         return pipeline;
     }
     
+    /**
+     * Create all of the pipelines up front so that {@link #checkOut(Key, Document, NestedQuery)} never has to build one on the evaluation path
+     */
+    public void preallocate() {
+        while (checkedIn.size() + checkedOut.size() < maxPipelines) {
+            Pipeline pipeline = new Pipeline(this.querySpanCollector, sourceForDeepCopy.deepCopy(env));
+            pipeline.setSourceIterator(sourceIterator.createDocumentPipeline(sourceForDeepCopy.deepCopy(env), pipeline.getDocumentSpecificSource(),
+                            querySpanCollector));
+            checkedIn.add(pipeline);
+        }
+    }
+    
     /*
      * Checkin a used pipeline.
      */
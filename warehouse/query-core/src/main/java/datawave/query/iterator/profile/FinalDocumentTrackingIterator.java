@@ -96,6 +96,9 @@ public class FinalDocumentTrackingIterator implements Iterator<Map.Entry<Key,Val
         if (returnType == DocumentSerialization.ReturnType.kryo) {
             // Serialize the Document using Kryo
             serializedDocuments = Iterators.transform(emptyDocumentIterator, new KryoDocumentSerializer(isReducedResponse, isCompressResults));
+        } else if (returnType == DocumentSerialization.ReturnType.kryocompact) {
+            // Serialize the Document using Kryo, writing the attribute classes by id
+            serializedDocuments = Iterators.transform(emptyDocumentIterator, new KryoDocumentSerializer(isReducedResponse, isCompressResults, true));
         } else if (returnType == DocumentSerialization.ReturnType.writable) {
             // Use the Writable interface to serialize the Document
             serializedDocuments = Iterators.transform(emptyDocumentIterator, new WritableDocumentSerializer(isReducedResponse));
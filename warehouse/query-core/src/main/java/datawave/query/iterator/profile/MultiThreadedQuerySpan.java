@@ -51,6 +51,16 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         return getThreadSpecificQuerySpan().getYield();
     }
     
+    @Override
+    public long getDocumentCacheHitCount() {
+        return getThreadSpecificQuerySpan().getDocumentCacheHitCount();
+    }
+    
+    @Override
+    public long getDocumentCacheMissCount() {
+        return getThreadSpecificQuerySpan().getDocumentCacheMissCount();
+    }
+    
     @Override
     public synchronized void next() {
         getThreadSpecificQuerySpan().next();
@@ -66,6 +76,16 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         getThreadSpecificQuerySpan().yield();
     }
     
+    @Override
+    public synchronized void documentCacheHit() {
+        getThreadSpecificQuerySpan().documentCacheHit();
+    }
+    
+    @Override
+    public synchronized void documentCacheMiss() {
+        getThreadSpecificQuerySpan().documentCacheMiss();
+    }
+    
     @Override
     public void reset() {
         super.reset();
@@ -107,6 +127,16 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         getThreadSpecificQuerySpan().setYield(yield);
     }
     
+    @Override
+    public void setDocumentCacheHitCount(long documentCacheHits) {
+        getThreadSpecificQuerySpan().setDocumentCacheHitCount(documentCacheHits);
+    }
+    
+    @Override
+    public void setDocumentCacheMissCount(long documentCacheMisses) {
+        getThreadSpecificQuerySpan().setDocumentCacheMissCount(documentCacheMisses);
+    }
+    
     @Override
     public void setSourceCount(long sourceCount) {
         getThreadSpecificQuerySpan().setSourceCount(sourceCount);
@@ -30,6 +30,10 @@ public class QuerySpan {
     
     protected boolean yield = false;
     
+    protected long documentCacheHits = 0;
+    
+    protected long documentCacheMisses = 0;
+    
     private Map<String,Long> stageTimers = new LinkedHashMap<>();
     
     private long stageTimerTotal = 0;
@@ -50,7 +54,9 @@ public class QuerySpan {
         KeyAdjudicator,
         DocumentMetadata,
         LimitFields,
-        RemoveGroupingContext
+        RemoveGroupingContext,
+        IvaratorLocalSpill,
+        IvaratorHdfsSpill
     };
     
     public QuerySpan(QueryStatsDClient client) {
@@ -96,6 +102,22 @@ public class QuerySpan {
         return seekCount;
     }
     
+    public long getDocumentCacheHitCount() {
+        long hitCount = documentCacheHits;
+        for (QuerySpan subSpan : sources) {
+            hitCount += subSpan.getDocumentCacheHitCount();
+        }
+        return hitCount;
+    }
+    
+    public long getDocumentCacheMissCount() {
+        long missCount = documentCacheMisses;
+        for (QuerySpan subSpan : sources) {
+            missCount += subSpan.getDocumentCacheMissCount();
+        }
+        return missCount;
+    }
+    
     public boolean getYield() {
         if (yield) {
             return true;
@@ -111,7 +133,8 @@ public class QuerySpan {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(super.toString()).append(" sources:").append(getSourceCount()).append(" next:").append(getNextCount()).append(" seek:")
-                        .append(getSeekCount()).append(" yield:").append(getYield());
+                        .append(getSeekCount()).append(" yield:").append(getYield()).append(" documentCacheHits:").append(getDocumentCacheHitCount())
+                        .append(" documentCacheMisses:").append(getDocumentCacheMissCount());
         return sb.toString();
     }
     
@@ -156,6 +179,14 @@ public class QuerySpan {
         }
     }
     
+    public synchronized void documentCacheHit() {
+        documentCacheHits++;
+    }
+    
+    public synchronized void documentCacheMiss() {
+        documentCacheMisses++;
+    }
+    
     public void reset() {
         for (QuerySpan source : sources) {
             source.reset();
@@ -164,6 +195,8 @@ public class QuerySpan {
         next = 0;
         seek = 0;
         yield = false;
+        documentCacheHits = 0;
+        documentCacheMisses = 0;
         stageTimerTotal = 0;
         stageTimers.clear();
     }
@@ -177,7 +210,8 @@ public class QuerySpan {
     }
     
     public boolean hasEntries() {
-        if (this.getSeekCount() > 0 || this.getNextCount() > 0 || this.getYield() || this.getSourceCount() > 0 || !this.stageTimers.isEmpty()) {
+        if (this.getSeekCount() > 0 || this.getNextCount() > 0 || this.getYield() || this.getSourceCount() > 0 || this.getDocumentCacheHitCount() > 0
+                        || this.getDocumentCacheMissCount() > 0 || !this.stageTimers.isEmpty()) {
             return true;
         } else {
             return false;
@@ -208,6 +242,14 @@ public class QuerySpan {
         this.yield = yield;
     }
     
+    public void setDocumentCacheHitCount(long documentCacheHits) {
+        this.documentCacheHits = documentCacheHits;
+    }
+    
+    public void setDocumentCacheMissCount(long documentCacheMisses) {
+        this.documentCacheMisses = documentCacheMisses;
+    }
+    
     public void setSourceCount(long sourceCount) {
         this.sourceCount = sourceCount;
     }
@@ -0,0 +1,345 @@
+package datawave.query.jexl;
+
+import datawave.query.collections.FunctionalSet;
+import datawave.query.jexl.nodes.ExceededOrThresholdMarkerJexlNode;
+import org.apache.commons.jexl2.Interpreter;
+import org.apache.commons.jexl2.JexlArithmetic;
+import org.apache.commons.jexl2.JexlContext;
+import org.apache.commons.jexl2.JexlException;
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTFalseNode;
+import org.apache.commons.jexl2.parser.ASTGENode;
+import org.apache.commons.jexl2.parser.ASTGTNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTLENode;
+import org.apache.commons.jexl2.parser.ASTLTNode;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNRNode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTNullLiteral;
+import org.apache.commons.jexl2.parser.ASTNumberLiteral;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.ASTTrueNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A query tree compiled into a tree of closures, which avoids walking the tree with the interpreter for every document. Field lookups are resolved to slots
+ * when compiled, so each field is fetched from the context at most once per evaluation.
+ * 
+ * The boolean structure of the query (and, or, not) and the equality and regex comparisons of a field against a literal are compiled. Any other node
+ * (functions, methods, ranges, assignments, markers, ...) is evaluated by the interpreter. The compiled nodes follow the same rules as the
+ * {@link DatawaveInterpreter}, so a compiled query returns the same result (and records the same hits) as the interpreted one.
+ */
+public class CompiledJexlPredicate {
+    
+    private final DatawaveJexlEngine engine;
+    private final JexlArithmetic arithmetic;
+    
+    // the slot of each field referenced by the compiled nodes
+    private final Map<String,Integer> slots = new HashMap<>();
+    private final Evaluator root;
+    private int compiledNodes = 0;
+    private int interpretedNodes = 0;
+    
+    public CompiledJexlPredicate(ASTJexlScript script, DatawaveJexlEngine engine, JexlArithmetic arithmetic) {
+        this.engine = engine;
+        this.arithmetic = arithmetic;
+        this.root = compile(script);
+    }
+    
+    /**
+     * Evaluate the query against a context
+     * 
+     * @param context
+     * @return the result of the evaluation, as would be returned by executing the script
+     */
+    public Object execute(JexlContext context) {
+        return root.evaluate(new Frame(context, slots.size()));
+    }
+    
+    /**
+     * @return the number of nodes that were compiled
+     */
+    public int getCompiledNodes() {
+        return compiledNodes;
+    }
+    
+    /**
+     * @return the number of subtrees left to the interpreter
+     */
+    public int getInterpretedNodes() {
+        return interpretedNodes;
+    }
+    
+    private Evaluator compile(JexlNode node) {
+        if (node instanceof ASTJexlScript || node instanceof ASTReferenceExpression) {
+            return (node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : interpret(node));
+        } else if (node instanceof ASTReference) {
+            if (ExceededOrThresholdMarkerJexlNode.instanceOf(node) || node.jjtGetNumChildren() != 1) {
+                return interpret(node);
+            }
+            return compile(node.jjtGetChild(0));
+        } else if (node instanceof ASTOrNode) {
+            return compileOr((ASTOrNode) node);
+        } else if (node instanceof ASTAndNode) {
+            return compileAnd((ASTAndNode) node);
+        } else if (node instanceof ASTNotNode) {
+            Evaluator child = compile(node.jjtGetChild(0));
+            compiledNodes++;
+            return frame -> arithmetic.toBoolean(child.evaluate(frame)) ? Boolean.FALSE : Boolean.TRUE;
+        } else if (node instanceof ASTEQNode || node instanceof ASTNENode) {
+            return compileComparison(node, false, node instanceof ASTNENode);
+        } else if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+            return compileComparison(node, true, node instanceof ASTNRNode);
+        }
+        Evaluator operand = compileOperand(node);
+        return (operand == null ? interpret(node) : operand);
+    }
+    
+    /**
+     * An or node is flattened and its leaves evaluated in the same order as {@link DatawaveInterpreter#visit(ASTOrNode, Object)}, stopping at the first true
+     * result.
+     */
+    private Evaluator compileOr(ASTOrNode node) {
+        Deque<JexlNode> leaves = new ArrayDeque<>();
+        Deque<JexlNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            JexlNode current = stack.pop();
+            if (current instanceof ASTOrNode) {
+                for (int i = current.jjtGetNumChildren() - 1; i >= 0; i--) {
+                    stack.push(JexlASTHelper.dereference(current.jjtGetChild(i)));
+                }
+            } else {
+                leaves.push(current);
+            }
+        }
+        
+        Evaluator[] children = new Evaluator[leaves.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compile(leaves.pop());
+        }
+        compiledNodes++;
+        return frame -> {
+            Object result = null;
+            for (int i = 0; i < children.length && !arithmetic.toBoolean(result); i++) {
+                result = or(children[i].evaluate(frame), result);
+            }
+            return result;
+        };
+    }
+    
+    /**
+     * An and node that may be a range (see {@link DatawaveInterpreter#visit(ASTAndNode, Object)}) is left to the interpreter.
+     */
+    private Evaluator compileAnd(ASTAndNode node) {
+        if (node.jjtGetNumChildren() != 2) {
+            return interpret(node);
+        }
+        for (int i = 0; i < 2; i++) {
+            JexlNode child = node.jjtGetChild(i);
+            if (child instanceof ASTGENode || child instanceof ASTGTNode || child instanceof ASTLENode || child instanceof ASTLTNode) {
+                return interpret(node);
+            }
+        }
+        
+        Evaluator leftChild = compile(node.jjtGetChild(0));
+        Evaluator rightChild = compile(node.jjtGetChild(1));
+        compiledNodes++;
+        return frame -> {
+            // a missing value is an empty set of matches, which does not stop the other side from being evaluated
+            Object left = leftChild.evaluate(frame);
+            if (left == null) {
+                left = FunctionalSet.empty();
+            }
+            if (!(left instanceof Collection) && !toBoolean(node.jjtGetChild(0), left)) {
+                return Boolean.FALSE;
+            }
+            Object right = rightChild.evaluate(frame);
+            if (right == null) {
+                right = FunctionalSet.empty();
+            }
+            if (!(right instanceof Collection) && !toBoolean(node.jjtGetChild(1), right)) {
+                return Boolean.FALSE;
+            }
+            return and(left, right);
+        };
+    }
+    
+    private Evaluator compileComparison(JexlNode node, boolean regex, boolean negated) {
+        Evaluator left = compileOperand(node.jjtGetChild(0));
+        Evaluator right = compileOperand(node.jjtGetChild(1));
+        // a regex may only be compiled against a string literal, the interpreter treats other values as collections to search
+        if (left == null || right == null || (regex && !(JexlASTHelper.dereference(node.jjtGetChild(1)) instanceof ASTStringLiteral))) {
+            return interpret(node);
+        }
+        compiledNodes++;
+        return frame -> {
+            Object leftValue = left.evaluate(frame);
+            Object rightValue = right.evaluate(frame);
+            boolean matched;
+            try {
+                matched = (regex ? arithmetic.matches(leftValue, rightValue) : arithmetic.equals(leftValue, rightValue));
+            } catch (ArithmeticException e) {
+                throw new JexlException(node, (regex ? "=~" : "==") + " error", e);
+            }
+            return (matched != negated) ? Boolean.TRUE : Boolean.FALSE;
+        };
+    }
+    
+    /**
+     * Compile a field or literal
+     * 
+     * @param node
+     * @return the evaluator, or null if the node is not a field or literal
+     */
+    private Evaluator compileOperand(JexlNode node) {
+        node = JexlASTHelper.dereference(node);
+        if (node instanceof ASTIdentifier) {
+            compiledNodes++;
+            int slot = slots.computeIfAbsent(node.image, name -> slots.size());
+            String name = node.image;
+            return frame -> frame.get(slot, name);
+        } else if (node instanceof ASTStringLiteral) {
+            compiledNodes++;
+            String literal = node.image;
+            return frame -> literal;
+        } else if (node instanceof ASTNumberLiteral) {
+            compiledNodes++;
+            Number literal = ((ASTNumberLiteral) node).getLiteral();
+            return frame -> literal;
+        } else if (node instanceof ASTTrueNode) {
+            compiledNodes++;
+            return frame -> Boolean.TRUE;
+        } else if (node instanceof ASTFalseNode) {
+            compiledNodes++;
+            return frame -> Boolean.FALSE;
+        } else if (node instanceof ASTNullLiteral) {
+            compiledNodes++;
+            return frame -> null;
+        }
+        return null;
+    }
+    
+    private Evaluator interpret(JexlNode node) {
+        interpretedNodes++;
+        return frame -> frame.getInterpreter().interpret(node);
+    }
+    
+    private boolean toBoolean(JexlNode node, Object value) {
+        try {
+            return arithmetic.toBoolean(value);
+        } catch (RuntimeException e) {
+            throw new JexlException(node, "boolean coercion error", e);
+        }
+    }
+    
+    /**
+     * Combine the results of two sides of an or node, as in {@link DatawaveInterpreter#interpretOr(Object, Object)}
+     */
+    private Object or(Object left, Object right) {
+        FunctionalSet leftSet = null;
+        FunctionalSet rightSet = null;
+        if (left == null) {
+            left = FunctionalSet.empty();
+        }
+        if (!(left instanceof Collection)) {
+            if (arithmetic.toBoolean(left)) {
+                return Boolean.TRUE;
+            }
+        } else {
+            leftSet = new FunctionalSet();
+            leftSet.addAll((Collection) left);
+        }
+        if (right == null) {
+            right = FunctionalSet.empty();
+        }
+        if (!(right instanceof Collection)) {
+            if (arithmetic.toBoolean(right)) {
+                return Boolean.TRUE;
+            }
+        } else {
+            rightSet = new FunctionalSet();
+            rightSet.addAll((Collection) right);
+        }
+        if (leftSet != null && rightSet != null) {
+            FunctionalSet set = new FunctionalSet(leftSet);
+            set.addAll(rightSet);
+            return set;
+        } else if (leftSet != null) {
+            return leftSet;
+        } else if (rightSet != null) {
+            return rightSet;
+        }
+        return arithmetic.toBoolean(left) || arithmetic.toBoolean(right);
+    }
+    
+    /**
+     * Combine the results of two sides of an and node, neither of which is false, as in {@link DatawaveInterpreter#visit(ASTAndNode, Object)}
+     */
+    private Object and(Object left, Object right) {
+        if (left instanceof Collection && right instanceof Collection) {
+            if (!((Collection) left).isEmpty() && !((Collection) right).isEmpty()) {
+                FunctionalSet set = new FunctionalSet((Collection) left);
+                set.addAll((Collection) right);
+                return set;
+            }
+            return Boolean.FALSE;
+        }
+        if (left instanceof Collection) {
+            left = !((Collection) left).isEmpty();
+        }
+        if (right instanceof Collection) {
+            right = !((Collection) right).isEmpty();
+        }
+        return arithmetic.toBoolean(left) && arithmetic.toBoolean(right);
+    }
+    
+    @FunctionalInterface
+    private interface Evaluator {
+        Object evaluate(Frame frame);
+    }
+    
+    /**
+     * The state of one evaluation: the field values fetched so far and the interpreter for the nodes that were not compiled
+     */
+    private class Frame {
+        private final JexlContext context;
+        private final Object[] values;
+        private final boolean[] fetched;
+        private Interpreter interpreter = null;
+        
+        public Frame(JexlContext context, int size) {
+            this.context = context;
+            this.values = new Object[size];
+            this.fetched = new boolean[size];
+        }
+        
+        public Object get(int slot, String name) {
+            if (!fetched[slot]) {
+                values[slot] = context.get(name);
+                fetched[slot] = true;
+            }
+            return values[slot];
+        }
+        
+        public Interpreter getInterpreter() {
+            if (interpreter == null) {
+                interpreter = engine.createInterpreter(context);
+            }
+            return interpreter;
+        }
+    }
+}
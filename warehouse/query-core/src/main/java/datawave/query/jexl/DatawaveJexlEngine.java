@@ -34,6 +34,14 @@ public class DatawaveJexlEngine extends JexlEngine {
         return new DatawaveInterpreter(this, context, strictFlag, silentFlag);
     }
     
+    /**
+     * Create an interpreter with the settings of this engine, used to evaluate parts of a parsed script directly
+     */
+    @Override
+    public Interpreter createInterpreter(JexlContext context) {
+        return super.createInterpreter(context);
+    }
+    
     public ASTJexlScript parse(CharSequence expression) {
         return super.parse(expression, null, null);
     }
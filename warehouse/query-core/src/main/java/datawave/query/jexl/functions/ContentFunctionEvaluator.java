@@ -1,7 +1,6 @@
 package datawave.query.jexl.functions;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -12,7 +11,6 @@ import org.apache.log4j.Logger;
 
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Lists;
 
 /**
  * An abstract class to for the ordered and unordered content evaluators.
@@ -64,12 +62,12 @@ public abstract class ContentFunctionEvaluator {
     }
     
     /**
-     * Evaluate the function based on the list of offset lists. The lists are expected to be ordered, and there is one offset list per term.
+     * Evaluate the function based on the list of offset lists. The lists are ordered, see {@link TermOffsets}, and there is one offset list per term.
      * 
      * @param offsets
      * @return List of offset matching the query, often just the first match for efficiency
      */
-    protected abstract boolean evaluate(List<List<TermWeightPosition>> offsets);
+    protected abstract boolean evaluate(List<TermOffsets> offsets);
     
     /**
      * Validate and initialize this class. This will validate the arguments and setup other members.
@@ -116,7 +114,7 @@ public abstract class ContentFunctionEvaluator {
                 
                 return false;
             }
-            if (tfList.fetchOffsets().isEmpty()) {
+            if (tfList.isEmpty()) {
                 if (log.isTraceEnabled()) {
                     log.trace("Failing process() because of an empty offset list for " + term);
                 }
@@ -151,7 +149,7 @@ public abstract class ContentFunctionEvaluator {
         if (computable()) {
             // now for each event, lets process the terms
             for (String eventId : eventIds) {
-                ListMultimap<String,List<TermWeightPosition>> offsetsByField = LinkedListMultimap.create();
+                ListMultimap<String,TermOffsets> offsetsByField = LinkedListMultimap.create();
                 for (String term : terms) {
                     TermFrequencyList tfList = termOffsetMap.get(term);
                     
@@ -159,15 +157,15 @@ public abstract class ContentFunctionEvaluator {
                     // and group the lists together
                     for (String field : tfList.fields()) {
                         TermFrequencyList.Zone zone = new TermFrequencyList.Zone(field, true, eventId);
-                        Collection<TermWeightPosition> offsets = tfList.fetchOffsets().get(zone);
+                        TermOffsets offsets = tfList.getOffsets(zone);
                         // if no offsets, but we are explicitly looking for this field (i.e. not unfielded), then check for a non-content expansion zone
                         if (offsets.isEmpty() && (fields != null && fields.contains(field))) {
                             zone = new TermFrequencyList.Zone(field, false, eventId);
-                            offsets = tfList.fetchOffsets().get(zone);
+                            offsets = tfList.getOffsets(zone);
                         }
                         // not all field/event pairs will have offsets
-                        if (offsets != null && !offsets.isEmpty()) {
-                            offsetsByField.put(field, Lists.newArrayList(offsets));
+                        if (!offsets.isEmpty()) {
+                            offsetsByField.put(field, offsets);
                         }
                     }
                 }
@@ -180,7 +178,7 @@ public abstract class ContentFunctionEvaluator {
                 
                 // Iterate over each collection of offsets (grouped by field) and try to find one that satisfies the phrase/adjacency
                 for (String field : offsetsByField.keySet()) {
-                    List<List<TermWeightPosition>> offsets = offsetsByField.get(field);
+                    List<TermOffsets> offsets = offsetsByField.get(field);
                     if (offsets == null || offsets.isEmpty()) {
                         continue;
                     }
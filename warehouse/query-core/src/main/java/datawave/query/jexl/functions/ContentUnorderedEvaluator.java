@@ -1,17 +1,13 @@
 package datawave.query.jexl.functions;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Set;
 
-import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.log4j.Logger;
 
 /**
@@ -54,82 +50,100 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
      * @return true if we found an unordered list within the specified distance for the specified set of offsets.
      */
     @Override
-    public boolean evaluate(List<List<TermWeightPosition>> offsets) {
-        filterOffsets(offsets);
-        MultiOffsetMatcher mlIter = new MultiOffsetMatcher(distance, terms, offsets);
+    public boolean evaluate(List<TermOffsets> offsets) {
+        MultiOffsetMatcher mlIter = new MultiOffsetMatcher(distance, terms, filterOffsets(offsets));
         return mlIter.findMatch();
     }
     
-    private void filterOffsets(List<List<TermWeightPosition>> offsets) {
+    private List<TermOffsets> filterOffsets(List<TermOffsets> offsets) {
         // if max score is maximum possible value short circuit
         if (maxScore == DEFAULT_MAX_SCORE) {
-            return;
+            return offsets;
         }
         
-        for (List<TermWeightPosition> offset : offsets) {
-            Iterator<TermWeightPosition> twpIter = offset.iterator();
-            while (twpIter.hasNext()) {
-                Integer score = twpIter.next().getScore();
-                if (null == score || score > maxScore) {
-                    twpIter.remove();
-                }
-            }
+        List<TermOffsets> filtered = new ArrayList<>(offsets.size());
+        for (TermOffsets offset : offsets) {
+            filtered.add(offset.filterScore(maxScore));
         }
+        return filtered;
+    }
+    
+    /**
+     * The next position to be read from the offsets of a term, shared by every occurrence of the term in the query
+     */
+    private static class Cursor {
+        private int next = 0;
     }
     
     private static class OffsetList implements Comparable<OffsetList> {
         private final String term;
-        private final List<TermWeightPosition> offsets;
-        private TermWeightPosition minOffset;
-        private TermWeightPosition maxOffset = null;
+        private final TermOffsets offsets;
+        private final Cursor cursor;
+        private int min = -1;
+        private int maxOffset = Integer.MIN_VALUE;
         
-        public OffsetList(String term, List<TermWeightPosition> o) {
+        public OffsetList(String term, TermOffsets offsets, Cursor cursor) {
             this.term = term;
-            this.offsets = o;
+            this.offsets = offsets;
+            this.cursor = cursor;
             
-            // as long as there is at least one term, grab the last item for a max
-            if (!o.isEmpty()) {
-                // offsets with skip words will sort based on min so for max we need to loop over all offsets
-                maxOffset = Collections.max(offsets, new TermWeightPosition.MaxOffsetComparator());
+            // offsets with skip words will sort based on min so for max we need to loop over all of the remaining offsets
+            for (int i = cursor.next; i < offsets.size(); i++) {
+                maxOffset = Math.max(maxOffset, offsets.getOffset(i));
             }
             
             nextOffset();
         }
         
-        public TermWeightPosition getMinOffset() {
-            return minOffset;
+        /**
+         * @return the low offset of the current position
+         */
+        public int getMinLowOffset() {
+            return offsets.getLowOffset(min);
+        }
+        
+        /**
+         * @return the offset of the current position
+         */
+        public int getMinOffset() {
+            return offsets.getOffset(min);
         }
         
         /**
          * 
-         * @return the highest value in this list
+         * @return the highest offset in this list
          */
-        public TermWeightPosition getMaxOffset() {
+        public int getMaxOffset() {
             return maxOffset;
         }
         
-        public Optional<TermWeightPosition> nextOffset() {
-            if (offsets.isEmpty()) {
-                return Optional.empty();
+        public boolean nextOffset() {
+            if (cursor.next >= offsets.size()) {
+                return false;
             } else {
-                minOffset = offsets.remove(0);
-                return Optional.of(minOffset);
+                min = cursor.next++;
+                return true;
             }
         }
         
         @Override
         public int compareTo(OffsetList o) {
-            return this.getMinOffset().compareTo(o.getMinOffset());
+            return offsets.compare(min, o.offsets, o.min);
         }
         
         @Override
         public boolean equals(Object o) {
-            return minOffset == ((OffsetList) o).minOffset;
+            return (o instanceof OffsetList) && offsets == ((OffsetList) o).offsets && min == ((OffsetList) o).min;
+        }
+        
+        @Override
+        public int hashCode() {
+            return min;
         }
         
         @Override
         public String toString() {
-            return term + ";" + minOffset + ":" + maxOffset;
+            return term + ";" + offsets.get(min) + ":" + maxOffset;
         }
     }
     
@@ -139,14 +153,14 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
         final String[] terms;
         
         final PriorityQueue<OffsetList> offsetQueue = new PriorityQueue<>();
-        Optional<TermWeightPosition> maxOffset = Optional.empty();
+        // the largest current position, by low offset and then offset
+        boolean hasMax = false;
+        int maxLowOffset = 0;
+        int maxOffset = 0;
         
         /**
-         * At the end of this method, terms will contain the query terms. currentOffsets will contain the minimum offset for each term and offsetLists will
-         * contain the remaining offsets for each term.
-         * 
-         * The indexes of terms, offsetLists and currentOffsets are parallel in that the i'th item in currentOffsets corresponds to the i'th item in offsetLists
-         * and term[i].
+         * At the end of this method, terms will contain the query terms and the queue will hold a cursor over the offsets of each term, positioned at its
+         * minimum offset. The i'th list of offsets corresponds to term[i], and the occurrences of a term share a single cursor.
          *
          * @param distance
          *            the maximum acceptable distance between terms.
@@ -157,7 +171,7 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
          * @throws IllegalArgumentException
          *             if the number of terms does not match the number of offset lists.
          */
-        public MultiOffsetMatcher(int distance, String[] terms, Collection<List<TermWeightPosition>> termOffsets) {
+        public MultiOffsetMatcher(int distance, String[] terms, Collection<TermOffsets> termOffsets) {
             this.distance = distance;
             this.terms = terms;
             
@@ -170,67 +184,71 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
             
             int termPos = 0;
             
-            // holds the (canonical) offset list for of each term
-            final Map<String,List<TermWeightPosition>> termsSeen = new HashMap<>();
+            // holds the (canonical) offsets and cursor of each term
+            final Map<String,OffsetList> termsSeen = new HashMap<>();
             
-            for (List<TermWeightPosition> offsetList : termOffsets) {
+            for (TermOffsets offsets : termOffsets) {
                 String term = terms[termPos++];
                 
-                if (offsetList != null) {
-                    if (!termsSeen.containsKey(term)) {
-                        // new term, create a defensive copy that's safe to modify.
-                        offsetList = new LinkedList<>(offsetList);
-                        termsSeen.put(term, offsetList);
-                    } else {
-                        // already seen term, all matching terms should reference the same list.
-                        offsetList = termsSeen.get(term);
-                    }
+                Cursor cursor = new Cursor();
+                OffsetList seen = termsSeen.get(term);
+                if (seen != null) {
+                    // already seen term, all matching terms should read the same offsets
+                    offsets = seen.offsets;
+                    cursor = seen.cursor;
                 }
                 
-                if (offsetList == null || offsetList.isEmpty()) {
+                if (offsets == null || cursor.next >= offsets.size()) {
                     if (log.isTraceEnabled()) {
-                        log.trace("The offset list for " + term + " is null or has no elements: " + offsetList + ". Exiting");
+                        log.trace("The offset list for " + term + " is null or has no elements: " + offsets + ". Exiting");
                     }
                     
                     offsetQueue.clear();
+                    hasMax = false;
                     return;
                 }
                 
-                OffsetList entry = new OffsetList(term, offsetList);
-                if ((!maxOffset.isPresent()) || (entry.getMinOffset().compareTo(maxOffset.get()) > 0)) {
-                    maxOffset = Optional.of(entry.getMinOffset());
-                }
+                OffsetList entry = new OffsetList(term, offsets, cursor);
+                termsSeen.putIfAbsent(term, entry);
+                updateMax(entry);
                 offsetQueue.add(entry);
             }
         }
         
+        private void updateMax(OffsetList entry) {
+            int low = entry.getMinLowOffset();
+            int offset = entry.getMinOffset();
+            if (!hasMax || low > maxLowOffset || (low == maxLowOffset && offset > maxOffset)) {
+                hasMax = true;
+                maxLowOffset = low;
+                maxOffset = offset;
+            }
+        }
+        
         public boolean findMatch() {
             // Quick short-circuit -- if we have fewer offsets than terms in the phrase/adjacency/within
             // we're evaluating, we know there are no results
-            if (terms.length > offsetQueue.size() || (!maxOffset.isPresent())) {
+            if (terms.length > offsetQueue.size() || !hasMax) {
                 return false;
             }
             
             while (true) {
                 OffsetList o = offsetQueue.remove();
                 
-                if (maxOffset.get().getLowOffset() - o.getMinOffset().getOffset() <= distance) {
+                if (maxLowOffset - o.getMinOffset() <= distance) {
                     return true;
                 }
                 
                 // if the maxOffset is more than distance from the largest value in this list, there is no way to satisfy
-                if (maxOffset.get().getLowOffset() - o.getMaxOffset().getOffset() > distance) {
+                if (maxLowOffset - o.getMaxOffset() > distance) {
                     return false;
                 }
                 
-                Optional<TermWeightPosition> nextOffset = o.nextOffset();
-                if (!nextOffset.isPresent()) { // no more offsets from this list
+                if (!o.nextOffset()) { // no more offsets from this list
                     return false;
                 }
                 
-                if (nextOffset.get().compareTo(maxOffset.get()) > 0) {
-                    maxOffset = nextOffset;
-                }
+                updateMax(o);
                 
                 offsetQueue.add(o);
             }
@@ -238,7 +256,7 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
         
         @Override
         public String toString() {
-            return "MultiOffsetMatcher; dis:" + distance + " max: " + maxOffset + " queue: " + offsetQueue;
+            return "MultiOffsetMatcher; dis:" + distance + " max: " + maxLowOffset + "-" + maxOffset + " queue: " + offsetQueue;
         }
     }
 }
@@ -7,17 +7,19 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 
+import datawave.ingest.protobuf.TermWeight;
 import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.accumulo.core.data.Key;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.TreeMultimap;
 
 /**
  * Represents a List of offsets represented as TermWeightPositions, corresponding to word positions, in a given field, for a term. This is intended to be used
  * in the scope of a Map from term to {@link TermFrequencyList}
+ * 
+ * The offsets of each zone are held as {@link TermOffsets}, sorted primitive arrays, and are only turned into {@link TermWeightPosition}s when fetched.
  */
 public class TermFrequencyList {
     
@@ -95,12 +97,15 @@ public class TermFrequencyList {
         return eventId.toString();
     }
     
-    protected final TreeMultimap<Zone,TermWeightPosition> offsetsPerField;
+    // the positions of the term in each zone
+    protected final TreeMap<Zone,TermOffsets> offsetsPerZone = new TreeMap<>();
+    
+    public TermFrequencyList() {}
     
     public TermFrequencyList(TreeMultimap<Zone,TermWeightPosition> offsetsByField) {
         checkNotNull(offsetsByField);
         
-        this.offsetsPerField = offsetsByField;
+        addOffsets(offsetsByField);
     }
     
     public TermFrequencyList(Entry<Zone,Iterable<TermWeightPosition>> offsetsPerField) {
@@ -114,23 +119,49 @@ public class TermFrequencyList {
     public TermFrequencyList(Iterable<Entry<Zone,Iterable<TermWeightPosition>>> offsetsPerField) {
         checkNotNull(offsetsPerField);
         
-        this.offsetsPerField = TreeMultimap.create();
-        
         addOffsets(offsetsPerField);
     }
     
     public static TermFrequencyList merge(TermFrequencyList list1, TermFrequencyList list2) {
-        TreeMultimap<Zone,TermWeightPosition> offsetsPerField = TreeMultimap.create();
-        offsetsPerField.putAll(list1.offsetsPerField);
-        offsetsPerField.putAll(list2.offsetsPerField);
-        return new TermFrequencyList(offsetsPerField);
+        TermFrequencyList merged = new TermFrequencyList();
+        merged.offsetsPerZone.putAll(list1.offsetsPerZone);
+        for (Entry<Zone,TermOffsets> offsets : list2.offsetsPerZone.entrySet()) {
+            merged.addOffsets(offsets.getKey(), offsets.getValue());
+        }
+        return merged;
     }
     
-    public void addOffsets(Zone field, Iterable<TermWeightPosition> offsets) {
+    /**
+     * Add the offsets of a zone. Offsets that sort equal to offsets already in the zone are dropped.
+     * 
+     * @param field
+     * @param offsets
+     */
+    public void addOffsets(Zone field, TermOffsets offsets) {
         checkNotNull(field);
         checkNotNull(offsets);
         
-        this.offsetsPerField.putAll(field, offsets);
+        if (!offsets.isEmpty()) {
+            this.offsetsPerZone.merge(field, offsets, TermOffsets::merge);
+        }
+    }
+    
+    /**
+     * Add the offsets of a term weight to a zone, decoding them directly into the primitive representation
+     * 
+     * @param field
+     * @param termWeight
+     */
+    public void addOffsets(Zone field, TermWeight.Info termWeight) {
+        checkNotNull(termWeight);
+        
+        addOffsets(field, TermOffsets.of(termWeight));
+    }
+    
+    public void addOffsets(Zone field, Iterable<TermWeightPosition> offsets) {
+        checkNotNull(offsets);
+        
+        addOffsets(field, TermOffsets.of(offsets));
     }
     
     public void addOffsets(Entry<Zone,Iterable<TermWeightPosition>> offsetForField) {
@@ -156,12 +187,21 @@ public class TermFrequencyList {
     }
     
     /**
-     * Return an <code>Immutable</code> copy of the entire mapping
+     * @param zone
+     * @return the offsets in a zone, empty if there are none
+     */
+    public TermOffsets getOffsets(Zone zone) {
+        TermOffsets offsets = this.offsetsPerZone.get(zone);
+        return (offsets == null) ? TermOffsets.EMPTY : offsets;
+    }
+    
+    /**
+     * Return a copy of the entire mapping
      * 
      * @return
      */
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets() {
-        return this.offsetsPerField;
+        return fetchOffsets(this.offsetsPerZone.keySet());
     }
     
     /**
@@ -173,18 +213,31 @@ public class TermFrequencyList {
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets(Set<Zone> fields) {
         checkNotNull(fields);
         
-        return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(this.offsetsPerField, new FieldFilterPredicate(fields));
+        TreeMultimap<Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        for (Entry<Zone,TermOffsets> entry : this.offsetsPerZone.entrySet()) {
+            if (fields.contains(entry.getKey())) {
+                offsets.putAll(entry.getKey(), entry.getValue().asList());
+            }
+        }
+        return offsets;
+    }
+    
+    /**
+     * @return true if there are no offsets
+     */
+    public boolean isEmpty() {
+        return this.offsetsPerZone.isEmpty();
     }
     
     /**
      * Let clients ask what fields we are currently tracking.
      */
     public Set<String> fields() {
-        if (this.offsetsPerField.isEmpty()) {
+        if (this.offsetsPerZone.isEmpty()) {
             return Collections.emptySet();
         } else {
             Set<String> fields = new HashSet<>();
-            for (Zone zone : this.offsetsPerField.keySet()) {
+            for (Zone zone : this.offsetsPerZone.keySet()) {
                 fields.add(zone.getZone());
             }
             return fields;
@@ -195,11 +248,11 @@ public class TermFrequencyList {
      * Let clients ask what event ids we are currently tracking.
      */
     public Set<String> eventIds() {
-        if (this.offsetsPerField.isEmpty()) {
+        if (this.offsetsPerZone.isEmpty()) {
             return Collections.emptySet();
         } else {
             Set<String> eventIds = new HashSet<>();
-            for (Zone zone : this.offsetsPerField.keySet()) {
+            for (Zone zone : this.offsetsPerZone.keySet()) {
                 eventIds.add(zone.getEventId());
             }
             return eventIds;
@@ -210,17 +263,17 @@ public class TermFrequencyList {
      * Let clients ask what zones we are currently tracking.
      */
     public Set<Zone> zones() {
-        return this.offsetsPerField.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(this.offsetsPerField.keySet());
+        return this.offsetsPerZone.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(this.offsetsPerZone.keySet());
     }
     
     @Override
     public String toString() {
-        return this.offsetsPerField.toString();
+        return this.offsetsPerZone.toString();
     }
     
     @Override
     public int hashCode() {
-        return this.offsetsPerField.hashCode();
+        return this.offsetsPerZone.hashCode();
     }
     
     @Override
@@ -228,29 +281,9 @@ public class TermFrequencyList {
         if (o instanceof TermFrequencyList) {
             TermFrequencyList other = (TermFrequencyList) o;
             
-            return this.offsetsPerField.equals(other.offsetsPerField);
+            return this.offsetsPerZone.equals(other.offsetsPerZone);
         }
         
         return false;
     }
-    
-    private class FieldFilterPredicate implements Predicate<Zone> {
-        private final Set<Zone> fieldNames;
-        
-        public FieldFilterPredicate(Set<Zone> fieldNames) {
-            this.fieldNames = fieldNames;
-        }
-        
-        /*
-         * (non-Javadoc)
-         * 
-         * @see com.google.common.base.Predicate#apply(java.lang.Object)
-         */
-        @Override
-        public boolean apply(Zone input) {
-            // Retain results which have the given field name
-            return this.fieldNames.contains(input);
-        }
-        
-    }
 }
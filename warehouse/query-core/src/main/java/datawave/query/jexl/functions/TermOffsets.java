@@ -0,0 +1,375 @@
+package datawave.query.jexl.functions;
+
+import datawave.ingest.protobuf.TermWeight;
+import datawave.ingest.protobuf.TermWeightPosition;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The positions of a term within a single zone, held in parallel primitive arrays rather than as {@link TermWeightPosition} objects. The positions are sorted
+ * the way {@link TermWeightPosition}s sort, by low offset and then offset, and positions that sort equally are kept once, as they would be in the sets of a
+ * {@link com.google.common.collect.TreeMultimap}. Instances are immutable.
+ */
+public class TermOffsets {
+    
+    public static final TermOffsets EMPTY = new TermOffsets(0, new int[0], new int[0], new int[0], new int[0], new boolean[0]);
+    
+    private final int size;
+    private final int[] offsets;
+    private final int[] lowOffsets;
+    private final int[] prevSkips;
+    private final int[] scores;
+    private final boolean[] zeroOffsetMatch;
+    
+    private final boolean hasSkips;
+    private final boolean allZeroOffsetMatch;
+    
+    private TermOffsets(int size, int[] offsets, int[] lowOffsets, int[] prevSkips, int[] scores, boolean[] zeroOffsetMatch) {
+        this.size = size;
+        this.offsets = offsets;
+        this.lowOffsets = lowOffsets;
+        this.prevSkips = prevSkips;
+        this.scores = scores;
+        this.zeroOffsetMatch = zeroOffsetMatch;
+        
+        boolean skips = false;
+        boolean allZero = true;
+        for (int i = 0; i < size; i++) {
+            skips |= (lowOffsets[i] != offsets[i]);
+            allZero &= zeroOffsetMatch[i];
+        }
+        this.hasSkips = skips;
+        this.allZeroOffsetMatch = allZero;
+    }
+    
+    /**
+     * Decode the positions of a term weight directly, without building a {@link TermWeightPosition} for each
+     * 
+     * @param info
+     * @return the positions
+     */
+    public static TermOffsets of(TermWeight.Info info) {
+        int size = info.getTermOffsetCount();
+        // offsets, skips, and scores are linked by index so only use the skips and scores if the counts match the offsets
+        boolean withSkips = (info.getPrevSkipsCount() == size);
+        boolean withScores = (info.getScoreCount() == size);
+        
+        int[] offsets = new int[size];
+        int[] prevSkips = new int[size];
+        int[] scores = new int[size];
+        boolean[] zeroOffsetMatch = new boolean[size];
+        Arrays.fill(zeroOffsetMatch, info.getZeroOffsetMatch());
+        for (int i = 0; i < size; i++) {
+            offsets[i] = info.getTermOffset(i);
+            prevSkips[i] = withSkips ? info.getPrevSkips(i) : TermWeightPosition.DEFAULT_PREV_SKIPS;
+            scores[i] = withScores ? info.getScore(i) : TermWeightPosition.DEFAULT_SCORE;
+        }
+        return sorted(size, offsets, prevSkips, scores, zeroOffsetMatch);
+    }
+    
+    public static TermOffsets of(Iterable<TermWeightPosition> positions) {
+        int size = 0;
+        for (TermWeightPosition ignored : positions) {
+            size++;
+        }
+        
+        int[] offsets = new int[size];
+        int[] prevSkips = new int[size];
+        int[] scores = new int[size];
+        boolean[] zeroOffsetMatch = new boolean[size];
+        int i = 0;
+        for (TermWeightPosition position : positions) {
+            offsets[i] = position.getOffset();
+            prevSkips[i] = position.getPrevSkips();
+            scores[i] = position.getScore();
+            zeroOffsetMatch[i] = position.getZeroOffsetMatch();
+            i++;
+        }
+        return sorted(size, offsets, prevSkips, scores, zeroOffsetMatch);
+    }
+    
+    private static int lowOffset(int offset, int prevSkips) {
+        return (prevSkips >= 0) ? offset - prevSkips : offset;
+    }
+    
+    private static int compare(int low1, int offset1, int low2, int offset2) {
+        int result = Integer.compare(low1, low2);
+        return (result != 0) ? result : Integer.compare(offset1, offset2);
+    }
+    
+    /**
+     * Sort the positions and drop the ones that sort equal to an earlier one, keeping the first
+     */
+    private static TermOffsets sorted(int size, int[] offsets, int[] prevSkips, int[] scores, boolean[] zeroOffsetMatch) {
+        int[] lowOffsets = new int[size];
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            lowOffsets[i] = lowOffset(offsets[i], prevSkips[i]);
+            sorted &= (i == 0 || compare(lowOffsets[i - 1], offsets[i - 1], lowOffsets[i], offsets[i]) < 0);
+        }
+        
+        // the offsets of a term weight are nearly always in order already
+        if (sorted) {
+            return new TermOffsets(size, offsets, lowOffsets, prevSkips, scores, zeroOffsetMatch);
+        }
+        
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // a stable sort, so the first of the positions that sort equally is kept
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> lowOffsets[i]).thenComparingInt(i -> offsets[i]));
+        
+        Builder builder = new Builder(size);
+        for (int i : order) {
+            builder.add(offsets[i], lowOffsets[i], prevSkips[i], scores[i], zeroOffsetMatch[i]);
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Merge the positions of another list into these. Where positions sort equally, the position from this list is kept.
+     * 
+     * @param other
+     * @return the merged positions
+     */
+    public TermOffsets merge(TermOffsets other) {
+        if (other.size == 0) {
+            return this;
+        } else if (size == 0) {
+            return other;
+        }
+        
+        Builder builder = new Builder(size + other.size);
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            int comparison = (i == size) ? 1 : (j == other.size) ? -1 : compare(lowOffsets[i], offsets[i], other.lowOffsets[j], other.offsets[j]);
+            if (comparison <= 0) {
+                builder.add(offsets[i], lowOffsets[i], prevSkips[i], scores[i], zeroOffsetMatch[i]);
+                i++;
+                if (comparison == 0) {
+                    j++;
+                }
+            } else {
+                builder.add(other.offsets[j], other.lowOffsets[j], other.prevSkips[j], other.scores[j], other.zeroOffsetMatch[j]);
+                j++;
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * @param maxScore
+     * @return the positions with a score no greater than the max score
+     */
+    public TermOffsets filterScore(int maxScore) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (scores[i] <= maxScore) {
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return this;
+        }
+        
+        Builder builder = new Builder(kept);
+        for (int i = 0; i < size; i++) {
+            if (scores[i] <= maxScore) {
+                builder.add(offsets[i], lowOffsets[i], prevSkips[i], scores[i], zeroOffsetMatch[i]);
+            }
+        }
+        return builder.build();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @param i
+     * @return the maximum possible offset of a position, see {@link TermWeightPosition#getOffset()}
+     */
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+    
+    /**
+     * @param i
+     * @return the lowest possible offset of a position with respect to skips, see {@link TermWeightPosition#getLowOffset()}
+     */
+    public int getLowOffset(int i) {
+        return lowOffsets[i];
+    }
+    
+    public int getPrevSkips(int i) {
+        return prevSkips[i];
+    }
+    
+    public int getScore(int i) {
+        return scores[i];
+    }
+    
+    public boolean getZeroOffsetMatch(int i) {
+        return zeroOffsetMatch[i];
+    }
+    
+    /**
+     * @return true if any position has skips, i.e. a low offset below its offset
+     */
+    public boolean hasSkips() {
+        return hasSkips;
+    }
+    
+    /**
+     * @return true if every position may match another at the same offset
+     */
+    public boolean isZeroOffsetMatch() {
+        return allZeroOffsetMatch;
+    }
+    
+    /**
+     * @param i
+     * @param other
+     * @param j
+     * @return the comparison of a position to the position of another list, as {@link TermWeightPosition#compareTo(TermWeightPosition)} would compare them
+     */
+    public int compare(int i, TermOffsets other, int j) {
+        return compare(lowOffsets[i], offsets[i], other.lowOffsets[j], other.offsets[j]);
+    }
+    
+    public TermWeightPosition get(int i) {
+        return new TermWeightPosition.Builder().setOffset(offsets[i]).setPrevSkips(prevSkips[i]).setScore(scores[i]).setZeroOffsetMatch(zeroOffsetMatch[i])
+                        .build();
+    }
+    
+    /**
+     * @return a view of the positions as {@link TermWeightPosition}s, built as they are read
+     */
+    public List<TermWeightPosition> asList() {
+        return new AbstractList<TermWeightPosition>() {
+            @Override
+            public TermWeightPosition get(int index) {
+                return TermOffsets.this.get(index);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    /**
+     * Gallop forward from a position to the last position with a low offset no greater than the key, doubling the stride until the key is passed and then
+     * binary searching the last stride.
+     * 
+     * @param lowOffsets
+     *            sorted low offsets
+     * @param from
+     *            the position to start from, -1 or a position with a low offset no greater than the key
+     * @param size
+     *            the number of low offsets
+     * @param key
+     * @return the last position with a low offset no greater than the key, or -1 if there is none
+     */
+    static int gallop(int[] lowOffsets, int from, int size, int key) {
+        int low = from;
+        int high = from + 1;
+        int stride = 1;
+        while (high < size && lowOffsets[high] <= key) {
+            low = high;
+            stride <<= 1;
+            high = from + stride;
+        }
+        high = Math.min(high, size);
+        
+        // lowOffsets[low] <= key (or low is -1), and high is past the key or the end
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (lowOffsets[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof TermOffsets) {
+            TermOffsets other = (TermOffsets) o;
+            if (size != other.size) {
+                return false;
+            }
+            // positions are equal when they sort equally
+            for (int i = 0; i < size; i++) {
+                if (compare(i, other, i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + offsets[i];
+            hash = 31 * hash + lowOffsets[i];
+        }
+        return hash;
+    }
+    
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+    
+    /**
+     * Collects positions that are already sorted
+     */
+    private static class Builder {
+        private int size = 0;
+        private final int[] offsets;
+        private final int[] lowOffsets;
+        private final int[] prevSkips;
+        private final int[] scores;
+        private final boolean[] zeroOffsetMatch;
+        
+        Builder(int capacity) {
+            offsets = new int[capacity];
+            lowOffsets = new int[capacity];
+            prevSkips = new int[capacity];
+            scores = new int[capacity];
+            zeroOffsetMatch = new boolean[capacity];
+        }
+        
+        void add(int offset, int lowOffset, int prevSkip, int score, boolean zeroMatch) {
+            // drop a position that sorts equal to the last one
+            if (size > 0 && lowOffsets[size - 1] == lowOffset && offsets[size - 1] == offset) {
+                return;
+            }
+            offsets[size] = offset;
+            lowOffsets[size] = lowOffset;
+            prevSkips[size] = prevSkip;
+            scores[size] = score;
+            zeroOffsetMatch[size] = zeroMatch;
+            size++;
+        }
+        
+        TermOffsets build() {
+            return new TermOffsets(size, offsets, lowOffsets, prevSkips, scores, zeroOffsetMatch);
+        }
+    }
+}
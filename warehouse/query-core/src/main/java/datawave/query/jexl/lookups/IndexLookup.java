@@ -6,12 +6,12 @@ import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.index.lookup.IndexLookupScheduler;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.io.Text;
@@ -51,7 +51,8 @@ public abstract class IndexLookup {
         
         long maxLookup = timeout;
         
-        ExecutorService execService = Executors.newFixedThreadPool(1);
+        // the scan runs on the shared index scan threads, on a thread reserved for it while the scan is queued or running
+        ExecutorService execService = IndexLookupScheduler.getInstance().scanExecutor(config, 1);
         
         Future<Boolean> future = execService.submit(createTimedCallable(iter, fieldsToValues, config, datatypeFilter, fields, isReverse, timeout));
         
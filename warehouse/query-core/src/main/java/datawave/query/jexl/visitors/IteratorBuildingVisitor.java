@@ -6,6 +6,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import datawave.core.iterators.DatawaveFieldIndexListIteratorJexl;
+import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.core.iterators.SourcePool;
 import datawave.core.iterators.ThreadLocalPooledSource;
 import datawave.core.iterators.filesystem.FileSystemCache;
@@ -54,6 +55,7 @@ import datawave.query.predicate.Filter;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.IteratorToSortedKeyValueIterator;
 import datawave.query.util.TypeMetadata;
+import datawave.query.util.sortedset.TieredSortedSetFileHandlerFactory;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
 import org.apache.accumulo.core.data.Key;
@@ -85,6 +87,7 @@ import org.apache.commons.jexl2.parser.ASTSizeMethod;
 import org.apache.commons.jexl2.parser.ASTStringLiteral;
 import org.apache.commons.jexl2.parser.JexlNode;
 import org.apache.commons.jexl2.parser.ParserTreeConstants;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
@@ -140,8 +143,13 @@ public class IteratorBuildingVisitor extends BaseVisitor {
     protected long ivaratorCacheScanPersistThreshold = 100000L;
     protected long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     protected int ivaratorCacheBufferSize = 10000;
+    protected boolean ivaratorCacheOffHeapBuffer = false;
+    protected String ivaratorCacheLocalDirURI = null;
+    protected boolean ivaratorStreamingFill = false;
+    protected int schedulingWeight = IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
+    protected int ivaratorMaxCandidates = 0;
     protected SourcePool ivaratorSources = null;
     protected SortedKeyValueIterator<Key,Value> ivaratorSource = null;
     protected int ivaratorCount = 0;
@@ -345,8 +353,9 @@ public class IteratorBuildingVisitor extends BaseVisitor {
             and.childrenAccept(this, data);
         } else {
             // Create an AndIterator and recursively add the children
-            AbstractIteratorBuilder andItr = new AndIteratorBuilder();
+            AndIteratorBuilder andItr = new AndIteratorBuilder();
             andItr.negateAsNeeded(data);
+            andItr.setMaxCandidates(ivaratorMaxCandidates);
             and.childrenAccept(this, andItr);
             
             // If there is no parent
@@ -1042,6 +1051,22 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         throw new IOException("Unable to find a usable hdfs cache dir out of " + ivaratorCacheDirURIs);
     }
     
+    /**
+     * Get the local cache directory that mirrors the temporary cache dir for an ivarator. The local directory is not checked for usability as the ivarator
+     * will fall back to the temporary cache dir if it cannot be written.
+     * 
+     * @param path
+     *            the temporary cache dir
+     * @return A path
+     */
+    private URI getLocalCacheDir(URI path) {
+        Path localPath = new Path(ivaratorCacheLocalDirURI, queryId);
+        if (scanId != null) {
+            localPath = new Path(localPath, scanId);
+        }
+        return new Path(localPath, new Path(path).getName()).toUri();
+    }
+    
     /**
      * Build the iterator stack using the regex ivarator (field index caching regex iterator)
      * 
@@ -1323,6 +1348,19 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         builder.setQueryLock(queryLock);
         builder.setIvaratorCacheDirURI(path.toString());
         builder.setIvaratorCacheBufferSize(ivaratorCacheBufferSize);
+        builder.setIvaratorCacheOffHeapBuffer(ivaratorCacheOffHeapBuffer);
+        if (ivaratorCacheLocalDirURI != null) {
+            URI localPath = getLocalCacheDir(path);
+            FileSystem localFs = hdfsFileSystem.getFileSystem(localPath);
+            // the local quota is a tserver setting, and the local files are only cleaned up by the tserver holding them
+            TieredSortedSetFileHandlerFactory.configure(env);
+            TieredSortedSetFileHandlerFactory.cleanupOrphans(localFs, new Path(ivaratorCacheLocalDirURI), queryId);
+            builder.setLocalFileSystem(localFs);
+            builder.setIvaratorCacheLocalDirURI(localPath.toString());
+        }
+        builder.setIvaratorStreamingFill(ivaratorStreamingFill);
+        builder.setSchedulingKey(IteratorThreadPoolManager.getSchedulingKey(queryId, scanId));
+        builder.setSchedulingWeight(schedulingWeight);
         builder.setIvaratorCacheScanPersistThreshold(ivaratorCacheScanPersistThreshold);
         builder.setIvaratorCacheScanTimeout(ivaratorCacheScanTimeout);
         builder.setMaxRangeSplit(maxRangeSplit);
@@ -1530,6 +1568,26 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorCacheOffHeapBuffer(boolean ivaratorCacheOffHeapBuffer) {
+        this.ivaratorCacheOffHeapBuffer = ivaratorCacheOffHeapBuffer;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorCacheLocalDirURI(String ivaratorCacheLocalDirURI) {
+        this.ivaratorCacheLocalDirURI = ivaratorCacheLocalDirURI;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorStreamingFill(boolean ivaratorStreamingFill) {
+        this.ivaratorStreamingFill = ivaratorStreamingFill;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setSchedulingWeight(int schedulingWeight) {
+        this.schedulingWeight = schedulingWeight;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setIvaratorCacheScanPersistThreshold(long ivaratorCacheScanPersistThreshold) {
         this.ivaratorCacheScanPersistThreshold = ivaratorCacheScanPersistThreshold;
         return this;
@@ -1550,6 +1608,11 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorMaxCandidates(int ivaratorMaxCandidates) {
+        this.ivaratorMaxCandidates = ivaratorMaxCandidates;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setIvaratorSources(SourceFactory sourceFactory, int maxIvaratorSources) {
         this.ivaratorSources = new SourcePool(sourceFactory, maxIvaratorSources);
         this.ivaratorSource = new ThreadLocalPooledSource<>(ivaratorSources);
@@ -0,0 +1,196 @@
+package datawave.query.jexl.visitors;
+
+import static org.apache.commons.jexl2.parser.JexlNodes.id;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import datawave.query.Constants;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.nodes.QueryPropertyMarker;
+import datawave.query.planner.pushdown.Cost;
+import datawave.query.planner.pushdown.CostEstimator;
+
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParserTreeConstants;
+import org.apache.log4j.Logger;
+
+/**
+ * Orders the terms of each conjunction by their estimated cost, cheapest first, so that the query is looked up in the global index and evaluated starting from
+ * its most selective terms. Terms whose cost could not be estimated follow those with a cost, and query property markers and negations come last, each in their
+ * original order.
+ * <p>
+ * When the cheapest term of a conjunction is an indexed equality term, the indexed equality terms of the conjunction that cost at least {@code delayRatio}
+ * times as much are delayed: instead of being looked up in the global index, they are evaluated against the documents of the cheaper term.
+ * <p>
+ * The tree is re-written in place. Markers and negations are left as they are.
+ */
+public class OrderByCostVisitor extends BaseVisitor {
+    
+    private static final Logger log = Logger.getLogger(OrderByCostVisitor.class);
+    
+    // the ranks of the terms of a conjunction, in the order they are placed
+    private static final int ESTIMATED = 0;
+    private static final int UNKNOWN = 1;
+    private static final int MARKER = 2;
+    
+    private final CostEstimator costEstimator;
+    private final double delayRatio;
+    private final Set<String> indexOnlyFields;
+    
+    // the decisions made, for the query metrics
+    private int reordered = 0;
+    private int delayed = 0;
+    
+    /**
+     * @param costEstimator
+     *            estimates the cost of each term
+     * @param delayRatio
+     *            how many times as much as the cheapest term of a conjunction a term must cost to be delayed, 0 or less to delay no term
+     * @param indexOnlyFields
+     *            the fields whose terms are never delayed
+     */
+    public OrderByCostVisitor(CostEstimator costEstimator, double delayRatio, Set<String> indexOnlyFields) {
+        this.costEstimator = costEstimator;
+        this.delayRatio = delayRatio;
+        this.indexOnlyFields = indexOnlyFields;
+    }
+    
+    /**
+     * The costs of the terms are not included: they may be estimated from statistics the user is not authorized to see, such as the index stats.
+     * 
+     * @return the number of re-ordered conjunctions and delayed terms
+     */
+    public Map<String,Double> getEstimates() {
+        Map<String,Double> all = new LinkedHashMap<>();
+        all.put("reordered conjunctions", (double) reordered);
+        all.put("delayed terms", (double) delayed);
+        return all;
+    }
+    
+    @Override
+    public Object visit(ASTReferenceExpression node, Object data) {
+        // if not already delayed somehow
+        if (!QueryPropertyMarker.instanceOf(node, null)) {
+            return super.visit(node, data);
+        }
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTReference node, Object data) {
+        // if not already delayed somehow
+        if (!QueryPropertyMarker.instanceOf(node, null)) {
+            return super.visit(node, data);
+        }
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTNotNode node, Object data) {
+        // the terms of a negation are not looked up in the global index
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTAndNode node, Object data) {
+        if (QueryPropertyMarker.instanceOf(node, null)) {
+            return data;
+        }
+        
+        // order the nested conjunctions first
+        super.visit(node, data);
+        
+        List<TermCost> terms = new ArrayList<>(node.jjtGetNumChildren());
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            terms.add(estimate(node.jjtGetChild(i)));
+        }
+        // a stable sort, so terms of the same rank and cost keep their order
+        terms.sort(Comparator.<TermCost> comparingInt(term -> term.rank).thenComparingLong(term -> term.cost));
+        
+        boolean moved = false;
+        for (int i = 0; i < terms.size(); i++) {
+            JexlNode child = terms.get(i).node;
+            if (node.jjtGetChild(i) != child) {
+                moved = true;
+                node.jjtAddChild(child, i);
+                child.jjtSetParent(node);
+            }
+        }
+        
+        TermCost cheapest = terms.get(0);
+        if (moved) {
+            reordered++;
+            if (log.isDebugEnabled()) {
+                log.debug("Leading with " + JexlStringBuildingVisitor.buildQuery(cheapest.node) + " with a cost of " + cheapest.cost);
+            }
+        }
+        
+        if (delayRatio > 0 && isIndexedTerm(cheapest)) {
+            double threshold = delayRatio * Math.max(cheapest.cost, 1l);
+            for (TermCost term : terms.subList(1, terms.size())) {
+                if (isIndexedTerm(term) && term.cost >= threshold) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Delaying " + JexlStringBuildingVisitor.buildQuery(term.node) + " with a cost of " + term.cost + " against "
+                                        + JexlStringBuildingVisitor.buildQuery(cheapest.node) + " with a cost of " + cheapest.cost);
+                    }
+                    ASTDelayedPredicate.create(term.node);
+                    delayed++;
+                }
+            }
+        }
+        return data;
+    }
+    
+    private TermCost estimate(JexlNode node) {
+        if (QueryPropertyMarker.instanceOf(node, null) || node instanceof ASTNotNode || ParserTreeConstants.JJTNENODE == id(node)
+                        || ParserTreeConstants.JJTNRNODE == id(node)) {
+            return new TermCost(node, MARKER, 0l);
+        }
+        Cost cost = costEstimator.computeCostForSubtree(node);
+        if (cost.isUnevaluated() && 0l == cost.getERCost() && 0l == cost.getOtherCost()) {
+            return new TermCost(node, UNKNOWN, 0l);
+        }
+        // the costs are summed without overflowing
+        long total = (cost.getERCost() > Long.MAX_VALUE - cost.getOtherCost() ? Long.MAX_VALUE : cost.totalCost());
+        return new TermCost(node, ESTIMATED, total);
+    }
+    
+    /**
+     * @param term
+     * @return true if the term is an equality term with an estimated cost that may be looked up in the global index
+     */
+    private boolean isIndexedTerm(TermCost term) {
+        if (ESTIMATED != term.rank || Long.MAX_VALUE == term.cost || ParserTreeConstants.JJTEQNODE != id(term.node)) {
+            return false;
+        }
+        try {
+            String fieldName = JexlASTHelper.getIdentifier(term.node);
+            return !fieldName.equals(Constants.ANY_FIELD) && !fieldName.equals(Constants.NO_FIELD) && !indexOnlyFields.contains(fieldName);
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+    
+    private static class TermCost {
+        private final JexlNode node;
+        private final int rank;
+        private final long cost;
+        
+        TermCost(JexlNode node, int rank, long cost) {
+            this.node = node;
+            this.rank = rank;
+            this.cost = cost;
+        }
+    }
+}
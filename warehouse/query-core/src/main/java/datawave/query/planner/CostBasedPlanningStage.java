@@ -0,0 +1,57 @@
+package datawave.query.planner;
+
+import java.util.Map;
+import java.util.Set;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.exceptions.DatawaveFatalQueryException;
+import datawave.query.jexl.visitors.OrderByCostVisitor;
+import datawave.query.planner.pushdown.IndexStatsCostEstimator;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.MetadataHelper;
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+
+/**
+ * Orders the terms of the conjunctions of the query by the number of documents they are estimated to match, and delays the terms that are far less selective
+ * than the cheapest term of their conjunction, see {@link OrderByCostVisitor}. The costs are estimated from the index statistics by the
+ * {@link IndexStatsCostEstimator}. The number of re-ordered conjunctions and delayed terms is recorded in the plan estimates of the configuration.
+ */
+public class CostBasedPlanningStage implements PlanningStage {
+    
+    private double delayRatio = 1000;
+    
+    @Override
+    public ASTJexlScript apply(ASTJexlScript queryTree, ScannerFactory scannerFactory, MetadataHelper metadataHelper, ShardQueryConfiguration config) {
+        Set<String> indexOnlyFields;
+        try {
+            indexOnlyFields = metadataHelper.getIndexOnlyFields(config.getDatatypeFilter());
+        } catch (TableNotFoundException e) {
+            QueryException qe = new QueryException(DatawaveErrorCode.INDEX_ONLY_FIELDS_RETRIEVAL_ERROR, e);
+            throw new DatawaveFatalQueryException(qe);
+        }
+        
+        OrderByCostVisitor visitor = new OrderByCostVisitor(new IndexStatsCostEstimator(config, scannerFactory, metadataHelper), delayRatio, indexOnlyFields);
+        queryTree.jjtAccept(visitor, null);
+        
+        for (Map.Entry<String,Double> estimate : visitor.getEstimates().entrySet()) {
+            config.addPlanEstimate(estimate.getKey(), estimate.getValue());
+        }
+        return queryTree;
+    }
+    
+    public double getDelayRatio() {
+        return delayRatio;
+    }
+    
+    /**
+     * @param delayRatio
+     *            how many times as much as the cheapest term of a conjunction a term must cost to be delayed, 0 or less to delay no term
+     */
+    public void setDelayRatio(double delayRatio) {
+        this.delayRatio = delayRatio;
+    }
+}
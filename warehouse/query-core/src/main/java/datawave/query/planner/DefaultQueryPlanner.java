@@ -227,6 +227,8 @@ public class DefaultQueryPlanner extends QueryPlanner {
     
     protected List<PushDownRule> rules = Lists.newArrayList();
     
+    protected List<PlanningStage> planningStages = Lists.newArrayList();
+    
     protected Class<? extends SortedKeyValueIterator<Key,Value>> queryIteratorClazz = QueryIterator.class;
     
     protected String plannedScript = null;
@@ -294,6 +296,7 @@ public class DefaultQueryPlanner extends QueryPlanner {
         if (null != other.cachedNormalizedFields)
             cachedNormalizedFields = Sets.newHashSet(other.cachedNormalizedFields);
         rules.addAll(other.rules);
+        planningStages.addAll(other.planningStages);
         queryIteratorClazz = other.queryIteratorClazz;
         setMetadataHelper(other.getMetadataHelper());
         setDateIndexHelper(other.getDateIndexHelper());
@@ -751,6 +754,8 @@ public class DefaultQueryPlanner extends QueryPlanner {
         
         queryTree = processTree(queryTree, config, settings, metadataHelper, scannerFactory, queryData, timers, queryModel);
         
+        queryTree = applyPlanningStages(queryTree, scannerFactory, metadataHelper, config, timers);
+        
         // ExpandCompositeTerms was here
         
         stopwatch = timers.newStartedStopwatch("DefaultQueryPlanner - Determine if query contains index-only fields");
@@ -1535,6 +1540,32 @@ public class DefaultQueryPlanner extends QueryPlanner {
         return pushDownPlanner.applyRules(queryTree);
     }
     
+    /**
+     * Apply the configured planning stages, in order, to the expanded query
+     * 
+     * @param queryTree
+     * @param scannerFactory
+     * @param metadataHelper
+     * @param config
+     * @param timers
+     * @return the re-written query
+     */
+    protected ASTJexlScript applyPlanningStages(ASTJexlScript queryTree, ScannerFactory scannerFactory, MetadataHelper metadataHelper,
+                    ShardQueryConfiguration config, QueryStopwatch timers) {
+        for (PlanningStage stage : planningStages) {
+            TraceStopwatch stopwatch = timers.newStartedStopwatch("DefaultQueryPlanner - " + stage.getClass().getSimpleName());
+            
+            queryTree = stage.apply(queryTree, scannerFactory, metadataHelper, config);
+            
+            if (log.isDebugEnabled()) {
+                logQuery(queryTree, "Query after applying " + stage.getClass().getSimpleName() + ":");
+            }
+            
+            stopwatch.stop();
+        }
+        return queryTree;
+    }
+    
     /**
      * Get the list of alternatives, randomizing the order so that the tserver spread out the disk usage.
      */
@@ -1595,13 +1626,53 @@ public class DefaultQueryPlanner extends QueryPlanner {
                             addOption(cfg, QueryOptions.IVARATOR_CACHE_BASE_URI_ALTERNATIVES, getIvaratorQueryCacheBaseUriAlternatives(config), false);
                         }
                         addOption(cfg, QueryOptions.IVARATOR_CACHE_BUFFER_SIZE, Integer.toString(config.getIvaratorCacheBufferSize()), false);
+                        if (config.isIvaratorCacheOffHeapBuffer()) {
+                            addOption(cfg, QueryOptions.IVARATOR_CACHE_OFF_HEAP_BUFFER, Boolean.toString(config.isIvaratorCacheOffHeapBuffer()), false);
+                        }
+                        if (config.getIvaratorCacheLocalDirURI() != null) {
+                            addOption(cfg, QueryOptions.IVARATOR_CACHE_LOCAL_DIR_URI, config.getIvaratorCacheLocalDirURI(), false);
+                        }
+                        if (config.isIvaratorStreamingFill()) {
+                            addOption(cfg, QueryOptions.IVARATOR_STREAMING_FILL, Boolean.toString(config.isIvaratorStreamingFill()), false);
+                        }
+                        if (config.getSchedulingWeight() != 1) {
+                            addOption(cfg, QueryOptions.SCHEDULING_WEIGHT, Integer.toString(config.getSchedulingWeight()), false);
+                        }
+                        if (config.isCompiledEvaluation()) {
+                            addOption(cfg, QueryOptions.COMPILED_EVALUATION, Boolean.toString(config.isCompiledEvaluation()), false);
+                        }
+                        if (config.isColumnarDocuments()) {
+                            addOption(cfg, QueryOptions.COLUMNAR_DOCUMENTS, Boolean.toString(config.isColumnarDocuments()), false);
+                        }
+                        if (config.getDocumentsPerValue() > 1) {
+                            addOption(cfg, QueryOptions.DOCUMENTS_PER_VALUE, Integer.toString(config.getDocumentsPerValue()), false);
+                            addOption(cfg, QueryOptions.DOCUMENT_BATCH_BYTES, Integer.toString(config.getDocumentBatchBytes()), false);
+                        }
+                        if (config.getTermFrequencyBatchSize() != 1) {
+                            addOption(cfg, QueryOptions.TERM_FREQUENCY_BATCH_SIZE, Integer.toString(config.getTermFrequencyBatchSize()), false);
+                        }
+                        if (config.getDocumentCacheBytes() > 0) {
+                            addOption(cfg, QueryOptions.DOCUMENT_CACHE_BYTES, Long.toString(config.getDocumentCacheBytes()), false);
+                        }
+                        if (config.getTldChildAggregationThreads() > 1) {
+                            addOption(cfg, QueryOptions.TLD_CHILD_AGGREGATION_THREADS, Integer.toString(config.getTldChildAggregationThreads()), false);
+                        }
                         addOption(cfg, QueryOptions.IVARATOR_SCAN_PERSIST_THRESHOLD, Long.toString(config.getIvaratorCacheScanPersistThreshold()), false);
                         addOption(cfg, QueryOptions.IVARATOR_SCAN_TIMEOUT, Long.toString(config.getIvaratorCacheScanTimeout()), false);
                         addOption(cfg, QueryOptions.COLLECT_TIMING_DETAILS, Boolean.toString(config.getCollectTimingDetails()), false);
                         addOption(cfg, QueryOptions.MAX_INDEX_RANGE_SPLIT, Integer.toString(config.getMaxFieldIndexRangeSplit()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_OPEN_FILES, Integer.toString(config.getIvaratorMaxOpenFiles()), false);
+                        if (config.getIvaratorMaxCandidates() > 0) {
+                            addOption(cfg, QueryOptions.MAX_IVARATOR_CANDIDATES, Integer.toString(config.getIvaratorMaxCandidates()), false);
+                        }
                         addOption(cfg, QueryOptions.MAX_EVALUATION_PIPELINES, Integer.toString(config.getMaxEvaluationPipelines()), false);
                         addOption(cfg, QueryOptions.MAX_PIPELINE_CACHED_RESULTS, Integer.toString(config.getMaxPipelineCachedResults()), false);
+                        if (config.isCompletionEvaluationPipeline()) {
+                            addOption(cfg, QueryOptions.COMPLETION_EVALUATION_PIPELINE, Boolean.toString(config.isCompletionEvaluationPipeline()), false);
+                        }
+                        if (config.isUnorderedResults()) {
+                            addOption(cfg, QueryOptions.UNORDERED_RESULTS, Boolean.toString(config.isUnorderedResults()), false);
+                        }
                         addOption(cfg, QueryOptions.MAX_IVARATOR_SOURCES, Integer.toString(config.getMaxIvaratorSources()), false);
                         
                         if (config.getYieldThresholdMs() != Long.MAX_VALUE && config.getYieldThresholdMs() > 0) {
@@ -2125,6 +2196,19 @@ public class DefaultQueryPlanner extends QueryPlanner {
         return Collections.unmodifiableCollection(rules);
     }
     
+    /**
+     * @param planningStages
+     *            the stages to apply to the query once its terms have been expanded
+     */
+    public void setPlanningStages(Collection<PlanningStage> planningStages) {
+        this.planningStages.clear();
+        this.planningStages.addAll(planningStages);
+    }
+    
+    public Collection<PlanningStage> getPlanningStages() {
+        return Collections.unmodifiableCollection(planningStages);
+    }
+    
     /*
      * (non-Javadoc)
      * 
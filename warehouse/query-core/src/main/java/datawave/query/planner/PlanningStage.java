@@ -0,0 +1,25 @@
+package datawave.query.planner;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.MetadataHelper;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+
+/**
+ * A pluggable stage of the {@link DefaultQueryPlanner}. The configured stages are applied in order to the query once its terms have been expanded, before the
+ * global index is scanned for its ranges.
+ */
+public interface PlanningStage {
+    
+    /**
+     * Returns a re-written tree
+     * 
+     * @param queryTree
+     *            the expanded query
+     * @param scannerFactory
+     * @param metadataHelper
+     * @param config
+     * @return the query, possibly re-written in place
+     */
+    ASTJexlScript apply(ASTJexlScript queryTree, ScannerFactory scannerFactory, MetadataHelper metadataHelper, ShardQueryConfiguration config);
+}
@@ -0,0 +1,117 @@
+package datawave.query.planner.pushdown;
+
+import static org.apache.commons.jexl2.parser.JexlNodes.id;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import datawave.data.MetadataCardinalityCounts;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.index.stats.IndexStatsClient;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.MetadataHelper;
+
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParserTreeConstants;
+import org.apache.log4j.Logger;
+
+/**
+ * Estimates the cost of an equality term as the number of documents it is expected to match, using the most precise statistic available for it:
+ * <ol>
+ * <li>the count of the term kept in the metadata table, as seen with the auths of the user</li>
+ * <li>the average number of documents per value of its field, from the selectivity computed by the index stats job (the number of unique values of the field
+ * over its number of values)</li>
+ * <li>the count of its field over the date range of the query</li>
+ * </ol>
+ * The cost of a term is never more than the count of its field. The costs of the other nodes are estimated as by the {@link CostEstimator}, from the costs of
+ * their terms.
+ */
+public class IndexStatsCostEstimator extends CostEstimator {
+    
+    private static final Logger log = Logger.getLogger(IndexStatsCostEstimator.class);
+    
+    private final IndexStatsClient stats;
+    
+    // the selectivity of each field looked up thus far, or the default value of the IndexStatsClient if it has none
+    private final Map<String,Double> selectivities = new HashMap<>();
+    
+    public IndexStatsCostEstimator(ShardQueryConfiguration config, ScannerFactory scannerFactory, MetadataHelper helper) {
+        super(config, scannerFactory, helper);
+        if (null != config.getConnector() && null != config.getIndexStatsTableName()) {
+            this.stats = new IndexStatsClient(config.getConnector(), config.getIndexStatsTableName());
+        } else {
+            this.stats = null;
+        }
+    }
+    
+    @Override
+    public Cost computeCostForSubtree(JexlNode node) {
+        Cost cost = super.computeCostForSubtree(node);
+        
+        // only indexed terms of fields with documents in the date range are refined
+        if (ParserTreeConstants.JJTEQNODE != id(node) || cost.isUnevaluated() || 0l == cost.getOtherCost() || Long.MAX_VALUE == cost.getOtherCost()) {
+            return cost;
+        }
+        
+        long fieldCount = cost.getOtherCost();
+        try {
+            String fieldName = JexlASTHelper.getIdentifier(node);
+            Object literal = JexlASTHelper.getLiteralValue(node);
+            
+            Long termCount = getTermCount(fieldName, literal);
+            if (null != termCount) {
+                return new Cost(0l, Math.min(termCount, fieldCount));
+            }
+            
+            Double selectivity = getSelectivity(fieldName);
+            if (selectivity > 0 && !selectivity.equals(IndexStatsClient.DEFAULT_VALUE)) {
+                return new Cost(0l, Math.min((long) Math.ceil(1 / selectivity), fieldCount));
+            }
+        } catch (NoSuchElementException e) {
+            log.trace("Could not find field name or value for EQ node, using the count of its field for cost");
+        }
+        return cost;
+    }
+    
+    /**
+     * @param fieldName
+     * @param literal
+     * @return the count of the term in the metadata table, or null if it is not known
+     */
+    protected Long getTermCount(String fieldName, Object literal) {
+        try {
+            // the counts are read with the auths of the user, so that the plan does not depend on documents the user cannot see
+            Map<String,MetadataCardinalityCounts> valueCounts = helper.getTermCounts().get(fieldName);
+            if (null != valueCounts) {
+                MetadataCardinalityCounts counts = valueCounts.get(String.valueOf(literal));
+                if (null != counts) {
+                    return counts.getFieldValueCount();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Could not retrieve counts from metadata helper", e);
+        }
+        return null;
+    }
+    
+    /**
+     * @param fieldName
+     * @return the selectivity of the field from the index stats, or the default value of the IndexStatsClient if there is none
+     */
+    protected Double getSelectivity(String fieldName) {
+        if (null == stats) {
+            return IndexStatsClient.DEFAULT_VALUE;
+        }
+        Double selectivity = selectivities.get(fieldName);
+        if (null == selectivity) {
+            Map<String,Double> stat = stats.safeGetStat(Collections.singleton(fieldName), config.getDatatypeFilter(), config.getBeginDate(),
+                            config.getEndDate());
+            selectivity = stat.containsKey(fieldName) ? stat.get(fieldName) : IndexStatsClient.DEFAULT_VALUE;
+            selectivities.put(fieldName, selectivity);
+        }
+        return selectivity;
+    }
+}
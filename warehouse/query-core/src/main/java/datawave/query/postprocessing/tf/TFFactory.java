@@ -27,6 +27,12 @@ public class TFFactory {
     public static com.google.common.base.Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> getFunction(ASTJexlScript query,
                     Set<String> contentExpansionFields, Set<String> termFrequencyFields, TypeMetadata typeMetadata, Equality equality,
                     EventDataQueryFilter evaluationFilter, SortedKeyValueIterator<Key,Value> sourceCopy) {
+        return getFunction(query, contentExpansionFields, termFrequencyFields, typeMetadata, equality, evaluationFilter, sourceCopy, null);
+    }
+    
+    public static com.google.common.base.Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> getFunction(ASTJexlScript query,
+                    Set<String> contentExpansionFields, Set<String> termFrequencyFields, TypeMetadata typeMetadata, Equality equality,
+                    EventDataQueryFilter evaluationFilter, SortedKeyValueIterator<Key,Value> sourceCopy, TermFrequencyBatch termFrequencyBatch) {
         
         Multimap<String,Class<? extends Type<?>>> fieldMappings = LinkedListMultimap.create();
         for (Entry<String,String> dataType : typeMetadata.fold().entries()) {
@@ -40,7 +46,7 @@ public class TFFactory {
             
         }
         
-        return getFunction(query, contentExpansionFields, termFrequencyFields, fieldMappings, equality, evaluationFilter, sourceCopy);
+        return getFunction(query, contentExpansionFields, termFrequencyFields, fieldMappings, equality, evaluationFilter, sourceCopy, termFrequencyBatch);
     }
     
     /**
@@ -54,6 +60,24 @@ public class TFFactory {
     public static com.google.common.base.Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> getFunction(ASTJexlScript query,
                     Set<String> contentExpansionFields, Set<String> termFrequencyFields, Multimap<String,Class<? extends Type<?>>> dataTypes,
                     Equality equality, EventDataQueryFilter evaluationFilter, SortedKeyValueIterator<Key,Value> sourceDeepCopy) {
+        return getFunction(query, contentExpansionFields, termFrequencyFields, dataTypes, equality, evaluationFilter, sourceDeepCopy, null);
+    }
+    
+    /**
+     * Factory method for creating the TF function used for generating the map context, fetching the term frequencies through a batch when it serves the
+     * query.
+     * 
+     * @param query
+     * @param dataTypes
+     * @param sourceDeepCopy
+     * @param termFrequencyBatch
+     *            the batch of the scan, or null to fetch the term frequencies of each document from the source
+     * @return
+     */
+    public static com.google.common.base.Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> getFunction(ASTJexlScript query,
+                    Set<String> contentExpansionFields, Set<String> termFrequencyFields, Multimap<String,Class<? extends Type<?>>> dataTypes,
+                    Equality equality, EventDataQueryFilter evaluationFilter, SortedKeyValueIterator<Key,Value> sourceDeepCopy,
+                    TermFrequencyBatch termFrequencyBatch) {
         
         Multimap<String,String> termFrequencyFieldValues = TermOffsetPopulator.getTermFrequencyFieldValues(query, contentExpansionFields, termFrequencyFields,
                         dataTypes);
@@ -61,7 +85,12 @@ public class TFFactory {
         if (termFrequencyFieldValues.isEmpty()) {
             return new EmptyTermFrequencyFunction();
         } else {
-            return new TermOffsetFunction(new TermOffsetPopulator(termFrequencyFieldValues, contentExpansionFields, evaluationFilter, sourceDeepCopy));
+            // nested queries may need other field values than the ones the batch was created for
+            if (termFrequencyBatch != null && !termFrequencyBatch.isFor(termFrequencyFieldValues)) {
+                termFrequencyBatch = null;
+            }
+            return new TermOffsetFunction(new TermOffsetPopulator(termFrequencyFieldValues, contentExpansionFields, evaluationFilter, sourceDeepCopy,
+                            termFrequencyBatch));
         }
     }
 }
@@ -0,0 +1,153 @@
+package datawave.query.postprocessing.tf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import datawave.core.iterators.TermFrequencyIterator;
+import datawave.query.Constants;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * Fetches the term frequencies of the documents pending evaluation in a single ordered sweep over the tf column family, rather than seeking for each document.
+ * The documents are added as they are handed to the evaluation pipelines. The first pipeline to ask for the term frequencies of a document outside of the last
+ * sweep sweeps from that document through the pending documents after it in the same row, up to the batch size, and the pipelines of those documents then read
+ * their entries from the sweep. Within a sweep the {@link TermFrequencyIterator} decides whether to scan or seek between nearby documents.
+ * 
+ * A batch is shared by the pipelines of a scan and only serves the term frequency field values it was created for, see {@link #isFor(Multimap)}.
+ */
+public class TermFrequencyBatch {
+    private static final Logger log = Logger.getLogger(TermFrequencyBatch.class);
+    
+    private final SortedKeyValueIterator<Key,Value> source;
+    private final int batchSize;
+    
+    // the documents that have been handed to a pipeline and may not have fetched their term frequencies yet
+    private final NavigableSet<Key> pending = new ConcurrentSkipListSet<>();
+    
+    private Multimap<String,String> termFrequencyFieldValues = null;
+    
+    // the range of the last sweep and the entries it found, in order
+    private Range swept = null;
+    private List<Key> keys = Collections.emptyList();
+    private List<Value> values = Collections.emptyList();
+    
+    /**
+     * @param source
+     *            a source for the sweeps, not shared with anything else
+     * @param batchSize
+     *            the maximum number of documents to fetch in each sweep
+     */
+    public TermFrequencyBatch(SortedKeyValueIterator<Key,Value> source, int batchSize) {
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * The term frequency field values of a query are only known once it is evaluated, so a batch serves the field values of the first query that asks for it.
+     * 
+     * @param termFrequencyFieldValues
+     * @return true if this batch serves the field values
+     */
+    public synchronized boolean isFor(Multimap<String,String> termFrequencyFieldValues) {
+        if (this.termFrequencyFieldValues == null) {
+            this.termFrequencyFieldValues = termFrequencyFieldValues;
+        }
+        return this.termFrequencyFieldValues.equals(termFrequencyFieldValues);
+    }
+    
+    /**
+     * Add a document that has been handed to an evaluation pipeline
+     * 
+     * @param docKey
+     */
+    public void addDocument(Key docKey) {
+        pending.add(docKey);
+    }
+    
+    /**
+     * Get the term frequency entries of a document, sweeping them and those of the pending documents after it if they have not been fetched
+     * 
+     * @param docKey
+     *            the document
+     * @param range
+     *            the term frequency range of the document
+     * @return the term frequency entries within the range
+     * @throws IOException
+     */
+    public synchronized List<Entry<Key,Value>> fetch(Key docKey, Range range) throws IOException {
+        // the documents up to this one will not ask again
+        pending.headSet(docKey, true).clear();
+        
+        if (swept == null || swept.beforeStartKey(range.getStartKey()) || swept.afterEndKey(range.getEndKey())) {
+            sweep(docKey, range);
+        }
+        
+        int index = Collections.binarySearch(keys, range.getStartKey());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        List<Entry<Key,Value>> entries = new ArrayList<>();
+        for (; index < keys.size() && !range.afterEndKey(keys.get(index)); index++) {
+            entries.add(Maps.immutableEntry(keys.get(index), values.get(index)));
+        }
+        return entries;
+    }
+    
+    private void sweep(Key docKey, Range range) throws IOException {
+        Text row = docKey.getRow();
+        Key end = range.getEndKey();
+        
+        // extend the sweep through the pending documents after this one
+        int documents = 1;
+        for (Key pendingKey : pending.tailSet(docKey, false)) {
+            if (documents >= batchSize || !row.equals(pendingKey.getRow())) {
+                break;
+            }
+            Key pendingEnd = new Key(row, Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text(pendingKey.getColumnFamily() + "\1"));
+            if (pendingEnd.compareTo(end) > 0) {
+                end = pendingEnd;
+            }
+            documents++;
+        }
+        
+        Range sweepRange = new Range(range.getStartKey(), true, end, true);
+        if (log.isTraceEnabled()) {
+            log.trace("Sweeping the term frequencies of " + documents + " documents in " + sweepRange);
+        }
+        
+        // forget the last sweep first in case this one fails
+        swept = null;
+        keys = Collections.emptyList();
+        values = Collections.emptyList();
+        
+        TermFrequencyIterator tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
+        tfSource.init(source, null, null);
+        tfSource.seek(sweepRange, null, false);
+        
+        List<Key> sweptKeys = new ArrayList<>();
+        List<Value> sweptValues = new ArrayList<>();
+        while (tfSource.hasTop()) {
+            // the entries outlive the position of the source
+            sweptKeys.add(new Key(tfSource.getTopKey()));
+            sweptValues.add(new Value(tfSource.getTopValue()));
+            tfSource.next();
+        }
+        
+        swept = sweepRange;
+        keys = sweptKeys;
+        values = sweptValues;
+    }
+}
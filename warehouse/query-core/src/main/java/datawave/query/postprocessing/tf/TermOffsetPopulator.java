@@ -16,7 +16,6 @@ import datawave.core.iterators.TermFrequencyIterator.FieldValue;
 import datawave.data.type.NoOpType;
 import datawave.data.type.Type;
 import datawave.ingest.protobuf.TermWeight;
-import datawave.ingest.protobuf.TermWeightPosition;
 import datawave.query.jexl.functions.TermFrequencyList;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.Constants;
@@ -40,7 +39,6 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 public class TermOffsetPopulator {
@@ -61,13 +59,24 @@ public class TermOffsetPopulator {
     private SortedKeyValueIterator<Key,Value> source;
     private Document document;
     private Set<String> contentExpansionFields;
+    private TermFrequencyBatch termFrequencyBatch;
     
     public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
                     SortedKeyValueIterator<Key,Value> source) {
+        this(termFrequencyFieldValues, contentExpansionFields, evaluationFilter, source, null);
+    }
+    
+    /**
+     * @param termFrequencyBatch
+     *            fetches the term frequencies of several pending documents at a time, null to fetch them for each document from the source
+     */
+    public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
+                    SortedKeyValueIterator<Key,Value> source, TermFrequencyBatch termFrequencyBatch) {
         this.termFrequencyFieldValues = termFrequencyFieldValues;
         this.contentExpansionFields = contentExpansionFields;
         this.source = source;
         this.evaluationFilter = evaluationFilter;
+        this.termFrequencyBatch = termFrequencyBatch;
     }
     
     public Document document() {
@@ -132,14 +141,26 @@ public class TermOffsetPopulator {
     public Map<String,Object> getContextMap(Key docKey, Set<Key> keys) {
         document = new Document();
         
-        TermFrequencyIterator tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
-        
         Range range = getRange(keys);
-        try {
-            tfSource.init(source, null, null);
-            tfSource.seek(getRange(keys), null, false);
-        } catch (IOException e) {
-            log.error("Seek to the range failed: " + range, e);
+        
+        List<Entry<Key,Value>> batched = null;
+        if (termFrequencyBatch != null) {
+            try {
+                batched = termFrequencyBatch.fetch(docKey, range);
+            } catch (IOException e) {
+                log.error("Fetching the term frequency batch failed: " + range, e);
+            }
+        }
+        
+        TermFrequencyIterator tfSource = null;
+        if (batched == null) {
+            tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
+            try {
+                tfSource.init(source, null, null);
+                tfSource.seek(range, null, false);
+            } catch (IOException e) {
+                log.error("Seek to the range failed: " + range, e);
+            }
         }
         
         // set the document context on the filter
@@ -149,58 +170,24 @@ public class TermOffsetPopulator {
         
         Map<String,TermFrequencyList> termOffsetMap = Maps.newHashMap();
         
-        while (tfSource.hasTop()) {
-            Key key = tfSource.getTopKey();
-            FieldValue fv = FieldValue.getFieldValue(key);
-            
-            // add the zone and term to our internal document
-            Content attr = new Content(fv.getValue(), source.getTopKey(), evaluationFilter == null || evaluationFilter.keep(key));
-            
-            // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
-            // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
-            // here.
-            // For example the AncestorQueryLogic may require this....
-            // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
-            
-            this.document.put(fv.getField(), attr);
-            
-            TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
-            try {
-                TermWeight.Info twInfo = TermWeight.Info.parseFrom(tfSource.getTopValue().get());
-                
-                // if no content expansion fields then assume every field is permitted for unfielded content functions
-                TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
-                                (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
-                                TermFrequencyList.getEventId(key));
-                
-                TermWeightPosition.Builder position = new TermWeightPosition.Builder();
-                for (int i = 0; i < twInfo.getTermOffsetCount(); i++) {
-                    position.setTermWeightOffsetInfo(twInfo, i);
-                    offsets.put(twZone, position.build());
-                    position.reset();
+        if (batched != null) {
+            for (Entry<Key,Value> entry : batched) {
+                if (!addTermOffsets(entry.getKey(), entry.getValue(), termOffsetMap)) {
+                    return null;
                 }
-                
-            } catch (InvalidProtocolBufferException e) {
-                log.error("Could not deserialize TermWeight protocol buffer for: " + source.getTopKey());
-                
-                return null;
             }
-            
-            // First time looking up this term in a field
-            TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
-            if (null == tfl) {
-                termOffsetMap.put(fv.getValue(), new TermFrequencyList(offsets));
-            } else {
-                // Merge in the offsets for the current field+term with all previous
-                // offsets from other fields in the same term
-                tfl.addOffsets(offsets);
-            }
-            
-            try {
-                tfSource.next();
-            } catch (IOException ioe) {
-                log.error("Next failed: " + range, ioe);
-                break;
+        } else {
+            while (tfSource.hasTop()) {
+                if (!addTermOffsets(tfSource.getTopKey(), tfSource.getTopValue(), termOffsetMap)) {
+                    return null;
+                }
+                
+                try {
+                    tfSource.next();
+                } catch (IOException ioe) {
+                    log.error("Next failed: " + range, ioe);
+                    break;
+                }
             }
         }
         
@@ -211,6 +198,56 @@ public class TermOffsetPopulator {
         return map;
     }
     
+    /**
+     * Add a term frequency entry to the document and to the offsets of its term
+     * 
+     * @param key
+     * @param value
+     * @param termOffsetMap
+     * @return false if the term weight could not be read
+     */
+    private boolean addTermOffsets(Key key, Value value, Map<String,TermFrequencyList> termOffsetMap) {
+        FieldValue fv = FieldValue.getFieldValue(key);
+        
+        // add the zone and term to our internal document
+        Content attr = new Content(fv.getValue(), key, evaluationFilter == null || evaluationFilter.keep(key));
+        
+        // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
+        // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
+        // here.
+        // For example the AncestorQueryLogic may require this....
+        // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
+        
+        this.document.put(fv.getField(), attr);
+        
+        TermWeight.Info twInfo;
+        TermFrequencyList.Zone twZone;
+        try {
+            twInfo = TermWeight.Info.parseFrom(value.get());
+            
+            // if no content expansion fields then assume every field is permitted for unfielded content functions
+            twZone = new TermFrequencyList.Zone(fv.getField(),
+                            (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
+                            TermFrequencyList.getEventId(key));
+        } catch (InvalidProtocolBufferException e) {
+            log.error("Could not deserialize TermWeight protocol buffer for: " + key);
+            
+            return false;
+        }
+        
+        // First time looking up this term in a field
+        TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
+        if (null == tfl) {
+            tfl = new TermFrequencyList();
+            termOffsetMap.put(fv.getValue(), tfl);
+        }
+        // Merge in the offsets for the current field+term with all previous offsets from other fields in the same term, decoding them straight from the
+        // protocol buffer
+        tfl.addOffsets(twZone, twInfo);
+        
+        return true;
+    }
+    
     public static boolean isContentFunctionTerm(String functionName) {
         return phraseFunctions.contains(functionName);
     }
@@ -169,6 +169,22 @@ public class ChainableEventDataQueryFilter implements EventDataQueryFilter {
         return result;
     }
     
+    /**
+     * Order dependent if any of the filters is
+     * 
+     * @return
+     */
+    @Override
+    public boolean isOrderDependent() {
+        for (EventDataQueryFilter filter : filters) {
+            if (filter.isOrderDependent()) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
     @Override
     public EventDataQueryFilter clone() {
         return new ChainableEventDataQueryFilter(this);
@@ -97,6 +97,11 @@ public class ConfigurableEventDataQueryFilter implements EventDataQueryFilter {
         return filter.transform(toLimit);
     }
     
+    @Override
+    public boolean isOrderDependent() {
+        return filter.isOrderDependent();
+    }
+    
     @Override
     public EventDataQueryFilter clone() {
         return new ConfigurableEventDataQueryFilter(this);
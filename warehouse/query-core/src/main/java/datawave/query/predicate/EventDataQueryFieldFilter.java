@@ -10,6 +10,8 @@ import org.apache.accumulo.core.data.Range;
 import org.apache.commons.jexl2.parser.ASTIdentifier;
 import org.apache.commons.jexl2.parser.ASTJexlScript;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,9 +40,20 @@ public class EventDataQueryFieldFilter extends KeyProjection implements EventDat
      * @param script
      */
     public EventDataQueryFieldFilter(ASTJexlScript script, Set<String> nonEventFields) {
+        this(script, nonEventFields, Collections.emptySet());
+    }
+    
+    /**
+     * Initialize the query field filter with all of the fields required to evaluation this query, plus any other fields that are needed (e.g. to be returned)
+     * 
+     * @param script
+     * @param nonEventFields
+     * @param additionalFields
+     */
+    public EventDataQueryFieldFilter(ASTJexlScript script, Set<String> nonEventFields, Collection<String> additionalFields) {
         this.nonEventFields = nonEventFields;
         
-        Set<String> queryFields = Sets.newHashSet();
+        Set<String> queryFields = Sets.newHashSet(additionalFields);
         for (ASTIdentifier identifier : JexlASTHelper.getIdentifiers(script)) {
             queryFields.add(JexlASTHelper.deconstructIdentifier(identifier));
         }
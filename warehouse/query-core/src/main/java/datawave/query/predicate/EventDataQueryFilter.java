@@ -71,6 +71,16 @@ public interface EventDataQueryFilter extends PeekingPredicate<Map.Entry<Key,Str
      */
     Range getKeyRange(Map.Entry<Key,Document> from);
     
+    /**
+     * Whether the keys kept or transformed depend on the keys before them in the document, for example through a count of the values of a field. Such a
+     * filter gives the same result only when a single instance sees the keys of the document in order.
+     * 
+     * @return true if the keys of a document cannot be filtered in separate ranges
+     */
+    default boolean isOrderDependent() {
+        return false;
+    }
+    
     /**
      * Clone the underlying EventDataQueryFilter
      * 
@@ -0,0 +1,127 @@
+package datawave.query.predicate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+
+import datawave.query.Constants;
+
+/**
+ * A precomputed seek plan over a sorted set of fields. For each field the plan holds the column qualifier that starts its values and the one past them, so that
+ * a filter can jump from field to field within an event by a binary search rather than by testing every field name and reading every key it passes.
+ */
+public class FieldSeekPlan {
+    
+    private final String[] fields;
+    private final Text[] starts;
+    private final Text[] ends;
+    
+    public FieldSeekPlan(Collection<String> fields) {
+        this.fields = fields.toArray(new String[0]);
+        Arrays.sort(this.fields);
+        this.starts = new Text[this.fields.length];
+        this.ends = new Text[this.fields.length];
+        for (int i = 0; i < this.fields.length; i++) {
+            starts[i] = new Text(this.fields[i] + Constants.NULL_BYTE_STRING);
+            ends[i] = new Text(this.fields[i] + Constants.MAX_UNICODE_STRING);
+        }
+    }
+    
+    public int size() {
+        return fields.length;
+    }
+    
+    public boolean isEmpty() {
+        return fields.length == 0;
+    }
+    
+    public String getField(int index) {
+        return fields[index];
+    }
+    
+    public List<String> getFields() {
+        return Arrays.asList(fields);
+    }
+    
+    /**
+     * @param field
+     * @return true if the field is in the plan
+     */
+    public boolean contains(String field) {
+        return indexOf(field) >= 0;
+    }
+    
+    /**
+     * @param field
+     * @return the index of the field, or (-(insertion point) - 1) if the field is not in the plan
+     */
+    public int indexOf(String field) {
+        return Arrays.binarySearch(fields, field);
+    }
+    
+    /**
+     * Find the first field in the plan after a field
+     * 
+     * @param field
+     *            the current field
+     * @param fromIndex
+     *            the first index to consider
+     * @return the index of the first field after the current field at or beyond fromIndex, or -1 if there is none
+     */
+    public int nextAfter(String field, int fromIndex) {
+        if (fromIndex >= fields.length) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(fields, Math.max(fromIndex, 0), fields.length, field);
+        // step past the field itself, otherwise take the insertion point
+        index = (index >= 0 ? index + 1 : -index - 1);
+        return (index < fields.length ? index : -1);
+    }
+    
+    /**
+     * @param current
+     *            a key of the event to seek within
+     * @param index
+     *            the field to seek to
+     * @return the first key of the field's values within the event of the current key
+     */
+    public Key getStartKey(Key current, int index) {
+        return new Key(current.getRow(), current.getColumnFamily(), starts[index]);
+    }
+    
+    /**
+     * @param current
+     *            a key of the event to seek within
+     * @param index
+     *            the field to seek past
+     * @return the key past the field's values within the event of the current key
+     */
+    public Key getEndKey(Key current, int index) {
+        return new Key(current.getRow(), current.getColumnFamily(), ends[index]);
+    }
+    
+    /**
+     * @param current
+     *            a key of the event to seek within
+     * @param index
+     *            the field to seek to
+     * @param endKey
+     *            the end of the range being scanned
+     * @param endKeyInclusive
+     * @return the range from the first key of the field's values to the end of the scan
+     */
+    public Range getSeekRange(Key current, int index, Key endKey, boolean endKeyInclusive) {
+        return new Range(getStartKey(current, index), true, endKey, endKeyInclusive);
+    }
+    
+    /**
+     * @return the column qualifier starting the values of the first field in the plan
+     */
+    public Text getFirstStart() {
+        return starts[0];
+    }
+}
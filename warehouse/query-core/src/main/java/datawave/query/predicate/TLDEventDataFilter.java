@@ -33,13 +33,14 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
     private final long maxFieldsBeforeSeek;
     private final long maxKeysBeforeSeek;
     
-    // track whitelist/blacklist if specified
-    private List<String> sortedWhitelist = null;
-    private List<String> sortedBlacklist = null;
-    
     // track query fields (must be sorted)
     protected List<String> queryFields;
     
+    // the seek plans of the whitelist, blacklist, and query fields, used to find fields and to jump between them
+    private FieldSeekPlan whitelistPlan = null;
+    private FieldSeekPlan blacklistPlan = null;
+    protected FieldSeekPlan queryFieldPlan;
+    
     // track recently seen key fields
     private String lastField;
     private long fieldCount = 0;
@@ -93,16 +94,17 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         
         extractQueryFieldsFromScript(script);
         updateLists(whitelist, blacklist);
-        setSortedLists(whitelist, blacklist);
+        setPlans(whitelist, blacklist);
     }
     
     public TLDEventDataFilter(TLDEventDataFilter other) {
         super(other);
         maxFieldsBeforeSeek = other.maxFieldsBeforeSeek;
         maxKeysBeforeSeek = other.maxKeysBeforeSeek;
-        sortedWhitelist = other.sortedWhitelist;
-        sortedBlacklist = other.sortedBlacklist;
         queryFields = other.queryFields;
+        whitelistPlan = other.whitelistPlan;
+        blacklistPlan = other.blacklistPlan;
+        queryFieldPlan = other.queryFieldPlan;
         lastField = other.lastField;
         fieldCount = other.fieldCount;
         lastListSeekIndex = other.lastListSeekIndex;
@@ -371,7 +373,7 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         
         final String fieldName = lastParseInfo.getField();
         // generate a whitelist seek only on the query fields, without using any previous state
-        range = getWhitelistSeek(current, fieldName, endKey, endKeyInclusive, queryFields, -1);
+        range = getWhitelistSeek(current, fieldName, endKey, endKeyInclusive, queryFieldPlan, -1);
         
         return range;
     }
@@ -403,9 +405,9 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         
         // if it wasn't a field limit seek then do a normal seek
         if (range == null) {
-            if (sortedWhitelist != null) {
+            if (whitelistPlan != null) {
                 range = getWhitelistSeek(current, fieldName, endKey, endKeyInclusive);
-            } else if (sortedBlacklist != null) {
+            } else if (blacklistPlan != null) {
                 range = getBlacklistSeek(current, fieldName, endKey, endKeyInclusive);
             }
         }
@@ -432,7 +434,7 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
     }
     
     /**
-     * Seek using the main sorted whitelist and lastListSeekIndex
+     * Seek using the whitelist plan and lastListSeekIndex
      *
      * @param current
      *            the current key
@@ -443,14 +445,14 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
      * @param endKeyInclusive
      *            the range end inclusive flag
      * @return the new range to be seek()
-     * @see #getWhitelistSeek(Key, String, Key, boolean, List, int) getWhitelistSeek
+     * @see #getWhitelistSeek(Key, String, Key, boolean, FieldSeekPlan, int) getWhitelistSeek
      */
     private Range getWhitelistSeek(Key current, String fieldName, Key endKey, boolean endKeyInclusive) {
-        return getWhitelistSeek(current, fieldName, endKey, endKeyInclusive, sortedWhitelist, lastListSeekIndex);
+        return getWhitelistSeek(current, fieldName, endKey, endKeyInclusive, whitelistPlan, lastListSeekIndex);
     }
     
     /**
-     * Moving through the whitelist from the lastHit index create a start key for the next acceptable field/uid
+     * Searching the whitelist plan from the lastHit index create a start key for the next acceptable field/uid
      *
      * @param current
      *            the current key
@@ -460,50 +462,38 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
      *            the range endKey
      * @param endKeyInclusive
      *            the range end inclusive flag
-     * @param sortedWhitelist
-     *            the sortedWhitelist to use
+     * @param plan
+     *            the whitelist plan to use
      * @param lastHit
      *            the starting index to search the whitelist
      * @return the new range can be used to seek to the next key, bypassing irrelevant keys
      */
-    private Range getWhitelistSeek(Key current, String fieldName, Key endKey, boolean endKeyInclusive, List<String> sortedWhitelist, int lastHit) {
-        Range range = null;
-        
-        for (int i = lastHit + 1; i < sortedWhitelist.size(); i++) {
-            String nextField = sortedWhitelist.get(i);
-            // is the nextField after the current field?
-            if (fieldName.compareTo(nextField) < 0) {
-                // seek to this field
-                Key startKey = new Key(current.getRow(), current.getColumnFamily(), new Text(nextField + Constants.NULL_BYTE_STRING));
-                range = new Range(startKey, true, endKey, endKeyInclusive);
-                lastListSeekIndex = i;
-                break;
-            } else if (i + 1 == sortedWhitelist.size()) {
-                // roll to the next uid and reset the lastSeekIndex
-                range = getRolloverRange(current, endKey, endKeyInclusive, sortedWhitelist);
-                lastListSeekIndex = -1;
-                break;
-            }
-        }
+    private Range getWhitelistSeek(Key current, String fieldName, Key endKey, boolean endKeyInclusive, FieldSeekPlan plan, int lastHit) {
+        Range range;
         
-        // none of the fields in the whitelist come after the current field
-        if (range == null) {
-            // roll to the next uid
-            range = getRolloverRange(current, endKey, endKeyInclusive, sortedWhitelist);
+        // find the first field after the current field
+        int next = plan.nextAfter(fieldName, lastHit + 1);
+        if (next >= 0) {
+            // seek to this field
+            range = plan.getSeekRange(current, next, endKey, endKeyInclusive);
+            lastListSeekIndex = next;
+        } else {
+            // none of the fields in the whitelist come after the current field, roll to the next uid and reset the lastSeekIndex
+            range = getRolloverRange(current, endKey, endKeyInclusive, plan);
             lastListSeekIndex = -1;
         }
         
         return range;
     }
     
-    private Range getRolloverRange(Key current, Key end, boolean endInclusive, List<String> sortedWhitelist) {
+    private Range getRolloverRange(Key current, Key end, boolean endInclusive, FieldSeekPlan plan) {
         Range range;
         
         // ensure this new key won't be beyond the end
         // new CF = current dataType\0uid\0 to ensure the next hit will be in another uid
         // new CQ = first whitelist field\0 to ensure the next hit will be the first whitelisted field or later
-        Key startKey = new Key(current.getRow(), new Text(current.getColumnFamily() + Constants.NULL_BYTE_STRING), new Text(sortedWhitelist.get(0)
-                        + Constants.NULL_BYTE_STRING));
+        Key startKey = new Key(current.getRow(), new Text(current.getColumnFamily() + Constants.NULL_BYTE_STRING), plan.isEmpty() ? new Text()
+                        : plan.getFirstStart());
         
         if (startKey.compareTo(end) < 0) {
             // last one, roll over to the first
@@ -530,33 +520,33 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         Range range = null;
         
         // test for if the seek wrapped to a new uid
-        if (lastListSeekIndex > 0 && fieldName.compareTo(sortedBlacklist.get(lastListSeekIndex)) < 0) {
+        if (lastListSeekIndex > 0 && fieldName.compareTo(blacklistPlan.getField(lastListSeekIndex)) < 0) {
             // reset, the current field is less than the last one
             lastListSeekIndex = -1;
         }
         
-        for (int i = lastListSeekIndex + 1; i < sortedBlacklist.size(); i++) {
-            String nextField = sortedBlacklist.get(i);
-            int compare = fieldName.compareTo(nextField);
-            if (compare == 0) {
-                // blacklisted
-                Key startKey = new Key(current.getRow(), current.getColumnFamily(), new Text(fieldName + Constants.MAX_UNICODE_STRING));
-                if (startKey.compareTo(endKey) < 0) {
-                    // seek past the blacklist
-                    range = new Range(startKey, false, endKey, endKeyInclusive);
-                } else {
-                    // seek to the end of the range
-                    range = getEmptyRange(endKey, endKeyInclusive);
-                }
-                
-                // store this to start here next time
-                lastListSeekIndex = i;
-                // don't keep looking
-                break;
-            } else if (compare > 0) {
-                // update the last seek so this isn't looked at until/unless the document wraps to a new uid
-                lastListSeekIndex = i;
+        int from = lastListSeekIndex + 1;
+        if (from >= blacklistPlan.size()) {
+            return range;
+        }
+        
+        int index = blacklistPlan.indexOf(fieldName);
+        if (index >= from) {
+            // blacklisted
+            Key startKey = blacklistPlan.getEndKey(current, index);
+            if (startKey.compareTo(endKey) < 0) {
+                // seek past the blacklist
+                range = new Range(startKey, false, endKey, endKeyInclusive);
+            } else {
+                // seek to the end of the range
+                range = getEmptyRange(endKey, endKeyInclusive);
             }
+            
+            // store this to start here next time
+            lastListSeekIndex = index;
+        } else if (index < 0) {
+            // update the last seek to the last field before this one so it isn't looked at until/unless the document wraps to a new uid
+            lastListSeekIndex = Math.max(lastListSeekIndex, -index - 2);
         }
         
         return range;
@@ -607,6 +597,7 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         // sort the queryFields
         Collections.sort(queryFields);
         queryFields = Collections.unmodifiableList(queryFields);
+        queryFieldPlan = new FieldSeekPlan(queryFields);
     }
     
     /**
@@ -639,24 +630,20 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
     }
     
     /**
-     * Set the sortedWHitelist and sortedBlacklist from the queryFields modified versions and sort them
+     * Set the whitelistPlan and blacklistPlan from the queryFields modified versions, the plans sort the fields themselves
      *
      * @param whitelist
      *            the whitelist modified by queryFields
      * @param blacklist
      *            the blacklist modified by queryFields
      */
-    private void setSortedLists(Set<String> whitelist, Set<String> blacklist) {
+    private void setPlans(Set<String> whitelist, Set<String> blacklist) {
         if (whitelist != null && !whitelist.isEmpty()) {
-            sortedWhitelist = new ArrayList<>(whitelist);
-            Collections.sort(sortedWhitelist);
-            sortedWhitelist = Collections.unmodifiableList(sortedWhitelist);
+            whitelistPlan = new FieldSeekPlan(whitelist);
         }
         
         if (blacklist != null && !blacklist.isEmpty()) {
-            sortedBlacklist = new ArrayList<>(blacklist);
-            Collections.sort(sortedBlacklist);
-            sortedBlacklist = Collections.unmodifiableList(sortedBlacklist);
+            blacklistPlan = new FieldSeekPlan(blacklist);
         }
     }
     
@@ -718,16 +705,16 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         }
         
         if (isTld) {
-            if (sortedWhitelist != null) {
-                return sortedWhitelist.contains(field);
-            } else if (sortedBlacklist != null) {
-                return !sortedBlacklist.contains(field);
+            if (whitelistPlan != null) {
+                return whitelistPlan.contains(field);
+            } else if (blacklistPlan != null) {
+                return !blacklistPlan.contains(field);
             } else {
                 // neither is specified, keep by default
                 return true;
             }
         } else {
-            return queryFields.contains(field);
+            return queryFieldPlan.contains(field);
         }
     }
     
@@ -789,7 +776,7 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
      */
     private boolean isFieldLimit(String field) {
         return ((anyFieldLimit != -1 && fieldCount > anyFieldLimit) || (limitFieldsMap.get(field) != null && fieldCount > limitFieldsMap.get(field)))
-                        && !queryFields.contains(field);
+                        && !queryFieldPlan.contains(field);
     }
     
     /**
@@ -810,6 +797,16 @@ public class TLDEventDataFilter extends EventDataQueryExpressionFilter {
         }
     }
     
+    /**
+     * The field limits count the keys of a field as they are seen, and the seeks taken on reaching a limit skip keys that would otherwise be transformed
+     * 
+     * @return true if any field is limited
+     */
+    @Override
+    public boolean isOrderDependent() {
+        return anyFieldLimit != -1 || !limitFieldsMap.isEmpty();
+    }
+    
     @Override
     public EventDataQueryFilter clone() {
         return new TLDEventDataFilter(this);
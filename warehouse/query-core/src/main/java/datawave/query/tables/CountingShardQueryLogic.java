@@ -2,11 +2,13 @@ package datawave.query.tables;
 
 import datawave.core.iterators.ResultCountingIterator;
 import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.iterator.DocumentBatchingIterator;
 import datawave.query.scheduler.PushdownScheduler;
 import datawave.query.scheduler.Scheduler;
 import datawave.query.tables.shard.CountAggregatingIterator;
 import datawave.query.transformer.ShardQueryCountTableTransformer;
 import datawave.webservice.query.Query;
+import datawave.webservice.query.exception.QueryException;
 import datawave.webservice.query.logic.QueryLogicTransformer;
 
 import org.apache.accumulo.core.client.IteratorSetting;
@@ -45,6 +47,16 @@ public class CountingShardQueryLogic extends ShardQueryLogic {
         return new CountAggregatingIterator(this.iterator(), getTransformer(settings));
     }
     
+    /**
+     * The counting iterator counts the values returned by the query iterator, so the documents are never packed together by the
+     * {@link DocumentBatchingIterator}
+     */
+    @Override
+    protected void loadQueryParameters(ShardQueryConfiguration config, Query settings) throws QueryException {
+        super.loadQueryParameters(config, settings);
+        config.setDocumentsPerValue(1);
+    }
+    
     @Override
     public Scheduler getScheduler(ShardQueryConfiguration config, ScannerFactory scannerFactory) {
         PushdownScheduler scheduler = new PushdownScheduler(config, scannerFactory, this.metadataHelperFactory);
@@ -0,0 +1,51 @@
+package datawave.query.tables;
+
+import datawave.query.DocumentSerialization;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Unpacks the batches of documents packed by the {@link datawave.query.iterator.DocumentBatchingIterator}, returning each document in its own entry as if it
+ * had not been packed. Entries holding a single document are passed through.
+ */
+class DocumentUnbatchingIterator implements Iterator<Entry<Key,Value>> {
+    private final Iterator<Entry<Key,Value>> delegate;
+    private Iterator<Entry<Key,Value>> batch = Collections.emptyIterator();
+    
+    public DocumentUnbatchingIterator(Iterator<Entry<Key,Value>> iterator) {
+        this.delegate = iterator;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return batch.hasNext() || delegate.hasNext();
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        if (batch.hasNext()) {
+            return batch.next();
+        }
+        
+        Entry<Key,Value> next = delegate.next();
+        if (next == null || !DocumentSerialization.isBatch(next.getValue().get())) {
+            return next;
+        }
+        
+        batch = DocumentSerialization.readBatch(next.getValue().get()).iterator();
+        if (!batch.hasNext()) {
+            throw new NoSuchElementException("Empty batch of documents under " + next.getKey());
+        }
+        return batch.next();
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Remove not supported on DocumentUnbatchingIterator");
+    }
+}
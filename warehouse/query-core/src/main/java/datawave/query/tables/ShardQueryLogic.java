@@ -353,6 +353,7 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         config.setAuthorizations(auths);
         config.setMaxScannerBatchSize(getMaxScannerBatchSize());
         config.setMaxIndexBatchSize(getMaxIndexBatchSize());
+        config.setIndexLookupPriority(getConnectionPriority());
         
         setScannerFactory(new ScannerFactory(config));
         
@@ -546,7 +547,12 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         this.scanner = null;
         this.iterator = this.scheduler.iterator();
         
-        if (!config.isSortedUIDs()) {
+        if (config.getDocumentsPerValue() > 1) {
+            this.iterator = new DocumentUnbatchingIterator(this.iterator);
+        }
+        
+        // unordered results may be returned again when a scan is resumed
+        if (!config.isSortedUIDs() || config.isUnorderedResults()) {
             this.iterator = new DedupingIterator(this.iterator);
         }
         
@@ -758,6 +764,12 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             config.setHitList(hitListBool);
         }
         
+        // Get the UNORDERED_RESULTS parameter if given
+        String unorderedResultsString = settings.findParameter(QueryParameters.UNORDERED_RESULTS).getParameterValue().trim();
+        if (org.apache.commons.lang.StringUtils.isNotBlank(unorderedResultsString)) {
+            config.setUnorderedResults(Boolean.parseBoolean(unorderedResultsString));
+        }
+        
         // Get the TYPE_METADATA_IN_HDFS parameter if given
         String typeMetadataInHdfsString = settings.findParameter(QueryParameters.TYPE_METADATA_IN_HDFS).getParameterValue().trim();
         if (org.apache.commons.lang.StringUtils.isNotBlank(typeMetadataInHdfsString)) {
@@ -1074,6 +1086,17 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        // the index lookups record their queue times once they are done, which is after the timers were summarized in setupQuery
+        if (null != config) {
+            List<String> statistics = config.getTimers().summarizeStatisticsAsList();
+            if (!statistics.isEmpty()) {
+                log.info(getStopwatchHeader(config));
+                for (String statistic : statistics) {
+                    log.info(statistic);
+                }
+            }
+        }
+        
         if (null != this.scheduler) {
             try {
                 log.debug("Closing ShardQueryLogic scheduler: " + System.identityHashCode(this));
@@ -1442,6 +1465,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setNumIndexLookupThreads(indexLookupThreads);
     }
     
+    public boolean isGlobalIndexCacheEnabled() {
+        return getConfig().isGlobalIndexCacheEnabled();
+    }
+    
+    public void setGlobalIndexCacheEnabled(boolean globalIndexCacheEnabled) {
+        getConfig().setGlobalIndexCacheEnabled(globalIndexCacheEnabled);
+    }
+    
+    public boolean isUidSketchesEnabled() {
+        return getConfig().isUidSketchesEnabled();
+    }
+    
+    public void setUidSketchesEnabled(boolean uidSketchesEnabled) {
+        getConfig().setUidSketchesEnabled(uidSketchesEnabled);
+    }
+    
     public int getDateIndexThreads() {
         return getConfig().getNumDateIndexThreads();
     }
@@ -1599,6 +1638,94 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorCacheBufferSize(ivaratorCacheBufferSize);
     }
     
+    public boolean isIvaratorCacheOffHeapBuffer() {
+        return getConfig().isIvaratorCacheOffHeapBuffer();
+    }
+    
+    public void setIvaratorCacheOffHeapBuffer(boolean ivaratorCacheOffHeapBuffer) {
+        getConfig().setIvaratorCacheOffHeapBuffer(ivaratorCacheOffHeapBuffer);
+    }
+    
+    public String getIvaratorCacheLocalDirURI() {
+        return getConfig().getIvaratorCacheLocalDirURI();
+    }
+    
+    public void setIvaratorCacheLocalDirURI(String ivaratorCacheLocalDirURI) {
+        getConfig().setIvaratorCacheLocalDirURI(ivaratorCacheLocalDirURI);
+    }
+    
+    public boolean isIvaratorStreamingFill() {
+        return getConfig().isIvaratorStreamingFill();
+    }
+    
+    public void setIvaratorStreamingFill(boolean ivaratorStreamingFill) {
+        getConfig().setIvaratorStreamingFill(ivaratorStreamingFill);
+    }
+    
+    public int getSchedulingWeight() {
+        return getConfig().getSchedulingWeight();
+    }
+    
+    public void setSchedulingWeight(int schedulingWeight) {
+        getConfig().setSchedulingWeight(schedulingWeight);
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return getConfig().isCompiledEvaluation();
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        getConfig().setCompiledEvaluation(compiledEvaluation);
+    }
+    
+    public boolean isColumnarDocuments() {
+        return getConfig().isColumnarDocuments();
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        getConfig().setColumnarDocuments(columnarDocuments);
+    }
+    
+    public int getDocumentsPerValue() {
+        return getConfig().getDocumentsPerValue();
+    }
+    
+    public void setDocumentsPerValue(int documentsPerValue) {
+        getConfig().setDocumentsPerValue(documentsPerValue);
+    }
+    
+    public int getDocumentBatchBytes() {
+        return getConfig().getDocumentBatchBytes();
+    }
+    
+    public void setDocumentBatchBytes(int documentBatchBytes) {
+        getConfig().setDocumentBatchBytes(documentBatchBytes);
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return getConfig().getTermFrequencyBatchSize();
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        getConfig().setTermFrequencyBatchSize(termFrequencyBatchSize);
+    }
+    
+    public long getDocumentCacheBytes() {
+        return getConfig().getDocumentCacheBytes();
+    }
+    
+    public void setDocumentCacheBytes(long documentCacheBytes) {
+        getConfig().setDocumentCacheBytes(documentCacheBytes);
+    }
+    
+    public int getTldChildAggregationThreads() {
+        return getConfig().getTldChildAggregationThreads();
+    }
+    
+    public void setTldChildAggregationThreads(int tldChildAggregationThreads) {
+        getConfig().setTldChildAggregationThreads(tldChildAggregationThreads);
+    }
+    
     public long getIvaratorCacheScanPersistThreshold() {
         return getConfig().getIvaratorCacheScanPersistThreshold();
     }
@@ -1659,6 +1786,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorMaxOpenFiles(ivaratorMaxOpenFiles);
     }
     
+    public int getIvaratorMaxCandidates() {
+        return getConfig().getIvaratorMaxCandidates();
+    }
+    
+    public void setIvaratorMaxCandidates(int ivaratorMaxCandidates) {
+        getConfig().setIvaratorMaxCandidates(ivaratorMaxCandidates);
+    }
+    
     public int getMaxIvaratorSources() {
         return getConfig().getMaxIvaratorSources();
     }
@@ -1683,6 +1818,22 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxPipelineCachedResults(maxCachedResults);
     }
     
+    public boolean isCompletionEvaluationPipeline() {
+        return getConfig().isCompletionEvaluationPipeline();
+    }
+    
+    public void setCompletionEvaluationPipeline(boolean completionEvaluationPipeline) {
+        getConfig().setCompletionEvaluationPipeline(completionEvaluationPipeline);
+    }
+    
+    public boolean isUnorderedResults() {
+        return getConfig().isUnorderedResults();
+    }
+    
+    public void setUnorderedResults(boolean unorderedResults) {
+        getConfig().setUnorderedResults(unorderedResults);
+    }
+    
     public double getMinimumSelectivity() {
         return getConfig().getMinSelectivity();
     }
@@ -1847,6 +1998,7 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         optionalParams.add(QueryOptions.HIT_LIST);
         optionalParams.add(QueryOptions.TYPE_METADATA_IN_HDFS);
         optionalParams.add(QueryOptions.DATE_INDEX_TIME_TRAVEL);
+        optionalParams.add(QueryParameters.UNORDERED_RESULTS);
         optionalParams.add(QueryParameters.LIMIT_FIELDS);
         optionalParams.add(QueryParameters.GROUP_FIELDS);
         optionalParams.add(QueryParameters.UNIQUE_FIELDS);
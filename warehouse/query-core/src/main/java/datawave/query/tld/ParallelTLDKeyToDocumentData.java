@@ -0,0 +1,414 @@
+package datawave.query.tld;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import datawave.core.iterators.FairTaskExecutor;
+import datawave.core.iterators.IteratorThreadPoolManager;
+import datawave.query.function.Equality;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.predicate.EventDataQueryFilter;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.log4j.Logger;
+
+/**
+ * Aggregates the children of a top level document in parallel. The children are split into contiguous ranges of child uids, up to
+ * {@link #SPLITS_PER_THREAD} ranges per thread. Tasks on the evaluation pool and the calling thread each take the next range not yet taken until none are
+ * left, collecting them on their own source and filter, and the partial attribute lists are merged in key order. Since the calling thread takes ranges too,
+ * a saturated pool can never leave it waiting. Once it is done it claims the tasks that have not started so that they do not run, and waits for the ones that
+ * have.
+ * 
+ * The children are not all walked before they are split. At most {@link #CHILDREN_PER_THREAD} children per thread are walked from the start of the document,
+ * and if the document goes on past them the column families from there to its end are bisected, each probe seeking to the first child at or after the
+ * midpoint. The probed splits are spread evenly over the column families rather than the children, which is close enough for the uids of siblings, and
+ * taking the ranges as threads free up evens out the rest. Documents with fewer than two children, and documents whose filter is order dependent such as one
+ * with field limits, are aggregated as usual. The filter of each task is a clone, which otherwise only changes when it decides to seek.
+ */
+public class ParallelTLDKeyToDocumentData extends KeyToDocumentData {
+    private static final Logger log = Logger.getLogger(ParallelTLDKeyToDocumentData.class);
+    
+    // the number of children per thread to walk from the start of a document before probing for the rest
+    public static final int CHILDREN_PER_THREAD = 16;
+    
+    // the number of ranges per thread to split a document into
+    public static final int SPLITS_PER_THREAD = 4;
+    
+    // the number of times a probe may halve the column families it bisects without finding a child
+    public static final int MAX_PROBE_DEPTH = 32;
+    
+    // the number of keys to step over before seeking past the parent
+    public static final int NEXTS_BEFORE_SEEK = 10;
+    
+    private final IteratorEnvironment env;
+    private final EventDataQueryFilter filter;
+    private final int threads;
+    private final String schedulingKey;
+    private final int schedulingWeight;
+    
+    // the source used to find the children, and the sources of the ranges collected by the pool
+    private SortedKeyValueIterator<Key,Value> childSource = null;
+    private final List<SortedKeyValueIterator<Key,Value>> rangeSources = new ArrayList<>();
+    
+    public ParallelTLDKeyToDocumentData(final SortedKeyValueIterator<Key,Value> source, final IteratorEnvironment env, final Map<String,String> options,
+                    final Equality equality, final EventDataQueryFilter filter, boolean includeChildCount, boolean includeParent, int threads,
+                    String schedulingKey, int schedulingWeight) {
+        super(source, env, options, equality, filter, includeChildCount, includeParent);
+        this.env = env;
+        this.filter = filter;
+        this.threads = threads;
+        this.schedulingKey = schedulingKey;
+        this.schedulingWeight = schedulingWeight;
+    }
+    
+    @Override
+    public List<Entry<Key,Value>> collectDocumentAttributes(final Key documentStartKey, final Set<Key> docKeys, final Range keyRange) throws IOException {
+        // the field limits of a filter count keys across the whole document
+        if (documentStartKey == null || (filter != null && filter.isOrderDependent())) {
+            return super.collectDocumentAttributes(documentStartKey, docKeys, keyRange);
+        }
+        
+        List<Key> childStarts = findChildStarts(keyRange);
+        if (childStarts.size() < 2) {
+            return super.collectDocumentAttributes(documentStartKey, docKeys, keyRange);
+        }
+        
+        List<CollectRange> ranges = splitRanges(keyRange, childStarts);
+        if (log.isTraceEnabled()) {
+            log.trace("Aggregating " + childStarts.size() + " children of " + documentStartKey + " in " + ranges.size() + " ranges");
+        }
+        
+        // one task fewer than there are threads, since the calling thread takes ranges as well
+        AtomicInteger next = new AtomicInteger();
+        int count = Math.min(threads, ranges.size()) - 1;
+        List<CollectRanges> tasks = new ArrayList<>(count);
+        List<Future<?>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            while (rangeSources.size() <= i) {
+                rangeSources.add(source.deepCopy(env));
+            }
+            CollectRanges task = new CollectRanges(documentStartKey, ranges, next, rangeSources.get(i), filter == null ? null : filter.clone());
+            tasks.add(task);
+            futures.add(IteratorThreadPoolManager.executeEvaluation(task, "TLD child aggregation of " + documentStartKey, schedulingKey, schedulingWeight,
+                            env));
+        }
+        
+        new CollectRanges(documentStartKey, ranges, next, source, filter).run();
+        
+        for (int i = 0; i < count; i++) {
+            CollectRanges task = tasks.get(i);
+            // every range has been taken, so a task that has not started has nothing left to do
+            if (task.claim()) {
+                futures.get(i).cancel(false);
+                continue;
+            }
+            // a task that has started may still be collecting a range on its source, which the next document reuses
+            try {
+                FairTaskExecutor.blocking(() -> {
+                    task.done.await();
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted aggregating the children of " + documentStartKey, e);
+            }
+        }
+        
+        List<Entry<Key,Value>> attributes = new ArrayList<>(256);
+        for (CollectRange range : ranges) {
+            if (range.failure != null) {
+                throw new IOException("Failed to aggregate the children of " + documentStartKey + " in " + range.range, range.failure);
+            }
+            attributes.addAll(range.attributes);
+            docKeys.addAll(range.docKeys);
+        }
+        return attributes;
+    }
+    
+    /**
+     * Find the first keys of children spread across the document without visiting them all. The parent and then up to {@link #CHILDREN_PER_THREAD} children
+     * per thread are stepped past, with at most {@link #NEXTS_BEFORE_SEEK} calls to next before seeking. If the document ends within them every child is a
+     * split point. Otherwise every {@link #CHILDREN_PER_THREAD}th child walked is, and the column families from the last one to the end of the document are
+     * bisected by probe seeks, see {@link #probe(Range, Text, byte[], byte[], int, int, List)}.
+     * 
+     * @param keyRange
+     *            the range of the document and its children
+     * @return the start keys of the children found, in order
+     * @throws IOException
+     */
+    protected List<Key> findChildStarts(Range keyRange) throws IOException {
+        if (childSource == null) {
+            childSource = source.deepCopy(env);
+        }
+        
+        List<Key> childStarts = new ArrayList<>();
+        childSource.seek(keyRange, columnFamilies, inclusive);
+        if (!childSource.hasTop()) {
+            return childStarts;
+        }
+        
+        Key parent = childSource.getTopKey();
+        Text row = parent.getRow();
+        Key child = parent;
+        int walk = threads * CHILDREN_PER_THREAD;
+        while (childStarts.size() <= walk) {
+            if (!stepPast(keyRange, child)) {
+                // the document ended within the children walked
+                return childStarts;
+            }
+            child = childSource.getTopKey();
+            childStarts.add(new Key(row, child.getColumnFamily()));
+        }
+        
+        // keep every CHILDREN_PER_THREADth child walked, ending with the last one
+        List<Key> walked = childStarts;
+        childStarts = new ArrayList<>();
+        for (int i = 0; i < walked.size(); i += CHILDREN_PER_THREAD) {
+            childStarts.add(walked.get(i));
+        }
+        
+        // the column families of the document end where the range does, or else after every family the parent prefixes
+        Key end = keyRange.getEndKey();
+        byte[] high;
+        if (end != null && end.getRow().equals(row)) {
+            high = end.getColumnFamilyData().toArray();
+        } else {
+            byte[] prefix = parent.getColumnFamilyData().toArray();
+            high = Arrays.copyOf(prefix, prefix.length + 1);
+            high[prefix.length] = (byte) 0xff;
+        }
+        probe(keyRange, row, child.getColumnFamilyData().toArray(), high, threads * SPLITS_PER_THREAD - 1, 0, childStarts);
+        return childStarts;
+    }
+    
+    /**
+     * Step the child source past the column family of a key, seeking only when its keys do not end close by
+     * 
+     * @param keyRange
+     *            the range of the document and its children
+     * @param key
+     *            the key to step past
+     * @return whether the source is on a key of the range
+     * @throws IOException
+     */
+    private boolean stepPast(Range keyRange, Key key) throws IOException {
+        int nexts = 0;
+        while (childSource.hasTop() && childSource.getTopKey().equals(key, PartialKey.ROW_COLFAM) && nexts < NEXTS_BEFORE_SEEK) {
+            childSource.next();
+            nexts++;
+        }
+        if (childSource.hasTop() && childSource.getTopKey().equals(key, PartialKey.ROW_COLFAM)) {
+            Key next = key.followingKey(PartialKey.ROW_COLFAM);
+            if (!keyRange.contains(next)) {
+                return false;
+            }
+            childSource.seek(new Range(next, true, keyRange.getEndKey(), keyRange.isEndKeyInclusive()), columnFamilies, inclusive);
+        }
+        return childSource.hasTop() && keyRange.contains(childSource.getTopKey());
+    }
+    
+    /**
+     * Find split points between two column families by seeking to their midpoint. A child found at or past the midpoint is a split point, and the families on
+     * either side of it are probed for half of the remaining split points each. If there is no child between the midpoint and the high family, the lower half
+     * is probed instead, up to {@link #MAX_PROBE_DEPTH} times in a row.
+     * 
+     * @param keyRange
+     *            the range of the document and its children
+     * @param row
+     * @param low
+     *            the column family of a child already found
+     * @param high
+     *            the column family to probe up to, exclusive
+     * @param splits
+     *            the number of split points to find
+     * @param depth
+     *            the number of times in a row the column families have been halved without finding a child
+     * @param childStarts
+     *            the start keys of the children found, added to in order
+     * @throws IOException
+     */
+    protected void probe(Range keyRange, Text row, byte[] low, byte[] high, int splits, int depth, List<Key> childStarts) throws IOException {
+        if (splits <= 0 || depth >= MAX_PROBE_DEPTH) {
+            return;
+        }
+        byte[] mid = midpoint(low, high);
+        if (mid == null) {
+            return;
+        }
+        
+        childSource.seek(new Range(new Key(row, new Text(mid)), true, keyRange.getEndKey(), keyRange.isEndKeyInclusive()), columnFamilies, inclusive);
+        byte[] found = null;
+        if (childSource.hasTop() && keyRange.contains(childSource.getTopKey())) {
+            found = childSource.getTopKey().getColumnFamilyData().toArray();
+        }
+        if (found == null || WritableComparator.compareBytes(found, 0, found.length, high, 0, high.length) >= 0) {
+            // nothing from the midpoint on, so the children are all in the lower half
+            probe(keyRange, row, low, mid, splits, depth + 1, childStarts);
+            return;
+        }
+        
+        // there are no children between the midpoint and the one found, so the lower half ends at the midpoint
+        int lower = (splits - 1) / 2;
+        probe(keyRange, row, low, mid, lower, 0, childStarts);
+        childStarts.add(new Key(row, new Text(found)));
+        probe(keyRange, row, found, high, splits - 1 - lower, 0, childStarts);
+    }
+    
+    /**
+     * @param low
+     * @param high
+     *            a byte string sorting after the low one
+     * @return a byte string sorting after the low and before the high one, about halfway between them, or null if there is no room between them
+     */
+    static byte[] midpoint(byte[] low, byte[] high) {
+        // one extra byte leaves room between strings that differ only in their last byte
+        int length = Math.max(low.length, high.length) + 1;
+        BigInteger a = new BigInteger(1, Arrays.copyOf(low, length));
+        BigInteger b = new BigInteger(1, Arrays.copyOf(high, length));
+        BigInteger mid = a.add(b).shiftRight(1);
+        if (mid.compareTo(a) <= 0) {
+            return null;
+        }
+        
+        byte[] bytes = mid.toByteArray();
+        byte[] midpoint = new byte[length];
+        int copied = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copied, midpoint, length - copied, copied);
+        
+        // drop the trailing zeros while the midpoint still sorts after the low string
+        int end = length;
+        while (end > 0 && midpoint[end - 1] == 0 && WritableComparator.compareBytes(midpoint, 0, end - 1, low, 0, low.length) > 0) {
+            end--;
+        }
+        return Arrays.copyOf(midpoint, end);
+    }
+    
+    /**
+     * Split the document range into at most {@link #SPLITS_PER_THREAD} ranges per thread, each starting at a child and holding the same number of the children
+     * found
+     * 
+     * @param keyRange
+     *            the range of the document and its children
+     * @param childStarts
+     *            the start keys of the children
+     * @return the ranges to collect, in order
+     */
+    protected List<CollectRange> splitRanges(Range keyRange, List<Key> childStarts) {
+        // the parent is collected with the children of the first range
+        int documents = childStarts.size() + 1;
+        int count = Math.min(threads * SPLITS_PER_THREAD, documents);
+        
+        List<CollectRange> ranges = new ArrayList<>(count);
+        Key start = keyRange.getStartKey();
+        boolean startInclusive = keyRange.isStartKeyInclusive();
+        for (int i = 1; i <= count; i++) {
+            if (i == count) {
+                ranges.add(new CollectRange(new Range(start, startInclusive, keyRange.getEndKey(), keyRange.isEndKeyInclusive())));
+            } else {
+                Key end = childStarts.get((i * documents / count) - 1);
+                ranges.add(new CollectRange(new Range(start, startInclusive, end, false)));
+                start = end;
+                startInclusive = true;
+            }
+        }
+        return ranges;
+    }
+    
+    /**
+     * The attributes of one range of children
+     */
+    protected static class CollectRange {
+        private final Range range;
+        private final Set<Key> docKeys = new HashSet<>();
+        private List<Entry<Key,Value>> attributes = Collections.emptyList();
+        private Exception failure = null;
+        
+        public CollectRange(Range range) {
+            this.range = range;
+        }
+    }
+    
+    /**
+     * Collects the next range not yet taken until there are none left, on one source and filter
+     */
+    protected class CollectRanges implements Runnable {
+        private final Key documentStartKey;
+        private final List<CollectRange> ranges;
+        private final AtomicInteger next;
+        private final SortedKeyValueIterator<Key,Value> rangeSource;
+        private final EventDataQueryFilter rangeFilter;
+        
+        // whether the task has been started, or skipped by the calling thread
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        // counted down once a started task has collected its ranges
+        private final CountDownLatch done = new CountDownLatch(1);
+        
+        public CollectRanges(Key documentStartKey, List<CollectRange> ranges, AtomicInteger next, SortedKeyValueIterator<Key,Value> rangeSource,
+                        EventDataQueryFilter rangeFilter) {
+            this.documentStartKey = documentStartKey;
+            this.ranges = ranges;
+            this.next = next;
+            this.rangeSource = rangeSource;
+            this.rangeFilter = rangeFilter;
+        }
+        
+        /**
+         * @return true if the task had not been claimed, in which case it will not run
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+        
+        @Override
+        public void run() {
+            if (!claim()) {
+                return;
+            }
+            try {
+                for (int i = next.getAndIncrement(); i < ranges.size(); i = next.getAndIncrement()) {
+                    collect(documentStartKey, ranges.get(i), rangeSource, rangeFilter);
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+    
+    /**
+     * Collect the attributes of one range of children
+     * 
+     * @param documentStartKey
+     * @param range
+     *            the range, which holds the attributes or failure when done
+     * @param rangeSource
+     * @param rangeFilter
+     */
+    protected void collect(Key documentStartKey, CollectRange range, SortedKeyValueIterator<Key,Value> rangeSource, EventDataQueryFilter rangeFilter) {
+        try {
+            rangeSource.seek(range.range, columnFamilies, inclusive);
+            if (rangeSource.hasTop()) {
+                range.attributes = collectAttributesForDocumentKey(documentStartKey, rangeSource, equality, rangeFilter, range.docKeys, range.range);
+            }
+        } catch (IOException | RuntimeException e) {
+            range.failure = e;
+        }
+    }
+}
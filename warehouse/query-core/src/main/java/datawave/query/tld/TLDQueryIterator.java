@@ -4,6 +4,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import datawave.query.attributes.Document;
 import datawave.query.data.parsers.DatawaveKey;
+import datawave.query.function.KeyToDocumentData;
 import datawave.query.function.TLDEquality;
 import datawave.query.iterator.NestedIterator;
 import datawave.query.iterator.QueryIterator;
@@ -183,6 +184,19 @@ public class TLDQueryIterator extends QueryIterator {
         return this.evaluationFilter != null ? evaluationFilter.clone() : null;
     }
     
+    /**
+     * Aggregate the children of wide top level documents on several threads when configured to
+     */
+    @Override
+    protected KeyToDocumentData createKeyToDocumentData(SortedKeyValueIterator<Key,Value> deepSourceCopy, EventDataQueryFilter documentFilter) {
+        if (getTldChildAggregationThreads() > 1) {
+            return new ParallelTLDKeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality, documentFilter,
+                            this.includeHierarchyFields, this.includeHierarchyFields, getTldChildAggregationThreads(), getSchedulingKey(),
+                            getSchedulingWeight());
+        }
+        return super.createKeyToDocumentData(deepSourceCopy, documentFilter);
+    }
+    
     @Override
     protected NestedIterator<Key> getEventDataNestedIterator(SortedKeyValueIterator<Key,Value> source) {
         return new TLDEventDataScanNestedIterator(source, getEventEntryKeyDataTypeFilter());
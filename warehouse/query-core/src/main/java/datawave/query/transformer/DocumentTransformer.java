@@ -2,6 +2,7 @@ package datawave.query.transformer;
 
 import com.google.common.base.Preconditions;
 import datawave.marking.MarkingFunctions;
+import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Document;
 import datawave.util.StringUtils;
 import datawave.webservice.query.Query;
@@ -87,6 +88,10 @@ public class DocumentTransformer extends DocumentTransformerSupport<Entry<Key,Va
     
     @Override
     public EventBase transform(Entry<Key,Value> entry) throws EmptyObjectException {
+        // the batches packed by the query iterator are unpacked by the query logic's iterator, transforming one would drop all but one of its documents
+        if (DocumentSerialization.isBatch(entry.getValue().get())) {
+            throw new IllegalStateException("Received a batch of documents under " + entry.getKey() + ", batches must be unpacked before they are transformed");
+        }
         
         Entry<Key,Document> documentEntry = deserializer.apply(entry);
         for (DocumentTransform transform : transforms) {
@@ -235,7 +235,9 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
                 sb.append("retrieved document from host:").append(host).append(" at key:").append(documentKey.toStringNoTime()).append(" stageTimers:")
                                 .append(stageTimers);
                 sb.append(" sourceCount:").append(currentSourceCount).append(" nextCount:").append(currentNextCount).append(" seekCount:")
-                                .append(currentSeekCount).append(" yieldCount:").append(currentYieldCount);
+                                .append(currentSeekCount).append(" yieldCount:").append(currentYieldCount).append(" documentCacheHitCount:")
+                                .append(timingMetadata.getDocumentCacheHitCount()).append(" documentCacheMissCount:")
+                                .append(timingMetadata.getDocumentCacheMissCount());
                 if (log.isTraceEnabled()) {
                     log.trace(sb.toString());
                 } else {
@@ -0,0 +1,86 @@
+package datawave.query.util;
+
+import java.util.ArrayList;
+
+import datawave.query.index.lookup.GlobalIndexCache;
+import datawave.webservice.common.cache.SharedCacheCoordinator;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.shared.SharedCountListener;
+import org.apache.curator.framework.recipes.shared.SharedCountReader;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.log4j.Logger;
+
+/**
+ * Uses the SharedCacheCoordinator to register listeners so that when the shared counter of an index table is incremented (as the AccumuloTableCache does for
+ * the tables it reloads, or a loader may do after a bulk import) the entries of that table in the {@link GlobalIndexCache} will be evicted.
+ * 
+ * Note that because the SharedCacheCoordinator uses zookeeper, this class will not work in cases where zookeeper is not running (like in unit tests). This
+ * class is created by the MetadataHelperCacheListenerContext.xml which is not loaded in unit tests
+ */
+public class GlobalIndexCacheManagementListener {
+    
+    private static final Logger log = Logger.getLogger(GlobalIndexCacheManagementListener.class);
+    
+    private final String zookeepers;
+    private final ArrayList<SharedCacheCoordinator> cacheCoordinators;
+    
+    public GlobalIndexCacheManagementListener(String zookeepers, String[] indexTableNames) {
+        this.zookeepers = zookeepers;
+        
+        cacheCoordinators = new ArrayList<>(indexTableNames.length);
+        for (String indexTableName : indexTableNames) {
+            SharedCacheCoordinator watcher = registerCacheListener(indexTableName);
+            cacheCoordinators.add(watcher);
+        }
+    }
+    
+    private SharedCacheCoordinator registerCacheListener(final String indexTableName) {
+        log.debug("created CacheManagement listener for table:" + indexTableName);
+        final SharedCacheCoordinator watcher = new SharedCacheCoordinator(indexTableName, this.zookeepers, 30, 300, 10);
+        try {
+            watcher.start();
+        } catch (Exception e) {
+            throw new RuntimeException("Error starting Watcher for GlobalIndexCache", e);
+        }
+        try {
+            watcher.registerCounter(indexTableName, new SharedCountListener() {
+                @Override
+                public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("stateChanged(" + client + ", " + newState + ")");
+                    }
+                }
+                
+                @Override
+                public void countHasChanged(SharedCountReader sharedCount, int newCount) throws Exception {
+                    if (!watcher.checkCounter(indexTableName, newCount)) {
+                        log.debug("will evict the global index cache for " + indexTableName);
+                        GlobalIndexCache.getInstance().invalidate(indexTableName);
+                    } else {
+                        log.debug("did not evict the global index cache for " + indexTableName);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to create shared counters: " + e.getMessage(), e);
+        }
+        
+        return watcher;
+    }
+    
+    /**
+     * Cleans up {@link SharedCacheCoordinator}s used by this class. This method should be named as the "destroy-method" when this class is declared as a Spring
+     * bean.
+     */
+    @SuppressWarnings("unused")
+    private void shutdown() {
+        for (SharedCacheCoordinator watcher : cacheCoordinators) {
+            try {
+                watcher.stop();
+            } catch (Exception e) {
+                log.error("Unable to shutdown cache coordinator: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -29,6 +29,8 @@ import com.google.common.collect.Queues;
 public class QueryStopwatch {
     public static final String NEWLINE = "\n", INDENT = "    ";
     protected ArrayDeque<Entry<String,TraceStopwatch>> watches = Queues.newArrayDeque();
+    // counts and times that are not measured by a stopwatch of their own, which may be recorded by other threads while the query runs
+    protected List<Entry<String,String>> statistics = Collections.synchronizedList(Lists.newArrayList());
     
     /**
      * Creates a new Stopwatch for use but does not start it
@@ -62,6 +64,30 @@ public class QueryStopwatch {
         return entry.getValue();
     }
     
+    /**
+     * Record a count alongside the stopwatches, e.g. the number of tasks a query started
+     * 
+     * @param header
+     * @param count
+     */
+    public void recordCount(String header, long count) {
+        checkNotNull(header);
+        
+        statistics.add(Maps.immutableEntry(header, Long.toString(count)));
+    }
+    
+    /**
+     * Record a time that is not measured by a stopwatch, e.g. how long the tasks of a query waited for a thread
+     * 
+     * @param header
+     * @param elapsedMillis
+     */
+    public void recordMillis(String header, long elapsedMillis) {
+        checkNotNull(header);
+        
+        statistics.add(Maps.immutableEntry(header, formatMillis(elapsedMillis)));
+    }
+    
     public String summarize() {
         List<String> logLines = summarizeAsList();
         
@@ -105,6 +131,30 @@ public class QueryStopwatch {
         return lines;
     }
     
+    /**
+     * Summarize the counts and times recorded with {@link #recordCount(String, long)} and {@link #recordMillis(String, long)}
+     * 
+     * @return the summary lines, which are empty if nothing was recorded
+     */
+    public List<String> summarizeStatisticsAsList() {
+        final List<Entry<String,String>> recorded;
+        synchronized (statistics) {
+            recorded = Lists.newArrayList(statistics);
+        }
+        
+        final List<String> lines = Lists.newArrayListWithCapacity(recorded.size());
+        final int length = Integer.toString(recorded.size()).length();
+        
+        int count = 1;
+        for (Entry<String,String> entry : recorded) {
+            final String paddedCount = new StringBuilder(INDENT).append(StringUtils.leftPad(Integer.toString(count), length, "0")).append(") ").toString();
+            lines.add(paddedCount + entry.getKey() + ": " + entry.getValue());
+            count++;
+        }
+        
+        return lines;
+    }
+    
     protected String formatMillis(long elapsedMillis) {
         TimeUnit unit = chooseUnit(elapsedMillis);
         double value = (double) elapsedMillis / MILLISECONDS.convert(1, unit);
@@ -0,0 +1,794 @@
+package datawave.query.util.sortedset;
+
+import com.google.common.io.CountingOutputStream;
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A FileSortedSet that persists its entries in a block indexed format rather than as a stream of java serialized objects. Entries are written through an
+ * {@link EntryCodec} and each entry is prefix compressed against the previous entry in its block. A sparse index containing the first entry and the file
+ * offset of every block is written at the end of the file. Once read, the index is kept in memory and used to binary search for the block containing a
+ * requested entry. This allows the subSet, headSet, tailSet and contains operations to work on a persisted set by reading only the blocks of the file that
+ * overlap the requested range, rather than scanning the file from the beginning.
+ * 
+ * The persisted file contains:
+ * 
+ * <pre>
+ * block*      : entries, where the first entry of each block is not prefix compressed
+ * entry       : vint shared prefix length, vint suffix length, suffix bytes
+ * index       : int block count, (vint first entry length, first entry bytes, vlong block offset, int first ordinal)*
+ * trailer     : long index offset, int size
+ * </pre>
+ * 
+ * The size remains the last 4 bytes of the file as with the FileSortedSet. Null entries are not supported.
+ * 
+ * @param <E>
+ */
+public class BlockIndexedFileSortedSet<E extends Serializable> extends FileSortedSet<E> {
+    private static final Logger log = Logger.getLogger(BlockIndexedFileSortedSet.class);
+    public static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+    private static final int TRAILER_SIZE = 12;
+    
+    private final EntryCodec<E> codec;
+    private final int blockSize;
+    
+    // the index of the persisted file, read lazily
+    private BlockIndex<E> index = null;
+    
+    /**
+     * Writes and reads the entries of the set. The codec does not determine the order of the entries, that is still determined by the set's comparator.
+     * 
+     * @param <E>
+     */
+    public interface EntryCodec<E> {
+        void write(E entry, DataOutput out) throws IOException;
+        
+        E read(DataInput in) throws IOException;
+    }
+    
+    /**
+     * A factory that will create block indexed file sorted sets using the supplied codec
+     * 
+     * @param <E>
+     */
+    public static class Factory<E extends Serializable> implements BufferedFileBackedSortedSet.FileSortedSetFactory<E> {
+        private final EntryCodec<E> codec;
+        private final int blockSize;
+        
+        public Factory(EntryCodec<E> codec) {
+            this(codec, DEFAULT_BLOCK_SIZE);
+        }
+        
+        public Factory(EntryCodec<E> codec, int blockSize) {
+            this.codec = codec;
+            this.blockSize = blockSize;
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(FileSortedSet<E> other) {
+            return new BlockIndexedFileSortedSet<>((BlockIndexedFileSortedSet<E>) other);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted) {
+            return new BlockIndexedFileSortedSet<>(comparator, handler, persisted, codec, blockSize);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(SortedSetFileHandler handler, SortedSet<E> buffer) {
+            return new BlockIndexedFileSortedSet<>(handler, buffer, codec, blockSize);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+            return new BlockIndexedFileSortedSet<>(set, handler, persist, codec, blockSize);
+        }
+    }
+    
+    /**
+     * Create a file sorted set from another one
+     * 
+     * @param other
+     */
+    public BlockIndexedFileSortedSet(BlockIndexedFileSortedSet<E> other) {
+        super(other);
+        this.codec = other.codec;
+        this.blockSize = other.blockSize;
+        this.index = other.index;
+    }
+    
+    /**
+     * Create a persisted sorted set
+     * 
+     * @param comparator
+     * @param handler
+     * @param persisted
+     * @param codec
+     * @param blockSize
+     *            the target number of bytes per block
+     */
+    public BlockIndexedFileSortedSet(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted, EntryCodec<E> codec, int blockSize) {
+        super(comparator, handler, persisted);
+        this.codec = codec;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Create an unpersisted sorted set that uses the supplied set, rather than a TreeSet, to hold its entries while in memory
+     * 
+     * @param handler
+     * @param buffer
+     *            an empty set
+     * @param codec
+     * @param blockSize
+     *            the target number of bytes per block
+     */
+    public BlockIndexedFileSortedSet(SortedSetFileHandler handler, SortedSet<E> buffer, EntryCodec<E> codec, int blockSize) {
+        super(handler, buffer);
+        this.codec = codec;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Create an sorted set out of another sorted set. If persist is true, then the set will be directly persisted using the set's iterator which avoid pulling
+     * all of its entries into memory at once.
+     * 
+     * @param set
+     * @param handler
+     * @param persist
+     * @param codec
+     * @param blockSize
+     *            the target number of bytes per block
+     */
+    public BlockIndexedFileSortedSet(SortedSet<E> set, SortedSetFileHandler handler, boolean persist, EntryCodec<E> codec, int blockSize) throws IOException {
+        super(set.comparator(), handler, false);
+        this.codec = codec;
+        this.blockSize = blockSize;
+        if (!persist) {
+            this.set.addAll(set);
+        } else {
+            persist(set);
+            this.persisted = true;
+        }
+    }
+    
+    @Override
+    public void persist() throws IOException {
+        if (!persisted) {
+            persist(this.set);
+            this.set.clear();
+            persisted = true;
+        }
+    }
+    
+    /**
+     * Persist the supplied set to a file as defined by this classes sorted set file handler.
+     */
+    private void persist(SortedSet<E> set) throws IOException {
+        boolean verified = false;
+        Exception failure = null;
+        if (log.isDebugEnabled()) {
+            log.debug("Persisting " + handler);
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10 && !verified; i++) {
+            try {
+                this.index = null;
+                List<E> firstOneHundred = new ArrayList<>();
+                int actualSize = write(set, firstOneHundred);
+                
+                // verify we wrote at least the trailer....
+                if (handler.getSize() < TRAILER_SIZE) {
+                    throw new IOException("Failed to verify file existence");
+                }
+                
+                // now verify the index and size were written at the end
+                BlockIndex<E> test = readIndex();
+                if (test.size != actualSize) {
+                    throw new IOException("Failed to verify file size was written");
+                }
+                
+                // now verify the first 100 objects were written correctly
+                this.index = test;
+                Iterator<E> it = new BlockIterator(null, null);
+                int count = 0;
+                for (E t : firstOneHundred) {
+                    count++;
+                    if (!it.hasNext() || compare(t, it.next()) != 0) {
+                        throw new IOException("Failed to verify element " + count + " was written");
+                    }
+                }
+                
+                verified = true;
+                if (log.isDebugEnabled()) {
+                    long delta = System.currentTimeMillis() - start;
+                    log.debug("Persisting " + handler + " took " + delta + "ms");
+                }
+            } catch (Exception e) {
+                log.warn("Attempt #" + i + " failed to persist " + handler);
+                this.index = null;
+                // ok, try again
+                failure = e;
+            }
+        }
+        if (!verified) {
+            throw new IOException("Failed to write sorted set", failure);
+        }
+    }
+    
+    /**
+     * Write the blocks, the index, and the trailer
+     * 
+     * @param set
+     * @param firstOneHundred
+     *            will be filled with the first 100 entries written for verification
+     * @return the number of entries written
+     * @throws IOException
+     */
+    private int write(SortedSet<E> set, List<E> firstOneHundred) throws IOException {
+        firstOneHundred.clear();
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(handler.getOutputStream()));
+        DataOutputStream stream = new DataOutputStream(counter);
+        try {
+            DataOutputBuffer indexBuffer = new DataOutputBuffer();
+            DataOutputBuffer current = new DataOutputBuffer();
+            DataOutputBuffer previous = new DataOutputBuffer();
+            int blocks = 0;
+            int size = 0;
+            long blockStart = 0;
+            for (E t : set) {
+                if (t == null) {
+                    throw new IOException("Null entries are not supported by " + getClass().getSimpleName());
+                }
+                current.reset();
+                codec.write(t, current);
+                
+                int shared = 0;
+                if (previous.getLength() == 0 || counter.getCount() - blockStart >= blockSize) {
+                    // start a new block with an uncompressed entry
+                    blockStart = counter.getCount();
+                    WritableUtils.writeVInt(indexBuffer, current.getLength());
+                    indexBuffer.write(current.getData(), 0, current.getLength());
+                    WritableUtils.writeVLong(indexBuffer, blockStart);
+                    indexBuffer.writeInt(size);
+                    blocks++;
+                } else {
+                    shared = sharedPrefix(previous.getData(), previous.getLength(), current.getData(), current.getLength());
+                }
+                WritableUtils.writeVInt(stream, shared);
+                WritableUtils.writeVInt(stream, current.getLength() - shared);
+                stream.write(current.getData(), shared, current.getLength() - shared);
+                
+                if (firstOneHundred.size() < 100) {
+                    firstOneHundred.add(t);
+                }
+                size++;
+                
+                DataOutputBuffer swap = previous;
+                previous = current;
+                current = swap;
+            }
+            long indexOffset = counter.getCount();
+            stream.writeInt(blocks);
+            stream.write(indexBuffer.getData(), 0, indexBuffer.getLength());
+            stream.writeLong(indexOffset);
+            stream.writeInt(size);
+            return size;
+        } finally {
+            stream.close();
+        }
+    }
+    
+    private static int sharedPrefix(byte[] b1, int len1, byte[] b2, int len2) {
+        int len = Math.min(len1, len2);
+        int i = 0;
+        while (i < len && b1[i] == b2[i]) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Get the index, reading it from the file if needed.
+     * 
+     * @return the index
+     */
+    private BlockIndex<E> getIndex() {
+        if (index == null) {
+            try {
+                index = readIndex();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to read index from file", e);
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Read the trailer and the index from the end of the file.
+     * 
+     * @return the index
+     * @throws IOException
+     */
+    private BlockIndex<E> readIndex() throws IOException {
+        long fileSize = handler.getSize();
+        long indexOffset;
+        int size;
+        DataInputStream trailer = openStream(fileSize - TRAILER_SIZE);
+        try {
+            indexOffset = trailer.readLong();
+            size = trailer.readInt();
+        } finally {
+            trailer.close();
+        }
+        
+        DataInputStream stream = openStream(indexOffset);
+        try {
+            int blocks = stream.readInt();
+            List<E> firstEntries = new ArrayList<>(blocks);
+            long[] offsets = new long[blocks];
+            int[] ordinals = new int[blocks];
+            DataInputBuffer entryBuffer = new DataInputBuffer();
+            for (int i = 0; i < blocks; i++) {
+                byte[] entry = new byte[WritableUtils.readVInt(stream)];
+                stream.readFully(entry);
+                entryBuffer.reset(entry, entry.length);
+                firstEntries.add(codec.read(entryBuffer));
+                offsets[i] = WritableUtils.readVLong(stream);
+                ordinals[i] = stream.readInt();
+            }
+            return new BlockIndex<>(size, firstEntries, offsets, ordinals);
+        } finally {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Open a stream positioned at the specified offset in the file
+     * 
+     * @param offset
+     * @return the stream
+     * @throws IOException
+     */
+    private DataInputStream openStream(long offset) throws IOException {
+        InputStream inStream = handler.getInputStream();
+        try {
+            long total = 0;
+            long cur = 0;
+            
+            while ((total < offset) && ((cur = inStream.skip(offset - total)) > 0)) {
+                total += cur;
+            }
+            if (total < offset) {
+                throw new IOException("Unable to skip to " + offset + " in " + handler);
+            }
+        } catch (IOException e) {
+            inStream.close();
+            throw e;
+        }
+        return new DataInputStream(new BufferedInputStream(inStream));
+    }
+    
+    /**
+     * Find the block that could contain the specified element. This is the last block whose first entry is less than or equal to the element.
+     * 
+     * @param element
+     * @return the block number
+     */
+    private int findBlock(E element) {
+        List<E> firstEntries = getIndex().firstEntries;
+        int low = 0;
+        int high = firstEntries.size() - 1;
+        int block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(firstEntries.get(mid), element) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return block;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private int compare(E o1, E o2) {
+        Comparator<? super E> comparator = set.comparator();
+        if (comparator == null) {
+            return ((Comparable<? super E>) o1).compareTo(o2);
+        } else {
+            return comparator.compare(o1, o2);
+        }
+    }
+    
+    @Override
+    public void load() throws IOException, ClassNotFoundException {
+        if (persisted) {
+            try {
+                for (Iterator<E> it = new BlockIterator(null, null); it.hasNext();) {
+                    set.add(it.next());
+                }
+            } catch (Exception e) {
+                throw new IOException("Unable to read file into a complete set", e);
+            }
+            handler.deleteFile();
+            persisted = false;
+            index = null;
+        }
+    }
+    
+    @Override
+    public int size() {
+        if (persisted) {
+            return getIndex().size;
+        } else {
+            return set.size();
+        }
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (persisted) {
+            return new PersistedSubSet(null, null).contains(o);
+        } else {
+            return set.contains(o);
+        }
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        if (persisted) {
+            return new BlockIterator(null, null);
+        } else {
+            return set.iterator();
+        }
+    }
+    
+    @Override
+    public Object[] toArray() {
+        if (persisted) {
+            return new PersistedSubSet(null, null).toArray();
+        } else {
+            return set.toArray();
+        }
+    }
+    
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if (persisted) {
+            return new PersistedSubSet(null, null).toArray(a);
+        } else {
+            return set.toArray(a);
+        }
+    }
+    
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (persisted) {
+            return new PersistedSubSet(null, null).containsAll(c);
+        } else {
+            return set.containsAll(c);
+        }
+    }
+    
+    @Override
+    public void clear() {
+        super.clear();
+        index = null;
+    }
+    
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        if (persisted) {
+            return new PersistedSubSet(fromElement, toElement);
+        } else {
+            return set.subSet(fromElement, toElement);
+        }
+    }
+    
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        if (persisted) {
+            return new PersistedSubSet(null, toElement);
+        } else {
+            return set.headSet(toElement);
+        }
+    }
+    
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        if (persisted) {
+            return new PersistedSubSet(fromElement, null);
+        } else {
+            return set.tailSet(fromElement);
+        }
+    }
+    
+    @Override
+    public E first() {
+        if (persisted) {
+            return new PersistedSubSet(null, null).first();
+        } else {
+            return super.first();
+        }
+    }
+    
+    @Override
+    public E last() {
+        if (persisted) {
+            return new PersistedSubSet(null, null).last();
+        } else {
+            return super.last();
+        }
+    }
+    
+    /********* Some sub classes ***********/
+    
+    /**
+     * The in memory index of a persisted file
+     */
+    private static class BlockIndex<E> {
+        private final int size;
+        private final List<E> firstEntries;
+        private final long[] offsets;
+        private final int[] ordinals;
+        
+        private BlockIndex(int size, List<E> firstEntries, long[] offsets, int[] ordinals) {
+            this.size = size;
+            this.firstEntries = firstEntries;
+            this.offsets = offsets;
+            this.ordinals = ordinals;
+        }
+    }
+    
+    /**
+     * A view of a range of a persisted file. The bounds follow the SortedSet conventions: the from element is inclusive and the to element is exclusive, and a
+     * null bound is unbounded. Note that the size of this view is determined by iterating over it.
+     */
+    protected class PersistedSubSet extends AbstractSet<E> implements SortedSet<E> {
+        private final E from;
+        private final E to;
+        
+        public PersistedSubSet(E from, E to) {
+            if (from != null && to != null && compare(from, to) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            this.from = from;
+            this.to = to;
+        }
+        
+        private boolean inRange(E e) {
+            return (from == null || compare(e, from) >= 0) && (to == null || compare(e, to) < 0);
+        }
+        
+        @Override
+        public Iterator<E> iterator() {
+            return new BlockIterator(from, to);
+        }
+        
+        @Override
+        public int size() {
+            if (from == null && to == null) {
+                return getIndex().size;
+            }
+            int size = 0;
+            for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+                size++;
+            }
+            return size;
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(Object o) {
+            E e = (E) o;
+            if (e == null || !inRange(e)) {
+                return false;
+            }
+            Iterator<E> it = new BlockIterator(e, to);
+            return it.hasNext() && compare(it.next(), e) == 0;
+        }
+        
+        @Override
+        public Comparator<? super E> comparator() {
+            return set.comparator();
+        }
+        
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return new PersistedSubSet(max(from, fromElement), min(to, toElement));
+        }
+        
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return new PersistedSubSet(from, min(to, toElement));
+        }
+        
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return new PersistedSubSet(max(from, fromElement), to);
+        }
+        
+        @Override
+        public E first() {
+            Iterator<E> it = iterator();
+            if (!it.hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return it.next();
+        }
+        
+        @Override
+        public E last() {
+            Iterator<E> it;
+            if (to == null) {
+                // only the last block can contain the last element
+                BlockIndex<E> index = getIndex();
+                it = new BlockIterator(from, null, Math.max(0, index.firstEntries.size() - 1));
+            } else {
+                it = iterator();
+            }
+            E last = null;
+            boolean gotLast = false;
+            while (it.hasNext()) {
+                last = it.next();
+                gotLast = true;
+            }
+            if (!gotLast) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return last;
+        }
+        
+        private E max(E e1, E e2) {
+            if (e1 == null) {
+                return e2;
+            } else if (e2 == null) {
+                return e1;
+            }
+            return (compare(e1, e2) >= 0 ? e1 : e2);
+        }
+        
+        private E min(E e1, E e2) {
+            if (e1 == null) {
+                return e2;
+            } else if (e2 == null) {
+                return e1;
+            }
+            return (compare(e1, e2) <= 0 ? e1 : e2);
+        }
+    }
+    
+    /**
+     * This is the iterator for a persisted BlockIndexedFileSortedSet. It will start reading at the block that could contain the from element.
+     */
+    protected class BlockIterator implements Iterator<E> {
+        private final E to;
+        private int remaining = 0;
+        private DataInputStream stream = null;
+        private final DataInputBuffer entryBuffer = new DataInputBuffer();
+        private byte[] entry = new byte[256];
+        private int entryLength = 0;
+        private E next = null;
+        
+        public BlockIterator(E from, E to) {
+            this(from, to, (from == null ? 0 : findBlock(from)));
+        }
+        
+        public BlockIterator(E from, E to, int block) {
+            this.to = to;
+            try {
+                BlockIndex<E> index = getIndex();
+                if (block < index.offsets.length) {
+                    this.remaining = index.size - index.ordinals[block];
+                    this.stream = openStream(index.offsets[block]);
+                }
+                // skip the entries in the block before the from element
+                do {
+                    advance();
+                } while (next != null && from != null && compare(next, from) < 0);
+            } catch (Exception e) {
+                cleanup();
+                throw new IllegalStateException("Unable to read file", e);
+            }
+        }
+        
+        private void advance() throws IOException {
+            next = null;
+            if (remaining > 0) {
+                int shared = WritableUtils.readVInt(stream);
+                int suffix = WritableUtils.readVInt(stream);
+                entryLength = shared + suffix;
+                if (entryLength > entry.length) {
+                    byte[] newEntry = new byte[Math.max(entryLength, entry.length * 2)];
+                    System.arraycopy(entry, 0, newEntry, 0, shared);
+                    entry = newEntry;
+                }
+                stream.readFully(entry, shared, suffix);
+                entryBuffer.reset(entry, entryLength);
+                next = codec.read(entryBuffer);
+                remaining--;
+                if (to != null && compare(next, to) >= 0) {
+                    next = null;
+                }
+            }
+            if (next == null) {
+                cleanup();
+            }
+        }
+        
+        public void cleanup() {
+            remaining = 0;
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (Exception e) {
+                    // we tried...
+                }
+                stream = null;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            E o = next;
+            try {
+                advance();
+            } catch (Exception e) {
+                cleanup();
+                throw new IllegalStateException("Unable to get next element from file", e);
+            }
+            return o;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Cannot remove elements from a persisted file.  Please call load() first.");
+        }
+        
+        @Override
+        protected void finalize() throws Throwable {
+            cleanup();
+            super.finalize();
+        }
+    }
+}
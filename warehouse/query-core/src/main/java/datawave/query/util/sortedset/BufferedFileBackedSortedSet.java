@@ -33,6 +33,8 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
     protected int size = 0;
     
     protected SortedSetFileHandlerFactory handlerFactory;
+    protected SortedSetBufferFactory<E> bufferFactory = null;
+    protected FileSortedSetFactory<E> setFactory;
     protected int bufferPersistThreshold;
     
     /**
@@ -45,10 +47,35 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         SortedSetFileHandler createHandler() throws IOException;
     }
     
+    /**
+     * A factory for the in memory sets used to buffer entries before they are persisted. The sets must use the same ordering as this set.
+     * 
+     * @param <E>
+     */
+    public interface SortedSetBufferFactory<E> {
+        SortedSet<E> createBuffer();
+    }
+    
+    /**
+     * A factory for the FileSortedSets that hold the buffered entries and the persisted files. This determines the format of the persisted files.
+     * 
+     * @param <E>
+     */
+    public interface FileSortedSetFactory<E extends Serializable> {
+        FileSortedSet<E> newInstance(FileSortedSet<E> other);
+        
+        FileSortedSet<E> newInstance(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted);
+        
+        FileSortedSet<E> newInstance(SortedSetFileHandler handler, SortedSet<E> buffer);
+        
+        FileSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException;
+    }
+    
     public BufferedFileBackedSortedSet(BufferedFileBackedSortedSet<E> other) {
-        this(other.comparator, other.bufferPersistThreshold, other.maxOpenFiles, other.handlerFactory);
+        this(other.comparator, other.bufferPersistThreshold, other.maxOpenFiles, other.handlerFactory, other.setFactory);
+        this.bufferFactory = other.bufferFactory;
         for (SortedSet<E> subSet : other.set.getSets()) {
-            FileSortedSet<E> clone = new FileSortedSet<>((FileSortedSet<E>) subSet);
+            FileSortedSet<E> clone = setFactory.newInstance((FileSortedSet<E>) subSet);
             this.set.addSet(clone);
             if (!clone.isPersisted()) {
                 this.buffer = clone;
@@ -68,12 +95,27 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
     
     public BufferedFileBackedSortedSet(Comparator<? super E> comparator, int bufferPersistThreshold, int maxOpenFiles,
                     SortedSetFileHandlerFactory handlerFactory) {
+        this(comparator, bufferPersistThreshold, maxOpenFiles, handlerFactory, new FileSortedSet.Factory<>());
+    }
+    
+    public BufferedFileBackedSortedSet(Comparator<? super E> comparator, int bufferPersistThreshold, int maxOpenFiles,
+                    SortedSetFileHandlerFactory handlerFactory, FileSortedSetFactory<E> setFactory) {
         this.comparator = comparator;
         this.handlerFactory = handlerFactory;
+        this.setFactory = setFactory;
         this.bufferPersistThreshold = bufferPersistThreshold;
         this.maxOpenFiles = maxOpenFiles;
     }
     
+    /**
+     * Set the factory used to create the in memory buffers. If not set, the buffers are TreeSets.
+     * 
+     * @param bufferFactory
+     */
+    public void setBufferFactory(SortedSetBufferFactory<E> bufferFactory) {
+        this.bufferFactory = bufferFactory;
+    }
+    
     public void persist() throws IOException {
         if (buffer != null) {
             buffer.persist();
@@ -224,7 +266,7 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
     }
     
     private FileSortedSet<E> compact(MultiSetBackedSortedSet<E> setToCompact) throws IOException {
-        return new FileSortedSet<>(setToCompact, handlerFactory.createHandler(), true);
+        return setFactory.newInstance(setToCompact, handlerFactory.createHandler(), true);
     }
     
     @Override
@@ -237,16 +279,23 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
         return set.toArray(a);
     }
     
+    private void createBuffer() {
+        try {
+            if (bufferFactory == null) {
+                buffer = setFactory.newInstance(comparator, handlerFactory.createHandler(), false);
+            } else {
+                buffer = setFactory.newInstance(handlerFactory.createHandler(), bufferFactory.createBuffer());
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
+        }
+        set.addSet(buffer);
+    }
+    
     @Override
     public boolean add(E e) {
         if (buffer == null) {
-            try {
-                buffer = new FileSortedSet<>(comparator, handlerFactory.createHandler(), false);
-            } catch (Exception ex) {
-                throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
-            }
-            
-            set.addSet(buffer);
+            createBuffer();
         }
         if (buffer.add(e)) {
             sizeModified = true;
@@ -265,12 +314,7 @@ public class BufferedFileBackedSortedSet<E extends Serializable> implements Sort
     @Override
     public boolean addAll(Collection<? extends E> c) {
         if (buffer == null) {
-            try {
-                buffer = new FileSortedSet<>(comparator, handlerFactory.createHandler(), false);
-            } catch (Exception ex) {
-                throw new IllegalStateException("Unable to create an underlying FileSortedSet", ex);
-            }
-            set.addSet(buffer);
+            createBuffer();
         }
         if (buffer.addAll(c)) {
             sizeModified = true;
@@ -67,6 +67,34 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         
     }
     
+    /**
+     * A factory that will create file sorted sets that persist their entries as java serialized objects
+     * 
+     * @param <E>
+     */
+    public static class Factory<E extends Serializable> implements BufferedFileBackedSortedSet.FileSortedSetFactory<E> {
+        
+        @Override
+        public FileSortedSet<E> newInstance(FileSortedSet<E> other) {
+            return new FileSortedSet<>(other);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(Comparator<? super E> comparator, SortedSetFileHandler handler, boolean persisted) {
+            return new FileSortedSet<>(comparator, handler, persisted);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(SortedSetFileHandler handler, SortedSet<E> buffer) {
+            return new FileSortedSet<>(handler, buffer);
+        }
+        
+        @Override
+        public FileSortedSet<E> newInstance(SortedSet<E> set, SortedSetFileHandler handler, boolean persist) throws IOException {
+            return new FileSortedSet<>(set, handler, persist);
+        }
+    }
+    
     /**
      * Create a file sorted set from another one
      * 
@@ -103,6 +131,19 @@ public class FileSortedSet<E extends Serializable> implements SortedSet<E> {
         this.persisted = persisted;
     }
     
+    /**
+     * Create an unpersisted sorted set that uses the supplied set, rather than a TreeSet, to hold its entries while in memory
+     * 
+     * @param handler
+     * @param buffer
+     *            an empty set
+     */
+    public FileSortedSet(SortedSetFileHandler handler, SortedSet<E> buffer) {
+        this.handler = handler;
+        this.set = buffer;
+        this.persisted = false;
+    }
+    
     /**
      * Create an unpersisted sorted set (still in memory)
      * 
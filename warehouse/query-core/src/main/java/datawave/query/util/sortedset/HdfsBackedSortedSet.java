@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.SortedSet;
@@ -17,7 +18,7 @@ import org.apache.log4j.Logger;
 
 public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     private static final Logger log = Logger.getLogger(HdfsBackedSortedSet.class);
-    private static final String FILENAME_PREFIX = "SortedSetFile.";
+    protected static final String FILENAME_PREFIX = "SortedSetFile.";
     
     public HdfsBackedSortedSet(HdfsBackedSortedSet<E> other) throws IOException {
         super(other);
@@ -33,21 +34,25 @@ public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBac
     
     public HdfsBackedSortedSet(Comparator<? super E> comparator, int bufferPersistThreshold, FileSystem fs, Path uniqueDir, int maxOpenFiles)
                     throws IOException {
-        super(comparator, bufferPersistThreshold, maxOpenFiles, new SortedSetHdfsFileHandlerFactory(fs, uniqueDir));
+        this(comparator, bufferPersistThreshold, fs, uniqueDir, maxOpenFiles, new FileSortedSet.Factory<>());
+    }
+    
+    public HdfsBackedSortedSet(Comparator<? super E> comparator, int bufferPersistThreshold, FileSystem fs, Path uniqueDir, int maxOpenFiles,
+                    FileSortedSetFactory<E> setFactory) throws IOException {
+        this(comparator, bufferPersistThreshold, maxOpenFiles, new SortedSetHdfsFileHandlerFactory(fs, uniqueDir), setFactory);
+    }
+    
+    public HdfsBackedSortedSet(Comparator<? super E> comparator, int bufferPersistThreshold, int maxOpenFiles, SortedSetHdfsFileHandlerFactory handlerFactory,
+                    FileSortedSetFactory<E> setFactory) throws IOException {
+        super(comparator, bufferPersistThreshold, maxOpenFiles, handlerFactory, setFactory);
         
         // now load up this sorted set with any existing files
-        FileStatus[] files = fs.listStatus(uniqueDir);
-        int count = 0;
-        if (files != null) {
-            for (FileStatus file : files) {
-                if (!file.isDir() && file.getPath().getName().startsWith(FILENAME_PREFIX)) {
-                    count++;
-                    addSet(new FileSortedSet<>(comparator, new SortedSetHdfsFileHandler(fs, file.getPath()), true));
-                }
-            }
+        List<SortedSetFileHandler> handlers = handlerFactory.getExistingHandlers();
+        for (SortedSetFileHandler handler : handlers) {
+            addSet(setFactory.newInstance(comparator, handler, true));
         }
         
-        ((SortedSetHdfsFileHandlerFactory) (this.handlerFactory)).setFileCount(count);
+        handlerFactory.setFileCount(handlers.size());
     }
     
     @Override
@@ -66,9 +71,9 @@ public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBac
     }
     
     public static class SortedSetHdfsFileHandlerFactory implements SortedSetFileHandlerFactory {
-        private FileSystem fs;
-        private Path uniqueDir;
-        private int fileCount = 0;
+        protected FileSystem fs;
+        protected Path uniqueDir;
+        protected int fileCount = 0;
         
         public SortedSetHdfsFileHandlerFactory(FileSystem fs, Path uniqueDir) {
             this.fs = fs;
@@ -79,11 +84,55 @@ public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBac
             this.fileCount = count;
         }
         
+        /**
+         * Get handlers for the sorted set files that already exist
+         * 
+         * @return the handlers
+         * @throws IOException
+         */
+        public List<SortedSetFileHandler> getExistingHandlers() throws IOException {
+            List<SortedSetFileHandler> handlers = new ArrayList<>();
+            for (Path file : listFiles(fs, uniqueDir)) {
+                handlers.add(new SortedSetHdfsFileHandler(fs, file));
+            }
+            return handlers;
+        }
+        
+        /**
+         * List the sorted set files in a directory
+         * 
+         * @param fs
+         * @param dir
+         * @return the files
+         * @throws IOException
+         */
+        protected static List<Path> listFiles(FileSystem fs, Path dir) throws IOException {
+            List<Path> paths = new ArrayList<>();
+            FileStatus[] files = fs.listStatus(dir);
+            if (files != null) {
+                for (FileStatus file : files) {
+                    if (!file.isDir() && file.getPath().getName().startsWith(FILENAME_PREFIX)) {
+                        paths.add(file.getPath());
+                    }
+                }
+            }
+            return paths;
+        }
+        
+        /**
+         * Generate a unique file name
+         * 
+         * @return the file name
+         */
+        protected String nextFileName() {
+            fileCount++;
+            return FILENAME_PREFIX + fileCount + '.' + System.currentTimeMillis();
+        }
+        
         @Override
         public SortedSetFileHandler createHandler() throws IOException {
             // generate a unique file name
-            fileCount++;
-            Path file = new Path(uniqueDir, FILENAME_PREFIX + fileCount + '.' + System.currentTimeMillis());
+            Path file = new Path(uniqueDir, nextFileName());
             return new SortedSetHdfsFileHandler(fs, file);
         }
         
@@ -95,8 +144,8 @@ public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBac
     }
     
     public static class SortedSetHdfsFileHandler implements SortedSetFileHandler {
-        private FileSystem fs;
-        private Path file;
+        protected FileSystem fs;
+        protected Path file;
         
         public SortedSetHdfsFileHandler(FileSystem fs, Path file) {
             this.fs = fs;
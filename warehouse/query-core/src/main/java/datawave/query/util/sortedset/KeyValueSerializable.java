@@ -2,6 +2,8 @@ package datawave.query.util.sortedset;
 
 import static org.apache.accumulo.core.util.ByteBufferUtil.toBytes;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -9,9 +11,11 @@ import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
  * A KeyValue that is serializable. Well, this is not actually a KeyValue as that class does not have a default constructor and hence cannot be serializable.
@@ -92,4 +96,45 @@ public class KeyValueSerializable implements Map.Entry<Key,Value>, Serializable,
         return false;
     }
     
+    /**
+     * A codec used to persist these in a {@link BlockIndexedFileSortedSet}. The key components are written in order, each preceded by its length, so that
+     * consecutive entries within the same row and column family share a long common prefix.
+     */
+    public static class Codec implements BlockIndexedFileSortedSet.EntryCodec<KeyValueSerializable> {
+        
+        @Override
+        public void write(KeyValueSerializable entry, DataOutput out) throws IOException {
+            write(entry.key.getRowData(), out);
+            write(entry.key.getColumnFamilyData(), out);
+            write(entry.key.getColumnQualifierData(), out);
+            write(entry.key.getColumnVisibilityData(), out);
+            out.writeLong(entry.key.getTimestamp());
+            out.writeBoolean(entry.key.isDeleted());
+            WritableUtils.writeVInt(out, entry.value.length);
+            out.write(entry.value);
+        }
+        
+        private void write(ByteSequence bytes, DataOutput out) throws IOException {
+            WritableUtils.writeVInt(out, bytes.length());
+            out.write(bytes.getBackingArray(), bytes.offset(), bytes.length());
+        }
+        
+        @Override
+        public KeyValueSerializable read(DataInput in) throws IOException {
+            byte[] row = read(in);
+            byte[] cf = read(in);
+            byte[] cq = read(in);
+            byte[] cv = read(in);
+            long ts = in.readLong();
+            boolean deleted = in.readBoolean();
+            return new KeyValueSerializable(new Key(row, cf, cq, cv, ts, deleted, false), read(in));
+        }
+        
+        private byte[] read(DataInput in) throws IOException {
+            byte[] bytes = new byte[WritableUtils.readVInt(in)];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+    
 }
@@ -0,0 +1,898 @@
+package datawave.query.util.sortedset;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * This is a sorted set of key values which keeps the serialized entries in one large direct (off heap) byte buffer and a separate array of buffer offsets in
+ * sorted order. It is the same approach as the {@link SortedByteSetBuffer}, applied to the entries cached by the ivarators: instead of a Key with five byte
+ * arrays and a value array per entry on the heap, an entry costs one int on the heap. Rows are stored once in a small dictionary and referenced by id as all of
+ * the keys in an ivarator buffer share the shard row. Objects are only created for the entries handed out by the accessors and iterators.
+ * <p>
+ * The ordering is the natural ordering of {@link KeyValueSerializable}. Entries added out of order are appended to the offsets unsorted and are only sorted
+ * into place when the set is next read, e.g. when it is iterated to be persisted. A duplicate is found by a binary search of the sorted offsets and a hash
+ * table of the appended ones, which costs a few more ints per entry until they are sorted. The space of removed entries is not reclaimed until the set is
+ * cleared. The off heap memory is freed as soon as the set is cleared or its buffer is replaced by a larger one, rather than when the garbage collector gets
+ * to it, as the little heap this set uses rarely prompts a collection. This set is not thread safe.
+ * <p>
+ * The entry layout is: row id (int), column family, column qualifier and column visibility (each a variable length size followed by the bytes), timestamp
+ * (long), deleted flag (byte), and the value (variable length size followed by the bytes).
+ */
+public class OffHeapSortedKeyValueBuffer extends AbstractSet<KeyValueSerializable> implements SortedSet<KeyValueSerializable> {
+    private static final Logger log = Logger.getLogger(OffHeapSortedKeyValueBuffer.class);
+    
+    public static final int AVERAGE_ENTRY_SIZE = 64;
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    
+    // frees the memory of a direct buffer without waiting for it to be collected, one way on java 9 and later and another on java 8
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Exception e2) {
+                log.warn("Unable to free direct buffers explicitly, leaving them to the garbage collector", e2);
+                cleaner = null;
+                clean = null;
+            }
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+    
+    protected final int initialCapacity;
+    protected ByteBuffer data = null;
+    protected int bufferSize = 0;
+    protected int[] sortedDataOffsets = null;
+    protected int size = 0;
+    // the offsets from here to the size have been appended since the last sort
+    protected int sortedSize = 0;
+    // an open addressed hash table of the appended offsets (their index plus one) and the hashes of their entries, by index from the sorted size
+    protected int[] appendedTable = null;
+    protected int[] appendedHashes = null;
+    protected int modCount = 0;
+    
+    // the distinct rows referenced by the entries
+    protected byte[][] rows = null;
+    protected int rowCount = 0;
+    protected int lastRowId = -1;
+    
+    public OffHeapSortedKeyValueBuffer() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+    
+    public OffHeapSortedKeyValueBuffer(int capacity) {
+        this.initialCapacity = Math.max(1, capacity);
+        this.sortedDataOffsets = new int[initialCapacity];
+        this.rows = new byte[1][];
+    }
+    
+    /************************** Overridden methods *************************/
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (o instanceof KeyValueSerializable) {
+            sort();
+            return binarySearch((KeyValueSerializable) o) >= 0;
+        }
+        return false;
+    }
+    
+    @Override
+    public Iterator<KeyValueSerializable> iterator() {
+        sort();
+        return new OffHeapSortedKeyValueBufferIterator();
+    }
+    
+    @Override
+    public boolean add(KeyValueSerializable e) {
+        if (e == null || e.key == null) {
+            throw new NullPointerException("OffHeapSortedKeyValueBuffer does not support null entries");
+        }
+        if (sortedSize == size) {
+            // entries added in order keep the set sorted
+            int comparison = (size == 0 ? -1 : compare(sortedDataOffsets[size - 1], e));
+            if (comparison == 0) {
+                return false;
+            }
+            if (comparison < 0) {
+                append(e);
+                sortedSize = size;
+                return true;
+            }
+        }
+        if (binarySearch(e) >= 0) {
+            return false;
+        }
+        int hash = hash(e);
+        if (isAppended(e, hash)) {
+            return false;
+        }
+        append(e);
+        addAppended(size - 1, hash);
+        return true;
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof KeyValueSerializable)) {
+            return false;
+        }
+        sort();
+        int index = binarySearch((KeyValueSerializable) o);
+        if (index >= 0) {
+            remove(index);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        sortedSize = 0;
+        bufferSize = 0;
+        rowCount = 0;
+        lastRowId = -1;
+        rows = new byte[1][];
+        // release the off heap memory and the offsets so that an emptied (e.g. persisted) buffer does not hold on to them
+        free(data);
+        data = null;
+        sortedDataOffsets = new int[initialCapacity];
+        appendedTable = null;
+        appendedHashes = null;
+    }
+    
+    @Override
+    public Comparator<? super KeyValueSerializable> comparator() {
+        // natural ordering
+        return null;
+    }
+    
+    @Override
+    public SortedSet<KeyValueSerializable> subSet(KeyValueSerializable fromElement, KeyValueSerializable toElement) {
+        return new OffHeapSortedKeyValueSubBuffer(fromElement, toElement);
+    }
+    
+    @Override
+    public SortedSet<KeyValueSerializable> headSet(KeyValueSerializable toElement) {
+        return new OffHeapSortedKeyValueSubBuffer(null, toElement);
+    }
+    
+    @Override
+    public SortedSet<KeyValueSerializable> tailSet(KeyValueSerializable fromElement) {
+        return new OffHeapSortedKeyValueSubBuffer(fromElement, null);
+    }
+    
+    @Override
+    public KeyValueSerializable first() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        sort();
+        return get(0);
+    }
+    
+    @Override
+    public KeyValueSerializable last() {
+        if (size == 0) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        sort();
+        return get(size - 1);
+    }
+    
+    /***************************** Other public methods *************************/
+    
+    public KeyValueSerializable get(int index) {
+        sort();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index is out of range");
+        }
+        int position = sortedDataOffsets[index];
+        byte[] row = rows[data.getInt(position)];
+        position += 4;
+        int length = readVInt(position);
+        position += sizeOfVInt(length);
+        byte[] cf = readBytes(position, length);
+        position += length;
+        length = readVInt(position);
+        position += sizeOfVInt(length);
+        byte[] cq = readBytes(position, length);
+        position += length;
+        length = readVInt(position);
+        position += sizeOfVInt(length);
+        byte[] cv = readBytes(position, length);
+        position += length;
+        long timestamp = data.getLong(position);
+        position += 8;
+        boolean deleted = data.get(position) != 0;
+        position++;
+        length = readVInt(position);
+        position += sizeOfVInt(length);
+        byte[] value = readBytes(position, length);
+        return new KeyValueSerializable(new Key(row, cf, cq, cv, timestamp, deleted, false), value);
+    }
+    
+    /**
+     * @return the number of bytes held off heap
+     */
+    public long getOffHeapSize() {
+        return (data == null ? 0 : data.capacity());
+    }
+    
+    /******************************* The protected stuff ***************************/
+    
+    protected void checkCapacity(int plusSize) {
+        int minCapacity = bufferSize + plusSize;
+        if (minCapacity < 0) {
+            throw new IllegalStateException("OffHeapSortedKeyValueBuffer cannot hold more than " + Integer.MAX_VALUE + " bytes");
+        }
+        if (data == null) {
+            data = ByteBuffer.allocateDirect(Math.max(minCapacity, initialCapacity * AVERAGE_ENTRY_SIZE));
+        } else if (minCapacity > data.capacity()) {
+            long newCapacity = Math.max((data.capacity() * 3L) / 2 + 1, minCapacity);
+            ByteBuffer newData = ByteBuffer.allocateDirect((int) Math.min(newCapacity, Integer.MAX_VALUE));
+            ByteBuffer source = data.duplicate();
+            source.position(0).limit(bufferSize);
+            newData.put(source);
+            free(data);
+            data = newData;
+        }
+        if (size + 1 > sortedDataOffsets.length) {
+            sortedDataOffsets = Arrays.copyOf(sortedDataOffsets, (sortedDataOffsets.length * 3) / 2 + 1);
+        }
+    }
+    
+    /**
+     * Write an entry to the buffer and append its offset, without sorting it into place
+     */
+    protected void append(KeyValueSerializable entry) {
+        modCount++;
+        Key key = entry.key;
+        byte[] value = (entry.value == null ? new byte[0] : entry.value);
+        ByteSequence cf = key.getColumnFamilyData();
+        ByteSequence cq = key.getColumnQualifierData();
+        ByteSequence cv = key.getColumnVisibilityData();
+        int entrySize = 4 + sizeOf(cf.length()) + sizeOf(cq.length()) + sizeOf(cv.length()) + 8 + 1 + sizeOf(value.length);
+        checkCapacity(entrySize);
+        
+        int dataOffset = bufferSize;
+        int position = dataOffset;
+        data.putInt(position, getRowId(key.getRowData()));
+        position += 4;
+        position = writeBytes(position, cf);
+        position = writeBytes(position, cq);
+        position = writeBytes(position, cv);
+        data.putLong(position, key.getTimestamp());
+        position += 8;
+        data.put(position, (byte) (key.isDeleted() ? 1 : 0));
+        position++;
+        position = writeVInt(position, value.length);
+        for (byte b : value) {
+            data.put(position++, b);
+        }
+        bufferSize = position;
+        
+        sortedDataOffsets[size++] = dataOffset;
+    }
+    
+    /**
+     * Remove the entry at an index of the sorted set
+     */
+    protected void remove(int index) {
+        modCount++;
+        size--;
+        sortedSize--;
+        System.arraycopy(sortedDataOffsets, index + 1, sortedDataOffsets, index, size - index);
+    }
+    
+    /**
+     * Sort the entries appended since the last sort into place. The appended offsets are sorted on their own and then merged with the sorted ones in a single
+     * pass.
+     */
+    protected void sort() {
+        if (sortedSize == size) {
+            return;
+        }
+        int[] appended = Arrays.copyOfRange(sortedDataOffsets, sortedSize, size);
+        sort(appended, new int[appended.length], 0, appended.length);
+        
+        int[] merged = new int[sortedDataOffsets.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j == appended.length || (i < sortedSize && compare(sortedDataOffsets[i], appended[j]) < 0)) {
+                merged[k] = sortedDataOffsets[i++];
+            } else {
+                merged[k] = appended[j++];
+            }
+        }
+        sortedDataOffsets = merged;
+        sortedSize = size;
+        appendedTable = null;
+        appendedHashes = null;
+    }
+    
+    private static int hash(KeyValueSerializable entry) {
+        int hash = entry.key.hashCode() * 31 + (entry.value == null ? Arrays.hashCode(new byte[0]) : Arrays.hashCode(entry.value));
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * @return whether an entry equal to this one has been appended since the last sort
+     */
+    private boolean isAppended(KeyValueSerializable entry, int hash) {
+        if (appendedTable == null) {
+            return false;
+        }
+        int mask = appendedTable.length - 1;
+        for (int slot = hash & mask; appendedTable[slot] != 0; slot = (slot + 1) & mask) {
+            int index = appendedTable[slot] - 1;
+            if (appendedHashes[index - sortedSize] == hash && compare(sortedDataOffsets[index], entry) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Add an appended offset to the hash table of those appended since the last sort, growing it to keep it at most half full
+     */
+    private void addAppended(int index, int hash) {
+        int appended = index - sortedSize;
+        if (appendedHashes == null || appended == appendedHashes.length) {
+            appendedHashes = (appendedHashes == null ? new int[16] : Arrays.copyOf(appendedHashes, appendedHashes.length * 2));
+        }
+        appendedHashes[appended] = hash;
+        if (appendedTable == null || (appended + 1) * 2 > appendedTable.length) {
+            appendedTable = new int[Math.max(32, appendedTable == null ? 0 : appendedTable.length * 2)];
+            for (int i = 0; i < appended; i++) {
+                insertAppended(sortedSize + i, appendedHashes[i]);
+            }
+        }
+        insertAppended(index, hash);
+    }
+    
+    private void insertAppended(int index, int hash) {
+        int mask = appendedTable.length - 1;
+        int slot = hash & mask;
+        while (appendedTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        appendedTable[slot] = index + 1;
+    }
+    
+    /**
+     * A merge sort of buffer offsets by the entries they point to
+     */
+    private void sort(int[] offsets, int[] scratch, int from, int to) {
+        if (to - from < 8) {
+            for (int i = from + 1; i < to; i++) {
+                int offset = offsets[i];
+                int j = i;
+                while (j > from && compare(offsets[j - 1], offset) > 0) {
+                    offsets[j] = offsets[j - 1];
+                    j--;
+                }
+                offsets[j] = offset;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(offsets, scratch, from, middle);
+        sort(offsets, scratch, middle, to);
+        if (compare(offsets[middle - 1], offsets[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(offsets, from, scratch, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j == to || (i < middle && compare(scratch[i], scratch[j]) <= 0)) {
+                offsets[k] = scratch[i++];
+            } else {
+                offsets[k] = scratch[j++];
+            }
+        }
+    }
+    
+    /**
+     * Get the id of a row in the row dictionary, adding it if needed. The dictionary is expected to be tiny (normally one shard row), so it is searched
+     * linearly.
+     */
+    protected int getRowId(ByteSequence row) {
+        if (lastRowId >= 0 && compare(rows[lastRowId], row) == 0) {
+            return lastRowId;
+        }
+        for (int i = 0; i < rowCount; i++) {
+            if (compare(rows[i], row) == 0) {
+                lastRowId = i;
+                return i;
+            }
+        }
+        if (rowCount == rows.length) {
+            rows = Arrays.copyOf(rows, rowCount * 2);
+        }
+        rows[rowCount] = row.toArray();
+        lastRowId = rowCount;
+        return rowCount++;
+    }
+    
+    /**
+     * Compare the entry at the specified buffer offset with a key value, consistent with {@link KeyValueSerializable#compareTo(KeyValueSerializable)}
+     */
+    protected int compare(int dataOffset, KeyValueSerializable entry) {
+        Key key = entry.key;
+        int position = dataOffset;
+        int comparison = compare(rows[data.getInt(position)], key.getRowData());
+        if (comparison != 0) {
+            return comparison;
+        }
+        position += 4;
+        
+        for (int i = 0; i < 3; i++) {
+            ByteSequence part = (i == 0 ? key.getColumnFamilyData() : (i == 1 ? key.getColumnQualifierData() : key.getColumnVisibilityData()));
+            int length = readVInt(position);
+            position += sizeOfVInt(length);
+            comparison = compareUnsigned(position, length, part);
+            if (comparison != 0) {
+                return comparison;
+            }
+            position += length;
+        }
+        
+        // timestamps sort in descending order
+        long timestamp = data.getLong(position);
+        if (timestamp != key.getTimestamp()) {
+            return (timestamp < key.getTimestamp() ? 1 : -1);
+        }
+        position += 8;
+        
+        // deleted keys sort first
+        boolean deleted = data.get(position) != 0;
+        if (deleted != key.isDeleted()) {
+            return (deleted ? -1 : 1);
+        }
+        position++;
+        
+        // values are compared as signed bytes as done by the ByteArrayComparator
+        byte[] value = (entry.value == null ? new byte[0] : entry.value);
+        int length = readVInt(position);
+        position += sizeOfVInt(length);
+        int minSize = Math.min(length, value.length);
+        for (int i = 0; i < minSize; i++) {
+            comparison = Byte.compare(data.get(position + i), value[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, value.length);
+    }
+    
+    /**
+     * Compare the entries at two buffer offsets, consistent with {@link KeyValueSerializable#compareTo(KeyValueSerializable)}
+     */
+    protected int compare(int dataOffset, int otherOffset) {
+        int position = dataOffset;
+        int otherPosition = otherOffset;
+        int rowId = data.getInt(position);
+        int otherRowId = data.getInt(otherPosition);
+        if (rowId != otherRowId) {
+            byte[] row = rows[rowId];
+            byte[] otherRow = rows[otherRowId];
+            int minSize = Math.min(row.length, otherRow.length);
+            for (int i = 0; i < minSize; i++) {
+                int comparison = (row[i] & 0xff) - (otherRow[i] & 0xff);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            return row.length - otherRow.length;
+        }
+        position += 4;
+        otherPosition += 4;
+        
+        for (int i = 0; i < 3; i++) {
+            int length = readVInt(position);
+            position += sizeOfVInt(length);
+            int otherLength = readVInt(otherPosition);
+            otherPosition += sizeOfVInt(otherLength);
+            int minSize = Math.min(length, otherLength);
+            for (int j = 0; j < minSize; j++) {
+                int comparison = (data.get(position + j) & 0xff) - (data.get(otherPosition + j) & 0xff);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            if (length != otherLength) {
+                return length - otherLength;
+            }
+            position += length;
+            otherPosition += otherLength;
+        }
+        
+        // timestamps sort in descending order
+        long timestamp = data.getLong(position);
+        long otherTimestamp = data.getLong(otherPosition);
+        if (timestamp != otherTimestamp) {
+            return (timestamp < otherTimestamp ? 1 : -1);
+        }
+        position += 8;
+        otherPosition += 8;
+        
+        // deleted keys sort first
+        boolean deleted = data.get(position) != 0;
+        if (deleted != (data.get(otherPosition) != 0)) {
+            return (deleted ? -1 : 1);
+        }
+        position++;
+        otherPosition++;
+        
+        // values are compared as signed bytes as done by the ByteArrayComparator
+        int length = readVInt(position);
+        position += sizeOfVInt(length);
+        int otherLength = readVInt(otherPosition);
+        otherPosition += sizeOfVInt(otherLength);
+        int minSize = Math.min(length, otherLength);
+        for (int i = 0; i < minSize; i++) {
+            int comparison = Byte.compare(data.get(position + i), data.get(otherPosition + i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, otherLength);
+    }
+    
+    private int compareUnsigned(int position, int length, ByteSequence term) {
+        int termLength = term.length();
+        int minSize = Math.min(length, termLength);
+        for (int i = 0; i < minSize; i++) {
+            int comparison = (data.get(position + i) & 0xff) - (term.byteAt(i) & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length - termLength;
+    }
+    
+    private static int compare(byte[] row, ByteSequence term) {
+        int termLength = term.length();
+        int minSize = Math.min(row.length, termLength);
+        for (int i = 0; i < minSize; i++) {
+            int comparison = (row[i] & 0xff) - (term.byteAt(i) & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return row.length - termLength;
+    }
+    
+    /**
+     * A binary search of the buffer based on the sorted offset array, ignoring any entries appended since the last sort
+     * 
+     * @param entry
+     * @return the index, or -(insertion point + 1) if not found
+     */
+    protected int binarySearch(KeyValueSerializable entry) {
+        return binarySearch(entry, 0, this.sortedSize - 1);
+    }
+    
+    protected int binarySearch(KeyValueSerializable entry, int start, int end) {
+        while (start <= end) {
+            int middle = (start + end) >>> 1;
+            int comparison = compare(sortedDataOffsets[middle], entry);
+            
+            if (comparison < 0)
+                start = middle + 1;
+            else if (comparison > 0)
+                end = middle - 1;
+            else
+                return middle;
+        }
+        // return a negative index if not found so we know where it should go
+        return -(start + 1);
+    }
+    
+    /**
+     * Free the memory of a direct buffer, which must not be used afterwards
+     * 
+     * @param buffer
+     *            the buffer, may be null
+     */
+    protected static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Unable to free a direct buffer, leaving it to the garbage collector", e);
+        }
+    }
+    
+    private byte[] readBytes(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = data.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return bytes;
+    }
+    
+    private int writeBytes(int position, ByteSequence bytes) {
+        int length = bytes.length();
+        position = writeVInt(position, length);
+        for (int i = 0; i < length; i++) {
+            data.put(position++, bytes.byteAt(i));
+        }
+        return position;
+    }
+    
+    private int writeVInt(int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            data.put(position++, (byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        data.put(position++, (byte) value);
+        return position;
+    }
+    
+    private int readVInt(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get(position++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    private static int sizeOfVInt(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+    
+    private static int sizeOf(int length) {
+        return sizeOfVInt(length) + length;
+    }
+    
+    protected class OffHeapSortedKeyValueBufferIterator implements Iterator<KeyValueSerializable> {
+        protected int index = 0;
+        protected int end = 0;
+        protected int expectedModCount = -1;
+        protected int last = -1;
+        
+        public OffHeapSortedKeyValueBufferIterator() {
+            this(0, size);
+        }
+        
+        public OffHeapSortedKeyValueBufferIterator(int start, int end) {
+            this.expectedModCount = modCount;
+            this.index = start;
+            this.end = end;
+        }
+        
+        final void checkModCount() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            checkModCount();
+            return index < end;
+        }
+        
+        @Override
+        public KeyValueSerializable next() {
+            if (!hasNext()) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            last = index;
+            return get(index++);
+        }
+        
+        @Override
+        public void remove() {
+            checkModCount();
+            if (last >= 0) {
+                OffHeapSortedKeyValueBuffer.this.remove(last);
+                index--;
+                end--;
+                last = -1;
+                expectedModCount = modCount;
+            } else {
+                throw new IllegalStateException("next needs to be called first");
+            }
+        }
+    }
+    
+    protected class OffHeapSortedKeyValueSubBuffer extends AbstractSet<KeyValueSerializable> implements SortedSet<KeyValueSerializable> {
+        protected KeyValueSerializable from;
+        protected KeyValueSerializable to;
+        
+        public OffHeapSortedKeyValueSubBuffer(KeyValueSerializable from, KeyValueSerializable to) {
+            if (from != null && to != null && from.compareTo(to) > 0) {
+                throw new IllegalArgumentException("The start is greater than the end");
+            }
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public Comparator<? super KeyValueSerializable> comparator() {
+            return OffHeapSortedKeyValueBuffer.this.comparator();
+        }
+        
+        @Override
+        public SortedSet<KeyValueSerializable> subSet(KeyValueSerializable fromElement, KeyValueSerializable toElement) {
+            if (!inRange(fromElement) || (to != null && to.compareTo(toElement) < 0)) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return OffHeapSortedKeyValueBuffer.this.subSet(fromElement, toElement);
+        }
+        
+        @Override
+        public SortedSet<KeyValueSerializable> headSet(KeyValueSerializable toElement) {
+            if (to != null && to.compareTo(toElement) < 0) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return new OffHeapSortedKeyValueSubBuffer(from, toElement);
+        }
+        
+        @Override
+        public SortedSet<KeyValueSerializable> tailSet(KeyValueSerializable fromElement) {
+            if (from != null && fromElement.compareTo(from) < 0) {
+                throw new IllegalArgumentException("Cannot create subset outside of the range of this subset");
+            }
+            return new OffHeapSortedKeyValueSubBuffer(fromElement, to);
+        }
+        
+        @Override
+        public KeyValueSerializable first() {
+            int[] range = getRange();
+            if (range == null) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(range[0]);
+        }
+        
+        @Override
+        public KeyValueSerializable last() {
+            int[] range = getRange();
+            if (range == null) {
+                QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+                throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+            }
+            return get(range[1]);
+        }
+        
+        @Override
+        public Iterator<KeyValueSerializable> iterator() {
+            int[] range = getRange();
+            if (range == null) {
+                return new OffHeapSortedKeyValueBufferIterator(0, 0);
+            } else {
+                return new OffHeapSortedKeyValueBufferIterator(range[0], range[1] + 1);
+            }
+        }
+        
+        @Override
+        public int size() {
+            int[] range = getRange();
+            if (range == null) {
+                return 0;
+            } else {
+                return range[1] - range[0] + 1;
+            }
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return (o instanceof KeyValueSerializable) && inRange((KeyValueSerializable) o) && OffHeapSortedKeyValueBuffer.this.contains(o);
+        }
+        
+        @Override
+        public boolean add(KeyValueSerializable e) {
+            if (!inRange(e)) {
+                throw new IllegalArgumentException("Cannot add element outside of subset range");
+            }
+            return OffHeapSortedKeyValueBuffer.this.add(e);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (contains(o)) {
+                return OffHeapSortedKeyValueBuffer.this.remove(o);
+            }
+            return false;
+        }
+        
+        private boolean inRange(KeyValueSerializable e) {
+            return (from == null || e.compareTo(from) >= 0) && (to == null || e.compareTo(to) < 0);
+        }
+        
+        /***
+         * Get the range of elements in the OffHeapSortedKeyValueBuffer
+         * 
+         * @return int[] {firstIndex, lastIndex} or null if empty
+         */
+        protected int[] getRange() {
+            sort();
+            int start = (from == null ? 0 : binarySearch(from));
+            if (start < 0) {
+                start = -1 - start;
+            }
+            // the end is exclusive, so go to the previous element
+            int end = (to == null ? size : binarySearch(to));
+            if (end < 0) {
+                end = -1 - end;
+            }
+            end--;
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new int[] {start, end};
+        }
+    }
+    
+}
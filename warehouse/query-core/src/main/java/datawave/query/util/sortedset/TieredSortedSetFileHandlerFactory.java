@@ -0,0 +1,418 @@
+package datawave.query.util.sortedset;
+
+import datawave.query.util.sortedset.FileSortedSet.SortedSetFileHandler;
+import datawave.query.util.sortedset.HdfsBackedSortedSet.SortedSetHdfsFileHandler;
+import datawave.query.util.sortedset.HdfsBackedSortedSet.SortedSetHdfsFileHandlerFactory;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.log4j.Logger;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sorted set file handler factory that spills to a local (tserver) directory while the local quota allows, and to the (typically hdfs) unique directory
+ * otherwise. The local quota is a tserver setting ({@value #LOCAL_MAX_BYTES_PROP}) shared by every factory in the JVM, and is checked before a file is
+ * created, so it may be exceeded by the size of the files currently being written.
+ * 
+ * The local files are counted against the quota by path, so a file that is found again by another factory (see {@link #getExistingHandlers()}) is only
+ * counted once. The files of queries that were abandoned without deleting them are removed by {@link #cleanupOrphans(FileSystem, Path, String)} once they have
+ * not been written for the orphan age ({@value #LOCAL_ORPHAN_AGE_PROP}, a day by default).
+ * 
+ * Files in the local tier are only visible to this tserver. Callers that reuse persisted sets across tservers must check {@link #hasLocalFiles()} before
+ * declaring a set complete in the shared directory.
+ * 
+ * The number of files, bytes, and milliseconds spent writing are tracked for each tier.
+ */
+public class TieredSortedSetFileHandlerFactory extends SortedSetHdfsFileHandlerFactory {
+    private static final Logger log = Logger.getLogger(TieredSortedSetFileHandlerFactory.class);
+    
+    public static final String LOCAL_MAX_BYTES_PROP = "tserver.datawave.ivarator.local.max.bytes";
+    public static final String LOCAL_ORPHAN_AGE_PROP = "tserver.datawave.ivarator.local.orphan.age";
+    public static final long DEFAULT_LOCAL_MAX_BYTES = 1024L * 1024 * 1024;
+    public static final long DEFAULT_LOCAL_ORPHAN_AGE = 1000L * 60 * 60 * 24;
+    
+    // how often the tserver configuration is re-read, and the local directories are checked for orphaned files
+    private static final long CONFIGURE_INTERVAL = 10 * 1000;
+    private static final long CLEANUP_INTERVAL = 1000L * 60 * 10;
+    
+    private static volatile long localMaxBytes = DEFAULT_LOCAL_MAX_BYTES;
+    private static volatile long localOrphanAge = DEFAULT_LOCAL_ORPHAN_AGE;
+    private static final AtomicLong lastConfigured = new AtomicLong();
+    private static final AtomicLong lastCleanup = new AtomicLong();
+    
+    // the size of each local file counted against the quota across all factories, by path
+    private static final Map<String,Long> localFileSizes = new ConcurrentHashMap<>();
+    // the number of bytes currently held in local files across all factories
+    private static final AtomicLong localBytesInUse = new AtomicLong();
+    
+    public enum Tier {
+        LOCAL, HDFS
+    }
+    
+    private final FileSystem localFs;
+    private final Path localDir;
+    
+    private final AtomicLong[] files = new AtomicLong[Tier.values().length];
+    private final AtomicLong[] bytes = new AtomicLong[Tier.values().length];
+    private final AtomicLong[] millis = new AtomicLong[Tier.values().length];
+    
+    // the local files that have been written and not yet deleted
+    private final Set<TieredFileHandler> localFiles = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    
+    /**
+     * @param localFs
+     *            the local file system, or null to disable the local tier
+     * @param localDir
+     *            the local directory
+     * @param fs
+     *            the file system to fall back to
+     * @param uniqueDir
+     *            the directory to fall back to
+     */
+    public TieredSortedSetFileHandlerFactory(FileSystem localFs, Path localDir, FileSystem fs, Path uniqueDir) {
+        super(fs, uniqueDir);
+        this.localFs = localFs;
+        this.localDir = localDir;
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new AtomicLong();
+            bytes[i] = new AtomicLong();
+            millis[i] = new AtomicLong();
+        }
+    }
+    
+    public static long getLocalBytesInUse() {
+        return localBytesInUse.get();
+    }
+    
+    public static long getLocalMaxBytes() {
+        return localMaxBytes;
+    }
+    
+    /**
+     * @param maxBytes
+     *            the maximum number of bytes to hold in local files across all factories, 0 to disable the local tier
+     */
+    public static void setLocalMaxBytes(long maxBytes) {
+        localMaxBytes = maxBytes;
+    }
+    
+    public static long getLocalOrphanAge() {
+        return localOrphanAge;
+    }
+    
+    /**
+     * @param orphanAge
+     *            the number of milliseconds after which the unwritten local files of another query are deleted, 0 or less to never delete them
+     */
+    public static void setLocalOrphanAge(long orphanAge) {
+        localOrphanAge = orphanAge;
+    }
+    
+    /**
+     * Read the local quota and orphan age from the tserver configuration. The configuration is re-read at most every ten seconds.
+     * 
+     * @param env
+     *            the iterator environment, or null to leave the settings as they are
+     */
+    public static void configure(IteratorEnvironment env) {
+        long now = System.currentTimeMillis();
+        long last = lastConfigured.get();
+        if (env == null || env.getConfig() == null || now - last < CONFIGURE_INTERVAL || !lastConfigured.compareAndSet(last, now)) {
+            return;
+        }
+        Map<String,String> properties = new TreeMap<>();
+        env.getConfig().getProperties(properties, k -> Objects.equals(k, LOCAL_MAX_BYTES_PROP) || Objects.equals(k, LOCAL_ORPHAN_AGE_PROP));
+        long maxBytes = Long.parseLong(properties.getOrDefault(LOCAL_MAX_BYTES_PROP, Long.toString(DEFAULT_LOCAL_MAX_BYTES)));
+        if (maxBytes != localMaxBytes) {
+            log.info("Changing " + LOCAL_MAX_BYTES_PROP + " to " + maxBytes);
+            localMaxBytes = maxBytes;
+        }
+        localOrphanAge = Long.parseLong(properties.getOrDefault(LOCAL_ORPHAN_AGE_PROP, Long.toString(DEFAULT_LOCAL_ORPHAN_AGE)));
+    }
+    
+    /**
+     * Delete the local query directories under the base directory whose files have not been written for the orphan age, along with their share of the local
+     * quota. These are left behind by queries that were torn down or failed without deleting their local files. The directories are checked at most every
+     * ten minutes.
+     * 
+     * @param localFs
+     *            the local file system
+     * @param baseDir
+     *            the local directory holding a directory per query
+     * @param queryId
+     *            the calling query, whose directory is left alone
+     * @return the number of query directories deleted
+     */
+    public static int cleanupOrphans(FileSystem localFs, Path baseDir, String queryId) {
+        long now = System.currentTimeMillis();
+        long last = lastCleanup.get();
+        if (localOrphanAge <= 0 || now - last < CLEANUP_INTERVAL || !lastCleanup.compareAndSet(last, now)) {
+            return 0;
+        }
+        int deleted = 0;
+        try {
+            if (!localFs.exists(baseDir)) {
+                return 0;
+            }
+            for (FileStatus queryDir : localFs.listStatus(baseDir)) {
+                if (!queryDir.isDirectory() || queryDir.getPath().getName().equals(queryId)
+                                || getLastModified(localFs, queryDir) > now - localOrphanAge) {
+                    continue;
+                }
+                log.info("Deleting orphaned local ivarator files in " + queryDir.getPath());
+                localFs.delete(queryDir.getPath(), true);
+                String prefix = getKey(queryDir.getPath()) + Path.SEPARATOR;
+                for (String file : new ArrayList<>(localFileSizes.keySet())) {
+                    if (file.startsWith(prefix)) {
+                        unregister(file);
+                    }
+                }
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to clean up the orphaned local ivarator files in " + baseDir, e);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Reset the cleanup interval, so that the next call to {@link #cleanupOrphans(FileSystem, Path, String)} checks the directories
+     */
+    static void resetCleanupInterval() {
+        lastCleanup.set(0);
+    }
+    
+    /**
+     * Get the last time a file under a directory was written, or when the directory was modified if it holds no files
+     */
+    private static long getLastModified(FileSystem fs, FileStatus dir) throws IOException {
+        long lastModified = -1;
+        RemoteIterator<LocatedFileStatus> files = fs.listFiles(dir.getPath(), true);
+        while (files.hasNext()) {
+            lastModified = Math.max(lastModified, files.next().getModificationTime());
+        }
+        return (lastModified < 0 ? dir.getModificationTime() : lastModified);
+    }
+    
+    private static String getKey(Path file) {
+        return file.toUri().getPath();
+    }
+    
+    /**
+     * Count a local file against the quota, replacing the size it was counted with before
+     */
+    private static void register(Path file, long size) {
+        Long previous = localFileSizes.put(getKey(file), size);
+        localBytesInUse.addAndGet(size - (previous == null ? 0 : previous));
+    }
+    
+    /**
+     * Count a local file against the quota unless it is already counted
+     */
+    private static void adopt(Path file, long size) {
+        if (localFileSizes.putIfAbsent(getKey(file), size) == null) {
+            localBytesInUse.addAndGet(size);
+        }
+    }
+    
+    private static void unregister(String key) {
+        Long size = localFileSizes.remove(key);
+        if (size != null) {
+            localBytesInUse.addAndGet(-size);
+        }
+    }
+    
+    public boolean isLocalTierEnabled() {
+        return localFs != null && localDir != null && localMaxBytes > 0;
+    }
+    
+    /**
+     * Do any of the files written or found by this factory live in the local tier
+     * 
+     * @return true if local files exist
+     */
+    public boolean hasLocalFiles() {
+        return !localFiles.isEmpty();
+    }
+    
+    public Path getLocalDir() {
+        return localDir;
+    }
+    
+    /**
+     * Delete the local files written or found by this factory, returning their bytes to the local quota
+     */
+    public void deleteLocalFiles() {
+        for (TieredFileHandler handler : new ArrayList<>(localFiles)) {
+            handler.deleteFile();
+        }
+    }
+    
+    @Override
+    public List<SortedSetFileHandler> getExistingHandlers() throws IOException {
+        List<SortedSetFileHandler> handlers = new ArrayList<>();
+        if (isLocalTierEnabled() && localFs.exists(localDir)) {
+            for (Path file : listFiles(localFs, localDir)) {
+                // these are counted against the local quota unless they were counted when written by this tserver
+                TieredFileHandler handler = new TieredFileHandler(localFs, file, Tier.LOCAL);
+                adopt(file, Math.max(0, handler.getSize()));
+                localFiles.add(handler);
+                handlers.add(handler);
+            }
+        }
+        for (Path file : listFiles(fs, uniqueDir)) {
+            handlers.add(new TieredFileHandler(fs, file, Tier.HDFS));
+        }
+        return handlers;
+    }
+    
+    @Override
+    public SortedSetFileHandler createHandler() throws IOException {
+        String name = nextFileName();
+        if (isLocalTierEnabled() && localBytesInUse.get() < localMaxBytes) {
+            return new TieredFileHandler(localFs, new Path(localDir, name), Tier.LOCAL);
+        }
+        return new TieredFileHandler(fs, new Path(uniqueDir, name), Tier.HDFS);
+    }
+    
+    public long getFileCount(Tier tier) {
+        return files[tier.ordinal()].get();
+    }
+    
+    public long getBytes(Tier tier) {
+        return bytes[tier.ordinal()].get();
+    }
+    
+    public long getMillis(Tier tier) {
+        return millis[tier.ordinal()].get();
+    }
+    
+    /**
+     * Reset the file, byte, and time counts for all of the tiers
+     */
+    public void resetStats() {
+        for (int i = 0; i < files.length; i++) {
+            files[i].set(0);
+            bytes[i].set(0);
+            millis[i].set(0);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return (isLocalTierEnabled() ? localDir + ", " : "") + super.toString();
+    }
+    
+    /**
+     * A file handler that records the size of the files written for its tier. A local file is only written once. If it is written again, which happens when a
+     * persist fails verification and is retried, then the write is redirected to the fall back directory.
+     */
+    public class TieredFileHandler extends SortedSetHdfsFileHandler {
+        private Tier tier;
+        private boolean opened = false;
+        
+        public TieredFileHandler(FileSystem fs, Path file, Tier tier) {
+            super(fs, file);
+            this.tier = tier;
+        }
+        
+        public Tier getTier() {
+            return tier;
+        }
+        
+        public Path getFile() {
+            return file;
+        }
+        
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            // a rewrite of an existing file replaces its size
+            release();
+            if (opened && tier == Tier.LOCAL) {
+                log.warn("Rewriting local file " + file + ", falling back to " + uniqueDir);
+                super.deleteFile();
+                this.fs = TieredSortedSetFileHandlerFactory.this.fs;
+                this.file = new Path(uniqueDir, file.getName());
+                this.tier = Tier.HDFS;
+            }
+            opened = true;
+            return new CountingOutputStream(super.getOutputStream(), System.currentTimeMillis());
+        }
+        
+        @Override
+        public void deleteFile() {
+            super.deleteFile();
+            release();
+        }
+        
+        private synchronized void release() {
+            if (tier == Tier.LOCAL) {
+                localFiles.remove(this);
+                unregister(getKey(file));
+            }
+        }
+        
+        private synchronized void written(long written, long elapsed) {
+            if (tier == Tier.LOCAL) {
+                localFiles.add(this);
+                register(file, written);
+            }
+            files[tier.ordinal()].incrementAndGet();
+            bytes[tier.ordinal()].addAndGet(written);
+            millis[tier.ordinal()].addAndGet(elapsed);
+            if (log.isDebugEnabled()) {
+                log.debug("Wrote " + written + " bytes to " + tier + " file " + file + " in " + elapsed + "ms");
+            }
+        }
+        
+        private class CountingOutputStream extends FilterOutputStream {
+            private final long start;
+            private long count = 0;
+            private boolean closed = false;
+            
+            public CountingOutputStream(OutputStream out, long start) {
+                super(out);
+                this.start = start;
+            }
+            
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count++;
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count += len;
+            }
+            
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        written(count, System.currentTimeMillis() - start);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package datawave.core.iterators;
+
+import com.google.common.collect.Lists;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DatawaveFieldIndexListIteratorJexlTest {
+    
+    private static final String ROW = "20190314_0";
+    
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    
+    private SortedMap<Key,Value> data = null;
+    private List<Key> expected = null;
+    
+    @Before
+    public void setUp() {
+        data = new TreeMap<>();
+        TreeSet<Key> events = new TreeSet<>();
+        for (int uid = 0; uid < 300; uid++) {
+            // spread the uids across the values
+            for (String value : new String[] {"a", "b", "c"}) {
+                if ((uid + value.charAt(0)) % 3 != 0) {
+                    data.put(new Key(ROW, "fi\0FIELD", value + "\0datatype\0" + String.format("uid.%05d", uid)), new Value(new byte[0]));
+                    events.add(new Key(ROW, "datatype\0" + String.format("uid.%05d", uid)));
+                }
+            }
+            // a value that is not in the list
+            data.put(new Key(ROW, "fi\0FIELD", "d\0datatype\0" + String.format("uid.%05d", uid)), new Value(new byte[0]));
+        }
+        expected = new ArrayList<>(events);
+    }
+    
+    private DatawaveFieldIndexListIteratorJexl create(boolean streamingFill, String dir) throws IOException {
+        DatawaveFieldIndexListIteratorJexl ivarator = DatawaveFieldIndexListIteratorJexl.builder().withFieldName("FIELD")
+                        .withValues(Lists.newArrayList("a", "b", "c")).withHdfsBackedSetBufferSize(20).withFileSystem(FileSystem.getLocal(new Configuration()))
+                        .withUniqueDir(new Path(tmpDir.newFolder(dir).toURI())).withStreamingFill(streamingFill).build();
+        ivarator.init(new SortedMapIterator(data), Collections.emptyMap(), null);
+        return ivarator;
+    }
+    
+    private static Range rowRange() {
+        return new Range(new Key(ROW), true, new Key(ROW).followingKey(PartialKey.ROW), false);
+    }
+    
+    private static List<Key> drain(DatawaveFieldIndexListIteratorJexl ivarator, int max) throws IOException {
+        List<Key> keys = new ArrayList<>();
+        while (ivarator.hasTop() && keys.size() < max) {
+            keys.add(ivarator.getTopKey());
+            ivarator.next();
+        }
+        return keys;
+    }
+    
+    @Test
+    public void testStreamingMatchesFilled() throws IOException {
+        DatawaveFieldIndexListIteratorJexl filled = create(false, "filled");
+        filled.seek(rowRange(), Collections.emptyList(), false);
+        assertEquals(expected, drain(filled, Integer.MAX_VALUE));
+        
+        DatawaveFieldIndexListIteratorJexl streaming = create(true, "streaming");
+        assertTrue(streaming.isStreamingFill());
+        streaming.seek(rowRange(), Collections.emptyList(), false);
+        assertEquals(expected, drain(streaming, Integer.MAX_VALUE));
+    }
+    
+    @Test
+    public void testUidOrderedRanges() {
+        DatawaveFieldIndexListIteratorJexl ivarator = DatawaveFieldIndexListIteratorJexl.builder().withFieldName("FIELD").withValues(Lists.newArrayList("a"))
+                        .build();
+        assertTrue(ivarator.isUidOrdered(ivarator.buildBoundingRange(new Text(ROW), ivarator.getFiName(), new Text("a"))));
+        
+        DatawaveFieldIndexListIteratorJexl negated = DatawaveFieldIndexListIteratorJexl.builder().withFieldName("FIELD").withValues(Lists.newArrayList("a"))
+                        .negated(true).build();
+        assertFalse(negated.isUidOrdered(new Range()));
+    }
+    
+    @Test
+    public void testReseekDuringStreamingFill() throws IOException {
+        DatawaveFieldIndexListIteratorJexl streaming = create(true, "reseek");
+        streaming.seek(rowRange(), Collections.emptyList(), false);
+        List<Key> keys = drain(streaming, 10);
+        assertEquals(expected.subList(0, 10), keys);
+        
+        // continue from the last key returned, which abandons any incomplete fill
+        Range remaining = new Range(keys.get(9), false, rowRange().getEndKey(), false);
+        streaming.seek(remaining, Collections.emptyList(), false);
+        assertEquals(expected.subList(10, expected.size()), drain(streaming, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,180 @@
+package datawave.core.iterators;
+
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsTag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FairTaskExecutorMetricsTest {
+    
+    @Test
+    public void testExecutorAndKeyRecords() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0);
+        FairTaskExecutorMetrics metrics = new FairTaskExecutorMetrics("test", executor);
+        CountDownLatch latch = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit("a", 1, blocked));
+        futures.add(executor.submit("b", 1, blocked));
+        futures.add(executor.submit("b", 1, blocked));
+        Thread.sleep(50);
+        
+        Collector collector = new Collector();
+        metrics.getMetrics(collector, true);
+        List<Record> records = collector.getRecords(FairTaskExecutorMetrics.RECORD);
+        assertEquals(1, records.size());
+        Record record = records.get(0);
+        assertEquals(FairTaskExecutorMetrics.CONTEXT, record.context);
+        assertEquals("test", record.tags.get(FairTaskExecutorMetrics.EXECUTOR.name()));
+        assertEquals(2, record.getLong(FairTaskExecutorMetrics.QUEUED));
+        assertEquals(1, record.getLong(FairTaskExecutorMetrics.RUNNING));
+        assertEquals(0, record.getLong(FairTaskExecutorMetrics.BLOCKED));
+        assertEquals(1, record.getLong(FairTaskExecutorMetrics.STARTED));
+        assertTrue(record.getLong(FairTaskExecutorMetrics.OLDEST_WAIT) >= 50);
+        
+        Map<String,Record> keys = collector.getRecords(FairTaskExecutorMetrics.KEY_RECORD).stream()
+                        .collect(Collectors.toMap(r -> r.tags.get(FairTaskExecutorMetrics.KEY.name()), r -> r));
+        assertEquals(2, keys.size());
+        assertEquals(1, keys.get("a").getLong(FairTaskExecutorMetrics.RUNNING));
+        assertEquals(0, keys.get("a").getLong(FairTaskExecutorMetrics.QUEUED));
+        assertEquals(0, keys.get("b").getLong(FairTaskExecutorMetrics.RUNNING));
+        assertEquals(2, keys.get("b").getLong(FairTaskExecutorMetrics.QUEUED));
+        assertTrue(keys.get("b").getLong(FairTaskExecutorMetrics.OLDEST_WAIT) >= 50);
+        
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        
+        // the average wait covers the tasks started since the previous sample, which all waited behind the first
+        collector = new Collector();
+        metrics.getMetrics(collector, true);
+        record = collector.getRecords(FairTaskExecutorMetrics.RECORD).get(0);
+        assertEquals(3, record.getLong(FairTaskExecutorMetrics.STARTED));
+        assertEquals(0, record.getLong(FairTaskExecutorMetrics.QUEUED));
+        assertTrue(record.getLong(FairTaskExecutorMetrics.AVERAGE_WAIT) >= 50);
+        assertTrue(record.getLong(FairTaskExecutorMetrics.TOTAL_WAIT) >= 100);
+    }
+    
+    private static class Collector implements MetricsCollector {
+        private final List<Record> records = new ArrayList<>();
+        
+        @Override
+        public MetricsRecordBuilder addRecord(String name) {
+            Record record = new Record(this, name);
+            records.add(record);
+            return record;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addRecord(MetricsInfo info) {
+            return addRecord(info.name());
+        }
+        
+        public List<Record> getRecords(String name) {
+            return records.stream().filter(r -> r.name.equals(name)).collect(Collectors.toList());
+        }
+    }
+    
+    private static class Record extends MetricsRecordBuilder {
+        private final MetricsCollector parent;
+        private final String name;
+        private final Map<String,String> tags = new HashMap<>();
+        private final Map<String,Number> metrics = new HashMap<>();
+        private String context = null;
+        
+        public Record(MetricsCollector parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+        
+        public long getLong(MetricsInfo info) {
+            return metrics.get(info.name()).longValue();
+        }
+        
+        @Override
+        public MetricsRecordBuilder tag(MetricsInfo info, String value) {
+            tags.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder add(MetricsTag tag) {
+            tags.put(tag.name(), tag.value());
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder add(AbstractMetric metric) {
+            metrics.put(metric.name(), metric.value());
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder setContext(String value) {
+            context = value;
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addCounter(MetricsInfo info, int value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addCounter(MetricsInfo info, long value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, int value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, long value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, float value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsRecordBuilder addGauge(MetricsInfo info, double value) {
+            metrics.put(info.name(), value);
+            return this;
+        }
+        
+        @Override
+        public MetricsCollector parent() {
+            return parent;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package datawave.core.iterators;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FairTaskExecutorTest {
+    
+    private CountDownLatch latch = null;
+    private List<String> order = null;
+    private List<Future<?>> futures = null;
+    
+    @Before
+    public void setUp() {
+        latch = new CountDownLatch(1);
+        order = Collections.synchronizedList(new ArrayList<>());
+        futures = new ArrayList<>();
+    }
+    
+    @After
+    public void tearDown() {
+        latch.countDown();
+    }
+    
+    private Runnable blocked(String key) {
+        return () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add(key);
+        };
+    }
+    
+    private void submit(FairTaskExecutor executor, String key, int weight, int count) {
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(key, weight, blocked(key)));
+        }
+    }
+    
+    private void await() throws Exception {
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+    
+    @Test
+    public void testRoundRobin() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0);
+        // occupy the only thread so that the other tasks queue up behind it
+        submit(executor, "blocker", 1, 1);
+        submit(executor, "big", 1, 4);
+        submit(executor, "small", 1, 2);
+        assertEquals(1, executor.getRunningTasks());
+        assertEquals(6, executor.getQueuedTasks());
+        assertEquals(4, executor.getQueuedTasks("big"));
+        assertEquals(3, executor.getKeyCount());
+        
+        await();
+        assertEquals(Lists.newArrayList("blocker", "big", "small", "big", "small", "big", "big"), order);
+    }
+    
+    @Test
+    public void testWeights() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0);
+        submit(executor, "blocker", 1, 1);
+        submit(executor, "heavy", 2, 4);
+        submit(executor, "light", 1, 2);
+        
+        await();
+        assertEquals(Lists.newArrayList("blocker", "heavy", "heavy", "light", "heavy", "heavy", "light"), order);
+    }
+    
+    @Test
+    public void testMaxThreadsPerKey() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 4, 1);
+        submit(executor, "a", 1, 2);
+        submit(executor, "b", 1, 1);
+        assertEquals(1, executor.getRunningTasks("a"));
+        assertEquals(1, executor.getQueuedTasks("a"));
+        assertEquals(1, executor.getRunningTasks("b"));
+        assertEquals(2, executor.getRunningTasks());
+        
+        // lifting the cap starts the waiting task
+        executor.setMaxThreadsPerKey(0);
+        assertEquals(2, executor.getRunningTasks("a"));
+        assertEquals(0, executor.getQueuedTasks());
+        
+        await();
+        assertEquals(3, order.size());
+    }
+    
+    @Test
+    public void testMaxThreadsForKey() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 4, 0);
+        for (int i = 0; i < 3; i++) {
+            futures.add(executor.submit("a", 1, 2, blocked("a")));
+        }
+        submit(executor, "b", 1, 2);
+        assertEquals(2, executor.getRunningTasks("a"));
+        assertEquals(1, executor.getQueuedTasks("a"));
+        assertEquals(2, executor.getRunningTasks("b"));
+        
+        await();
+        assertEquals(5, order.size());
+    }
+    
+    @Test
+    public void testLimitsOfFirstTask() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 4, 0);
+        futures.add(executor.submit("a", 1, 1, blocked("a")));
+        
+        // a later task for the key does not raise its limit
+        futures.add(executor.submit("a", 1, 4, blocked("a")));
+        assertEquals(1, executor.getRunningTasks("a"));
+        assertEquals(1, executor.getQueuedTasks("a"));
+        
+        await();
+        assertEquals(2, order.size());
+    }
+    
+    @Test
+    public void testReservedThreads() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 4, 0);
+        
+        // reservations are held to half of the threads, and shrunk once those are taken
+        assertEquals(2, executor.reserveThreads("a", 3));
+        assertEquals(0, executor.reserveThreads("b", 1));
+        assertEquals(2, executor.getReservedThreads());
+        assertEquals(4, executor.getMaxThreads());
+        
+        // a key without a reservation only runs on the unreserved threads
+        submit(executor, "c", 1, 4);
+        assertEquals(2, executor.getRunningTasks());
+        assertEquals(2, executor.getQueuedTasks("c"));
+        
+        // the reserved threads are free for their key even with other keys waiting
+        futures.add(executor.submit("a", 1, 2, blocked("a")));
+        futures.add(executor.submit("a", 1, 2, blocked("a")));
+        assertEquals(4, executor.getRunningTasks());
+        assertEquals(0, executor.getQueuedTasks("a"));
+        assertEquals(2, executor.getQueuedTasks("c"));
+        
+        // giving the reservation back does not start tasks past the maximum threads
+        executor.releaseThreads("a");
+        assertEquals(0, executor.getReservedThreads());
+        assertEquals(0, executor.getReservedThreads("a"));
+        assertEquals(4, executor.getRunningTasks());
+        
+        await();
+        assertEquals(6, order.size());
+    }
+    
+    @Test
+    public void testBlockedTasks() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0, 1);
+        CountDownLatch inSection = new CountDownLatch(1);
+        Runnable blocked = blocked("a");
+        futures.add(executor.submit("a", 1, () -> FairTaskExecutor.blocking(() -> {
+            inSection.countDown();
+            blocked.run();
+            return null;
+        })));
+        // the blocked task gives up its thread, so the next task runs without waiting for it
+        assertTrue(inSection.await(10, TimeUnit.SECONDS));
+        executor.submit("b", 1, () -> order.add("b")).get(10, TimeUnit.SECONDS);
+        assertEquals(1, executor.getBlockedTasks());
+        assertEquals(1, executor.getBlockedTasks("a"));
+        assertEquals(Lists.newArrayList("b"), order);
+        
+        await();
+        assertEquals(Lists.newArrayList("b", "a"), order);
+    }
+    
+    @Test
+    public void testNoBlockedThreads() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0, 0);
+        submit(executor, "a", 1, 1);
+        futures.add(executor.submit("b", 1, () -> FairTaskExecutor.blocking(() -> order.add("b"))));
+        assertEquals(1, executor.getQueuedTasks());
+        
+        await();
+        assertEquals(Lists.newArrayList("a", "b"), order);
+        assertEquals(0, executor.getBlockedTasks());
+    }
+    
+    @Test
+    public void testWaitStats() throws Exception {
+        FairTaskExecutor executor = new FairTaskExecutor("test", 1, 0);
+        submit(executor, "a", 1, 1);
+        submit(executor, "b", 1, 1);
+        Thread.sleep(50);
+        assertTrue(executor.getOldestWaitMillis() >= 50);
+        assertTrue(executor.getOldestWaitMillis("b") >= 50);
+        assertEquals(0, executor.getOldestWaitMillis("a"));
+        assertEquals(Sets.newHashSet("a", "b"), executor.getKeys());
+        
+        await();
+        assertEquals(2, executor.getStartedTasks());
+        assertTrue(executor.getTotalWaitMillis() >= 50);
+        assertTrue(executor.getMaxWaitMillis() >= 50);
+        assertTrue(executor.getAverageWaitMillis() >= 25);
+    }
+}
@@ -0,0 +1,124 @@
+package datawave.query.attributes;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.query.Constants;
+import datawave.query.function.Aggregation;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.predicate.TimeFilter;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+public class ColumnarDocumentTest {
+    
+    private static final Key DOC_KEY = new Key("20190101_0", "datatype\0uid");
+    
+    private static List<Key> keys() {
+        List<Key> keys = new ArrayList<>();
+        keys.add(new Key("20190101_0", "datatype\0uid", "BAR\0bar1", "A", 10));
+        keys.add(new Key("20190101_0", "datatype\0uid", "BAR\0bar2", "A&B", 11));
+        keys.add(new Key("20190101_0", "datatype\0uid", "FOO.1\0foo1", "A", 12));
+        keys.add(new Key("20190101_0", "datatype\0uid", "OTHER\0other", "A", 13));
+        keys.add(new Key("20190101_0", "datatype\0uid.1", "FOO\0foo2", "B", 14));
+        return keys;
+    }
+    
+    private static ColumnarDocument columns(ColumnarDocument.Fields fields) {
+        ColumnarDocument columns = new ColumnarDocument(DOC_KEY, Collections.singleton(DOC_KEY), fields, 2);
+        for (Key key : keys()) {
+            columns.add(key);
+        }
+        return columns;
+    }
+    
+    @Test
+    public void testKeys() {
+        ColumnarDocument columns = columns(new ColumnarDocument.Fields(Sets.newHashSet("FOO")));
+        Assert.assertEquals(5, columns.size());
+        List<Key> keys = keys();
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(keys.get(i), columns.getKey(i));
+            Assert.assertEquals(keys.get(i).getTimestamp(), columns.getTimestamp(i));
+        }
+        Assert.assertEquals("FOO.1", columns.getFieldName(2));
+        Assert.assertTrue(columns.isQueryField(2));
+        Assert.assertFalse(columns.isQueryField(0));
+    }
+    
+    @Test
+    public void testEntries() {
+        ColumnarDocument columns = columns(new ColumnarDocument.Fields(Sets.newHashSet("FOO")));
+        Assert.assertEquals(2, columns.size(true));
+        Assert.assertEquals(3, columns.size(false));
+        
+        List<Key> queryKeys = new ArrayList<>();
+        columns.entries(true).forEachRemaining(entry -> queryKeys.add(entry.getKey()));
+        Assert.assertEquals(Lists.newArrayList(keys().get(2), keys().get(4)), queryKeys);
+        
+        List<Key> otherKeys = new ArrayList<>();
+        columns.entries(false).forEachRemaining(entry -> otherKeys.add(entry.getKey()));
+        Assert.assertEquals(Lists.newArrayList(keys().get(0), keys().get(1), keys().get(3)), otherKeys);
+    }
+    
+    @Test
+    public void testSharedFields() {
+        ColumnarDocument.Fields fields = new ColumnarDocument.Fields(Sets.newHashSet("FOO", "BAR"));
+        columns(fields);
+        columns(fields);
+        // FOO, BAR, FOO.1 and OTHER
+        Assert.assertEquals(4, fields.size());
+        
+        Assert.assertTrue(new ColumnarDocument.Fields(Sets.newHashSet(Constants.ANY_FIELD)).isAllQueryFields());
+        Assert.assertTrue(new ColumnarDocument.Fields(Collections.emptySet()).isAllQueryFields());
+    }
+    
+    @Test
+    public void testMaterialize() {
+        List<Entry<Key,Value>> data = new ArrayList<>();
+        for (Key key : keys()) {
+            data.add(Maps.immutableEntry(key, new Value()));
+        }
+        Entry<DocumentData,Document> from = Maps.immutableEntry(new DocumentData(DOC_KEY, Collections.singleton(DOC_KEY), data), new Document());
+        
+        Aggregation full = new Aggregation(TimeFilter.alwaysTrue(), new TypeMetadata(), null, false, false, false, null, true);
+        Document expected = full.apply(from).getValue();
+        Assert.assertNull(expected.getColumns());
+        
+        Aggregation columnar = new Aggregation(TimeFilter.alwaysTrue(), new TypeMetadata(), null, false, false, false, null, true,
+                        Sets.newHashSet("FOO"));
+        Entry<Key,Document> aggregated = columnar.apply(from);
+        Document document = aggregated.getValue();
+        Assert.assertNotNull(document.getColumns());
+        Assert.assertTrue(document.containsKey("FOO"));
+        Assert.assertFalse(document.containsKey("BAR"));
+        Assert.assertFalse(document.containsKey("OTHER"));
+        
+        columnar.materialize(aggregated);
+        Assert.assertNull(document.getColumns());
+        Assert.assertEquals(expected, document);
+    }
+    
+    @Test
+    public void testTimeFilter() {
+        List<Entry<Key,Value>> data = new ArrayList<>();
+        for (Key key : keys()) {
+            data.add(Maps.immutableEntry(key, new Value()));
+        }
+        Entry<DocumentData,Document> from = Maps.immutableEntry(new DocumentData(DOC_KEY, Collections.singleton(DOC_KEY), data), new Document());
+        
+        Aggregation columnar = new Aggregation(new TimeFilter(12, 20), new TypeMetadata(), null, false, false, false, null, true, Sets.newHashSet("FOO"));
+        Document document = columnar.materialize(columnar.apply(from)).getValue();
+        Assert.assertTrue(document.containsKey("FOO"));
+        Assert.assertTrue(document.containsKey("OTHER"));
+        Assert.assertFalse(document.containsKey("BAR"));
+    }
+}
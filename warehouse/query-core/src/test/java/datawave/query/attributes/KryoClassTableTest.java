@@ -0,0 +1,101 @@
+package datawave.query.attributes;
+
+import com.google.common.collect.Maps;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.query.DocumentSerialization;
+import datawave.query.DocumentSerialization.ReturnType;
+import datawave.query.function.deserializer.DocumentDeserializer;
+import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.function.serializer.DocumentSerializer;
+import datawave.query.function.serializer.KryoDocumentSerializer;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map.Entry;
+
+public class KryoClassTableTest {
+    
+    private static final Key DOC_KEY = new Key("20190101_0", "datatype\0uid", "", "A&B", 10);
+    
+    private static Document document(int values) {
+        Document d = new Document(DOC_KEY, true);
+        for (int i = 0; i < values; i++) {
+            d.put("FOO", new Content("foo" + i, new Key("20190101_0", "datatype\0uid", "", "A&B", 10), true));
+            d.put("BAR", new TypeAttribute<>(new LcNoDiacriticsType("bar" + i), new Key("20190101_0", "datatype\0uid", "", "A", 11), true));
+            d.put("NUM", new Numeric(i, new Key("20190101_0", "datatype\0uid", "", "A&B", 12), true));
+        }
+        return d;
+    }
+    
+    private static Document roundTrip(Document d, ReturnType returnType) throws Exception {
+        DocumentSerializer serializer = DocumentSerialization.getDocumentSerializer(returnType);
+        DocumentDeserializer deserializer = DocumentSerialization.getDocumentDeserializer(returnType);
+        Entry<Key,Value> serialized = serializer.apply(Maps.immutableEntry(DOC_KEY, d));
+        return deserializer.apply(serialized).getValue();
+    }
+    
+    private static void assertDocumentsEqual(Document expected, Document actual) {
+        Assert.assertEquals(expected.getDictionary().keySet(), actual.getDictionary().keySet());
+        for (String field : expected.getDictionary().keySet()) {
+            Attribute<?> expectedAttr = expected.get(field), actualAttr = actual.get(field);
+            Assert.assertEquals(expectedAttr.getClass(), actualAttr.getClass());
+            Assert.assertEquals(expectedAttr.getData(), actualAttr.getData());
+            Assert.assertEquals(expectedAttr.getColumnVisibility(), actualAttr.getColumnVisibility());
+        }
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (ReturnType returnType : new ReturnType[] {ReturnType.kryo, ReturnType.kryocompact}) {
+            Document d = document(3);
+            assertDocumentsEqual(d, roundTrip(d, returnType));
+        }
+    }
+    
+    @Test
+    public void testCompactIsSmaller() {
+        Document d = document(3);
+        int full = new KryoDocumentSerializer().apply(Maps.immutableEntry(DOC_KEY, d)).getValue().getSize();
+        int compact = new KryoDocumentSerializer(false, false, true).apply(Maps.immutableEntry(DOC_KEY, d)).getValue().getSize();
+        Assert.assertTrue(compact + " >= " + full, compact < full);
+    }
+    
+    @Test
+    public void testReusedBuffer() {
+        KryoDocumentSerializer serializer = new KryoDocumentSerializer(false, false, true);
+        KryoDocumentDeserializer deserializer = new KryoDocumentDeserializer(true);
+        
+        // a large document grows the buffer, and a small one after it must not see what the large one left behind
+        Document large = document(500);
+        Document small = document(1);
+        Value largeValue = serializer.apply(Maps.immutableEntry(DOC_KEY, large)).getValue();
+        Value smallValue = serializer.apply(Maps.immutableEntry(DOC_KEY, small)).getValue();
+        Assert.assertTrue(smallValue.getSize() < largeValue.getSize());
+        
+        assertDocumentsEqual(small, deserializer.apply(Maps.immutableEntry(DOC_KEY, smallValue)).getValue());
+        assertDocumentsEqual(large, deserializer.apply(Maps.immutableEntry(DOC_KEY, largeValue)).getValue());
+        Assert.assertArrayEquals(smallValue.get(), serializer.apply(Maps.immutableEntry(DOC_KEY, small)).getValue().get());
+    }
+    
+    @Test
+    public void testCompressed() {
+        KryoDocumentSerializer serializer = new KryoDocumentSerializer(false, true, true);
+        Document large = document(1000);
+        Value value = serializer.apply(Maps.immutableEntry(DOC_KEY, large)).getValue();
+        Assert.assertEquals(DocumentSerialization.GZIP, DocumentSerialization.getCompression(value.get()));
+        assertDocumentsEqual(large, new KryoDocumentDeserializer(true).apply(Maps.immutableEntry(DOC_KEY, value)).getValue());
+    }
+    
+    @Test
+    public void testVisibilitiesWrittenOncePerDocument() {
+        Document d = document(50);
+        Document read = new KryoDocumentDeserializer(true).apply(new KryoDocumentSerializer(false, false, true).apply(Maps.immutableEntry(DOC_KEY, d)))
+                        .getValue();
+        assertDocumentsEqual(d, read);
+        Assert.assertEquals(new ColumnVisibility("A&B"), read.get("FOO").getColumnVisibility());
+        Assert.assertEquals(new ColumnVisibility("A"), read.get("BAR").getColumnVisibility());
+    }
+}
@@ -0,0 +1,50 @@
+package datawave.query.attributes;
+
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NoOpType;
+import datawave.data.type.NumberType;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TypeAttributeTest {
+    
+    private static final Key KEY = new Key("20190101_0", "datatype\0uid", "FOO\0Bar", "A", 10);
+    
+    @Test
+    public void testLazyType() {
+        TypeAttribute<?> lazy = new TypeAttribute(LcNoDiacriticsType.class, "FOO", "Bar", KEY, true);
+        Assert.assertFalse(lazy.isNormalized());
+        Assert.assertEquals("Bar", lazy.toString());
+        long size = lazy.sizeInBytes();
+        
+        // a copy is just as lazy
+        TypeAttribute<?> copy = lazy.copy();
+        Assert.assertFalse(copy.isNormalized());
+        
+        Assert.assertEquals("bar", lazy.getType().normalize());
+        Assert.assertTrue(lazy.isNormalized());
+        Assert.assertEquals(size, lazy.sizeInBytes());
+        
+        TypeAttribute<?> eager = new TypeAttribute<>(new LcNoDiacriticsType("Bar"), KEY, true);
+        Assert.assertEquals(eager, copy);
+        Assert.assertEquals(eager.hashCode(), copy.hashCode());
+        Assert.assertEquals(0, eager.compareTo((TypeAttribute) copy));
+    }
+    
+    @Test
+    public void testUnparseable() {
+        TypeAttribute<?> lazy = new TypeAttribute(NumberType.class, "NUM", "not a number", KEY, true);
+        Assert.assertTrue(lazy.getType() instanceof NoOpType);
+        Assert.assertEquals("not a number", lazy.getType().getDelegateAsString());
+    }
+    
+    @Test
+    public void testFactory() {
+        Attribute<?> attribute = new AttributeFactory(new TypeMetadata()).create("FOO", "Bar", KEY, true);
+        Assert.assertTrue(attribute instanceof TypeAttribute);
+        Assert.assertFalse(((TypeAttribute<?>) attribute).isNormalized());
+        Assert.assertEquals("Bar", ((TypeAttribute<?>) attribute).getType().getDelegateAsString());
+    }
+}
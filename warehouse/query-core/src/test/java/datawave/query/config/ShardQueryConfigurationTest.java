@@ -19,6 +19,7 @@ import datawave.query.function.DocumentPermutation;
 import datawave.query.function.DocumentProjection;
 import datawave.query.model.QueryModel;
 import datawave.util.TableName;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
 import datawave.webservice.query.QueryImpl;
 import org.junit.Assert;
 import org.junit.Before;
@@ -88,6 +89,9 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.isCleanupShardsAndDaysQueryHints());
         Assert.assertEquals(new Integer(8), config.getNumQueryThreads());
         Assert.assertEquals(new Integer(8), config.getNumIndexLookupThreads());
+        Assert.assertEquals(AccumuloConnectionFactory.Priority.NORMAL, config.getIndexLookupPriority());
+        Assert.assertFalse(config.isGlobalIndexCacheEnabled());
+        Assert.assertFalse(config.isUidSketchesEnabled());
         Assert.assertEquals(new Integer(8), config.getNumDateIndexThreads());
         Assert.assertEquals(new Integer(-1), config.getMaxDocScanTimeout());
         Assert.assertNotNull(config.getFstCount());
@@ -163,13 +167,27 @@ public class ShardQueryConfigurationTest {
         Assert.assertNull(config.getIvaratorCacheBaseURIs());
         Assert.assertNull(config.getIvaratorFstHdfsBaseURIs());
         Assert.assertEquals(10000, config.getIvaratorCacheBufferSize());
+        Assert.assertFalse(config.isIvaratorCacheOffHeapBuffer());
+        Assert.assertNull(config.getIvaratorCacheLocalDirURI());
+        Assert.assertFalse(config.isIvaratorStreamingFill());
+        Assert.assertEquals(1, config.getSchedulingWeight());
+        Assert.assertFalse(config.isCompiledEvaluation());
+        Assert.assertFalse(config.isColumnarDocuments());
+        Assert.assertEquals(1, config.getDocumentsPerValue());
+        Assert.assertEquals(1024 * 1024, config.getDocumentBatchBytes());
+        Assert.assertEquals(1, config.getTermFrequencyBatchSize());
+        Assert.assertEquals(0, config.getDocumentCacheBytes());
+        Assert.assertEquals(1, config.getTldChildAggregationThreads());
         Assert.assertEquals(100000, config.getIvaratorCacheScanPersistThreshold());
         Assert.assertEquals(3600000, config.getIvaratorCacheScanTimeout());
         Assert.assertEquals(11, config.getMaxFieldIndexRangeSplit());
         Assert.assertEquals(100, config.getIvaratorMaxOpenFiles());
+        Assert.assertEquals(0, config.getIvaratorMaxCandidates());
         Assert.assertEquals(33, config.getMaxIvaratorSources());
         Assert.assertEquals(25, config.getMaxEvaluationPipelines());
         Assert.assertEquals(25, config.getMaxPipelineCachedResults());
+        Assert.assertFalse(config.isCompletionEvaluationPipeline());
+        Assert.assertFalse(config.isUnorderedResults());
         Assert.assertFalse(config.isExpandAllTerms());
         Assert.assertNull(config.getQueryModel());
         Assert.assertNull(config.getModelName());
@@ -430,7 +448,7 @@ public class ShardQueryConfigurationTest {
      */
     @Test
     public void testCheckForNewAdditions() throws IOException {
-        int expectedObjectCount = 164;
+        int expectedObjectCount = 183;
         ShardQueryConfiguration config = ShardQueryConfiguration.create();
         ObjectMapper mapper = new ObjectMapper();
         JsonNode root = mapper.readTree(mapper.writeValueAsString(config));
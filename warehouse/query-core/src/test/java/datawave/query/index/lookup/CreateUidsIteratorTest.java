@@ -1,14 +1,20 @@
 package datawave.query.index.lookup;
 
 import datawave.ingest.protobuf.Uid;
+import datawave.ingest.protobuf.UidSketch;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.data.ArrayByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedMapIterator;
 import org.apache.commons.jexl2.parser.JexlNode;
+import org.easymock.EasyMock;
 import org.junit.Test;
 
+import com.google.protobuf.ByteString;
+
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -24,6 +30,7 @@ import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class CreateUidsIteratorTest {
@@ -245,6 +252,95 @@ public class CreateUidsIteratorTest {
         assertFalse(iterator.hasTop());
     }
     
+    /**
+     * Ensure the uids of a shard whose uids are not tracked are sketched when UID_SKETCHES is set
+     */
+    @Test
+    public void testWithSketches() throws IOException {
+        // Setup data for test.
+        TreeMap<Key,Value> data = new TreeMap<>();
+        List<String> docIds = Arrays.asList("doc1", "doc2");
+        Uid.List.Builder builder = Uid.List.newBuilder();
+        builder.addAllUID(docIds);
+        builder.setCOUNT(docIds.size());
+        builder.setIGNORE(false);
+        data.put(new Key("row", "cf", "date_1\u0000A"), new Value(builder.build().toByteArray()));
+        
+        UidSketch sketch = new UidSketch();
+        sketch.add("doc5");
+        builder = Uid.List.newBuilder();
+        builder.setCOUNT(100);
+        builder.setIGNORE(true);
+        builder.setUIDSKETCH(ByteString.copyFrom(sketch.toByteArray()));
+        data.put(new Key("row", "cf", "date_1\u0000B"), new Value(builder.build().toByteArray()));
+        
+        // A shard without a sketch
+        builder = Uid.List.newBuilder();
+        builder.setCOUNT(100);
+        builder.setIGNORE(true);
+        data.put(new Key("row", "cf", "date_2\u0000A"), new Value(builder.build().toByteArray()));
+        
+        // Setup iterator
+        CreateUidsIterator iterator = new CreateUidsIterator();
+        Map<String,String> iteratorOptions = new HashMap<>();
+        iteratorOptions.put(CreateUidsIterator.UID_SKETCHES, "true");
+        iterator.init(new SortedMapIterator(data), iteratorOptions, sketchingEnvironment());
+        iterator.seek(new Range(), Collections.emptySet(), false);
+        assertTrue(iterator.hasTop());
+        assertEquals(new Key("row", "cf", "date_1"), iterator.getTopKey());
+        
+        IndexInfo indexInfo = new IndexInfo();
+        indexInfo.readFields(new DataInputStream(new ByteArrayInputStream(iterator.getTopValue().get())));
+        assertEquals(102, indexInfo.count());
+        assertTrue(indexInfo.uids().isEmpty());
+        assertTrue(indexInfo.sketch().mightContain("doc1"));
+        assertTrue(indexInfo.sketch().mightContain("doc2"));
+        assertTrue(indexInfo.sketch().mightContain("doc5"));
+        assertFalse(indexInfo.sketch().mightContain("doc3"));
+        
+        iterator.next();
+        assertTrue(iterator.hasTop());
+        assertEquals(new Key("row", "cf", "date_2"), iterator.getTopKey());
+        indexInfo = new IndexInfo();
+        indexInfo.readFields(new DataInputStream(new ByteArrayInputStream(iterator.getTopValue().get())));
+        assertNull(indexInfo.sketch());
+        
+        iterator.next();
+        assertFalse(iterator.hasTop());
+    }
+    
+    /**
+     * Ensure the uids are not sketched when the table does not keep sketches, even when UID_SKETCHES is set
+     */
+    @Test
+    public void testSketchesNeedTableProperty() throws IOException {
+        TreeMap<Key,Value> data = new TreeMap<>();
+        Uid.List.Builder builder = Uid.List.newBuilder();
+        builder.setCOUNT(100);
+        builder.setIGNORE(true);
+        builder.setUIDSKETCH(ByteString.copyFrom(new UidSketch().toByteArray()));
+        data.put(new Key("row", "cf", "date_1\u0000A"), new Value(builder.build().toByteArray()));
+        
+        CreateUidsIterator iterator = new CreateUidsIterator();
+        Map<String,String> iteratorOptions = new HashMap<>();
+        iteratorOptions.put(CreateUidsIterator.UID_SKETCHES, "true");
+        iterator.init(new SortedMapIterator(data), iteratorOptions, null);
+        iterator.seek(new Range(), Collections.emptySet(), false);
+        assertTrue(iterator.hasTop());
+        
+        IndexInfo indexInfo = new IndexInfo();
+        indexInfo.readFields(new DataInputStream(new ByteArrayInputStream(iterator.getTopValue().get())));
+        assertEquals(100, indexInfo.count());
+        assertNull(indexInfo.sketch());
+    }
+    
+    private static IteratorEnvironment sketchingEnvironment() {
+        IteratorEnvironment env = EasyMock.createMock(IteratorEnvironment.class);
+        EasyMock.expect(env.getConfig()).andReturn(new ConfigurationCopy(Collections.singletonMap(UidSketch.TABLE_PROPERTY, "true"))).anyTimes();
+        EasyMock.replay(env);
+        return env;
+    }
+    
     static void addToExpectedDocs(String dataType, Iterable<String> docIds, Collection<IndexMatch> expected, JexlNode node) {
         for (String id : docIds)
             expected.add(new IndexMatch(dataType + '\u0000' + id, node));
@@ -0,0 +1,123 @@
+package datawave.query.index.lookup;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import datawave.util.time.DateHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GlobalIndexCacheTest {
+    
+    private static final Collection<Authorizations> AUTHS = Collections.singleton(new Authorizations("A", "B"));
+    
+    private GlobalIndexCache cache;
+    
+    @Before
+    public void setUp() {
+        cache = new GlobalIndexCache(1024 * 1024, 1, TimeUnit.HOURS);
+    }
+    
+    private GlobalIndexCache.Lookup lookup(String begin, String end) {
+        return lookup(begin, end, AUTHS);
+    }
+    
+    private GlobalIndexCache.Lookup lookup(String begin, String end, Collection<Authorizations> auths) {
+        return cache.lookup("shardIndex", "FIELD", "value", "datatype", auths, "signature", DateHelper.parse(begin), DateHelper.parse(end));
+    }
+    
+    private static Entry<Key,Value> entry(String shard) {
+        return Maps.immutableEntry(new Key("value", "FIELD", shard), new Value(shard.getBytes()));
+    }
+    
+    private static List<String> shards(Iterator<Entry<Key,Value>> entries) {
+        List<String> shards = Lists.newArrayList();
+        while (entries.hasNext()) {
+            shards.add(entries.next().getKey().getColumnQualifier().toString());
+        }
+        return shards;
+    }
+    
+    @Test
+    public void testCachedAfterScan() {
+        GlobalIndexCache.Lookup lookup = lookup("20190101", "20190103");
+        assertFalse(lookup.isComplete());
+        assertEquals(1, lookup.getMissingRanges().size());
+        
+        List<String> scanned = shards(lookup.iterator(Lists.newArrayList(entry("20190101_0"), entry("20190103_1")).iterator()));
+        assertEquals(Lists.newArrayList("20190101_0", "20190103_1"), scanned);
+        // the empty day is cached as well
+        assertEquals(3, cache.size());
+        
+        lookup = lookup("20190101", "20190103");
+        assertTrue(lookup.isComplete());
+        assertEquals(scanned, shards(lookup.iterator(Collections.<Entry<Key,Value>> emptyIterator())));
+    }
+    
+    @Test
+    public void testPartialOverlap() {
+        shards(lookup("20190102", "20190103").iterator(Lists.newArrayList(entry("20190102_0"), entry("20190103_0")).iterator()));
+        
+        GlobalIndexCache.Lookup lookup = lookup("20190101", "20190105");
+        assertEquals(2, lookup.getCachedDays());
+        assertEquals(5, lookup.getDays());
+        List<Range> missing = lookup.getMissingRanges();
+        assertEquals(2, missing.size());
+        assertTrue(missing.get(0).contains(new Key("value", "FIELD", "20190101_5")));
+        assertFalse(missing.get(0).contains(new Key("value", "FIELD", "20190102_0")));
+        assertTrue(missing.get(1).contains(new Key("value", "FIELD", "20190104_0")));
+        assertTrue(missing.get(1).contains(new Key("value", "FIELD", "20190105_9")));
+        
+        // the cached days are merged in order with the scanned days
+        List<String> shards = shards(lookup.iterator(Lists.newArrayList(entry("20190101_1"), entry("20190105_2")).iterator()));
+        assertEquals(Lists.newArrayList("20190101_1", "20190102_0", "20190103_0", "20190105_2"), shards);
+        assertTrue(lookup("20190101", "20190105").isComplete());
+    }
+    
+    @Test
+    public void testIncompleteScanNotCached() {
+        Iterator<Entry<Key,Value>> entries = lookup("20190101", "20190102").iterator(Lists.newArrayList(entry("20190101_0"), entry("20190102_0")).iterator());
+        entries.next();
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testTodayNotCached() {
+        Date today = new Date();
+        GlobalIndexCache.Lookup lookup = cache.lookup("shardIndex", "FIELD", "value", "datatype", AUTHS, "signature", DateHelper.parse("20190101"), today);
+        shards(lookup.record(Collections.<Entry<Key,Value>> emptyIterator()));
+        assertEquals(lookup.getDays() - 1, cache.size());
+        assertFalse(cache.lookup("shardIndex", "FIELD", "value", "datatype", AUTHS, "signature", today, today).isComplete());
+    }
+    
+    @Test
+    public void testAuthorizationOrder() {
+        shards(lookup("20190101", "20190101").iterator(Collections.<Entry<Key,Value>> emptyIterator()));
+        assertTrue(lookup("20190101", "20190101", Collections.singleton(new Authorizations("B", "A"))).isComplete());
+        assertFalse(lookup("20190101", "20190101", Collections.singleton(new Authorizations("A"))).isComplete());
+    }
+    
+    @Test
+    public void testInvalidate() {
+        shards(lookup("20190101", "20190102").iterator(Collections.<Entry<Key,Value>> emptyIterator()));
+        cache.invalidate("shardReverseIndex");
+        assertEquals(2, cache.size());
+        cache.invalidate("shardIndex");
+        assertEquals(0, cache.size());
+    }
+}
@@ -1,21 +1,31 @@
 package datawave.query.index.lookup;
 
 import com.google.common.collect.ImmutableSortedSet;
+import datawave.ingest.protobuf.UidSketch;
 import datawave.query.jexl.JexlNodeFactory;
 import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
 import datawave.query.jexl.visitors.TreeEqualityVisitor;
 import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
 import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
 import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.hadoop.io.VIntWritable;
+import org.apache.hadoop.io.VLongWritable;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -47,6 +57,15 @@ public class IndexInfoTest {
         return expected;
     }
     
+    // Helper method to generate a sketch of document ids
+    private UidSketch buildSketch(String... docIds) {
+        UidSketch sketch = new UidSketch();
+        for (String docId : docIds) {
+            sketch.add(docId);
+        }
+        return sketch;
+    }
+    
     /**
      * Intersection of query terms when both terms have document ids.
      */
@@ -329,4 +348,94 @@ public class IndexInfoTest {
         assertEquals(expectedMerged, left.union(right));
         assertEquals(expectedMerged, right.union(left));
     }
+    
+    /**
+     * Intersection of query terms when one term has document ids and the other a sketch of its document ids.
+     */
+    @Test
+    public void testIntersection_SketchDropsDocIds() {
+        IndexInfo left = new IndexInfo(50L, buildSketch("doc2", "doc3"));
+        left.applyNode(JexlNodeFactory.buildEQNode("FIELD", "VALUE"));
+        
+        List<IndexMatch> rightMatches = buildIndexMatches("FIELD", "VALUE", "doc1", "doc2", "doc3", "doc4");
+        IndexInfo right = new IndexInfo(rightMatches);
+        
+        IndexInfo merged = left.intersect(right);
+        
+        // Only the document ids in the sketch are kept
+        List<IndexMatch> expectedDocs = buildIndexMatches("FIELD", "VALUE", "doc2", "doc3");
+        assertEquals(ImmutableSortedSet.copyOf(expectedDocs), merged.uids());
+        assertEquals(2, merged.count());
+    }
+    
+    /**
+     * Intersection of query terms when both terms have sketches without a document id in common.
+     */
+    @Test
+    public void testIntersection_DisjointSketches() {
+        IndexInfo left = new IndexInfo(50L, buildSketch("doc1", "doc2"));
+        left.applyNode(JexlNodeFactory.buildEQNode("FIELD1", "VALUE1"));
+        IndexInfo right = new IndexInfo(60L, buildSketch("doc3", "doc4"));
+        right.applyNode(JexlNodeFactory.buildEQNode("FIELD2", "VALUE2"));
+        
+        assertEquals(0, left.intersect(right).count());
+        
+        right = new IndexInfo(60L, buildSketch("doc2", "doc4"));
+        right.applyNode(JexlNodeFactory.buildEQNode("FIELD2", "VALUE2"));
+        IndexInfo merged = left.intersect(right);
+        assertEquals(50, merged.count());
+        assertEquals(buildSketch("doc2"), merged.sketch());
+    }
+    
+    /**
+     * Union of query terms with sketches, document ids, and neither.
+     */
+    @Test
+    public void testUnion_Sketches() {
+        IndexInfo left = new IndexInfo(50L, buildSketch("doc1"));
+        left.applyNode(JexlNodeFactory.buildEQNode("FIELD1", "VALUE1"));
+        IndexInfo right = new IndexInfo(buildIndexMatches("FIELD2", "VALUE2", "doc2"));
+        
+        IndexInfo merged = left.union(right);
+        assertEquals(51, merged.count());
+        assertEquals(buildSketch("doc1", "doc2"), merged.sketch());
+        
+        IndexInfo unknown = new IndexInfo(50L);
+        unknown.applyNode(JexlNodeFactory.buildEQNode("FIELD3", "VALUE3"));
+        assertNull(merged.union(unknown).sketch());
+    }
+    
+    @Test
+    public void testSerializedSketch() throws IOException {
+        IndexInfo info = new IndexInfo(50L, buildSketch("doc1", "doc2"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        info.write(new DataOutputStream(bytes));
+        
+        IndexInfo read = new IndexInfo();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(50, read.count());
+        assertEquals(info.sketch(), read.sketch());
+    }
+    
+    @Test
+    public void testSerializedWithoutSketch() throws IOException {
+        IndexInfo info = new IndexInfo(buildIndexMatches("FIELD", "VALUE", "doc1", "doc2"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        info.write(new DataOutputStream(bytes));
+        
+        // an info without a sketch is written as it was before sketches, so that either side of a scan can be older
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(expected);
+        new VLongWritable(2).write(out);
+        new VIntWritable(2).write(out);
+        for (IndexMatch uid : info.uids())
+            uid.write(out);
+        assertArrayEquals(expected.toByteArray(), bytes.toByteArray());
+        
+        IndexInfo read = new IndexInfo();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, read.count());
+        assertEquals(info.uids(), read.uids());
+        assertNull(read.sketch());
+    }
 }
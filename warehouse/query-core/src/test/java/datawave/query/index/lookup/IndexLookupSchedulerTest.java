@@ -0,0 +1,186 @@
+package datawave.query.index.lookup;
+
+import datawave.core.iterators.FairTaskExecutor;
+import datawave.query.index.lookup.IndexLookupScheduler.QueryExecutor;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexLookupSchedulerTest {
+    
+    private CountDownLatch latch = null;
+    private FairTaskExecutor executor = null;
+    
+    @Before
+    public void setUp() {
+        latch = new CountDownLatch(1);
+        executor = new FairTaskExecutor("test", 4, 0);
+    }
+    
+    @After
+    public void tearDown() {
+        latch.countDown();
+    }
+    
+    private Runnable blocked() {
+        return () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+    
+    @Test
+    public void testQuota() throws Exception {
+        QueryExecutor query = new QueryExecutor(executor, "query", 1, 1);
+        Future<?> first = query.submit(blocked());
+        Future<?> second = query.submit(blocked());
+        assertEquals(1, executor.getRunningTasks("query"));
+        assertEquals(1, executor.getQueuedTasks("query"));
+        
+        latch.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertEquals(2, query.getStartedTasks());
+    }
+    
+    @Test
+    public void testSlowQueryCannotStarveOthers() throws Exception {
+        FairTaskExecutor tier = new FairTaskExecutor("test", 2, 0);
+        QueryExecutor slow = new QueryExecutor(tier, "slow", 1, 1);
+        slow.submit(blocked());
+        slow.submit(blocked());
+        
+        // the slow query holds its reserved thread, so the other query runs on the unreserved one
+        assertEquals(1, slow.getReservedThreads());
+        assertEquals(1, tier.getRunningTasks("slow"));
+        assertEquals(1, tier.getQueuedTasks("slow"));
+        QueryExecutor other = new QueryExecutor(tier, "other", 1, 1);
+        other.submit(() -> {}).get(10, TimeUnit.SECONDS);
+        assertEquals(0, other.getReservedThreads());
+        assertEquals(2, tier.getMaxThreads());
+    }
+    
+    @Test
+    public void testReservationReleasedWhenIdle() throws Exception {
+        QueryExecutor query = new QueryExecutor(executor, "query", 1, 2);
+        assertEquals(0, query.getReservedThreads());
+        
+        Future<?> task = query.submit(blocked());
+        assertEquals(2, query.getReservedThreads());
+        assertEquals(2, executor.getReservedThreads());
+        
+        // the reservation is given back with the last task, without the executor being shut down
+        latch.countDown();
+        task.get(10, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (query.getReservedThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, query.getReservedThreads());
+        assertEquals(0, executor.getReservedThreads());
+        assertFalse(query.isShutdown());
+    }
+    
+    @Test
+    public void testReservationsBoundedByTier() {
+        QueryExecutor first = new QueryExecutor(executor, "first", 1, 4);
+        QueryExecutor second = new QueryExecutor(executor, "second", 1, 4);
+        first.submit(blocked());
+        second.submit(blocked());
+        
+        // however many executors there are, the tier keeps its size and only half of it is reserved
+        assertEquals(2, first.getReservedThreads());
+        assertEquals(0, second.getReservedThreads());
+        assertEquals(2, executor.getReservedThreads());
+        assertEquals(4, executor.getMaxThreads());
+        
+        first.shutdownNow();
+        second.shutdownNow();
+    }
+    
+    @Test
+    public void testShutdownNowOnlyStopsItsQuery() throws Exception {
+        QueryExecutor stopped = new QueryExecutor(executor, "stopped", 1, 1);
+        QueryExecutor other = new QueryExecutor(executor, "other", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        Runnable blocked = blocked();
+        Future<?> running = stopped.submit(() -> {
+            started.countDown();
+            blocked.run();
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<?> waiting = stopped.submit(blocked());
+        Future<?> otherTask = other.submit(blocked());
+        
+        List<Runnable> notStarted = stopped.shutdownNow();
+        assertEquals(1, notStarted.size());
+        assertTrue(stopped.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(running.isCancelled());
+        assertTrue(waiting.isCancelled());
+        assertFalse(otherTask.isDone());
+        assertFalse(other.isShutdown());
+        
+        latch.countDown();
+        otherTask.get(10, TimeUnit.SECONDS);
+    }
+    
+    @Test(expected = CancellationException.class)
+    public void testCancelledTaskReleasesWaiters() throws Exception {
+        QueryExecutor query = new QueryExecutor(executor, "query", 1, 1);
+        query.submit(blocked());
+        Future<?> waiting = query.submit(blocked());
+        query.shutdownNow();
+        waiting.get(10, TimeUnit.SECONDS);
+    }
+    
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectedAfterShutdown() {
+        QueryExecutor query = new QueryExecutor(executor, "query", 1, 1);
+        query.shutdown();
+        assertTrue(query.isTerminated());
+        query.submit(blocked());
+    }
+    
+    @Test
+    public void testQueueTimes() throws Exception {
+        QueryExecutor query = new QueryExecutor(executor, "query", 1, 1);
+        query.submit(blocked());
+        Future<?> waiting = query.submit(() -> {});
+        Thread.sleep(50);
+        
+        latch.countDown();
+        waiting.get(10, TimeUnit.SECONDS);
+        assertEquals(2, query.getStartedTasks());
+        assertTrue(query.getMaxQueueMillis() >= 50);
+        assertTrue(query.getAverageQueueMillis() >= 25);
+    }
+    
+    @Test
+    public void testPriorityWeights() {
+        assertEquals(1, IndexLookupScheduler.getWeight(AccumuloConnectionFactory.Priority.LOW));
+        assertEquals(2, IndexLookupScheduler.getWeight(AccumuloConnectionFactory.Priority.NORMAL));
+        assertEquals(4, IndexLookupScheduler.getWeight(AccumuloConnectionFactory.Priority.HIGH));
+        assertEquals(8, IndexLookupScheduler.getWeight(AccumuloConnectionFactory.Priority.ADMIN));
+        assertEquals(2, IndexLookupScheduler.getWeight(null));
+    }
+    
+    @Test
+    public void testAnonymousQueriesAreScheduledApart() {
+        assertFalse(IndexLookupScheduler.getSchedulingKey(null).equals(IndexLookupScheduler.getSchedulingKey(null)));
+    }
+}
@@ -3,6 +3,7 @@ package datawave.query.index.lookup;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
+import datawave.ingest.protobuf.UidSketch;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.JexlNodeFactory;
 import datawave.query.jexl.visitors.TreeEqualityVisitor;
@@ -205,6 +206,42 @@ public class IntersectionTest {
         assertFalse(intersection.hasNext());
     }
     
+    // Helper method to generate a stream of the given index infos for a term
+    private IndexStream buildStream(String field, String value, Object... shardsAndInfos) {
+        List<Tuple2<String,IndexInfo>> tuples = new ArrayList<>();
+        for (int i = 0; i < shardsAndInfos.length; i += 2) {
+            IndexInfo info = (IndexInfo) shardsAndInfos[i + 1];
+            info.applyNode(JexlNodeFactory.buildEQNode(field, value));
+            tuples.add(Tuples.tuple((String) shardsAndInfos[i], info));
+        }
+        return ScannerStream.withData(Iterators.peekingIterator(tuples.iterator()), JexlNodeFactory.buildEQNode(field, value));
+    }
+    
+    /**
+     * Shards on which the streams have no document in common are skipped, whether they are ruled out by the ids or by the sketch of a high cardinality term.
+     */
+    @Test
+    public void testIntersection_SkipsDisjointShards() {
+        IndexStream left = buildStream("FIELD", "VALUE", "20190314_0", new IndexInfo(Arrays.asList("doc1", "doc2")), "20190314_1",
+                        new IndexInfo(Arrays.asList("doc3")), "20190314_2", new IndexInfo(Arrays.asList("doc4")), "20190314_3",
+                        new IndexInfo(Arrays.asList("doc1")));
+        IndexStream right = buildStream("OTHER", "VALUE", "20190314_1", new IndexInfo(Arrays.asList("doc1")), "20190314_2",
+                        new IndexInfo(Arrays.asList("doc4", "doc2")), "20190314_3", new IndexInfo(Arrays.asList("doc1")));
+        
+        UidSketch sketch = new UidSketch();
+        sketch.add("doc2");
+        sketch.add("doc4");
+        IndexStream high = buildStream("HIGH", "VALUE", "20190314", new IndexInfo(50, sketch));
+        
+        Intersection intersection = new Intersection(Lists.newArrayList(left, right, high), new IndexInfo());
+        assertTrue(intersection.hasNext());
+        Tuple2<String,IndexInfo> tuple = intersection.next();
+        assertEquals("20190314_2", tuple.first());
+        assertEquals(buildExpectedIndexMatches("doc4"), tuple.second().uids());
+        // doc1 of the last shard is ruled out by the sketch
+        assertFalse(intersection.hasNext());
+    }
+    
     @Test
     public void testIntersection_EmptyExceededValueThreshold() throws ParseException {
         ASTJexlScript script = JexlASTHelper.parseJexlQuery("THIS_FIELD == 20");
@@ -36,6 +36,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -343,6 +344,37 @@ public class RangeStreamTest {
         assertTrue("Expected ranges not found in query plan: " + expectedRanges.toString(), expectedRanges.isEmpty());
     }
     
+    @Test
+    public void testQueueTimesRecordedOnClose() throws Exception {
+        String originalQuery = "FOO == 'bag'";
+        ASTJexlScript script = JexlASTHelper.parseJexlQuery(originalQuery);
+        
+        config.setBeginDate(new Date(0));
+        config.setEndDate(new Date(System.currentTimeMillis()));
+        
+        Multimap<String,Type<?>> dataTypes = HashMultimap.create();
+        dataTypes.putAll("FOO", Sets.newHashSet(new LcNoDiacriticsType()));
+        
+        config.setQueryFieldsDatatypes(dataTypes);
+        config.setIndexedFields(dataTypes);
+        
+        MockMetadataHelper helper = new MockMetadataHelper();
+        helper.setIndexedFields(dataTypes.keySet());
+        
+        RangeStream rangeStream = new RangeStream(config, new ScannerFactory(config.getConnector()), helper);
+        assertTrue(rangeStream.streamPlans(script).iterator().hasNext());
+        assertTrue(config.getTimers().summarizeStatisticsAsList().isEmpty());
+        
+        // closing twice records the queue times once
+        rangeStream.close();
+        rangeStream.close();
+        List<String> statistics = config.getTimers().summarizeStatisticsAsList();
+        assertEquals(statistics.toString(), 6, statistics.size());
+        assertTrue(statistics.get(0), statistics.get(0).contains("RangeStream - Index lookup tasks started: "));
+        assertTrue(statistics.get(1), statistics.get(1).contains("RangeStream - Index lookup tasks average queue time: "));
+        assertTrue(statistics.get(3), statistics.get(3).contains("RangeStream - Index scan tasks started: "));
+    }
+    
     @Test
     public void testShardAndDaysHint() throws Exception {
         String originalQuery = "(FOO == 'bardy') && (SHARDS_AND_DAYS = '20190314_2,20190314_1')";
@@ -0,0 +1,112 @@
+package datawave.query.iterator;
+
+import com.google.common.collect.Maps;
+import datawave.query.DocumentSerialization;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+public class DocumentBatchingIteratorTest {
+    
+    private static List<Entry<Key,Value>> documents(int count) {
+        List<Entry<Key,Value>> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] header = DocumentSerialization.getHeader();
+            byte[] value = new byte[header.length + 10];
+            System.arraycopy(header, 0, value, 0, header.length);
+            value[header.length] = (byte) i;
+            documents.add(Maps.immutableEntry(new Key("20190101_0", "datatype\0uid" + i), new Value(value)));
+        }
+        return documents;
+    }
+    
+    private static List<Entry<Key,Value>> unpack(Iterator<Entry<Key,Value>> batches) {
+        List<Entry<Key,Value>> documents = new ArrayList<>();
+        while (batches.hasNext()) {
+            Entry<Key,Value> next = batches.next();
+            if (DocumentSerialization.isBatch(next.getValue().get())) {
+                List<Entry<Key,Value>> batch = DocumentSerialization.readBatch(next.getValue().get());
+                // each batch is returned under the key of its last document
+                Assert.assertEquals(batch.get(batch.size() - 1).getKey(), next.getKey());
+                documents.addAll(batch);
+            } else {
+                documents.add(next);
+            }
+        }
+        return documents;
+    }
+    
+    @Test
+    public void testBatchesByCount() {
+        for (boolean compress : new boolean[] {false, true}) {
+            List<Entry<Key,Value>> documents = documents(10);
+            List<Entry<Key,Value>> batches = new ArrayList<>();
+            new DocumentBatchingIterator(documents.iterator(), 4, Integer.MAX_VALUE, compress, null).forEachRemaining(batches::add);
+            
+            // 4, 4 and 2 documents
+            Assert.assertEquals(3, batches.size());
+            Assert.assertEquals(documents, unpack(batches.iterator()));
+        }
+    }
+    
+    @Test
+    public void testBatchesByBytes() {
+        List<Entry<Key,Value>> documents = documents(10);
+        List<Entry<Key,Value>> batches = new ArrayList<>();
+        // each document is 13 bytes, so the byte budget is reached after 2 documents
+        new DocumentBatchingIterator(documents.iterator(), 100, 20, false, null).forEachRemaining(batches::add);
+        
+        Assert.assertEquals(5, batches.size());
+        Assert.assertEquals(documents, unpack(batches.iterator()));
+    }
+    
+    @Test
+    public void testSingleDocumentIsNotPacked() {
+        List<Entry<Key,Value>> documents = documents(1);
+        Iterator<Entry<Key,Value>> batches = new DocumentBatchingIterator(documents.iterator(), 4, Integer.MAX_VALUE, false, null);
+        Assert.assertTrue(batches.hasNext());
+        Assert.assertSame(documents.get(0), batches.next());
+        Assert.assertFalse(batches.hasNext());
+    }
+    
+    @Test
+    public void testYieldIsHeldBackUntilTheBatchIsReturned() {
+        YieldCallback<Key> yield = new YieldCallback<>();
+        Key yieldKey = new Key("20190101_0", "datatype\0uid2\0");
+        List<Entry<Key,Value>> documents = documents(3);
+        Iterator<Entry<Key,Value>> source = new Iterator<Entry<Key,Value>>() {
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                if (next == 2) {
+                    yield.yield(yieldKey);
+                    return false;
+                }
+                return true;
+            }
+            
+            @Override
+            public Entry<Key,Value> next() {
+                return documents.get(next++);
+            }
+        };
+        
+        Iterator<Entry<Key,Value>> batches = new DocumentBatchingIterator(source, 4, Integer.MAX_VALUE, false, yield);
+        Assert.assertTrue(batches.hasNext());
+        Entry<Key,Value> batch = batches.next();
+        Assert.assertFalse(yield.hasYielded());
+        Assert.assertEquals(documents.subList(0, 2), DocumentSerialization.readBatch(batch.getValue().get()));
+        
+        Assert.assertFalse(batches.hasNext());
+        Assert.assertTrue(yield.hasYielded());
+        Assert.assertEquals(yieldKey, yield.getPositionAndReset());
+    }
+}
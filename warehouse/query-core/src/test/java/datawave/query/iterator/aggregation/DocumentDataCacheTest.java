@@ -0,0 +1,117 @@
+package datawave.query.iterator.aggregation;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class DocumentDataCacheTest {
+    
+    private static final String QUERY = "FOO == 'bar'";
+    
+    private static DocumentData data(Key key) {
+        return new DocumentData(key, Collections.singleton(key), Collections.emptyList());
+    }
+    
+    private static DocumentData data(Key key, int valueSize) {
+        Map.Entry<Key,Value> entry = Maps.immutableEntry(new Key(key.getRow(), key.getColumnFamily(), new Text("FOO\0bar")),
+                        new Value(new byte[valueSize]));
+        return new DocumentData(key, Collections.singleton(key), Collections.singletonList(entry));
+    }
+    
+    @After
+    public void resetMaxBytes() {
+        DocumentDataCache.setMaxBytes(DocumentDataCache.DEFAULT_MAX_BYTES);
+    }
+    
+    @Test
+    public void testKeyedByDocument() {
+        DocumentDataCache cache = new DocumentDataCache(1024 * 1024);
+        Key key = new Key("20190101_0", "datatype\0uid1");
+        DocumentData data = data(key);
+        cache.put(QUERY, key, data);
+        
+        // any key of the document finds it
+        Assert.assertSame(data, cache.get(QUERY, new Key("20190101_0", "datatype\0uid1", "FOO\0bar")));
+        Assert.assertNull(cache.get(QUERY, new Key("20190101_0", "datatype\0uid2")));
+        Assert.assertNull(cache.get(QUERY, new Key("20190101_1", "datatype\0uid1")));
+        
+        // the entries are scoped by the query
+        Assert.assertNull(cache.get("FOO == 'baz'", key));
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        Key key1 = new Key("20190101_0", "datatype\0uid1");
+        Key key2 = new Key("20190101_0", "datatype\0uid2");
+        Key key3 = new Key("20190101_0", "datatype\0uid3");
+        
+        // room for two documents of 1000 bytes, and not three
+        DocumentDataCache cache = new DocumentDataCache(2 * data(key1, 1000).sizeInBytes() + 500);
+        cache.put(QUERY, key1, data(key1, 1000));
+        cache.put(QUERY, key2, data(key2, 1000));
+        
+        // touch the first so the second is evicted
+        Assert.assertNotNull(cache.get(QUERY, key1));
+        cache.put(QUERY, key3, data(key3, 1000));
+        
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get(QUERY, key1));
+        Assert.assertNull(cache.get(QUERY, key2));
+        Assert.assertNotNull(cache.get(QUERY, key3));
+    }
+    
+    @Test
+    public void testWeighedByBytes() {
+        Key key1 = new Key("20190101_0", "datatype\0uid1");
+        Key key2 = new Key("20190101_0", "datatype\0uid2");
+        Assert.assertTrue(data(key1, 1000).sizeInBytes() > 1000);
+        Assert.assertTrue(data(key1, 1000).sizeInBytes() > data(key1).sizeInBytes());
+        
+        // a large document takes the room of many small ones
+        DocumentDataCache cache = new DocumentDataCache(10000);
+        cache.put(QUERY, key1, data(key1));
+        cache.put(QUERY, key2, data(key2, 9000));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNull(cache.get(QUERY, key1));
+        Assert.assertNotNull(cache.get(QUERY, key2));
+        
+        // a document larger than the cache is not kept
+        cache.put(QUERY, key1, data(key1, 20000));
+        Assert.assertNull(cache.get(QUERY, key1));
+    }
+    
+    @Test
+    public void testSharedByQuery() {
+        Assert.assertSame(DocumentDataCache.forQuery("query1", 1000), DocumentDataCache.forQuery("query1", 1000));
+        Assert.assertNotSame(DocumentDataCache.forQuery("query1", 1000), DocumentDataCache.forQuery("query2", 1000));
+        Assert.assertNotSame(DocumentDataCache.forQuery(null, 1000), DocumentDataCache.forQuery(null, 1000));
+    }
+    
+    @Test
+    public void testQueriesBoundedByBytes() {
+        DocumentDataCache.setMaxBytes(2500);
+        DocumentDataCache query1 = DocumentDataCache.forQuery("query1", 1000);
+        DocumentDataCache query2 = DocumentDataCache.forQuery("query2", 1000);
+        
+        // the third query leaves no room for the least recently used
+        Assert.assertSame(query1, DocumentDataCache.forQuery("query1", 1000));
+        DocumentDataCache.forQuery("query3", 1000);
+        Assert.assertSame(query1, DocumentDataCache.forQuery("query1", 1000));
+        Assert.assertNotSame(query2, DocumentDataCache.forQuery("query2", 1000));
+        
+        // shrinking the bound drops the caches that no longer fit
+        DocumentDataCache.setMaxBytes(1000);
+        Assert.assertEquals(1000, DocumentDataCache.getMaxBytes());
+        DocumentDataCache query4 = DocumentDataCache.forQuery("query4", 1000);
+        Assert.assertSame(query4, DocumentDataCache.forQuery("query4", 1000));
+        Assert.assertNotSame(query1, DocumentDataCache.forQuery("query1", 1000));
+    }
+}
@@ -0,0 +1,230 @@
+package datawave.query.iterator.logic;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.CandidateFilterable;
+import datawave.query.iterator.DocumentIterator;
+import datawave.query.iterator.NestedIterator;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AndIteratorCandidateTest {
+    
+    private static Key key(String uid) {
+        return new Key("20190314_0", "datatype\0" + uid);
+    }
+    
+    private static Key fiKey(String uid) {
+        return new Key("20190314_0", "datatype\0" + uid, "FIELD\0value");
+    }
+    
+    private static List<String> uids(Iterator<Key> keys) {
+        List<String> uids = new ArrayList<>();
+        while (keys.hasNext()) {
+            String cf = keys.next().getColumnFamily().toString();
+            uids.add(cf.substring(cf.indexOf('\0') + 1));
+        }
+        return uids;
+    }
+    
+    private static AndIterator<Key> and(FilterableIterator ivarator, List<Key> sibling, int maxCandidates) {
+        IndexIteratorBridge bridge = new IndexIteratorBridge(ivarator);
+        List<NestedIterator<Key>> includes = Lists.newArrayList(bridge, new ListIterator(sibling));
+        AndIterator<Key> and = new AndIterator<>(includes);
+        and.setMaxCandidates(maxCandidates);
+        assertTrue(bridge.isDeferSeek());
+        bridge.seek(new Range(), Collections.emptyList(), false);
+        return and;
+    }
+    
+    @Test
+    public void testCandidatesFilterIvarator() {
+        FilterableIterator ivarator = new FilterableIterator(fiKey("a"), fiKey("b"), fiKey("c"), fiKey("d"));
+        AndIterator<Key> and = and(ivarator, Lists.newArrayList(key("a"), key("c"), key("e")), 10);
+        assertEquals(0, ivarator.seeks);
+        
+        and.initialize();
+        assertEquals(Lists.newArrayList("a", "c"), uids(and));
+        assertEquals(1, ivarator.seeks);
+        assertEquals(2, ivarator.filled);
+    }
+    
+    @Test
+    public void testTooManyCandidates() {
+        FilterableIterator ivarator = new FilterableIterator(fiKey("a"), fiKey("b"), fiKey("c"), fiKey("d"));
+        AndIterator<Key> and = and(ivarator, Lists.newArrayList(key("a"), key("b"), key("d")), 1);
+        
+        and.initialize();
+        assertEquals(Lists.newArrayList("a", "b", "d"), uids(and));
+        assertEquals(4, ivarator.filled);
+    }
+    
+    @Test
+    public void testEmptySibling() {
+        FilterableIterator ivarator = new FilterableIterator(fiKey("a"), fiKey("b"));
+        AndIterator<Key> and = and(ivarator, new ArrayList<>(), 10);
+        
+        and.initialize();
+        assertFalse(and.hasNext());
+        assertEquals(0, ivarator.seeks);
+    }
+    
+    @Test
+    public void testCandidateFilter() {
+        CandidateFilter filter = new CandidateFilter(Lists.newArrayList(key("a.b.c"), key("d")));
+        assertEquals(2, filter.size());
+        assertTrue(filter.apply(fiKey("a.b.c")));
+        assertTrue(filter.apply(fiKey("a.b.c.1.2")));
+        assertFalse(filter.apply(fiKey("a.b")));
+        assertTrue(filter.apply(fiKey("d.1")));
+        assertFalse(filter.apply(fiKey("dd")));
+        assertFalse(filter.apply(new Key("20190314_1", "datatype\0d")));
+        
+        // the same uid in another row is another candidate
+        filter = new CandidateFilter(Lists.newArrayList(key("d"), new Key("20190314_1", "datatype\0d"), key("d")));
+        assertEquals(2, filter.size());
+        assertTrue(filter.apply(new Key("20190314_1", "datatype\0d.1")));
+        assertFalse(filter.apply(new Key("20190314_1", "datatype\0e")));
+    }
+    
+    // a sibling source over a sorted list of keys
+    private static class ListIterator implements NestedIterator<Key> {
+        private final Iterator<Key> keys;
+        private Key next;
+        
+        public ListIterator(List<Key> keys) {
+            this.keys = keys.iterator();
+        }
+        
+        @Override
+        public void initialize() {
+            next = keys.hasNext() ? keys.next() : null;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Key next() {
+            Key key = next;
+            next = keys.hasNext() ? keys.next() : null;
+            return key;
+        }
+        
+        @Override
+        public Key move(Key minimum) {
+            while (next != null && next.compareTo(minimum) < 0) {
+                next();
+            }
+            return (next == null ? null : next());
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> leaves() {
+            return Collections.singleton(this);
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> children() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Document document() {
+            return new Document();
+        }
+    }
+    
+    // an ivarator stand in that applies the candidate filter when it is seeked
+    private static class FilterableIterator implements DocumentIterator, CandidateFilterable {
+        private final List<Key> keys;
+        private Predicate<Key> candidateFilter;
+        private Iterator<Key> current;
+        private Key top;
+        private int seeks = 0;
+        private int filled = 0;
+        
+        public FilterableIterator(Key... keys) {
+            this.keys = Lists.newArrayList(keys);
+        }
+        
+        @Override
+        public boolean setCandidateFilter(Predicate<Key> candidateFilter) {
+            this.candidateFilter = candidateFilter;
+            return true;
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+            seeks++;
+            List<Key> matches = new ArrayList<>();
+            for (Key key : keys) {
+                if (range.contains(key) && (candidateFilter == null || candidateFilter.apply(key))) {
+                    matches.add(key);
+                }
+            }
+            filled += matches.size();
+            current = matches.iterator();
+            next();
+        }
+        
+        @Override
+        public void next() {
+            top = current.hasNext() ? current.next() : null;
+        }
+        
+        @Override
+        public boolean hasTop() {
+            return top != null;
+        }
+        
+        @Override
+        public Key getTopKey() {
+            return top;
+        }
+        
+        @Override
+        public Value getTopValue() {
+            return new Value(new byte[0]);
+        }
+        
+        @Override
+        public void move(Key pointer) {
+            while (top != null && top.compareTo(pointer) < 0) {
+                next();
+            }
+        }
+        
+        @Override
+        public Document document() {
+            return new Document();
+        }
+        
+        @Override
+        public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) {}
+        
+        @Override
+        public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package datawave.query.iterator.pipeline;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedQuery;
+import datawave.query.iterator.logic.ArrayIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.hadoop.io.Text;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompletionPipelineIteratorTest {
+    
+    private static final String ROW = "20190314_0";
+    private static final Key SEEK_START = new Key(ROW);
+    
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // evaluations of a document block until its gate is opened
+    private final Map<String,CountDownLatch> gates = new ConcurrentHashMap<>();
+    // documents whose evaluation fails once their gate is opened
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    // documents whose evaluation has no result once their gate is opened
+    private final Set<String> empty = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger evaluated = new AtomicInteger();
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+    
+    private static Key doc(int uid) {
+        return new Key(ROW, "dataType1\0uid" + uid);
+    }
+    
+    private static Key[] docs(int count) {
+        Key[] docs = new Key[count];
+        for (int i = 0; i < count; i++) {
+            docs[i] = doc(i);
+        }
+        return docs;
+    }
+    
+    private CountDownLatch gate(Key doc) {
+        return gates.computeIfAbsent(doc.getColumnFamily().toString(), cf -> new CountDownLatch(1));
+    }
+    
+    private void open(Key... docs) {
+        for (Key doc : docs) {
+            gate(doc).countDown();
+        }
+    }
+    
+    /**
+     * Evaluates each document on a test executor once its gate is opened, in place of the query pipelines
+     */
+    private class GatedPipelineIterator extends CompletionPipelineIterator {
+        
+        GatedPipelineIterator(boolean sortedResults, int maxPipelines, YieldCallback<Key> yield, long yieldThresholdMs, Key... docs) {
+            super(new ArrayIterator<>(docs), maxPipelines, maxPipelines, null, null, null, null, null, yield, yieldThresholdMs, sortedResults);
+        }
+        
+        @Override
+        protected void preallocate() {}
+        
+        @Override
+        protected Pipeline checkOut(Key key, Document document, NestedQuery<Key> nestedQuery) {
+            Pipeline pipeline = new Pipeline(null, null);
+            pipeline.setSource(Maps.immutableEntry(key, document));
+            pipeline.setSourceIterator(new Iterator<Entry<Key,Document>>() {
+                private boolean done = false;
+                
+                @Override
+                public boolean hasNext() {
+                    try {
+                        gate(key).await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                    if (failing.contains(cf(key))) {
+                        throw new IllegalStateException("Failed to evaluate " + key);
+                    }
+                    return !done && !empty.contains(cf(key));
+                }
+                
+                @Override
+                public Entry<Key,Document> next() {
+                    done = true;
+                    evaluated.incrementAndGet();
+                    return Maps.immutableEntry(key, document);
+                }
+            });
+            return pipeline;
+        }
+        
+        @Override
+        protected void checkIn(Pipeline pipeline) {
+            pipeline.clear();
+        }
+        
+        @Override
+        protected Future<?> execute(EvaluationSlot slot) {
+            return executor.submit(slot);
+        }
+    }
+    
+    private GatedPipelineIterator unordered(int maxPipelines, YieldCallback<Key> yield, Key start, Set<String> completed, Key... docs) {
+        // the resumed scan only sees the documents beyond its start key
+        List<Key> remaining = new ArrayList<>();
+        for (Key doc : docs) {
+            if (doc.compareTo(start) > 0) {
+                remaining.add(doc);
+            }
+        }
+        GatedPipelineIterator iterator = new GatedPipelineIterator(false, maxPipelines, yield, 200, remaining.toArray(new Key[0]));
+        iterator.setResumePosition(start, completed);
+        iterator.startPipeline();
+        return iterator;
+    }
+    
+    private static List<String> drain(Iterator<Entry<Key,Document>> iterator) {
+        List<String> documents = new ArrayList<>();
+        while (iterator.hasNext()) {
+            documents.add(iterator.next().getKey().getColumnFamily().toString());
+        }
+        return documents;
+    }
+    
+    private static String cf(Key key) {
+        return key.getColumnFamily().toString();
+    }
+    
+    @Test
+    public void testOrderedOutputUnderOutOfOrderCompletion() throws Exception {
+        Key[] docs = docs(4);
+        GatedPipelineIterator iterator = new GatedPipelineIterator(true, 4, null, 200, docs);
+        iterator.startPipeline();
+        
+        // every document but the first completes, in reverse order
+        for (int i = docs.length - 1; i > 0; i--) {
+            open(docs[i]);
+            while (evaluated.get() < docs.length - i) {
+                Thread.sleep(1);
+            }
+        }
+        open(docs[0]);
+        
+        List<Key> returned = new ArrayList<>();
+        while (iterator.hasNext()) {
+            returned.add(iterator.next().getKey());
+        }
+        assertEquals(Arrays.asList(docs), returned);
+    }
+    
+    @Test
+    public void testFailedEvaluationCancelsTheOthers() throws Exception {
+        Key[] docs = docs(3);
+        GatedPipelineIterator iterator = new GatedPipelineIterator(true, 3, null, 200, docs);
+        iterator.startPipeline();
+        
+        // the second evaluation fails while the third is still blocked
+        failing.add(cf(docs[1]));
+        open(docs[0], docs[1]);
+        try {
+            drain(iterator);
+            fail("Expected the failed evaluation to be rethrown");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ExecutionException);
+        }
+        
+        // the outstanding evaluation is cancelled rather than left running
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testYieldKeyWithoutCompletedDocuments() {
+        Key lastKeyEvaluated = new Key(ROW, "dataType1\0uid1");
+        Key yieldKey = CompletionPipelineIterator.getYieldKey(lastKeyEvaluated, Collections.emptySet());
+        assertSame(lastKeyEvaluated, yieldKey);
+        assertTrue(CompletionPipelineIterator.getCompletedDocuments(yieldKey).isEmpty());
+        assertSame(yieldKey, CompletionPipelineIterator.getLastKeyEvaluated(yieldKey));
+    }
+    
+    @Test
+    public void testYieldKeyRoundTrip() {
+        Key lastKeyEvaluated = new Key(ROW, "dataType1\0uid1", "FIELD\0value", "A&B", 11);
+        Key yieldKey = CompletionPipelineIterator.getYieldKey(lastKeyEvaluated,
+                        Arrays.asList(new Key(ROW, "dataType1\0uid3"), new Key(ROW, "dataType2\0uid4", "FIELD\0value")));
+        
+        Set<String> expected = new HashSet<>(Arrays.asList("dataType1\0uid3", "dataType2\0uid4"));
+        assertEquals(expected, CompletionPipelineIterator.getCompletedDocuments(yieldKey));
+        
+        // the completed documents are only appended to the cq, so the yield key still sorts after the last evaluated key
+        assertTrue(yieldKey.compareTo(lastKeyEvaluated) > 0);
+        assertEquals(lastKeyEvaluated, CompletionPipelineIterator.getLastKeyEvaluated(yieldKey));
+    }
+    
+    @Test
+    public void testResumeKeyRoundTrip() {
+        Key yieldKey = CompletionPipelineIterator.getYieldKey(new Key(ROW, "dataType1\0uid1", "", "A&B", 11), Collections.singleton(doc(3)));
+        Key returnedKey = CompletionPipelineIterator.getResumeKey(doc(3), yieldKey);
+        
+        // the returned key still identifies the returned document
+        assertEquals(doc(3).getRow(), returnedKey.getRow());
+        assertEquals(doc(3).getColumnFamily(), returnedKey.getColumnFamily());
+        assertEquals(yieldKey, CompletionPipelineIterator.getResumeKey(returnedKey));
+        
+        // as does a final document key built from it
+        Key finalKey = new Key(returnedKey.getRow(), returnedKey.getColumnFamily(), new Text(returnedKey.getColumnQualifier() + "\u2735FinalDocument\u2735"));
+        assertEquals(yieldKey, CompletionPipelineIterator.getResumeKey(finalKey));
+        
+        assertEquals(null, CompletionPipelineIterator.getResumeKey(doc(3)));
+    }
+    
+    @Test
+    public void testUnorderedEmission() {
+        Key[] docs = docs(4);
+        GatedPipelineIterator iterator = unordered(4, null, SEEK_START, Collections.emptySet(), docs);
+        
+        // the third document is returned while the others are still being evaluated
+        open(docs[2]);
+        Entry<Key,Document> first = iterator.next();
+        assertEquals(cf(docs[2]), cf(first.getKey()));
+        
+        // nothing before it has finished, so it resumes from the seek start skipping the returned document
+        Key resumeKey = CompletionPipelineIterator.getResumeKey(first.getKey());
+        assertNotNull(resumeKey);
+        assertEquals(SEEK_START, CompletionPipelineIterator.getLastKeyEvaluated(resumeKey));
+        assertEquals(Collections.singleton(cf(docs[2])), CompletionPipelineIterator.getCompletedDocuments(resumeKey));
+        
+        open(docs);
+        List<String> rest = drain(iterator);
+        assertEquals(new HashSet<>(Arrays.asList(cf(docs[0]), cf(docs[1]), cf(docs[3]))), new HashSet<>(rest));
+        assertEquals(3, rest.size());
+    }
+    
+    @Test
+    public void testResumeFromReturnedKeys() {
+        Key[] docs = docs(6);
+        List<String> returned = new ArrayList<>();
+        
+        // the scan is torn down just after returning the second document
+        open(docs[1]);
+        Key returnedKey = unordered(3, null, SEEK_START, Collections.emptySet(), docs).next().getKey();
+        returned.add(cf(returnedKey));
+        
+        // and again just after returning the fourth document, while the first is still being evaluated
+        Key resumeKey = CompletionPipelineIterator.getResumeKey(returnedKey);
+        open(docs[3]);
+        returnedKey = unordered(3, null, CompletionPipelineIterator.getLastKeyEvaluated(resumeKey), CompletionPipelineIterator.getCompletedDocuments(resumeKey),
+                        docs).next().getKey();
+        returned.add(cf(returnedKey));
+        
+        // the documents returned before either teardown are skipped
+        resumeKey = CompletionPipelineIterator.getResumeKey(returnedKey);
+        assertEquals(new HashSet<>(Arrays.asList(cf(docs[1]), cf(docs[3]))), CompletionPipelineIterator.getCompletedDocuments(resumeKey));
+        open(docs);
+        returned.addAll(drain(unordered(3, null, CompletionPipelineIterator.getLastKeyEvaluated(resumeKey),
+                        CompletionPipelineIterator.getCompletedDocuments(resumeKey), docs)));
+        
+        // no document is lost or returned twice
+        assertEquals(docs.length, returned.size());
+        assertEquals(docs.length, new HashSet<>(returned).size());
+    }
+    
+    @Test
+    public void testYieldAndResume() {
+        Key[] docs = docs(4);
+        YieldCallback<Key> yield = new YieldCallback<>();
+        GatedPipelineIterator iterator = unordered(4, yield, SEEK_START, Collections.emptySet(), docs);
+        
+        open(docs[0], docs[2]);
+        List<String> returned = new ArrayList<>();
+        returned.add(cf(iterator.next().getKey()));
+        returned.add(cf(iterator.next().getKey()));
+        
+        // the remaining evaluations do not complete within the yield threshold
+        assertFalse(iterator.hasNext());
+        assertTrue(yield.hasYielded());
+        Key yieldKey = yield.getPositionAndReset();
+        assertEquals(docs[0], CompletionPipelineIterator.getLastKeyEvaluated(yieldKey));
+        assertEquals(Collections.singleton(cf(docs[2])), CompletionPipelineIterator.getCompletedDocuments(yieldKey));
+        
+        open(docs);
+        returned.addAll(drain(unordered(4, null, CompletionPipelineIterator.getLastKeyEvaluated(yieldKey),
+                        CompletionPipelineIterator.getCompletedDocuments(yieldKey), docs)));
+        
+        assertEquals(docs.length, returned.size());
+        assertEquals(docs.length, new HashSet<>(returned).size());
+    }
+    
+    @Test
+    public void testOnlyReturnedDocumentsRecorded() {
+        Key[] docs = docs(4);
+        GatedPipelineIterator iterator = unordered(4, null, SEEK_START, Collections.emptySet(), docs);
+        
+        // the second document finishes without a result, so it is evaluated again on resume rather than recorded
+        empty.add(cf(docs[1]));
+        open(docs[1], docs[2]);
+        Entry<Key,Document> first = iterator.next();
+        assertEquals(cf(docs[2]), cf(first.getKey()));
+        Key resumeKey = CompletionPipelineIterator.getResumeKey(first.getKey());
+        assertEquals(SEEK_START, CompletionPipelineIterator.getLastKeyEvaluated(resumeKey));
+        assertEquals(Collections.singleton(cf(docs[2])), CompletionPipelineIterator.getCompletedDocuments(resumeKey));
+        
+        open(docs);
+        assertEquals(new HashSet<>(Arrays.asList(cf(docs[0]), cf(docs[3]))), new HashSet<>(drain(iterator)));
+    }
+    
+    @Test
+    public void testReturnedBeyondYieldPositionBounded() throws Exception {
+        Key[] docs = docs(9);
+        GatedPipelineIterator iterator = unordered(2, null, SEEK_START, Collections.emptySet(), docs);
+        
+        // with the first document stuck, only the buffer capacity plus the pipelines may be returned or evaluating beyond it
+        open(Arrays.copyOfRange(docs, 1, docs.length));
+        List<Key> returned = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            returned.add(iterator.next().getKey());
+        }
+        Thread.sleep(100);
+        assertEquals(3, evaluated.get());
+        assertEquals(3, CompletionPipelineIterator.getCompletedDocuments(CompletionPipelineIterator.getResumeKey(returned.get(2))).size());
+        
+        open(docs[0]);
+        List<String> all = new ArrayList<>();
+        for (Key key : returned) {
+            all.add(cf(key));
+        }
+        all.addAll(drain(iterator));
+        assertEquals(docs.length, all.size());
+        assertEquals(docs.length, new HashSet<>(all).size());
+    }
+}
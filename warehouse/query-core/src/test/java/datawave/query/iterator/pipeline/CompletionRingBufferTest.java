@@ -0,0 +1,85 @@
+package datawave.query.iterator.pipeline;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionRingBufferTest {
+    
+    @Test
+    public void testCapacityIsRoundedUp() {
+        assertEquals(1, new CompletionRingBuffer<Integer>(1).capacity());
+        assertEquals(32, new CompletionRingBuffer<Integer>(25).capacity());
+        assertEquals(32, new CompletionRingBuffer<Integer>(32).capacity());
+    }
+    
+    @Test
+    public void testOfferAndPollInOrder() {
+        CompletionRingBuffer<Integer> buffer = new CompletionRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        // full
+        assertFalse(buffer.offer(4));
+        
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+        
+        // wrap around
+        assertTrue(buffer.offer(5));
+        assertEquals(Integer.valueOf(5), buffer.poll());
+    }
+    
+    @Test
+    public void testPollTimesOut() throws InterruptedException {
+        CompletionRingBuffer<Integer> buffer = new CompletionRingBuffer<>(2);
+        assertNull(buffer.poll(10, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final int producers = 8;
+        final int itemsPerProducer = 10000;
+        final CompletionRingBuffer<Integer> buffer = new CompletionRingBuffer<>(16);
+        final CountDownLatch start = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    Integer item = producer * itemsPerProducer + i;
+                    while (!buffer.offer(item)) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        
+        Set<Integer> consumed = new HashSet<>();
+        for (int i = 0; i < producers * itemsPerProducer; i++) {
+            Integer item = buffer.poll(10, TimeUnit.SECONDS);
+            assertTrue("timed out waiting for item " + i, item != null);
+            assertTrue("duplicate item " + item, consumed.add(item));
+        }
+        assertNull(buffer.poll());
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,199 @@
+package datawave.query.jexl;
+
+import com.google.common.collect.Lists;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.TypeAttribute;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.util.Tuple3;
+import org.apache.accumulo.core.data.Key;
+import org.apache.commons.jexl2.Script;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class CompiledJexlPredicateTest {
+    
+    private static final List<String> QUERIES = Lists.newArrayList("FOO == 'bar'", "FOO == 'bar' && BAR == 'baz'", "FOO == 'bar' || BAR =~ 'ba.*'",
+                    "!(FOO == 'bar') && BAR != 'qux'", "FOO !~ 'b.*' || (BAR == 'baz' && (FOO == 'bar' || FOO == 'foo'))",
+                    "FOO == 'bar' && (NUM >= 5 && NUM <= 10)", "(FOO == 'bar' || BAR == 'baz') && MISSING == null");
+    
+    // queries against multi-valued fields, whose values are sets of value tuples
+    private static final List<String> MULTI_VALUED_QUERIES = Lists.newArrayList("FOO == 'bar'", "FOO == 'bar' && BAR == 'baz'",
+                    "FOO == 'bar' || FOO == 'foo'", "FOO =~ 'ba.*' && !(BAR == 'qux')", "(FOO == 'bar' || BAR == 'baz') && (FOO == 'foo' || BAR == 'qux')",
+                    "FOO != 'bar' || BAR =~ 'q.*'", "filter:includeRegex(FOO, 'f.*') && BAR == 'baz'");
+    
+    private static final String[][] FOOS = new String[][] { {}, {"bar"}, {"bar", "foo"}, {"foo", "baz"}};
+    private static final String[][] BARS = new String[][] { {}, {"baz"}, {"baz", "qux"}};
+    
+    private static final Key DOC_KEY = new Key("20190314_0", "datatype\0uid", "", "A");
+    
+    private static Document document(String[] foos, String[] bars) {
+        Document document = new Document(DOC_KEY, true);
+        for (String foo : foos) {
+            document.put("FOO", new TypeAttribute<>(new LcNoDiacriticsType(foo), DOC_KEY, true));
+        }
+        for (String bar : bars) {
+            document.put("BAR", new TypeAttribute<>(new LcNoDiacriticsType(bar), DOC_KEY, true));
+        }
+        return document;
+    }
+    
+    private static DatawaveJexlContext context(Document document) {
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        document.visit(Arrays.asList("FOO", "BAR"), context);
+        return context;
+    }
+    
+    /**
+     * A set of matched value tuples is compared by its contents, anything else by its truth
+     */
+    private static Object normalize(Object result) {
+        if (result instanceof Collection) {
+            return new HashSet<>((Collection<?>) result);
+        }
+        return DatawaveInterpreter.isMatched(result);
+    }
+    
+    private static Set<Object> hitTerms(Document document) {
+        Set<Object> terms = new HashSet<>();
+        Attribute<?> hits = document.get("HIT_TERM");
+        if (hits instanceof Attributes) {
+            for (Attribute<?> hit : ((Attributes) hits).getAttributes()) {
+                terms.add(((Content) hit).getData());
+            }
+        } else if (hits != null) {
+            terms.add(((Content) hits).getData());
+        }
+        return terms;
+    }
+    
+    private static List<DatawaveJexlContext> contexts() {
+        List<DatawaveJexlContext> contexts = new ArrayList<>();
+        for (String foo : new String[] {null, "bar", "foo"}) {
+            for (String bar : new String[] {null, "baz", "qux"}) {
+                for (String num : new String[] {null, "7", "12"}) {
+                    DatawaveJexlContext context = new DatawaveJexlContext();
+                    if (foo != null) {
+                        context.set("FOO", foo);
+                    }
+                    if (bar != null) {
+                        context.set("BAR", bar);
+                    }
+                    if (num != null) {
+                        context.set("NUM", num);
+                    }
+                    contexts.add(context);
+                }
+            }
+        }
+        return contexts;
+    }
+    
+    private static CompiledJexlPredicate compile(String query) {
+        DatawaveJexlEngine engine = ArithmeticJexlEngines.getEngine(new DefaultArithmetic());
+        return new CompiledJexlPredicate(engine.parse(query), engine, new DefaultArithmetic());
+    }
+    
+    @Test
+    public void testMatchesInterpreter() {
+        DatawaveJexlEngine engine = ArithmeticJexlEngines.getEngine(new DefaultArithmetic());
+        for (String query : QUERIES) {
+            Script script = engine.createScript(query);
+            CompiledJexlPredicate compiled = compile(query);
+            for (DatawaveJexlContext context : contexts()) {
+                Assert.assertEquals(query + " against " + context, DatawaveInterpreter.isMatched(script.execute(context)),
+                                DatawaveInterpreter.isMatched(compiled.execute(context)));
+            }
+        }
+    }
+    
+    @Test
+    public void testFunctionalSetResults() {
+        DatawaveJexlEngine engine = ArithmeticJexlEngines.getEngine(new DefaultArithmetic());
+        for (String query : MULTI_VALUED_QUERIES) {
+            Script script = engine.createScript(query);
+            CompiledJexlPredicate compiled = compile(query);
+            for (String[] foos : FOOS) {
+                for (String[] bars : BARS) {
+                    Document document = document(foos, bars);
+                    // each evaluation gets its own context, so that neither can see the sets built by the other
+                    Assert.assertEquals(query + " against " + document, normalize(script.execute(context(document))),
+                                    normalize(compiled.execute(context(document))));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testHitTermsMatchInterpreter() {
+        for (String query : MULTI_VALUED_QUERIES) {
+            JexlEvaluation interpreted = new JexlEvaluation(query, new HitListArithmetic());
+            JexlEvaluation compiled = new JexlEvaluation(query, new HitListArithmetic(), true);
+            Assert.assertTrue(compiled.isCompiled());
+            for (String[] foos : FOOS) {
+                for (String[] bars : BARS) {
+                    Document interpretedDocument = document(foos, bars);
+                    Document compiledDocument = document(foos, bars);
+                    boolean interpretedMatch = interpreted.apply(new Tuple3<>(DOC_KEY, interpretedDocument, context(interpretedDocument)));
+                    boolean compiledMatch = compiled.apply(new Tuple3<>(DOC_KEY, compiledDocument, context(compiledDocument)));
+                    
+                    String message = query + " against " + interpretedDocument;
+                    Assert.assertEquals(message, interpretedMatch, compiledMatch);
+                    Assert.assertEquals(message, hitTerms(interpretedDocument), hitTerms(compiledDocument));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testHitTerms() {
+        // the hits are recorded by the compiled comparisons against the sets of values
+        JexlEvaluation compiled = new JexlEvaluation("FOO == 'bar' && BAR == 'qux'", new HitListArithmetic(), true);
+        Document document = document(new String[] {"bar", "foo"}, new String[] {"baz", "qux"});
+        Assert.assertTrue(compiled.apply(new Tuple3<>(DOC_KEY, document, context(document))));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("FOO:bar", "BAR:qux")), hitTerms(document));
+    }
+    
+    @Test
+    public void testInterpretedNodes() {
+        CompiledJexlPredicate compiled = compile("FOO == 'bar' || BAR =~ 'ba.*'");
+        Assert.assertEquals(0, compiled.getInterpretedNodes());
+        
+        // the range is left to the interpreter
+        compiled = compile("FOO == 'bar' && (NUM >= 5 && NUM <= 10)");
+        Assert.assertEquals(1, compiled.getInterpretedNodes());
+    }
+    
+    @Test
+    public void testJexlEvaluation() {
+        JexlEvaluation interpreted = new JexlEvaluation("FOO == 'bar' && BAR == 'baz'", new DefaultArithmetic());
+        Assert.assertFalse(interpreted.isCompiled());
+        JexlEvaluation compiled = new JexlEvaluation("FOO == 'bar' && BAR == 'baz'", new DefaultArithmetic(), true);
+        Assert.assertTrue(compiled.isCompiled());
+    }
+    
+    @Test
+    public void testLargeOr() {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            terms.add("FOO == 'value" + i + "'");
+        }
+        CompiledJexlPredicate compiled = compile(String.join(" || ", terms));
+        
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        context.set("FOO", "value99999");
+        Assert.assertTrue(DatawaveInterpreter.isMatched(compiled.execute(context)));
+        context.set("FOO", "other");
+        Assert.assertFalse(DatawaveInterpreter.isMatched(compiled.execute(context)));
+    }
+}
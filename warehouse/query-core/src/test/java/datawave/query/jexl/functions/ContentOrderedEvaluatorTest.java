@@ -0,0 +1,271 @@
+package datawave.query.jexl.functions;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the phrases matched over the sorted offset arrays with those found by an exhaustive search, for each shape of phrase and for positions with skips,
+ * zero offset restrictions, and repeated terms.
+ */
+@RunWith(Parameterized.class)
+public class ContentOrderedEvaluatorTest {
+    
+    private static final int DOCUMENTS = 2000;
+    
+    private final int termCount;
+    private final int distance;
+    private final float maxScore;
+    private final int maxOffset;
+    
+    /**
+     * @param termCount
+     *            the number of terms in the phrase
+     * @param distance
+     *            the distance allowed between terms
+     * @param maxScore
+     *            the score filter, negative infinity for none
+     * @param maxOffset
+     *            the offsets of the documents are below this, so that fewer offsets are more likely to match
+     */
+    public ContentOrderedEvaluatorTest(int termCount, int distance, float maxScore, int maxOffset) {
+        this.termCount = termCount;
+        this.distance = distance;
+        this.maxScore = maxScore;
+        this.maxOffset = maxOffset;
+    }
+    
+    @Parameters(name = "terms={0}, distance={1}, maxScore={2}, maxOffset={3}")
+    public static Collection<Object[]> shapes() {
+        List<Object[]> shapes = new ArrayList<>();
+        for (int termCount : new int[] {2, 3, 5}) {
+            for (int distance : new int[] {0, 1, 3}) {
+                for (float maxScore : new float[] {Float.NEGATIVE_INFINITY, -1.5f}) {
+                    for (int maxOffset : new int[] {10, 40}) {
+                        shapes.add(new Object[] {termCount, distance, maxScore, maxOffset});
+                    }
+                }
+            }
+        }
+        return shapes;
+    }
+    
+    private static String[] terms(int termCount) {
+        String[] terms = new String[termCount];
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = "term" + i;
+        }
+        return terms;
+    }
+    
+    /**
+     * @return terms where some repeat an earlier term
+     */
+    private static String[] terms(int termCount, Random random) {
+        String[] terms = terms(termCount);
+        for (int i = 1; i < termCount; i++) {
+            if (random.nextInt(3) == 0) {
+                terms[i] = terms[random.nextInt(i)];
+            }
+        }
+        return terms;
+    }
+    
+    private static TermWeightPosition position(int offset, int prevSkips, boolean zeroOffsetMatch, int score) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).setZeroOffsetMatch(zeroOffsetMatch).setScore(score).build();
+    }
+    
+    private static TermOffsets offsets(int... offsets) {
+        List<TermWeightPosition> positions = new ArrayList<>();
+        for (int offset : offsets) {
+            positions.add(position(offset, 0, true, 0));
+        }
+        return TermOffsets.of(positions);
+    }
+    
+    private static TermOffsets offsets(boolean zeroOffsetMatch, int... offsets) {
+        List<TermWeightPosition> positions = new ArrayList<>();
+        for (int offset : offsets) {
+            positions.add(position(offset, 0, zeroOffsetMatch, 0));
+        }
+        return TermOffsets.of(positions);
+    }
+    
+    private static TermOffsets skipped(int offset, int prevSkips) {
+        return TermOffsets.of(Arrays.asList(position(offset, prevSkips, true, 0)));
+    }
+    
+    private static boolean evaluate(int distance, String[] terms, TermOffsets... document) {
+        return new ContentOrderedEvaluator(null, distance, Float.NEGATIVE_INFINITY, new HashMap<>(), terms).evaluate(Arrays.asList(document));
+    }
+    
+    /**
+     * @param random
+     * @param terms
+     *            the terms of the phrase, a repeated term gets the same positions each time
+     * @param plain
+     *            true for positions without skips or zero offset restrictions
+     * @return the positions of each term of the phrase
+     */
+    private List<TermOffsets> document(Random random, String[] terms, boolean plain) {
+        Map<String,List<TermWeightPosition>> positions = new HashMap<>();
+        for (String term : terms) {
+            if (!positions.containsKey(term)) {
+                List<TermWeightPosition> termPositions = new ArrayList<>();
+                int count = 1 + random.nextInt(8);
+                for (int j = 0; j < count; j++) {
+                    int prevSkips = (plain || random.nextInt(3) != 0) ? 0 : 1 + random.nextInt(3);
+                    boolean zeroOffsetMatch = plain || random.nextInt(4) != 0;
+                    // scores range around the filter of -1.5
+                    termPositions.add(position(random.nextInt(maxOffset), prevSkips, zeroOffsetMatch, random.nextInt(30000000)));
+                }
+                positions.put(term, termPositions);
+            }
+        }
+        
+        // plant the phrase in some of the documents, so that every shape has matches
+        if (random.nextInt(4) == 0) {
+            int offset = random.nextInt(maxOffset);
+            for (String term : terms) {
+                positions.get(term).add(position(offset, 0, true, 0));
+                offset += random.nextInt(distance + 1);
+            }
+        }
+        
+        Map<String,TermOffsets> termOffsets = new HashMap<>();
+        List<TermOffsets> document = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            document.add(termOffsets.computeIfAbsent(term, t -> TermOffsets.of(positions.get(t))));
+        }
+        return document;
+    }
+    
+    /**
+     * Search every combination of positions for the phrase
+     * 
+     * @param document
+     *            the offsets of each term
+     * @param terms
+     *            the terms of the phrase
+     * @param term
+     *            the index of the term to place
+     * @param previous
+     *            the index of the position of the previous term
+     * @param distance
+     * @param maxScore
+     *            positions scoring above this are skipped
+     * @return true if the remaining terms can be placed
+     */
+    private static boolean search(List<TermOffsets> document, String[] terms, int term, int previous, int distance, int maxScore) {
+        if (term == document.size()) {
+            return true;
+        }
+        TermOffsets offsets = document.get(term);
+        for (int i = 0; i < offsets.size(); i++) {
+            if (offsets.getScore(i) > maxScore) {
+                continue;
+            }
+            if (term > 0) {
+                TermOffsets before = document.get(term - 1);
+                int offset = offsets.getOffset(i);
+                // within the distance with respect to the skips of both positions
+                if (before.getLowOffset(previous) > offset || offsets.getLowOffset(i) > before.getOffset(previous) + distance) {
+                    continue;
+                }
+                // not at the same offset if either may not match there
+                if (before.getOffset(previous) == offset && (!before.getZeroOffsetMatch(previous) || !offsets.getZeroOffsetMatch(i))) {
+                    continue;
+                }
+                // not the same position of a repeated term
+                if (terms[term].equals(terms[term - 1]) && before.compare(previous, offsets, i) == 0) {
+                    continue;
+                }
+            }
+            if (search(document, terms, term + 1, i, distance, maxScore)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Test
+    public void testChainedMatchesSearch() {
+        assertMatchesSearch(true);
+    }
+    
+    @Test
+    public void testChainedMatchesSearchWithSkipsAndRepeatedTerms() {
+        assertMatchesSearch(false);
+    }
+    
+    private void assertMatchesSearch(boolean plain) {
+        int score = TermWeightPosition.positionScoreToTermWeightScore(maxScore);
+        
+        // a fixed seed per shape, so that a failure can be reproduced
+        Random random = new Random(31 * (31 * (31 * (31 * termCount + distance) + maxOffset) + score) + (plain ? 1 : 0));
+        int matches = 0;
+        for (int i = 0; i < DOCUMENTS; i++) {
+            String[] terms = plain ? terms(termCount) : terms(termCount, random);
+            List<TermOffsets> document = document(random, terms, plain);
+            
+            ContentOrderedEvaluator evaluator = new ContentOrderedEvaluator(null, distance, maxScore, new HashMap<>(), terms);
+            boolean matched = evaluator.evaluate(document);
+            Assert.assertEquals("Mismatch for " + Arrays.toString(terms) + ' ' + document, search(document, terms, 0, 0, distance, score), matched);
+            if (matched) {
+                matches++;
+            }
+        }
+        
+        // both outcomes are compared for every shape
+        Assert.assertTrue("No document matched", matches > 0);
+        Assert.assertTrue("Every document matched", matches < DOCUMENTS);
+    }
+    
+    @Test
+    public void testSynonymBeforeLaterPosition() {
+        // term1 at 1 and its synonym term2 at 1 follow term0, even though term1 is also at 2
+        Assert.assertTrue(evaluate(2, terms(3), offsets(0), offsets(1, 2), offsets(1)));
+    }
+    
+    @Test
+    public void testOutOfOrder() {
+        // no term1 is within 3 after a term0 with a term2 within 3 after it
+        Assert.assertFalse(evaluate(3, terms(3), offsets(2, 5, 13), offsets(1, 8, 11), offsets(7, 14)));
+    }
+    
+    @Test
+    public void testSkipsReachBack() {
+        // term1 at 4 may be as early as 2, so it follows term0 at 1
+        Assert.assertTrue(evaluate(1, terms(3), offsets(1), skipped(4, 2), offsets(5)));
+        Assert.assertFalse(evaluate(1, terms(3), offsets(1), skipped(4, 1), offsets(5)));
+    }
+    
+    @Test
+    public void testZeroOffsetRestriction() {
+        // the synonyms at 1 may only follow one another where both allow a match at the same offset
+        Assert.assertTrue(evaluate(1, terms(3), offsets(0), offsets(1), offsets(1)));
+        Assert.assertFalse(evaluate(1, terms(3), offsets(0), offsets(1), offsets(false, 1)));
+        Assert.assertTrue(evaluate(1, terms(3), offsets(0), offsets(1), offsets(false, 1, 2)));
+    }
+    
+    @Test
+    public void testRepeatedTerm() {
+        String[] terms = {"term0", "term1", "term1", "term2"};
+        // a repeated term needs a position of its own each time
+        TermOffsets once = offsets(1);
+        Assert.assertFalse(evaluate(1, terms, offsets(0), once, once, offsets(2)));
+        TermOffsets twice = offsets(1, 2);
+        Assert.assertTrue(evaluate(1, terms, offsets(0), twice, twice, offsets(3)));
+    }
+}
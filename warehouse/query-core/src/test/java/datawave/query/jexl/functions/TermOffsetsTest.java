@@ -0,0 +1,115 @@
+package datawave.query.jexl.functions;
+
+import datawave.ingest.protobuf.TermWeight;
+import datawave.ingest.protobuf.TermWeightPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+public class TermOffsetsTest {
+    
+    private static TermWeightPosition position(int offset, int prevSkips, int score) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).setScore(score).build();
+    }
+    
+    @Test
+    public void testDecode() {
+        TermWeight.Info info = TermWeight.Info.newBuilder().addTermOffset(7).addTermOffset(3).addTermOffset(5).addPrevSkips(0).addPrevSkips(0)
+                        .addPrevSkips(3).addScore(10).addScore(20).addScore(30).setZeroOffsetMatch(false).build();
+        TermOffsets offsets = TermOffsets.of(info);
+        
+        List<TermWeightPosition> expected = new ArrayList<>();
+        TermWeightPosition.Builder builder = new TermWeightPosition.Builder();
+        for (int i = 0; i < info.getTermOffsetCount(); i++) {
+            expected.add(builder.setTermWeightOffsetInfo(info, i).build());
+            builder.reset();
+        }
+        Assert.assertEquals(new ArrayList<>(new TreeSet<>(expected)), offsets.asList());
+        
+        // 5 less 3 skips sorts first
+        Assert.assertEquals(3, offsets.size());
+        Assert.assertEquals(5, offsets.getOffset(0));
+        Assert.assertEquals(2, offsets.getLowOffset(0));
+        Assert.assertEquals(30, offsets.getScore(0));
+        Assert.assertTrue(offsets.hasSkips());
+        Assert.assertFalse(offsets.isZeroOffsetMatch());
+    }
+    
+    @Test
+    public void testDecodeWithoutSkipsOrScores() {
+        TermWeight.Info info = TermWeight.Info.newBuilder().addTermOffset(1).addTermOffset(2).addScore(5).build();
+        TermOffsets offsets = TermOffsets.of(info);
+        Assert.assertEquals(2, offsets.size());
+        Assert.assertFalse(offsets.hasSkips());
+        Assert.assertTrue(offsets.isZeroOffsetMatch());
+        Assert.assertEquals(TermWeightPosition.DEFAULT_SCORE, offsets.getScore(0));
+        Assert.assertEquals(TermWeightPosition.DEFAULT_PREV_SKIPS, offsets.getPrevSkips(1));
+    }
+    
+    @Test
+    public void testSortedAndDeduped() {
+        TermOffsets offsets = TermOffsets.of(Arrays.asList(position(4, 0, 1), position(2, 0, 2), position(4, 0, 3), position(1, 0, 4)));
+        Assert.assertEquals(3, offsets.size());
+        Assert.assertEquals(1, offsets.getOffset(0));
+        Assert.assertEquals(2, offsets.getOffset(1));
+        Assert.assertEquals(4, offsets.getOffset(2));
+        // the first of the equal positions is kept
+        Assert.assertEquals(1, offsets.getScore(2));
+    }
+    
+    @Test
+    public void testMerge() {
+        TermOffsets first = TermOffsets.of(Arrays.asList(position(1, 0, 1), position(5, 0, 1)));
+        TermOffsets second = TermOffsets.of(Arrays.asList(position(3, 0, 2), position(5, 0, 2), position(9, 0, 2)));
+        TermOffsets merged = first.merge(second);
+        
+        Assert.assertEquals(4, merged.size());
+        Assert.assertEquals(Arrays.asList(1, 3, 5, 9), Arrays.asList(merged.getOffset(0), merged.getOffset(1), merged.getOffset(2), merged.getOffset(3)));
+        // the position of the list merged into is kept
+        Assert.assertEquals(1, merged.getScore(2));
+        
+        Assert.assertSame(first, first.merge(TermOffsets.EMPTY));
+        Assert.assertSame(second, TermOffsets.EMPTY.merge(second));
+    }
+    
+    @Test
+    public void testFilterScore() {
+        TermOffsets offsets = TermOffsets.of(Arrays.asList(position(1, 0, 10), position(2, 0, 30), position(3, 0, 20)));
+        TermOffsets filtered = offsets.filterScore(20);
+        Assert.assertEquals(2, filtered.size());
+        Assert.assertEquals(1, filtered.getOffset(0));
+        Assert.assertEquals(3, filtered.getOffset(1));
+        Assert.assertSame(offsets, offsets.filterScore(30));
+        Assert.assertTrue(offsets.filterScore(0).isEmpty());
+    }
+    
+    @Test
+    public void testGallop() {
+        int[] lowOffsets = new int[] {1, 3, 3, 5, 8, 13, 21, 34, 55};
+        Assert.assertEquals(-1, TermOffsets.gallop(lowOffsets, -1, lowOffsets.length, 0));
+        Assert.assertEquals(0, TermOffsets.gallop(lowOffsets, -1, lowOffsets.length, 2));
+        Assert.assertEquals(2, TermOffsets.gallop(lowOffsets, -1, lowOffsets.length, 3));
+        Assert.assertEquals(4, TermOffsets.gallop(lowOffsets, 2, lowOffsets.length, 12));
+        Assert.assertEquals(8, TermOffsets.gallop(lowOffsets, 4, lowOffsets.length, 100));
+        // only the first size offsets are searched
+        Assert.assertEquals(5, TermOffsets.gallop(lowOffsets, 0, 6, 100));
+    }
+    
+    @Test
+    public void testTermFrequencyList() {
+        TermFrequencyList.Zone zone = new TermFrequencyList.Zone("BODY", true, "shard\0type\0uid");
+        TermFrequencyList list = new TermFrequencyList();
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertTrue(list.getOffsets(zone).isEmpty());
+        
+        list.addOffsets(zone, TermWeight.Info.newBuilder().addTermOffset(4).addTermOffset(2).build());
+        list.addOffsets(zone, Arrays.asList(position(3, 0, 0), position(4, 0, 0)));
+        Assert.assertEquals(3, list.getOffsets(zone).size());
+        Assert.assertEquals(3, list.fetchOffsets().get(zone).size());
+        Assert.assertEquals(list, TermFrequencyList.merge(list, new TermFrequencyList()));
+    }
+}
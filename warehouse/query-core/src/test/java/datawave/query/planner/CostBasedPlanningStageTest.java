@@ -0,0 +1,82 @@
+package datawave.query.planner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.data.MetadataCardinalityCounts;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import datawave.query.jexl.visitors.TreeFlatteningRebuildingVisitor;
+import datawave.query.util.MockMetadataHelper;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CostBasedPlanningStageTest {
+    
+    private ShardQueryConfiguration config;
+    private MockMetadataHelper helper;
+    private CostBasedPlanningStage stage;
+    
+    @Before
+    public void setup() throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        config = ShardQueryConfiguration.create();
+        config.setBeginDate(sdf.parse("20190101"));
+        config.setEndDate(sdf.parse("20190102"));
+        config.setDatatypeFilter(Collections.singleton("test"));
+        
+        // A matches a hundred times as many documents as B, C is not indexed
+        Map<Map.Entry<String,String>,Map<String,Long>> cardinalities = new HashMap<>();
+        cardinalities.put(Maps.immutableEntry("A", "20190101"), Collections.singletonMap("test", 1000l));
+        cardinalities.put(Maps.immutableEntry("B", "20190101"), Collections.singletonMap("test", 10l));
+        
+        helper = new MockMetadataHelper() {
+            @Override
+            public Map<String,Map<String,MetadataCardinalityCounts>> getTermCountsWithRootAuths() {
+                throw new AssertionError("The term counts are read with root auths");
+            }
+        };
+        helper.setIndexedFields(Sets.newHashSet("A", "B"));
+        helper.setCardinalities(cardinalities);
+        
+        stage = new CostBasedPlanningStage();
+        stage.setDelayRatio(50);
+    }
+    
+    private String apply(String query) throws Exception {
+        // the stages are applied to flattened queries
+        ASTJexlScript script = TreeFlatteningRebuildingVisitor.flatten(JexlASTHelper.parseJexlQuery(query));
+        return JexlStringBuildingVisitor.buildQuery(stage.apply(script, null, helper, config));
+    }
+    
+    @Test
+    public void testOrderAndDelay() throws Exception {
+        assertEquals("B == '2' && ((ASTDelayedPredicate = true) && (A == '1')) && C == '3'", apply("A == '1' && B == '2' && C == '3'"));
+        
+        // the costs of the terms are kept out of the query metric
+        assertEquals(Sets.newHashSet("reordered conjunctions", "delayed terms"), config.getPlanEstimates().keySet());
+        assertEquals(Double.valueOf(1), config.getPlanEstimates().get("reordered conjunctions"));
+        assertEquals(Double.valueOf(1), config.getPlanEstimates().get("delayed terms"));
+    }
+    
+    @Test
+    public void testOrderWithoutDelay() throws Exception {
+        stage.setDelayRatio(0);
+        assertEquals("B == '2' && A == '1' && C == '3'", apply("A == '1' && B == '2' && C == '3'"));
+        assertEquals(Double.valueOf(0), config.getPlanEstimates().get("delayed terms"));
+    }
+    
+    @Test
+    public void testNestedConjunction() throws Exception {
+        // the disjunction costs as much as its terms together, and the negation is left last
+        assertEquals("B == '2' && (A == '1' || B == '3') && !(C == '3')", apply("!(C == '3') && (A == '1' || B == '3') && B == '2'"));
+    }
+}
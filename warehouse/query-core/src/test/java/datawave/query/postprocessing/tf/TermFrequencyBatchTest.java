@@ -0,0 +1,116 @@
+package datawave.query.postprocessing.tf;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.ingest.protobuf.TermWeight;
+import datawave.query.Constants;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+public class TermFrequencyBatchTest {
+    
+    private static final String ROW = "20190101_0";
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    private final Multimap<String,String> fieldValues = HashMultimap.create();
+    
+    private static class CountingIterator extends SortedMapIterator {
+        private int seeks = 0;
+        
+        CountingIterator(TreeMap<Key,Value> map) {
+            super(map);
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+            seeks++;
+            super.seek(range, columnFamilies, inclusive);
+        }
+    }
+    
+    private void put(String uid, String field, String value, int... offsets) {
+        TermWeight.Info.Builder info = TermWeight.Info.newBuilder();
+        for (int offset : offsets) {
+            info.addTermOffset(offset);
+        }
+        data.put(new Key(ROW, Constants.TERM_FREQUENCY_COLUMN_FAMILY.toString(), "datatype\0" + uid + "\0" + value + "\0" + field),
+                        new Value(info.build().toByteArray()));
+    }
+    
+    private static Key docKey(String uid) {
+        return new Key(ROW, "datatype\0" + uid);
+    }
+    
+    @Before
+    public void setup() {
+        put("a", "BODY", "quick", 1);
+        put("a", "BODY", "slow", 2);
+        put("b", "BODY", "quick", 3, 7);
+        put("b", "BODY", "brown", 4);
+        put("c", "BODY", "fox", 5);
+        put("c", "TITLE", "quick", 6);
+        put("d", "BODY", "quick", 8);
+        
+        fieldValues.put("BODY", "quick");
+        fieldValues.put("BODY", "brown");
+    }
+    
+    @Test
+    public void testFetch() throws IOException {
+        CountingIterator source = new CountingIterator(data);
+        TermFrequencyBatch batch = new TermFrequencyBatch(source, 3);
+        Assert.assertTrue(batch.isFor(fieldValues));
+        Assert.assertFalse(batch.isFor(HashMultimap.create()));
+        
+        for (String uid : new String[] {"a", "b", "c", "d"}) {
+            batch.addDocument(docKey(uid));
+        }
+        TermOffsetPopulator populator = new TermOffsetPopulator(fieldValues, null, null, source);
+        
+        List<Entry<Key,Value>> a = batch.fetch(docKey("a"), populator.getRange(Collections.singleton(docKey("a"))));
+        Assert.assertEquals(1, a.size());
+        int seeks = source.seeks;
+        
+        // b and c were in the sweep of a
+        List<Entry<Key,Value>> b = batch.fetch(docKey("b"), populator.getRange(Collections.singleton(docKey("b"))));
+        Assert.assertEquals(2, b.size());
+        Assert.assertTrue(batch.fetch(docKey("c"), populator.getRange(Collections.singleton(docKey("c")))).isEmpty());
+        Assert.assertEquals(seeks, source.seeks);
+        
+        // d was not
+        List<Entry<Key,Value>> d = batch.fetch(docKey("d"), populator.getRange(Collections.singleton(docKey("d"))));
+        Assert.assertEquals(1, d.size());
+        Assert.assertTrue(source.seeks > seeks);
+    }
+    
+    @Test
+    public void testSameContext() {
+        TermFrequencyBatch batch = new TermFrequencyBatch(new SortedMapIterator(data), 4);
+        Assert.assertTrue(batch.isFor(fieldValues));
+        for (String uid : new String[] {"a", "b", "c", "d"}) {
+            batch.addDocument(docKey(uid));
+        }
+        
+        TermOffsetPopulator batched = new TermOffsetPopulator(fieldValues, null, null, new SortedMapIterator(data), batch);
+        TermOffsetPopulator unbatched = new TermOffsetPopulator(fieldValues, null, null, new SortedMapIterator(data));
+        for (String uid : new String[] {"a", "b", "c", "d"}) {
+            Map<String,Object> expected = unbatched.getContextMap(docKey(uid));
+            Assert.assertEquals(expected, batched.getContextMap(docKey(uid)));
+            Assert.assertEquals(unbatched.document(), batched.document());
+        }
+    }
+}
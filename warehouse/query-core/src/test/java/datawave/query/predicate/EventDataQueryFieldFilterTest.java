@@ -0,0 +1,30 @@
+package datawave.query.predicate;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.query.jexl.JexlASTHelper;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class EventDataQueryFieldFilterTest {
+    
+    private static boolean apply(EventDataQueryFilter filter, String field) {
+        return filter.apply(Maps.immutableEntry(new Key("20190101_0", "datatype\0uid", field + "\0value"), ""));
+    }
+    
+    @Test
+    public void testAdditionalFields() throws Exception {
+        EventDataQueryFilter filter = new EventDataQueryFieldFilter(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), Collections.emptySet(),
+                        Sets.newHashSet("BAR"));
+        Assert.assertTrue(apply(filter, "FOO"));
+        Assert.assertTrue(apply(filter, "FOO.1"));
+        Assert.assertTrue(apply(filter, "BAR"));
+        Assert.assertFalse(apply(filter, "OTHER"));
+        
+        filter = new EventDataQueryFieldFilter(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), Collections.emptySet());
+        Assert.assertFalse(apply(filter, "BAR"));
+    }
+}
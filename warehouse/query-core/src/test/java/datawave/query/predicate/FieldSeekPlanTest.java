@@ -0,0 +1,52 @@
+package datawave.query.predicate;
+
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.junit.Test;
+
+import datawave.query.Constants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FieldSeekPlanTest {
+    
+    private final FieldSeekPlan plan = new FieldSeekPlan(Arrays.asList("FOO", "BAR", "ZIP"));
+    
+    @Test
+    public void testSorted() {
+        assertEquals(Arrays.asList("BAR", "FOO", "ZIP"), plan.getFields());
+        assertTrue(plan.contains("FOO"));
+        assertFalse(plan.contains("FO"));
+        assertEquals(1, plan.indexOf("FOO"));
+    }
+    
+    @Test
+    public void testNextAfter() {
+        assertEquals(0, plan.nextAfter("AAA", 0));
+        assertEquals(1, plan.nextAfter("BAR", 0));
+        assertEquals(1, plan.nextAfter("CAT", -1));
+        assertEquals(2, plan.nextAfter("FOO", 0));
+        assertEquals(-1, plan.nextAfter("ZIP", 0));
+        assertEquals(-1, plan.nextAfter("ZZZ", 0));
+        
+        // fields before the starting index are not considered
+        assertEquals(2, plan.nextAfter("AAA", 2));
+        assertEquals(-1, plan.nextAfter("AAA", 3));
+    }
+    
+    @Test
+    public void testSeekRange() {
+        Key current = new Key("row", "datatype\0uid", "BAR\0value");
+        Key end = new Key("row", "datatype\0uid\uffff");
+        Range range = plan.getSeekRange(current, plan.nextAfter("BAR", 0), end, false);
+        
+        assertEquals(new Key("row", "datatype\0uid", "FOO" + Constants.NULL_BYTE_STRING), range.getStartKey());
+        assertTrue(range.contains(new Key("row", "datatype\0uid", "FOO\0value")));
+        assertFalse(range.contains(new Key("row", "datatype\0uid", "FAT\0value")));
+        assertTrue(plan.getEndKey(current, 1).compareTo(new Key("row", "datatype\0uid", "FOO\0zzz")) > 0);
+    }
+}
@@ -0,0 +1,92 @@
+package datawave.query.tables;
+
+import com.google.common.collect.Maps;
+import datawave.query.DocumentSerialization;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+public class DocumentUnbatchingIteratorTest {
+    
+    private static Entry<Key,Value> document(int i) {
+        byte[] header = DocumentSerialization.getHeader();
+        byte[] value = new byte[header.length + 10];
+        System.arraycopy(header, 0, value, 0, header.length);
+        value[header.length] = (byte) i;
+        return Maps.immutableEntry(new Key("20190101_0", "datatype\0uid" + i), new Value(value));
+    }
+    
+    private static Entry<Key,Value> batch(List<Entry<Key,Value>> documents, int compression) {
+        return Maps.immutableEntry(documents.get(documents.size() - 1).getKey(), new Value(DocumentSerialization.writeBatch(documents, compression)));
+    }
+    
+    private static List<Entry<Key,Value>> drain(Iterator<Entry<Key,Value>> iterator) {
+        List<Entry<Key,Value>> entries = new ArrayList<>();
+        while (iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+        return entries;
+    }
+    
+    @Test
+    public void testUnpacksBatches() {
+        List<Entry<Key,Value>> documents = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            documents.add(document(i));
+        }
+        
+        // single documents are passed through between the batches
+        List<Entry<Key,Value>> returned = new ArrayList<>();
+        returned.add(documents.get(0));
+        returned.add(batch(documents.subList(1, 4), DocumentSerialization.NONE));
+        returned.add(documents.get(4));
+        returned.add(batch(documents.subList(5, 7), DocumentSerialization.GZIP));
+        
+        List<Entry<Key,Value>> unpacked = drain(new DocumentUnbatchingIterator(returned.iterator()));
+        Assert.assertEquals(documents.size(), unpacked.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Assert.assertEquals(documents.get(i).getKey(), unpacked.get(i).getKey());
+            Assert.assertEquals(documents.get(i).getValue(), unpacked.get(i).getValue());
+        }
+    }
+    
+    @Test
+    public void testBatchLast() {
+        List<Entry<Key,Value>> documents = new ArrayList<>();
+        documents.add(document(0));
+        documents.add(document(1));
+        
+        // the documents of the last batch are returned after the underlying iterator is exhausted
+        DocumentUnbatchingIterator iterator = new DocumentUnbatchingIterator(Collections.singletonList(batch(documents, DocumentSerialization.NONE)).iterator());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(documents.get(0).getKey(), iterator.next().getKey());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(documents.get(1).getKey(), iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+    }
+    
+    @Test
+    public void testPassThrough() {
+        List<Entry<Key,Value>> documents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(document(i));
+        }
+        Assert.assertEquals(documents, drain(new DocumentUnbatchingIterator(documents.iterator())));
+        Assert.assertFalse(new DocumentUnbatchingIterator(Collections.emptyIterator()).hasNext());
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyBatch() {
+        Entry<Key,Value> empty = Maps.immutableEntry(new Key("20190101_0"), new Value(DocumentSerialization.writeBatch(Collections.emptyList(),
+                        DocumentSerialization.NONE)));
+        new DocumentUnbatchingIterator(Collections.singletonList(empty).iterator()).next();
+    }
+}
@@ -0,0 +1,297 @@
+package datawave.query.tld;
+
+import datawave.core.iterators.IteratorThreadPoolManager;
+import datawave.query.attributes.Document;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.function.TLDEquality;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.predicate.EventDataQueryFilter;
+import datawave.query.predicate.TLDEventDataFilter;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Maps;
+
+public class ParallelTLDKeyToDocumentDataTest {
+    
+    private static final String ROW = "20190101_0";
+    // uids as long as those ingested, so that the filter tells the children from the parent
+    private static final String PARENT = "datatype\0-cvy0gj.tlf59s.-duxzua";
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    
+    @Before
+    public void setup() {
+        data.put(new Key(ROW, PARENT, "SUBJECT\0hello"), new Value());
+        data.put(new Key(ROW, PARENT, "FROM\0alice"), new Value());
+        for (int child = 1; child <= 40; child++) {
+            String childCf = PARENT + '.' + child;
+            for (int field = 0; field < 5; field++) {
+                data.put(new Key(ROW, childCf, "FIELD" + field + "\0value" + child), new Value());
+            }
+            // a grandchild of every fourth child
+            if (child % 4 == 0) {
+                data.put(new Key(ROW, childCf + ".1", "NAME\0attachment" + child), new Value());
+            }
+        }
+        // the next document
+        data.put(new Key(ROW, "datatype\0-cvy0gj.tlf59s.-duxzub", "SUBJECT\0other"), new Value());
+    }
+    
+    // the children of the document are in range without an evaluation filter
+    private static Key getTldStopKey(Map.Entry<Key,Document> from) {
+        return new Key(from.getKey().getRow().toString(), from.getKey().getColumnFamily().toString() + '\uffff');
+    }
+    
+    private KeyToDocumentData serial(EventDataQueryFilter filter) {
+        return new KeyToDocumentData(new SortedMapIterator(data), null, Collections.emptyMap(), new TLDEquality(), filter, false, false) {
+            @Override
+            protected Key getStopKey(Map.Entry<Key,Document> from) {
+                return getTldStopKey(from);
+            }
+        };
+    }
+    
+    private ParallelTLDKeyToDocumentData parallel(int threads, EventDataQueryFilter filter) {
+        return new ParallelTLDKeyToDocumentData(new SortedMapIterator(data), null, Collections.emptyMap(), new TLDEquality(), filter, false, false, threads,
+                        IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY, IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT) {
+            @Override
+            protected Key getStopKey(Map.Entry<Key,Document> from) {
+                return getTldStopKey(from);
+            }
+        };
+    }
+    
+    private static TLDEventDataFilter filter(String query, long maxBeforeSeek, Map<String,Integer> limitFieldsMap) throws ParseException {
+        return new TLDEventDataFilter(JexlASTHelper.parseJexlQuery(query), new TypeMetadata(), null, null, maxBeforeSeek, maxBeforeSeek, limitFieldsMap,
+                        "LIMITED", Collections.emptySet());
+    }
+    
+    private DocumentData aggregate(KeyToDocumentData keyToDocumentData) {
+        Map.Entry<Key,Document> from = Maps.immutableEntry(new Key(ROW, PARENT), new Document());
+        return keyToDocumentData.apply(from).getKey();
+    }
+    
+    @Test
+    public void testSameAsSerial() {
+        DocumentData expected = aggregate(serial(null));
+        Assert.assertEquals(2 + 40 * 5 + 10, expected.getData().size());
+        
+        for (int threads : new int[] {2, 3, 8, 64}) {
+            DocumentData actual = aggregate(parallel(threads, null));
+            Assert.assertEquals(expected.getData(), actual.getData());
+            Assert.assertEquals(expected.getDocKeys(), actual.getDocKeys());
+        }
+    }
+    
+    @Test
+    public void testNoChildren() {
+        data.clear();
+        data.put(new Key(ROW, PARENT, "SUBJECT\0hello"), new Value());
+        Assert.assertEquals(1, aggregate(parallel(4, null)).getData().size());
+    }
+    
+    @Test
+    public void testFilterSameAsSerial() throws ParseException {
+        // seek past the other fields of the children as soon as possible
+        DocumentData expected = aggregate(serial(filter("FIELD0 == 'value3'", 1, Collections.emptyMap())));
+        Assert.assertEquals(3, expected.getData().size());
+        
+        for (int threads : new int[] {2, 3, 8}) {
+            DocumentData actual = aggregate(parallel(threads, filter("FIELD0 == 'value3'", 1, Collections.emptyMap())));
+            Assert.assertEquals(expected.getData(), actual.getData());
+            Assert.assertEquals(expected.getDocKeys(), actual.getDocKeys());
+        }
+    }
+    
+    @Test
+    public void testFieldLimitsSameAsSerial() throws ParseException {
+        data.clear();
+        data.put(new Key(ROW, PARENT, "SUBJECT\0hello"), new Value());
+        for (int child = 1; child <= 40; child++) {
+            data.put(new Key(ROW, PARENT + '.' + child, "TAG\0value" + child), new Value());
+        }
+        
+        // the tags of the children are counted as one run, so all but the first ten are limited
+        Map<String,Integer> limits = Collections.singletonMap("TAG", 10);
+        DocumentData expected = aggregate(serial(filter("SUBJECT == 'hello'", -1, limits)));
+        int limited = 0;
+        for (Map.Entry<Key,Value> entry : expected.getData()) {
+            if (entry.getKey().getColumnQualifier().toString().equals("LIMITED\0TAG")) {
+                limited++;
+            }
+        }
+        Assert.assertEquals(30, limited);
+        
+        for (int threads : new int[] {2, 3, 8}) {
+            DocumentData actual = aggregate(parallel(threads, filter("SUBJECT == 'hello'", -1, limits)));
+            Assert.assertEquals(expected.getData(), actual.getData());
+            Assert.assertEquals(expected.getDocKeys(), actual.getDocKeys());
+        }
+    }
+    
+    // the children of the document, in order
+    private List<Key> childKeys() {
+        List<Key> childKeys = new ArrayList<>();
+        for (Key key : data.keySet()) {
+            Key childKey = new Key(key.getRow(), key.getColumnFamily());
+            if (key.getColumnFamily().toString().startsWith(PARENT + '.') && (childKeys.isEmpty() || !childKeys.get(childKeys.size() - 1).equals(childKey))) {
+                childKeys.add(childKey);
+            }
+        }
+        return childKeys;
+    }
+    
+    @Test
+    public void testShortDocumentWalked() throws IOException {
+        // every child is a split point when the document ends within the children walked
+        Range keyRange = new Range(new Key(ROW, PARENT), true, new Key(ROW, PARENT + '\uffff'), false);
+        Assert.assertEquals(childKeys(), parallel(8, null).findChildStarts(keyRange));
+    }
+    
+    @Test
+    public void testChildrenProbedAcrossDocument() throws IOException {
+        data.clear();
+        data.put(new Key(ROW, PARENT, "SUBJECT\0hello"), new Value());
+        int children = 5000;
+        for (int child = 1; child <= children; child++) {
+            data.put(new Key(ROW, PARENT + '.' + child, "FIELD0\0value" + child), new Value());
+            data.put(new Key(ROW, PARENT + '.' + child, "FIELD1\0value" + child), new Value());
+        }
+        List<Key> childKeys = childKeys();
+        
+        AtomicInteger reads = new AtomicInteger();
+        ParallelTLDKeyToDocumentData parallel = new ParallelTLDKeyToDocumentData(new CountingIterator(data, reads), null, Collections.emptyMap(),
+                        new TLDEquality(), null, false, false, 2, IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY,
+                        IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT);
+        Range keyRange = new Range(new Key(ROW, PARENT), true, new Key(ROW, PARENT + '\uffff'), false);
+        List<Key> childStarts = parallel.findChildStarts(keyRange);
+        
+        // only the first children are walked, the rest are found by seeking
+        Assert.assertTrue("read " + reads.get() + " keys", reads.get() < children / 10);
+        
+        // every CHILDREN_PER_THREADth child walked is kept, and the probes find children spread through the rest of the document
+        int walked = 2 * ParallelTLDKeyToDocumentData.CHILDREN_PER_THREAD;
+        for (int i = 0; i <= 2; i++) {
+            Assert.assertEquals(childKeys.get(i * ParallelTLDKeyToDocumentData.CHILDREN_PER_THREAD), childStarts.get(i));
+        }
+        Assert.assertTrue(childStarts.size() > 3);
+        Assert.assertTrue(childStarts.size() <= 3 + 2 * ParallelTLDKeyToDocumentData.SPLITS_PER_THREAD);
+        int last = walked;
+        for (Key childStart : childStarts.subList(3, childStarts.size())) {
+            int index = childKeys.indexOf(childStart);
+            Assert.assertTrue(childStart + " is not the start of a child after the last one", index > last);
+            last = index;
+        }
+        Assert.assertTrue(last > children / 2);
+        
+        DocumentData expected = aggregate(serial(null));
+        Assert.assertEquals(1 + 2 * children, expected.getData().size());
+        Assert.assertEquals(expected.getData(), aggregate(parallel(2, null)).getData());
+        Assert.assertEquals(expected.getData(), aggregate(parallel(8, null)).getData());
+    }
+    
+    @Test
+    public void testCallerWaitsForStartedTasks() throws Exception {
+        Thread caller = Thread.currentThread();
+        CountDownLatch poolStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean held = new AtomicBoolean(false);
+        ParallelTLDKeyToDocumentData parallel = new ParallelTLDKeyToDocumentData(new SortedMapIterator(data), null, Collections.emptyMap(),
+                        new TLDEquality(), null, false, false, 2, IteratorThreadPoolManager.DEFAULT_SCHEDULING_KEY,
+                        IteratorThreadPoolManager.DEFAULT_SCHEDULING_WEIGHT) {
+            @Override
+            protected Key getStopKey(Map.Entry<Key,Document> from) {
+                return getTldStopKey(from);
+            }
+            
+            @Override
+            protected void collect(Key documentStartKey, CollectRange range, SortedKeyValueIterator<Key,Value> rangeSource, EventDataQueryFilter rangeFilter) {
+                try {
+                    if (Thread.currentThread() == caller) {
+                        // let the pool task start before the caller takes its ranges
+                        poolStarted.await(10, TimeUnit.SECONDS);
+                    } else if (held.compareAndSet(false, true)) {
+                        // hold the pool task in its first range until the caller has finished its own
+                        poolStarted.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.collect(documentStartKey, range, rangeSource, rangeFilter);
+            }
+        };
+        
+        Thread releaser = new Thread(() -> {
+            try {
+                poolStarted.await(10, TimeUnit.SECONDS);
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                // release regardless
+            }
+            release.countDown();
+        });
+        releaser.start();
+        
+        DocumentData expected = aggregate(serial(null));
+        DocumentData actual = aggregate(parallel);
+        releaser.join();
+        Assert.assertTrue(held.get());
+        Assert.assertEquals(expected.getData(), actual.getData());
+        Assert.assertEquals(expected.getDocKeys(), actual.getDocKeys());
+    }
+    
+    // counts the keys read from it and its copies, seeks included
+    private static class CountingIterator extends SortedMapIterator {
+        private final SortedMap<Key,Value> map;
+        private final AtomicInteger reads;
+        
+        CountingIterator(SortedMap<Key,Value> map, AtomicInteger reads) {
+            super(map);
+            this.map = map;
+            this.reads = reads;
+        }
+        
+        @Override
+        public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+            return new CountingIterator(map, reads);
+        }
+        
+        @Override
+        public void next() throws IOException {
+            reads.incrementAndGet();
+            super.next();
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+            reads.incrementAndGet();
+            super.seek(range, columnFamilies, inclusive);
+        }
+    }
+}
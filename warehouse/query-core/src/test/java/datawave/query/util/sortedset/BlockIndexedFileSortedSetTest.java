@@ -0,0 +1,153 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockIndexedFileSortedSetTest {
+    
+    // small blocks to ensure the index has many entries
+    private static final int BLOCK_SIZE = 128;
+    
+    private TreeSet<KeyValueSerializable> expected = null;
+    private BlockIndexedFileSortedSet<KeyValueSerializable> set = null;
+    
+    @Before
+    public void setUp() throws Exception {
+        expected = new TreeSet<>();
+        for (int row = 0; row < 3; row++) {
+            for (int uid = 0; uid < 200; uid++) {
+                expected.add(entry(row, uid, "value" + (uid % 7)));
+            }
+        }
+        // same key with a different value
+        expected.add(entry(1, 50, "another"));
+        
+        set = new BlockIndexedFileSortedSet<>(expected, new SortedSetTempFileHandler(), true, new KeyValueSerializable.Codec(), BLOCK_SIZE);
+    }
+    
+    @After
+    public void tearDown() {
+        set.clear();
+    }
+    
+    private static KeyValueSerializable entry(int row, int uid, String value) {
+        return new KeyValueSerializable(key(row, uid), value.getBytes());
+    }
+    
+    private static Key key(int row, int uid) {
+        return new Key("20190314_" + row, "datatype\0" + String.format("uid.%05d", uid), "", "", 11);
+    }
+    
+    private static List<KeyValueSerializable> toList(Iterator<KeyValueSerializable> it) {
+        List<KeyValueSerializable> list = new ArrayList<>();
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list;
+    }
+    
+    @Test
+    public void testPersisted() {
+        assertTrue(set.isPersisted());
+        assertEquals(expected.size(), set.size());
+        assertEquals(new ArrayList<>(expected), toList(set.iterator()));
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        assertArrayEquals(expected.toArray(), set.toArray());
+    }
+    
+    @Test
+    public void testContains() {
+        for (KeyValueSerializable kv : expected) {
+            assertTrue(set.contains(kv));
+        }
+        assertFalse(set.contains(entry(1, 50, "missing")));
+        assertFalse(set.contains(entry(5, 0, "value0")));
+        assertTrue(set.containsAll(expected.headSet(entry(0, 10, ""))));
+    }
+    
+    @Test
+    public void testTailSet() {
+        for (int row = 0; row < 3; row++) {
+            for (int uid = 0; uid < 200; uid += 13) {
+                KeyValueSerializable from = new KeyValueSerializable(key(row, uid), new byte[0]);
+                SortedSet<KeyValueSerializable> tail = set.tailSet(from);
+                assertEquals(new ArrayList<>(expected.tailSet(from)), toList(tail.iterator()));
+                assertEquals(expected.tailSet(from).first(), tail.first());
+                assertEquals(expected.last(), tail.last());
+            }
+        }
+        KeyValueSerializable pastEnd = new KeyValueSerializable(new Key("20190315"), new byte[0]);
+        assertTrue(set.tailSet(pastEnd).isEmpty());
+    }
+    
+    @Test
+    public void testSubSetAndHeadSet() {
+        KeyValueSerializable from = new KeyValueSerializable(key(0, 150), new byte[0]);
+        KeyValueSerializable to = new KeyValueSerializable(key(2, 20), new byte[0]);
+        assertEquals(new ArrayList<>(expected.subSet(from, to)), toList(set.subSet(from, to).iterator()));
+        assertEquals(expected.subSet(from, to).size(), set.subSet(from, to).size());
+        assertEquals(expected.subSet(from, to).last(), set.subSet(from, to).last());
+        assertEquals(new ArrayList<>(expected.headSet(to)), toList(set.headSet(to).iterator()));
+        
+        // nested views are bounded by both ranges
+        KeyValueSerializable middle = new KeyValueSerializable(key(1, 0), new byte[0]);
+        assertEquals(new ArrayList<>(expected.subSet(middle, to)), toList(set.subSet(from, to).tailSet(middle).iterator()));
+        assertFalse(set.subSet(from, to).contains(entry(2, 20, "value6")));
+    }
+    
+    @Test
+    public void testLoad() throws Exception {
+        set.load();
+        assertFalse(set.isPersisted());
+        assertEquals(expected, set);
+        set.persist();
+        assertTrue(set.isPersisted());
+        assertEquals(new ArrayList<>(expected), toList(set.iterator()));
+    }
+    
+    @Test
+    public void testEmpty() throws IOException {
+        BlockIndexedFileSortedSet<KeyValueSerializable> empty = new BlockIndexedFileSortedSet<>(new TreeSet<KeyValueSerializable>(),
+                        new SortedSetTempFileHandler(), true, new KeyValueSerializable.Codec(), BLOCK_SIZE);
+        assertTrue(empty.isPersisted());
+        assertEquals(0, empty.size());
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.tailSet(entry(0, 0, "")).iterator().hasNext());
+        empty.clear();
+    }
+    
+    @Test
+    public void testBufferedSetTailSet() throws IOException {
+        BufferedFileBackedSortedSet<KeyValueSerializable> buffered = new BufferedFileBackedSortedSet<>(null, 50, 4, SortedSetTempFileHandler::new,
+                        new BlockIndexedFileSortedSet.Factory<>(new KeyValueSerializable.Codec(), BLOCK_SIZE));
+        try {
+            buffered.addAll(expected);
+            for (KeyValueSerializable kv : expected) {
+                buffered.add(kv);
+            }
+            buffered.persist();
+            assertTrue(buffered.isPersisted());
+            assertEquals(expected.size(), buffered.size());
+            
+            KeyValueSerializable from = new KeyValueSerializable(key(1, 75), new byte[0]);
+            assertEquals(new ArrayList<>(expected.tailSet(from)), toList(buffered.tailSet(from).iterator()));
+        } finally {
+            buffered.clear();
+        }
+    }
+}
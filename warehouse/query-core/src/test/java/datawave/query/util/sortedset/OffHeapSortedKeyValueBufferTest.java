@@ -0,0 +1,165 @@
+package datawave.query.util.sortedset;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapSortedKeyValueBufferTest {
+    
+    private List<KeyValueSerializable> data = null;
+    private TreeSet<KeyValueSerializable> expected = null;
+    
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        data = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String row = "2019031" + random.nextInt(2) + "_" + random.nextInt(3);
+            String cf = "datatype" + random.nextInt(3) + '\0' + Integer.toHexString(random.nextInt(1000));
+            String cq = (random.nextBoolean() ? "" : "FIELD\0value" + random.nextInt(5));
+            String cv = (random.nextBoolean() ? "" : "A&B");
+            Key key = new Key(row, cf, cq, cv, random.nextInt(3));
+            key.setDeleted(random.nextInt(10) == 0);
+            byte[] value = new byte[random.nextInt(3)];
+            random.nextBytes(value);
+            data.add(new KeyValueSerializable(key, value));
+        }
+        // add some duplicates
+        data.addAll(data.subList(0, 50));
+        expected = new TreeSet<>(data);
+    }
+    
+    @Test
+    public void testOrderingMatchesTreeSet() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer(4);
+        for (KeyValueSerializable entry : data) {
+            assertEquals(!buffer.contains(entry), buffer.add(entry));
+        }
+        assertEquals(expected.size(), buffer.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+        assertEquals(expected.first(), buffer.first());
+        assertEquals(expected.last(), buffer.last());
+        for (KeyValueSerializable entry : data) {
+            assertTrue(buffer.contains(entry));
+        }
+    }
+    
+    @Test
+    public void testSortedOnceRead() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer(4);
+        int added = 0;
+        for (KeyValueSerializable entry : data) {
+            if (buffer.add(entry)) {
+                added++;
+            }
+        }
+        // duplicates are found among the entries appended out of order before they are sorted
+        assertTrue(buffer.sortedSize < buffer.size());
+        assertEquals(expected.size(), added);
+        assertEquals(expected.size(), buffer.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+        assertEquals(buffer.size(), buffer.sortedSize);
+        assertEquals(expected.size(), buffer.size());
+        
+        // once sorted, entries already in the buffer are found by the binary search rather than appended
+        for (KeyValueSerializable entry : data) {
+            assertFalse(buffer.add(entry));
+        }
+        assertEquals(expected.size(), buffer.size());
+    }
+    
+    @Test
+    public void testInOrderAddsStaySorted() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer(4);
+        for (KeyValueSerializable entry : expected) {
+            assertTrue(buffer.add(entry));
+            assertFalse(buffer.add(entry));
+        }
+        assertEquals(expected.size(), buffer.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+    }
+    
+    @Test
+    public void testSubSets() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer();
+        buffer.addAll(data);
+        List<KeyValueSerializable> sorted = new ArrayList<>(expected);
+        KeyValueSerializable from = sorted.get(100);
+        KeyValueSerializable to = sorted.get(200);
+        
+        assertEquals(new ArrayList<>(expected.subSet(from, to)), new ArrayList<>(buffer.subSet(from, to)));
+        assertEquals(new ArrayList<>(expected.headSet(to)), new ArrayList<>(buffer.headSet(to)));
+        assertEquals(new ArrayList<>(expected.tailSet(from)), new ArrayList<>(buffer.tailSet(from)));
+        assertEquals(100, buffer.subSet(from, to).size());
+        assertEquals(from, buffer.subSet(from, to).first());
+        assertEquals(sorted.get(199), buffer.subSet(from, to).last());
+        assertFalse(buffer.subSet(from, to).contains(to));
+        assertTrue(buffer.subSet(from, from).isEmpty());
+    }
+    
+    @Test
+    public void testRemove() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer();
+        buffer.addAll(data);
+        for (int i = 0; i < data.size(); i += 3) {
+            expected.remove(data.get(i));
+            buffer.remove(data.get(i));
+        }
+        Iterator<KeyValueSerializable> it = buffer.iterator();
+        Iterator<KeyValueSerializable> expectedIt = expected.iterator();
+        while (it.hasNext()) {
+            KeyValueSerializable next = it.next();
+            expectedIt.next();
+            if (next.key.getTimestamp() == 0) {
+                it.remove();
+                expectedIt.remove();
+            }
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+    }
+    
+    @Test
+    public void testClearReleasesBuffer() {
+        OffHeapSortedKeyValueBuffer buffer = new OffHeapSortedKeyValueBuffer();
+        buffer.addAll(data);
+        assertTrue(buffer.getOffHeapSize() > 0);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getOffHeapSize());
+        buffer.addAll(data);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(buffer));
+    }
+    
+    @Test
+    public void testAsFileBackedBuffer() throws IOException {
+        BufferedFileBackedSortedSet<KeyValueSerializable> set = new BufferedFileBackedSortedSet<>(null, 100, 7, SortedSetTempFileHandler::new);
+        set.setBufferFactory(OffHeapSortedKeyValueBuffer::new);
+        try {
+            set.addAll(data.subList(0, 50));
+            for (KeyValueSerializable entry : data) {
+                set.add(entry);
+            }
+            assertTrue(set.hasPersistedData());
+            SortedSet<KeyValueSerializable> actual = new TreeSet<>();
+            for (KeyValueSerializable entry : set) {
+                actual.add(entry);
+            }
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), set.size());
+        } finally {
+            set.clear();
+        }
+    }
+}
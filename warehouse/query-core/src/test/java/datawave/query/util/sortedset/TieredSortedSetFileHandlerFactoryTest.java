@@ -0,0 +1,215 @@
+package datawave.query.util.sortedset;
+
+import datawave.query.util.sortedset.FileSortedSet.SortedSetFileHandler;
+import datawave.query.util.sortedset.TieredSortedSetFileHandlerFactory.Tier;
+import datawave.query.util.sortedset.TieredSortedSetFileHandlerFactory.TieredFileHandler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TieredSortedSetFileHandlerFactoryTest {
+    
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    
+    private FileSystem fs;
+    private Path localDir;
+    private Path hdfsDir;
+    
+    @Before
+    public void setUp() throws Exception {
+        fs = FileSystem.getLocal(new Configuration());
+        localDir = new Path(tmpDir.newFolder("local").toURI());
+        hdfsDir = new Path(tmpDir.newFolder("hdfs").toURI());
+        TieredSortedSetFileHandlerFactory.setLocalMaxBytes(Long.MAX_VALUE);
+    }
+    
+    @After
+    public void tearDown() {
+        TieredSortedSetFileHandlerFactory.setLocalMaxBytes(TieredSortedSetFileHandlerFactory.DEFAULT_LOCAL_MAX_BYTES);
+        TieredSortedSetFileHandlerFactory.setLocalOrphanAge(TieredSortedSetFileHandlerFactory.DEFAULT_LOCAL_ORPHAN_AGE);
+    }
+    
+    private static TieredFileHandler write(TieredSortedSetFileHandlerFactory factory, int len) throws IOException {
+        TieredFileHandler handler = (TieredFileHandler) factory.createHandler();
+        try (OutputStream out = handler.getOutputStream()) {
+            out.write(new byte[len]);
+        }
+        return handler;
+    }
+    
+    @Test
+    public void testLocalFirst() throws IOException {
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        
+        TieredFileHandler handler = write(factory, 100);
+        assertEquals(Tier.LOCAL, handler.getTier());
+        assertTrue(fs.exists(new Path(localDir, handler.getFile().getName())));
+        assertTrue(factory.hasLocalFiles());
+        assertEquals(1, factory.getFileCount(Tier.LOCAL));
+        assertEquals(100, factory.getBytes(Tier.LOCAL));
+        assertEquals(0, factory.getFileCount(Tier.HDFS));
+        assertEquals(inUse + 100, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        
+        handler.deleteFile();
+        assertFalse(factory.hasLocalFiles());
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        
+        factory.resetStats();
+        assertEquals(0, factory.getFileCount(Tier.LOCAL));
+        assertEquals(0, factory.getBytes(Tier.LOCAL));
+    }
+    
+    @Test
+    public void testFallbackOverQuota() throws IOException {
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        TieredSortedSetFileHandlerFactory.setLocalMaxBytes(inUse + 10);
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        
+        assertEquals(Tier.LOCAL, write(factory, 20).getTier());
+        TieredFileHandler handler = write(factory, 20);
+        assertEquals(Tier.HDFS, handler.getTier());
+        assertTrue(fs.exists(new Path(hdfsDir, handler.getFile().getName())));
+        assertEquals(1, factory.getFileCount(Tier.LOCAL));
+        assertEquals(1, factory.getFileCount(Tier.HDFS));
+        assertEquals(20, factory.getBytes(Tier.HDFS));
+        
+        factory.deleteLocalFiles();
+        assertFalse(factory.hasLocalFiles());
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        assertEquals(Tier.LOCAL, write(factory, 5).getTier());
+        factory.deleteLocalFiles();
+    }
+    
+    @Test
+    public void testDisabled() throws IOException {
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(null, null, fs, hdfsDir);
+        assertFalse(factory.isLocalTierEnabled());
+        assertEquals(Tier.HDFS, write(factory, 10).getTier());
+        assertFalse(factory.hasLocalFiles());
+    }
+    
+    @Test
+    public void testRewriteFallsBack() throws IOException {
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        
+        TieredFileHandler handler = write(factory, 10);
+        Path localFile = handler.getFile();
+        try (OutputStream out = handler.getOutputStream()) {
+            out.write(new byte[10]);
+        }
+        assertEquals(Tier.HDFS, handler.getTier());
+        assertFalse(fs.exists(localFile));
+        assertTrue(fs.exists(new Path(hdfsDir, localFile.getName())));
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+    }
+    
+    @Test
+    public void testExistingHandlers() throws IOException {
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        write(factory, 10);
+        write(factory, 10);
+        
+        assertEquals(inUse + 20, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        
+        // the reloaded factory takes over the local files, and their share of the quota without counting them again
+        TieredSortedSetFileHandlerFactory reloaded = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        List<SortedSetFileHandler> handlers = reloaded.getExistingHandlers();
+        assertEquals(2, handlers.size());
+        assertTrue(reloaded.hasLocalFiles());
+        assertEquals(inUse + 20, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        reloaded.deleteLocalFiles();
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+    }
+    
+    @Test
+    public void testExistingHandlersNotWrittenHere() throws IOException {
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        
+        // a file left by an earlier tserver process is counted once found, so deleting it cannot take the count below zero
+        try (OutputStream out = fs.create(new Path(localDir, "previous"))) {
+            out.write(new byte[30]);
+        }
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        assertEquals(1, factory.getExistingHandlers().size());
+        assertEquals(inUse + 30, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        factory.getExistingHandlers();
+        assertEquals(inUse + 30, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        factory.deleteLocalFiles();
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+    }
+    
+    @Test
+    public void testCleanupOrphans() throws IOException {
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        Path abandonedDir = new Path(localDir, "abandoned/scan/term/row");
+        Path runningDir = new Path(localDir, "running/scan/term/row");
+        
+        // an abandoned query leaves its local files behind, still counted against the quota
+        write(new TieredSortedSetFileHandlerFactory(fs, abandonedDir, fs, hdfsDir), 40);
+        TieredSortedSetFileHandlerFactory running = new TieredSortedSetFileHandlerFactory(fs, runningDir, fs, hdfsDir);
+        write(running, 50);
+        assertEquals(inUse + 90, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        
+        // nothing is old enough yet
+        TieredSortedSetFileHandlerFactory.resetCleanupInterval();
+        assertEquals(0, TieredSortedSetFileHandlerFactory.cleanupOrphans(fs, localDir, "other"));
+        assertTrue(fs.exists(abandonedDir));
+        
+        // the calling query keeps its files
+        TieredSortedSetFileHandlerFactory.setLocalOrphanAge(1);
+        TieredSortedSetFileHandlerFactory.resetCleanupInterval();
+        long now = System.currentTimeMillis();
+        fs.setTimes(new Path(abandonedDir, fs.listStatus(abandonedDir)[0].getPath().getName()), now - 1000, -1);
+        assertEquals(1, TieredSortedSetFileHandlerFactory.cleanupOrphans(fs, localDir, "running"));
+        assertFalse(fs.exists(new Path(localDir, "abandoned")));
+        assertTrue(fs.exists(runningDir));
+        assertEquals(inUse + 50, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+        
+        // the directories are checked at most every interval
+        assertEquals(0, TieredSortedSetFileHandlerFactory.cleanupOrphans(fs, localDir, "other"));
+        assertTrue(fs.exists(runningDir));
+        
+        running.deleteLocalFiles();
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+    }
+    
+    @Test
+    public void testSortedSet() throws IOException {
+        long inUse = TieredSortedSetFileHandlerFactory.getLocalBytesInUse();
+        TieredSortedSetFileHandlerFactory.setLocalMaxBytes(inUse + 1);
+        TieredSortedSetFileHandlerFactory factory = new TieredSortedSetFileHandlerFactory(fs, localDir, fs, hdfsDir);
+        HdfsBackedSortedSet<Integer> set = new HdfsBackedSortedSet<>(null, 10, 100, factory, new FileSortedSet.Factory<>());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i * 7 % 100);
+            set.add(i * 7 % 100);
+        }
+        set.persist();
+        assertTrue(factory.getFileCount(Tier.LOCAL) > 0);
+        assertTrue(factory.getFileCount(Tier.HDFS) > 0);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        
+        set.clear();
+        assertFalse(factory.hasLocalFiles());
+        assertEquals(inUse, TieredSortedSetFileHandlerFactory.getLocalBytesInUse());
+    }
+}
@@ -58,6 +58,12 @@ import java.util.concurrent.TimeUnit;
 public class BulkResultsJobConfiguration extends MapReduceJobConfiguration implements NeedCallerDetails, NeedAccumuloConnectionFactory, NeedAccumuloDetails,
                 NeedQueryLogicFactory, NeedQueryPersister, NeedQueryCache {
     
+    /**
+     * The query iterator option that packs several documents into each returned value. The mappers transform one entry at a time, so the option is removed
+     * from the iterators of the job.
+     */
+    private static final String DOCUMENTS_PER_VALUE = "documents.per.value";
+    
     /**
      * Container for query settings
      *
@@ -257,6 +263,7 @@ public class BulkResultsJobConfiguration extends MapReduceJobConfiguration imple
         BulkInputFormat.setRanges(job, ranges);
         
         for (IteratorSetting cfg : queryData.getSettings()) {
+            cfg.removeOption(DOCUMENTS_PER_VALUE);
             BulkInputFormat.addIterator(job.getConfiguration(), cfg);
         }
         
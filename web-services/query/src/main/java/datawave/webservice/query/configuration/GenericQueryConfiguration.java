@@ -4,6 +4,8 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import datawave.util.TableName;
@@ -47,6 +49,9 @@ public abstract class GenericQueryConfiguration {
     
     protected boolean bypassAccumulo;
     
+    // Estimates the query was planned by, recorded as predictions in the query metric
+    private Map<String,Double> planEstimates = new LinkedHashMap<>();
+    
     /**
      * Empty default constructor
      */
@@ -75,6 +80,7 @@ public abstract class GenericQueryConfiguration {
         this.setQueries(genericConfig.getQueries());
         this.setQueryString(genericConfig.getQueryString());
         this.setTableName(genericConfig.getTableName());
+        this.setPlanEstimates(genericConfig.getPlanEstimates());
     }
     
     /**
@@ -167,6 +173,25 @@ public abstract class GenericQueryConfiguration {
         this.bypassAccumulo = bypassAccumulo;
     }
     
+    public Map<String,Double> getPlanEstimates() {
+        return planEstimates;
+    }
+    
+    public void setPlanEstimates(Map<String,Double> planEstimates) {
+        this.planEstimates = new LinkedHashMap<>(planEstimates);
+    }
+    
+    /**
+     * Record an estimate made while planning the query
+     * 
+     * @param name
+     *            what was estimated
+     * @param estimate
+     */
+    public void addPlanEstimate(String name, double estimate) {
+        this.planEstimates.put(name, estimate);
+    }
+    
     /**
      * Checks for non-null, sane values for the configured values
      * 
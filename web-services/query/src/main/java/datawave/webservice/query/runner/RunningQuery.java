@@ -4,6 +4,7 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -162,6 +163,10 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             this.iter = this.logic.getTransformIterator(this.settings);
             // the configuration query string should now hold the planned query
             this.getMetric().setPlan(configuration.getQueryString());
+            // along with the estimates it was planned by
+            for (Map.Entry<String,Double> estimate : configuration.getPlanEstimates().entrySet()) {
+                this.getMetric().addPrediction(new Prediction("Plan " + estimate.getKey(), estimate.getValue()));
+            }
             this.getMetric().setSetupTime((System.currentTimeMillis() - start));
             this.getMetric().setLifecycle(QueryMetric.Lifecycle.INITIALIZED);
             testForUncaughtException(0);
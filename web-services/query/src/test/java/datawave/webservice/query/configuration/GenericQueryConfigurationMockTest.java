@@ -89,5 +89,6 @@ public class GenericQueryConfigurationMockTest {
         assertEquals(-1L, config.getMaxWork().longValue());
         assertEquals(100, config.getBaseIteratorPriority());
         assertFalse(config.getBypassAccumulo());
+        assertTrue(config.getPlanEstimates().isEmpty());
     }
 }
@@ -792,6 +792,7 @@ public class ExtendedQueryExecutorBeanTest {
         expect(this.queryLogic1.getTransformIterator(this.query)).andReturn(this.transformIterator);
         cache.put(eq(queryId.toString()), isA(RunningQuery.class));
         expect(this.genericConfiguration.getQueryString()).andReturn(queryName).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         expect(this.qlCache.poll(queryId.toString())).andReturn(null);
         
         // Set expectations of the next logic
@@ -963,6 +964,7 @@ public class ExtendedQueryExecutorBeanTest {
         this.queryLogic1.setupQuery(this.genericConfiguration);
         expect(this.queryLogic1.getTransformIterator(this.query)).andReturn(this.transformIterator);
         expect(this.genericConfiguration.getQueryString()).andReturn(queryName).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         cache.put(eq(queryId.toString()), isA(RunningQuery.class));
         expect(this.qlCache.poll(queryId.toString())).andReturn(null);
         
@@ -1246,6 +1248,7 @@ public class ExtendedQueryExecutorBeanTest {
         this.queryLogic1.setupQuery(this.genericConfiguration);
         expect(this.queryLogic1.getTransformIterator(this.query)).andReturn(this.transformIterator);
         expect(this.genericConfiguration.getQueryString()).andReturn(queryName).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         this.cache.put(eq(queryId.toString()), isA(RunningQuery.class));
         expect(this.qlCache.poll(queryId.toString())).andReturn(null);
         
@@ -1843,6 +1846,7 @@ public class ExtendedQueryExecutorBeanTest {
         this.queryLogic1.setupQuery(this.genericConfiguration);
         expect(this.queryLogic1.getTransformIterator(eq(newQuery2))).andReturn(this.transformIterator);
         expect(this.genericConfiguration.getQueryString()).andReturn(query).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         this.cache.put(eq(newQuery2.getId().toString()), isA(RunningQuery.class));
         expect(this.qlCache.poll(newQuery1.getId().toString())).andReturn(null);
         
@@ -2803,6 +2807,7 @@ public class ExtendedQueryExecutorBeanTest {
         this.queryLogic1.setupQuery(this.genericConfiguration);
         expect(this.queryLogic1.getTransformIterator(this.query)).andReturn(this.transformIterator);
         expect(this.genericConfiguration.getQueryString()).andReturn(queryName).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         this.connectionFactory.returnConnection(null); // These 2 lines prevent the bean's exception-handling logic (in combination
         PowerMock.expectLastCall().anyTimes(); // with PowerMock) from masking an actual problem if one occurs.
         cache.unlock(queryName);
@@ -172,6 +172,7 @@ public class ExtendedRunningQueryTest {
         expect(this.queryLogic.getMaxWork()).andReturn(maxWork).anyTimes();
         expect(this.queryLogic.getMaxResults()).andReturn(maxResults).anyTimes();
         expect(this.genericConfiguration.getQueryString()).andReturn(query).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         
         // Run the test
         PowerMock.replayAll();
@@ -257,6 +258,7 @@ public class ExtendedRunningQueryTest {
         expect(this.queryLogic.getMaxWork()).andReturn(maxWork).anyTimes();
         expect(this.queryLogic.getMaxResults()).andReturn(maxResults).anyTimes();
         expect(this.genericConfiguration.getQueryString()).andReturn(query).once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         
         // Run the test
         PowerMock.replayAll();
@@ -302,6 +304,7 @@ public class ExtendedRunningQueryTest {
         expect(this.queryLogic.getTransformIterator(this.query)).andReturn(this.transformIterator);
         expect(this.transformIterator.hasNext()).andReturn(true);
         expect(this.genericConfiguration.getQueryString()).andReturn("query").once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         
         // Run the test
         PowerMock.replayAll();
@@ -341,6 +344,7 @@ public class ExtendedRunningQueryTest {
         expect(this.query.getUserDN()).andReturn(userDN).times(2);
         expect(this.queryLogic.initialize(eq(this.connector), eq(this.query), isA(Set.class))).andReturn(this.genericConfiguration);
         expect(this.genericConfiguration.getQueryString()).andReturn("query").once();
+        expect(this.genericConfiguration.getPlanEstimates()).andReturn(Collections.emptyMap()).once();
         this.queryLogic.setupQuery(this.genericConfiguration);
         this.queryMetrics.updateMetric(isA(QueryMetric.class));
         PowerMock.expectLastCall().times(3);